@@ -0,0 +1,56 @@
+package com.sad;
+
+import java.util.List;
+
+import com.sad.models.Model;
+import com.sad.models.persistence.DocumentGenerator;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.layout.Pane;
+
+/**
+ * Builds the documents the benchmarks run on.
+ * Documents are deterministic, so that results can be compared between runs.
+ */
+final class BenchmarkDocuments {
+    /** Width of the area the shapes are spread over. */
+    static final double AREA_WIDTH = 5000;
+    /** Height of the area the shapes are spread over. */
+    static final double AREA_HEIGHT = 3000;
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private BenchmarkDocuments() {
+    }
+
+    /**
+     * Generates the shapes of a document: rectangles, ellipses, lines and polygons in equal parts.
+     * Texts are left out, since drawing them would start the font toolkit.
+     * @param count The number of shapes.
+     * @return The shapes, without nodes.
+     */
+    static List<ShapeInterface> createShapes(int count) {
+        DocumentGenerator generator = new DocumentGenerator(42);
+        generator.setMix(1, 1, 1, 1, 0);
+        generator.setArea(AREA_WIDTH, AREA_HEIGHT);
+        return generator.generate(count);
+    }
+
+    /**
+     * Creates a model holding a document of the given size.
+     * @param shapeCount The number of shapes of the document.
+     * @param withPane True to attach the shapes as nodes to a pane, false for a model without a pane.
+     * @return The model.
+     */
+    static Model createModel(int shapeCount, boolean withPane) {
+        Model model = withPane ? new Model(new Pane()) : new Model();
+        for (ShapeInterface shape : createShapes(shapeCount)) {
+            if (withPane) {
+                shape.draw();
+            }
+            model.addShape(shape);
+        }
+        return model;
+    }
+}
@@ -0,0 +1,111 @@
+package com.sad;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sad.models.Model;
+
+/**
+ * Measures saving and loading documents of growing size, in the binary document format and in the
+ * legacy Java serialization format previous versions wrote, which the model still loads.
+ * Both run on models without a pane, so no node is created and no display is needed.
+ * The size of each file is printed once it is written.
+ * Started through the jmh Maven profile; run with {@code -prof gc} (the default) to report allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DocumentBenchmark {
+    /** The number of shapes of the document. */
+    @Param({ "1000", "10000", "100000" })
+    public int shapeCount;
+    /** The format of the file: "binary" for the document format, "legacy" for Java serialization. */
+    @Param({ "binary", "legacy" })
+    public String format;
+
+    /** The model holding the document to save. */
+    private Model model;
+    /** The file the document is saved to and loaded from. */
+    private File file;
+
+    /**
+     * Creates the document and saves it once, so that there is a file to load.
+     * @throws IOException If the file cannot be written.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        model = BenchmarkDocuments.createModel(shapeCount, false);
+        file = File.createTempFile("benchmark", ".bin");
+        save();
+        System.out.printf("%s file of %d shapes: %d KB%n", format, shapeCount, file.length() / 1024);
+    }
+
+    /**
+     * Deletes the document file.
+     */
+    @TearDown
+    public void tearDown() {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Saves the document, from the snapshot to the file.
+     * @return The saved file.
+     * @throws IOException If the file cannot be written.
+     */
+    @Benchmark
+    public File save() throws IOException {
+        if ("legacy".equals(format)) {
+            saveLegacy();
+        } else {
+            model.saveToFile(file);
+        }
+        return file;
+    }
+
+    /**
+     * Saves the document with Java serialization, as previous versions did.
+     * @throws IOException If the file cannot be written.
+     */
+    private void saveLegacy() throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(new ArrayList<>(model.getShapes()));
+        }
+    }
+
+    /**
+     * Loads the document into a new model, decoding and indexing every shape.
+     * The model recognizes the format of the file, as it does when opening one.
+     * @return The loaded model.
+     * @throws IOException If the file cannot be read.
+     */
+    @Benchmark
+    public Model load() throws IOException {
+        Model loaded = new Model();
+        loaded.loadFromFile(file);
+        return loaded;
+    }
+}
@@ -0,0 +1,155 @@
+package com.sad;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sad.models.Model;
+import com.sad.models.RectangleFactory;
+import com.sad.models.command.CommandHistory;
+import com.sad.models.command.CommandInterface;
+import com.sad.models.command.MoveShapeCommand;
+import com.sad.models.command.ResizeShapeCommand;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Measures the throughput of the editing operations of the Model as the document grows.
+ * Each operation leaves the document as it found it, so that its size stays constant.
+ * Runs without a display: the "headless" view uses a model without a pane, the "pane" view
+ * attaches every shape as a node to a pane that is never shown. Creating the nodes starts the
+ * JavaFX renderer thread, so the forks use the software pipeline, which needs neither a display
+ * nor OpenGL.
+ * Started through the jmh Maven profile; run with {@code -prof gc} (the default) to report allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dprism.order=sw")
+@State(Scope.Benchmark)
+public class ModelBenchmark {
+    /** The number of shapes of the document. */
+    @Param({ "1000", "10000", "100000" })
+    public int shapeCount;
+    /** Whether the shapes are attached to a pane ("pane") or only kept by the model ("headless"). */
+    @Param({ "headless", "pane" })
+    public String view;
+
+    /** The model holding the document. */
+    private Model model;
+    /** The history the executed commands are pushed to. */
+    private CommandHistory history;
+    /** The shapes of the document, in z-order at setup. */
+    private List<ShapeInterface> shapes;
+    /** The position of the next shape to operate on. */
+    private int next;
+
+    /**
+     * Creates the document.
+     */
+    @Setup
+    public void setUp() {
+        model = BenchmarkDocuments.createModel(shapeCount, "pane".equals(view));
+        model.setCurrentFactory(new RectangleFactory());
+        history = new CommandHistory(model);
+        history.setCoalesceWindow(0);
+        shapes = model.getShapes();
+    }
+
+    /**
+     * Picks the shapes in turn, so that every operation does not hit the same one.
+     * @return The next shape.
+     */
+    private ShapeInterface nextShape() {
+        next = next + 1 < shapes.size() ? next + 1 : 0;
+        return shapes.get(next);
+    }
+
+    /**
+     * Creates a shape with the current factory and deletes it.
+     * @return The created shape.
+     */
+    @Benchmark
+    public ShapeInterface createShape() {
+        ShapeInterface shape = model.createShape(next, next, 0, 0, Color.BLACK, Color.WHITE);
+        model.deleteShape(shape);
+        nextShape();
+        return shape;
+    }
+
+    /**
+     * Moves a shape by one pixel and back.
+     * @return The moved shape.
+     */
+    @Benchmark
+    public ShapeInterface moveShape() {
+        ShapeInterface shape = nextShape();
+        double x = shape.getX();
+        double y = shape.getY();
+        model.moveShape(shape, new double[] { x + 1, y });
+        model.moveShape(shape, new double[] { x, y });
+        return shape;
+    }
+
+    /**
+     * Resizes a shape through a command, reading its size, and restores it.
+     * @return The command.
+     */
+    @Benchmark
+    public ResizeShapeCommand resizeShape() {
+        ResizeShapeCommand command = new ResizeShapeCommand(model, nextShape(), 1.25);
+        command.execute();
+        command.undo();
+        return command;
+    }
+
+    /**
+     * Clones a shape, as copy and paste or a snapshot for saving do.
+     * @return The copy.
+     */
+    @Benchmark
+    public ShapeInterface cloneShape() {
+        return nextShape().clone();
+    }
+
+    /**
+     * Brings a shape to the front of the document.
+     * The document is reordered, but its size does not change.
+     * @return The shape.
+     */
+    @Benchmark
+    public ShapeInterface bringShapeToFront() {
+        ShapeInterface shape = nextShape();
+        model.bringShapeToFront(shape);
+        return shape;
+    }
+
+    /**
+     * Executes a move, records it in the history and undoes it, as the undo button does.
+     * @return The undone command.
+     */
+    @Benchmark
+    public CommandInterface undo() {
+        ShapeInterface shape = nextShape();
+        double[] from = { shape.getX(), shape.getY() };
+        CommandInterface command = new MoveShapeCommand(model, shape, from, new double[] { from[0] + 10, from[1] + 10 });
+        command.execute();
+        history.push(command);
+        CommandInterface undone = history.pop();
+        undone.undo();
+        return undone;
+    }
+}
@@ -2,32 +2,50 @@ package com.sad;
 
 import javafx.fxml.FXML;
 import javafx.scene.input.ContextMenuEvent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.shape.Shape;
 import javafx.scene.transform.Scale;
+import javafx.geometry.Bounds;
 import javafx.scene.Node;
 import javafx.scene.Scene;
-import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
+import javafx.animation.AnimationTimer;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ColorPicker;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.layout.Pane;
+import javafx.scene.control.Label;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.ScrollPane;
 import javafx.scene.control.Slider;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TextFormatter;
 import javafx.scene.image.ImageView;
-
-import java.util.Stack;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.ImagePattern;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.function.UnaryOperator;
 
 import com.sad.models.*;
 import com.sad.models.command.*;
+import com.sad.models.shapes.ConcretePolygon;
 import com.sad.models.shapes.ConcreteText;
 import com.sad.models.shapes.ShapeInterface;
 import com.sad.models.state.DrawingShapeState;
@@ -103,6 +121,42 @@ public class Controller {
     /** Combo box for font size selection */
     @FXML private ComboBox<Integer> fontSizeMenu;
 
+    /** Progress bar for long-running document operations */
+    @FXML private ProgressBar loadProgressBar;
+
+    /** Label showing the status of document operations */
+    @FXML private Label statusLabel;
+
+    /** Scroll pane around the drawing area */
+    @FXML private ScrollPane scrollPane;
+
+    /** Fraction of the visible size added on each side of the viewport sent to the model. */
+    private static final double VIEWPORT_MARGIN = 0.25;
+
+    /** System property that turns viewport culling off when set to false. */
+    private static final String CULLING_PROPERTY = "drawingapp.culling";
+
+    /** System property selecting the rendering backend: "nodes" (default) or "canvas". */
+    private static final String RENDERER_PROPERTY = "drawingapp.renderer";
+
+    /** System property setting the zoom factor below which shapes are painted at reduced detail; 0 turns this off. */
+    private static final String DETAIL_SCALE_PROPERTY = "drawingapp.lod.scale";
+
+    /** System property setting the height in pixels below which texts are painted as placeholder bars. */
+    private static final String DETAIL_TEXT_PROPERTY = "drawingapp.lod.text";
+
+    /** System property setting the size in pixels below which polygons are painted as their bounding boxes. */
+    private static final String DETAIL_POLYGON_PROPERTY = "drawingapp.lod.polygon";
+
+    /** System property setting the tolerance of polygon simplification, in pane units. */
+    private static final String SIMPLIFY_TOLERANCE_PROPERTY = "drawingapp.simplify.tolerance";
+
+    /** System property that simplifies the polygons of loaded documents when set to true. */
+    private static final String SIMPLIFY_ON_LOAD_PROPERTY = "drawingapp.simplify.onload";
+
+    /** Default zoom factor below which shapes are painted at reduced detail: only the lowest zoom level. */
+    private static final double DEFAULT_DETAIL_SCALE = 0.75;
+
     /** Filter for decimal input in the resize text field. */
     private final UnaryOperator<TextFormatter.Change> decimalFilter = change -> {
         String newText = change.getControlNewText();
@@ -115,8 +169,24 @@ public class Controller {
     /** Mouse X coordinate for context menu and paste actions. */
     private double mouseX, mouseY;
     
-    /** Canvas for drawing the grid. */
-    private Canvas gridCanvas;
+    /** Layer behind the shapes, filled with the grid pattern. */
+    private Region gridLayer;
+
+    /** Grid tile images already rendered, by period rounded to whole pixels. */
+    private final Map<Integer, WritableImage> gridTiles = new HashMap<>();
+
+    /** True if the grid must be redrawn on the next pulse. */
+    private boolean gridRedrawPending = false;
+
+    /** Redraws the grid at most once per pulse, then stops. */
+    private final AnimationTimer gridRedrawTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            gridRedrawPending = false;
+            drawGrid(gridSpacing);
+        }
+    };
     
     /** Scale transform for zooming the drawing area. */
     private Scale scaleTransform = new Scale(1, 1);
@@ -133,8 +203,20 @@ public class Controller {
     /** The application model managing shapes and commands. */
     private Model model;
 
-    /** The stack of executed commands for undo functionality. */
-    private Stack<CommandInterface> commandStack;
+    /** The history of executed commands for undo functionality. */
+    private CommandHistory commandStack;
+
+    /** Keyboard shortcut for undo. */
+    private static final KeyCombination UNDO_SHORTCUT = new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN);
+
+    /** Keyboard shortcuts for redo. */
+    private static final KeyCombination REDO_SHORTCUT = new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN),
+            REDO_ALT_SHORTCUT = new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN);
+
+    /** System property setting the memory budget of the undo history, in megabytes. */
+    private static final String HISTORY_BUDGET_PROPERTY = "drawingapp.history.budget";
+    /** System property setting the time within which consecutive edits of a shape merge in the undo history, in milliseconds. */
+    private static final String HISTORY_COALESCE_PROPERTY = "drawingapp.history.coalesce";
 
     /** State for selecting shapes */
     private SelectingState selectingState;
@@ -161,8 +243,14 @@ public class Controller {
      */
     public void initialize() {
         highlightSelected(selectImageView);
-        commandStack = new Stack<CommandInterface>();
         model = new Model(root);
+        commandStack = new CommandHistory(model, historyBudget());
+        commandStack.setCoalesceWindow(Long.getLong(HISTORY_COALESCE_PROPERTY, CommandHistory.DEFAULT_COALESCE_WINDOW));
+        model.setStatusListener(statusLabel::setText);
+        model.setProgressListener(progress -> {
+            loadProgressBar.setVisible(progress >= 0);
+            loadProgressBar.setProgress(Math.max(progress, 0));
+        });
         setupDrawingAreaClip(); 
         setupColorPickers(); 
         resizeTextField.setTextFormatter(new TextFormatter<>(decimalFilter));
@@ -185,12 +273,18 @@ public class Controller {
             double scale = newVal.doubleValue();
             scaleTransform.setX(scale);
             scaleTransform.setY(scale);
-
-            if (gridCanvas.isVisible()) {
-                drawGrid(gridCanvas, gridSpacing);
-            }
+            requestGridRedraw();
         });
 
+        model.setCullingEnabled(!"false".equals(System.getProperty(CULLING_PROPERTY)));
+        model.setCanvasRenderingEnabled("canvas".equals(System.getProperty(RENDERER_PROPERTY)));
+        model.setDetailThresholds(doubleProperty(DETAIL_TEXT_PROPERTY, CanvasRenderer.DEFAULT_TEXT_THRESHOLD),
+                doubleProperty(DETAIL_POLYGON_PROPERTY, CanvasRenderer.DEFAULT_POLYGON_THRESHOLD));
+        model.setDetailScale(doubleProperty(DETAIL_SCALE_PROPERTY, DEFAULT_DETAIL_SCALE));
+        model.setSimplifyTolerance(doubleProperty(SIMPLIFY_TOLERANCE_PROPERTY, Model.DEFAULT_SIMPLIFY_TOLERANCE));
+        model.setSimplifyOnLoad(Boolean.getBoolean(SIMPLIFY_ON_LOAD_PROPERTY));
+        setupViewportTracking();
+
         // Snap slider to steps of 0.5
         zoomSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
             double snappedValue = Math.round(newVal.doubleValue() * 2) / 2.0;
@@ -376,25 +470,27 @@ public class Controller {
         gridSpacingSlider.setSnapToTicks(true);
         gridSpacingSlider.setBlockIncrement(1);
         gridSpacingSlider.setValue(currentGridLevelIndex);
-        gridSpacingSlider.setDisable(!gridCanvas.isVisible());
+        gridSpacingSlider.setDisable(!gridLayer.isVisible());
 
         gridSpacingSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
             currentGridLevelIndex = newVal.intValue();
-            if (gridCanvas.isVisible()) {
-                double spacing = GRID_LEVELS[currentGridLevelIndex];
-                drawGrid(gridCanvas, spacing);
-            }
+            gridSpacing = GRID_LEVELS[currentGridLevelIndex];
+            requestGridRedraw();
         });
     }
 
     /**
-     * Initializes the grid canvas and adds it to the drawing area.
+     * Initializes the grid layer and adds it to the drawing area.
      */
     private void setupGridCanvas() {
-        gridCanvas = new Canvas(root.getPrefWidth(), root.getPrefHeight());
-        gridCanvas.setVisible(false);
-        root.getChildren().add(0, gridCanvas); 
-        drawGrid(gridCanvas, 20);
+        gridLayer = new Region();
+        gridLayer.setManaged(false);
+        gridLayer.setMouseTransparent(true);
+        gridLayer.resize(Math.max(0, root.getPrefWidth()), Math.max(0, root.getPrefHeight()));
+        gridLayer.setVisible(false);
+        root.getChildren().add(0, gridLayer);
+        gridSpacing = 20;
+        drawGrid(gridSpacing);
     }
 
     /**
@@ -402,62 +498,81 @@ public class Controller {
      */
     private void setupGridToggle() {
         gridCheckBox.selectedProperty().addListener((obs, wasSelected, isSelected) -> {
-            gridCanvas.setVisible(isSelected);
+            gridLayer.setVisible(isSelected);
             gridSpacingSlider.setDisable(!isSelected);
+            requestGridRedraw();
         });
     }
 
     /**
-     * Sets up listeners to redraw the grid when the drawing area is resized.
+     * Sets up listeners to resize the grid when the drawing area is resized.
+     * The grid is a repeating pattern, so resizing does not redraw it.
      */
     private void setupResizeListeners() {
-        root.widthProperty().addListener((obs, oldVal, newVal) -> {
-            gridCanvas.setWidth(newVal.doubleValue());
-            drawGrid(gridCanvas, gridSpacing);
-        });
+        root.widthProperty().addListener((obs, oldVal, newVal) ->
+            gridLayer.resize(newVal.doubleValue(), gridLayer.getHeight()));
 
-        root.heightProperty().addListener((obs, oldVal, newVal) -> {
-            gridCanvas.setHeight(newVal.doubleValue());
-            drawGrid(gridCanvas, gridSpacing);
-        });
+        root.heightProperty().addListener((obs, oldVal, newVal) ->
+            gridLayer.resize(gridLayer.getWidth(), newVal.doubleValue()));
     }
 
     /**
      * Ensures the grid canvas is always at the back of the drawing area.
      */
     private void ensureGridIsAtBack() {
-        root.getChildren().remove(gridCanvas);
-        root.getChildren().add(0, gridCanvas);
+        root.getChildren().remove(gridLayer);
+        root.getChildren().add(0, gridLayer);
     }
 
     /**
-     * Draws the grid on the specified canvas with the given spacing.
-     * @param canvas The canvas to draw the grid on
+     * Schedules a redraw of the grid for the next pulse.
+     * Several requests within the same pulse, for instance while the zoom slider is dragged,
+     * result in a single redraw. Nothing is drawn while the grid is hidden.
+     */
+    private void requestGridRedraw() {
+        if (!gridRedrawPending && gridLayer.isVisible()) {
+            gridRedrawPending = true;
+            gridRedrawTimer.start();
+        }
+    }
+
+    /**
+     * Fills the grid layer with a repeating tile for the given spacing and the current zoom.
+     * Tiles are rendered once per period and reused, so the cost does not depend on the size of the drawing area.
+     * The tile image is rendered at the spacing rounded to whole pixels, but the pattern repeats it at the
+     * exact spacing, so that line k stays at k times the spacing instead of drifting by the rounding error.
      * @param baseSpacing The base spacing between grid lines
      */
-    private void drawGrid(Canvas canvas, double baseSpacing) {
+    private void drawGrid(double baseSpacing) {
         gridSpacing = baseSpacing;
-        GraphicsContext gc = canvas.getGraphicsContext2D();
-        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        double scale = scaleTransform.getX();
 
-        double scale = scaleTransform.getX(); 
+        double spacing = baseSpacing * scale;
+        int period = (int) Math.round(spacing);
 
-        double adjustedSpacing = baseSpacing * scale;
-
-        if (adjustedSpacing < 4) return; 
+        if (period < 4) {
+            gridLayer.setBackground(null);
+            return;
+        }
 
-        gc.setStroke(Color.GRAY);
-        gc.setLineWidth(1);
-        gc.setLineDashes(null);
+        WritableImage image = gridTiles.computeIfAbsent(period, Controller::createGridTile);
+        ImagePattern tile = new ImagePattern(image, 0, 0, spacing, spacing, false);
+        gridLayer.setBackground(new Background(new BackgroundFill(tile, null, null)));
+    }
 
-        for (double x = 0; x < canvas.getWidth(); x += adjustedSpacing) {
-            double px = Math.round(x) + 0.5;  
-            gc.strokeLine(px, 0, px, canvas.getHeight());
-        }
-        for (double y = 0; y < canvas.getHeight(); y += adjustedSpacing) {
-            double py = Math.round(y) + 0.5;
-            gc.strokeLine(0, py, canvas.getWidth(), py);
+    /**
+     * Renders a grid tile: one gray line along the left edge and one along the top edge.
+     * @param period The size of the tile in pixels
+     * @return The tile image
+     */
+    private static WritableImage createGridTile(int period) {
+        WritableImage image = new WritableImage(period, period);
+        PixelWriter writer = image.getPixelWriter();
+        for (int i = 0; i < period; i++) {
+            writer.setColor(i, 0, Color.GRAY);
+            writer.setColor(0, i, Color.GRAY);
         }
+        return image;
     }
 
     /**
@@ -494,25 +609,34 @@ public class Controller {
         fillColorPicker.setValue(Color.TRANSPARENT);
         
         borderColorPicker.setOnAction(event -> {
-            updateShapeColorFromPicker();
+            updateShapeColorFromPicker(true);
         });
 
         fillColorPicker.setOnAction(event -> {
-            updateShapeColorFromPicker();
+            updateShapeColorFromPicker(false);
         });
     }
 
     /**
      * Updates the color of the selected shape based on the color pickers.
+     * When several shapes are selected, only the color of the picker that changed is applied,
+     * so each shape keeps its other color, and the whole selection is recolored in one step.
+     * @param borderChanged True if the border color picker changed, false for the fill color picker
      */
-    private void updateShapeColorFromPicker(){
+    private void updateShapeColorFromPicker(boolean borderChanged){
+        List<ShapeInterface> selection = model.getSelection();
+        if (selection.size() > 1) {
+            executeOnSelection(selection, shape -> new ChangeShapeColorCommand(model, shape,
+                    borderChanged ? borderColorPicker.getValue() : shape.getBorderColor(),
+                    borderChanged ? shape.getFillColor() : fillColorPicker.getValue()));
+            return;
+        }
         Node selectedNode = model.getSelectedShape();
         if(selectedNode instanceof Shape) {
             ShapeInterface shape = model.getShapeFromNode((Shape) selectedNode);
             if (shape != null) {
                 CommandInterface command = new ChangeShapeColorCommand(model, shape, borderColorPicker.getValue(), fillColorPicker.getValue());
-                command.execute();
-                commandStack.push(command);
+                executeCommand(command);
             }
         }
     }
@@ -526,6 +650,33 @@ public class Controller {
         getCurrentState().handleOnMouseClick(event);
     }
 
+    /**
+     * Handles mouse press events on the drawing area.
+     * @param event Mouse event object
+     */
+    @FXML
+    private void onMousePressed(MouseEvent event){
+        getCurrentState().handleOnMousePressed(event);
+    }
+
+    /**
+     * Handles mouse drag events on the drawing area.
+     * @param event Mouse event object
+     */
+    @FXML
+    private void onMouseDragged(MouseEvent event){
+        getCurrentState().handleOnMouseDragged(event);
+    }
+
+    /**
+     * Handles mouse release events on the drawing area.
+     * @param event Mouse event object
+     */
+    @FXML
+    private void onMouseReleased(MouseEvent event){
+        getCurrentState().handleOnMouseReleased(event);
+    }
+
     /**
      * Handles context menu requests.
      * @param event Context menu event object
@@ -540,7 +691,15 @@ public class Controller {
      * @param event Key event object
      */
     private void onKeyPressed(KeyEvent event){
-        getCurrentState().onKeyPressed(event);
+        if (UNDO_SHORTCUT.match(event)) {
+            onUndoButtonClick();
+            event.consume();
+        } else if (REDO_SHORTCUT.match(event) || REDO_ALT_SHORTCUT.match(event)) {
+            onRedoButtonClick();
+            event.consume();
+        } else {
+            getCurrentState().onKeyPressed(event);
+        }
     }
 
     /**
@@ -610,18 +769,28 @@ public class Controller {
     }
 
     /**
-     * Deletes the currently selected shape using a DeleteShapeCommand.
+     * Deletes the selected shapes using DeleteShapeCommands.
      */
     @FXML
     private void deleteShape(){
-        Node selectedNode = model.getSelectedShape();
-        if(selectedNode instanceof Shape) {
-            ShapeInterface shape = model.getShapeFromNode((Shape) selectedNode);
-            if (shape != null){
-                CommandInterface command = new DeleteShapeCommand(model, shape );
-                command.execute();
-                commandStack.push(command);
+        executeOnSelection(model.getSelection(), shape -> new DeleteShapeCommand(model, shape));
+    }
+
+    /**
+     * Executes a command on each of the given shapes.
+     * A single shape gets its command directly; several shapes get a MacroCommand, undone in one step.
+     * @param targets The shapes, in the order the commands must run
+     * @param factory Creates the command for a shape
+     */
+    private void executeOnSelection(List<ShapeInterface> targets, Function<ShapeInterface, CommandInterface> factory) {
+        if (targets.size() == 1) {
+            executeCommand(factory.apply(targets.get(0)));
+        } else if (targets.size() > 1) {
+            MacroCommand macro = new MacroCommand(model);
+            for (ShapeInterface shape : targets) {
+                macro.add(factory.apply(shape));
             }
+            executeCommand(macro);
         }
     }
 
@@ -635,8 +804,7 @@ public class Controller {
             ShapeInterface shape = model.getShapeFromNode((Shape) selectedNode);
             if (shape != null) {
                 CommandInterface command = new CutShapeCommand(model, shape);
-                command.execute();
-                commandStack.push(command);
+                executeCommand(command);
             }
         }
     }
@@ -664,8 +832,7 @@ public class Controller {
         ShapeInterface shapeToPaste = model.getClipBoardShape();
         if(shapeToPaste == null) { return; }
         CommandInterface command = new PasteShapeCommand(model, mouseX, mouseY);
-        command.execute();
-        commandStack.push(command);
+        executeCommand(command);
     }
 
     /**
@@ -707,8 +874,8 @@ public class Controller {
             if (currentText != null) {
                 ShapeInterface shape = currentText.clone();
                 shape.draw();
-                executeCommand(new InsertTextCommand(model, shape));
                 root.getChildren().remove(currentText.getNode());
+                executeCommand(new InsertTextCommand(model, shape));
                 insertTextState.clearCurrentText();
                 fontSizeMenu.setDisable(true);
 
@@ -816,8 +983,7 @@ public class Controller {
             ShapeInterface shape = model.getShapeFromNode((Shape) selectedNode);
             if (shape != null){
                 CommandInterface command = new MirrorXShapeCommand(model, shape );
-                command.execute();
-                commandStack.push(command);
+                executeCommand(command);
             }
         }
     }
@@ -832,45 +998,82 @@ public class Controller {
             ShapeInterface shape = model.getShapeFromNode((Shape) selectedNode);
             if (shape != null){
                 CommandInterface command = new MirrorYShapeCommand(model, shape );
-                command.execute();
-                commandStack.push(command);
+                executeCommand(command);
             }
         }
     }
 
     /**
-     * Brings the selected shape to the front using a BringToFrontCommand.
+     * Brings the selected shapes to the front using BringToFrontCommands.
+     * Shapes are brought up from the bottom one, so that they keep their relative order.
      */
     @FXML
     public void bringToFront() {
-        Node selectNode = model.getSelectedShape();
-        if (selectNode instanceof Shape) {
-            ShapeInterface shape = model.getShapeFromNode((Shape) selectNode);
-            if (shape != null) {
-                CommandInterface command = new BringToFrontCommand(model, shape);
-                command.execute();
-                commandStack.push(command);
-                ensureGridIsAtBack();
-            }
+        List<ShapeInterface> selection = model.getSelection();
+        if (!selection.isEmpty()) {
+            executeOnSelection(selection, shape -> new BringToFrontCommand(model, shape));
+            ensureGridIsAtBack();
         }
-
     }
 
     /**
-     * Sends the selected shape to the back using a SendToBackCommand.
+     * Sends the selected shapes to the back using SendToBackCommands.
+     * Shapes are sent down from the top one, so that they keep their relative order.
      */
     @FXML
     public void sendToBack() {
-        Node selectNode = model.getSelectedShape();
-        if (selectNode instanceof Shape) {
-            ShapeInterface shape = model.getShapeFromNode((Shape) selectNode);
-            if (shape != null) {
-                CommandInterface command = new SendToBackCommand(model, shape);
-                command.execute();
-                commandStack.push(command);
-                ensureGridIsAtBack();
+        List<ShapeInterface> selection = new ArrayList<>(model.getSelection());
+        if (!selection.isEmpty()) {
+            Collections.reverse(selection);
+            executeOnSelection(selection, shape -> new SendToBackCommand(model, shape));
+            ensureGridIsAtBack();
+        }
+    }
+
+    /**
+     * Moves the selected shapes one step up in z-order using BringForwardCommands.
+     * Shapes are moved from the top one, so that each steps over an unselected neighbour first.
+     */
+    @FXML
+    public void bringForward() {
+        List<ShapeInterface> selection = new ArrayList<>(model.getSelection());
+        if (!selection.isEmpty()) {
+            Collections.reverse(selection);
+            executeOnSelection(selection, shape -> new BringForwardCommand(model, shape));
+        }
+    }
+
+    /**
+     * Moves the selected shapes one step down in z-order using SendBackwardCommands.
+     * Shapes are moved from the bottom one, so that each steps under an unselected neighbour first.
+     */
+    @FXML
+    public void sendBackward() {
+        List<ShapeInterface> selection = model.getSelection();
+        if (!selection.isEmpty()) {
+            executeOnSelection(selection, shape -> new SendBackwardCommand(model, shape));
+        }
+    }
+
+    /**
+     * Simplifies the outlines of the selected polygons using a SimplifyPolygonCommand,
+     * and reports how many vertices were removed.
+     */
+    @FXML
+    public void simplifyPolygons() {
+        List<ConcretePolygon> polygons = new ArrayList<>();
+        for (ShapeInterface shape : model.getSelection()) {
+            if (shape instanceof ConcretePolygon) {
+                polygons.add((ConcretePolygon) shape);
             }
         }
+        if (polygons.isEmpty()) {
+            return;
+        }
+        SimplifyPolygonCommand command = new SimplifyPolygonCommand(model, polygons, model.getSimplifyTolerance());
+        executeCommand(command);
+        statusLabel.setText("Simplified " + polygons.size() + (polygons.size() == 1 ? " polygon: " : " polygons: ")
+                + command.getRemovedVertexCount() + " vertices removed");
     }
 
     /**
@@ -895,6 +1098,41 @@ public class Controller {
         ensureGridIsAtBack();
         gridCheckBox.setSelected(false);
         commandStack.clear();
+        updateViewport();
+    }
+
+    /**
+     * Keeps the model informed of the visible region of the drawing area
+     * when the user scrolls, zooms or resizes the window.
+     */
+    private void setupViewportTracking() {
+        scrollPane.hvalueProperty().addListener((obs, oldVal, newVal) -> updateViewport());
+        scrollPane.vvalueProperty().addListener((obs, oldVal, newVal) -> updateViewport());
+        scrollPane.viewportBoundsProperty().addListener((obs, oldVal, newVal) -> updateViewport());
+        scaleTransform.xProperty().addListener((obs, oldVal, newVal) -> updateViewport());
+    }
+
+    /**
+     * Sends the region of the drawing area visible in the scroll pane to the model,
+     * extended by a margin so that shapes are ready before they scroll into view.
+     */
+    private void updateViewport() {
+        Bounds visible = root.sceneToLocal(scrollPane.localToScene(scrollPane.getLayoutBounds()));
+        if (visible == null) { return; }
+        double marginX = visible.getWidth() * VIEWPORT_MARGIN;
+        double marginY = visible.getHeight() * VIEWPORT_MARGIN;
+        model.setRenderScale(scaleTransform.getX());
+        model.setViewport(visible.getMinX() - marginX, visible.getMinY() - marginY,
+                visible.getMaxX() + marginX, visible.getMaxY() + marginY);
+    }
+
+    /**
+     * Handles the Cancel Loading menu item.
+     * Stops the streaming load in progress, keeping the shapes already loaded.
+     */
+    @FXML
+    private void onCancelLoadClick() {
+        model.cancelLoading();
     }
 
     /**
@@ -908,12 +1146,48 @@ public class Controller {
     }
 
     /**
-     * Executes a command and adds it to the command stack.
+     * Reads the memory budget of the undo history from the system properties.
+     * @return The budget in bytes
+     */
+    private static long historyBudget() {
+        String value = System.getProperty(HISTORY_BUDGET_PROPERTY);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim()) << 20;
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        return CommandHistory.DEFAULT_BUDGET;
+    }
+
+    /**
+     * Reads a numeric system property.
+     * @param name The name of the property.
+     * @param defaultValue The value used when the property is missing or invalid.
+     * @return The value of the property.
+     */
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        if (value != null) {
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Executes a command, adds it to the command stack and records its changes in the journal.
      * @param command Command to execute
      */
     public void executeCommand(CommandInterface command){
         command.execute();
         commandStack.push(command);
+        model.commitJournal();
+        model.refreshViewport();
     }
 
     /**
@@ -926,6 +1200,23 @@ public class Controller {
         currentState.onExit();
         CommandInterface command = commandStack.pop();
         command.undo();
+        model.commitJournal();
+        model.refreshViewport();
+        ensureGridIsAtBack();
+    }
+
+    /**
+     * Handles the Redo button click event.
+     * Executes again the last undone command, reusing its shapes and nodes.
+     */
+    @FXML
+    private void onRedoButtonClick() {
+        if(!commandStack.canRedo()) { return; }
+        currentState.onExit();
+        CommandInterface command = commandStack.popRedo();
+        command.execute();
+        model.commitJournal();
+        model.refreshViewport();
         ensureGridIsAtBack();
     }
 }
\ No newline at end of file
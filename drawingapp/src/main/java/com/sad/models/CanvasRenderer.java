@@ -0,0 +1,453 @@
+package com.sad.models;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.sad.models.index.RTree;
+import com.sad.models.index.ZOrderIndex;
+import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.ConcreteText;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.collections.ObservableList;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Ellipse;
+import javafx.scene.shape.Line;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+import javafx.scene.text.Text;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Transform;
+
+/**
+ * Draws the shapes of the document into canvases instead of attaching one node per shape.
+ * Only the selected shapes, which the user drags and styles, stay live nodes on the pane.
+ * The other shapes intersecting the viewport are painted, in z-order, into canvas layers
+ * placed between the live nodes, so the result looks the same as the scene graph would.
+ * Shapes are painted from the geometry and transforms of their nodes, which are kept
+ * detached and still serve hit-testing and the spatial index.
+ * Detail follows the resolution of the layers: polygon vertices closer than half a pixel are
+ * skipped, and when zoomed out, texts smaller than {@link #setDetailThresholds(double, double)
+ * a threshold} are painted as placeholder bars and polygons smaller than another as their
+ * bounding boxes, so the cost of a repaint follows what can actually be seen.
+ */
+public class CanvasRenderer {
+    /** Largest width or height of a canvas layer, in pixels. */
+    private static final double MAX_LAYER_SIZE = 8192;
+    /** Default height in pixels below which a text is painted as a placeholder bar. */
+    public static final double DEFAULT_TEXT_THRESHOLD = 6;
+    /** Default size in pixels below which a polygon is painted as its bounding box. */
+    public static final double DEFAULT_POLYGON_THRESHOLD = 4;
+    /** Distance in pixels below which consecutive polygon vertices are merged. */
+    private static final double VERTEX_TOLERANCE = 0.5;
+
+    /** The drawing pane. */
+    private final Pane pane;
+    /** The shapes of the document in z-order, owned by the model, which also gives their ranks. */
+    private final ZOrderIndex<ShapeInterface> shapes;
+    /** The spatial index over the shapes of the document, owned by the model. */
+    private final RTree<ShapeInterface> index;
+    /** Canvas layers, reused from one update to the next. */
+    private final List<Canvas> layers = new ArrayList<>();
+    /** True while the pane is being updated by the renderer. */
+    private boolean updating = false;
+    /** Number of canvas pixels per pane unit. */
+    private double renderScale = 1;
+    /** Height in pixels below which a text is painted as a placeholder bar. */
+    private double textThreshold = DEFAULT_TEXT_THRESHOLD;
+    /** Size in pixels below which a polygon is painted as its bounding box. */
+    private double polygonThreshold = DEFAULT_POLYGON_THRESHOLD;
+
+    /**
+     * Creates a renderer.
+     * @param pane The drawing pane.
+     * @param shapes The shapes of the document in z-order.
+     * @param index The spatial index over the shapes.
+     */
+    public CanvasRenderer(Pane pane, ZOrderIndex<ShapeInterface> shapes, RTree<ShapeInterface> index) {
+        this.pane = pane;
+        this.shapes = shapes;
+        this.index = index;
+    }
+
+    /**
+     * Checks whether the pane is being updated by the renderer.
+     * Attaching and detaching nodes does not change the document and must not be recorded.
+     * @return True during an update.
+     */
+    public boolean isUpdating() {
+        return updating;
+    }
+
+    /**
+     * Sets the resolution of the canvas layers, usually the zoom factor of the drawing area.
+     * @param scale The number of canvas pixels per pane unit.
+     */
+    public void setRenderScale(double scale) {
+        if (scale > 0) {
+            renderScale = scale;
+        }
+    }
+
+    /**
+     * Sets the sizes on screen below which shapes are painted at reduced detail.
+     * @param text The height in pixels below which a text is painted as a placeholder bar, or 0 to always paint the text.
+     * @param polygon The width and height in pixels below which a polygon is painted as its bounding box,
+     *                or 0 to always paint the outline.
+     */
+    public void setDetailThresholds(double text, double polygon) {
+        textThreshold = Math.max(0, text);
+        polygonThreshold = Math.max(0, polygon);
+    }
+
+    /**
+     * Repaints the shapes intersecting a region and attaches the live nodes.
+     * @param minX The left edge of the region, in pane coordinates.
+     * @param minY The top edge of the region.
+     * @param maxX The right edge of the region.
+     * @param maxY The bottom edge of the region.
+     * @param keep Nodes that must stay live, such as the selected shapes.
+     */
+    public void update(double minX, double minY, double maxX, double maxY, Collection<? extends Node> keep) {
+        Set<ShapeInterface> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Node node : keep) {
+            if (node.getUserData() instanceof ShapeInterface && shapes.contains(node.getUserData())) {
+                live.add((ShapeInterface) node.getUserData());
+            }
+        }
+        List<ShapeInterface> painted = new ArrayList<>();
+        index.search(minX, minY, maxX, maxY, shape -> {
+            if (!live.contains(shape) && shapes.contains(shape) && shape.getNode() != null) {
+                painted.add(shape);
+            }
+        });
+        Comparator<ShapeInterface> byRank = Comparator.comparingInt(shapes::rankOf);
+        painted.sort(byRank);
+        List<ShapeInterface> liveSorted = new ArrayList<>(live);
+        liveSorted.sort(byRank);
+
+        // Alternate canvas layers and live nodes, skipping empty layers.
+        List<Node> managed = new ArrayList<>();
+        int next = 0;
+        int layer = 0;
+        for (ShapeInterface shape : liveSorted) {
+            int rank = shapes.rankOf(shape);
+            int start = next;
+            while (next < painted.size() && shapes.rankOf(painted.get(next)) < rank) {
+                next++;
+            }
+            if (next > start) {
+                managed.add(paintLayer(layer++, painted.subList(start, next), minX, minY, maxX, maxY));
+            }
+            managed.add(shape.getNode());
+        }
+        if (next < painted.size()) {
+            managed.add(paintLayer(layer, painted.subList(next, painted.size()), minX, minY, maxX, maxY));
+        }
+        arrange(managed);
+    }
+
+    /**
+     * Attaches every shape of the document as a node and removes the canvas layers,
+     * for instance when switching back to the scene graph.
+     */
+    public void attachAll() {
+        List<Node> managed = new ArrayList<>(shapes.size());
+        for (ShapeInterface shape : shapes) {
+            if (shape.getNode() != null) {
+                managed.add(shape.getNode());
+            }
+        }
+        arrange(managed);
+    }
+
+    /**
+     * Replaces the shape nodes and canvas layers of the pane with a new sequence.
+     * Other children, such as the grid, keep their place.
+     * @param managed The shape nodes and layers to attach, bottom first.
+     */
+    private void arrange(List<Node> managed) {
+        ObservableList<Node> children = pane.getChildren();
+        List<Node> current = new ArrayList<>();
+        int insertAt = -1;
+        for (int i = 0; i < children.size(); i++) {
+            Node node = children.get(i);
+            if (isManaged(node)) {
+                if (insertAt < 0) {
+                    insertAt = i;
+                }
+                current.add(node);
+            }
+        }
+        if (sameNodes(current, managed)) {
+            return;
+        }
+        updating = true;
+        try {
+            if (!current.isEmpty()) {
+                Set<Node> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+                removed.addAll(current);
+                children.removeAll(removed);
+            }
+            children.addAll(insertAt >= 0 ? insertAt : children.size(), managed);
+        } finally {
+            updating = false;
+        }
+    }
+
+    /**
+     * Checks whether a child of the pane is placed by the renderer.
+     * @param node The child.
+     * @return True for shape nodes and canvas layers.
+     */
+    private boolean isManaged(Node node) {
+        if (node.getUserData() instanceof ShapeInterface) {
+            return true;
+        }
+        for (Canvas layer : layers) {
+            if (layer == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares two node sequences by identity.
+     * @return True if both hold the same nodes in the same order.
+     */
+    private static boolean sameNodes(List<Node> a, List<Node> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Paints shapes into a canvas layer covering a region.
+     * @param number The position of the layer in the pool.
+     * @param content The shapes to paint, bottom first.
+     * @return The layer.
+     */
+    private Canvas paintLayer(int number, List<ShapeInterface> content, double minX, double minY, double maxX, double maxY) {
+        while (layers.size() <= number) {
+            Canvas canvas = new Canvas();
+            canvas.setMouseTransparent(true);
+            canvas.setManaged(false);
+            layers.add(canvas);
+        }
+        Canvas canvas = layers.get(number);
+        double width = Math.max(0, maxX - minX);
+        double height = Math.max(0, maxY - minY);
+        double scale = Math.min(renderScale, MAX_LAYER_SIZE / Math.max(1, Math.max(width, height)));
+        canvas.setWidth(Math.ceil(width * scale));
+        canvas.setHeight(Math.ceil(height * scale));
+        canvas.setLayoutX(minX);
+        canvas.setLayoutY(minY);
+        canvas.getTransforms().setAll(new Scale(1 / scale, 1 / scale, 0, 0));
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setTransform(1, 0, 0, 1, 0, 0);
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        gc.setTransform(scale, 0, 0, scale, -minX * scale, -minY * scale);
+        for (ShapeInterface shape : content) {
+            paintShape(gc, shape, scale);
+        }
+        return canvas;
+    }
+
+    /**
+     * Paints a shape at the level of detail its size on the layer calls for.
+     * @param gc The graphics context, set up in pane coordinates.
+     * @param shape The shape to paint, which has a node.
+     * @param scale The number of layer pixels per pane unit.
+     */
+    private void paintShape(GraphicsContext gc, ShapeInterface shape, double scale) {
+        Node node = shape.getNode();
+        if (!node.isVisible() || !(node instanceof Shape)) {
+            return;
+        }
+        if (shape instanceof ConcreteText && shape.getHeight() * scale < textThreshold) {
+            Bounds bounds = shape.getBounds();
+            paintBox(gc, (Shape) node, bounds.getMinX(), bounds.getMinY() + bounds.getHeight() / 4,
+                    bounds.getWidth(), bounds.getHeight() / 2);
+        } else if (shape instanceof ConcretePolygon) {
+            Bounds bounds = shape.getBounds();
+            if (Math.max(bounds.getWidth(), bounds.getHeight()) * scale < polygonThreshold) {
+                paintBox(gc, (Shape) node, bounds.getMinX(), bounds.getMinY(), bounds.getWidth(), bounds.getHeight());
+            } else {
+                paintOutline(gc, (Polygon) node, ((ConcretePolygon) shape).getPoints(), scale);
+            }
+        } else {
+            paint(gc, node);
+        }
+    }
+
+    /**
+     * Paints a placeholder box in the fill color of a shape, or in its stroke color if it has no fill.
+     * @param gc The graphics context, set up in pane coordinates.
+     * @param node The node of the shape.
+     * @param x The left edge of the box.
+     * @param y The top edge of the box.
+     * @param width The width of the box.
+     * @param height The height of the box.
+     */
+    private static void paintBox(GraphicsContext gc, Shape node, double x, double y, double width, double height) {
+        Paint paint = node.getFill() != null ? node.getFill() : node.getStroke();
+        if (paint == null) {
+            return;
+        }
+        gc.save();
+        gc.setGlobalAlpha(gc.getGlobalAlpha() * node.getOpacity());
+        gc.setFill(paint);
+        gc.fillRect(x, y, Math.max(width, 0), Math.max(height, 0));
+        gc.restore();
+    }
+
+    /**
+     * Paints a polygon without the vertices that would fall within half a pixel of the previous one.
+     * @param gc The graphics context, set up in pane coordinates.
+     * @param node The node of the polygon.
+     * @param points The vertices of the polygon, as x, y pairs in local coordinates.
+     * @param scale The number of layer pixels per pane unit.
+     */
+    private static void paintOutline(GraphicsContext gc, Polygon node, double[] points, double scale) {
+        Transform t = node.getLocalToParentTransform();
+        double localScale = Math.sqrt(Math.abs(t.getMxx() * t.getMyy() - t.getMxy() * t.getMyx()));
+        double[] xs = new double[points.length / 2];
+        double[] ys = new double[points.length / 2];
+        int count = outline(points, VERTEX_TOLERANCE / (scale * Math.max(localScale, 1e-9)), xs, ys);
+        applyStyle(gc, node);
+        if (node.getFill() != null) gc.fillPolygon(xs, ys, count);
+        if (node.getStroke() != null) gc.strokePolygon(xs, ys, count);
+        gc.restore();
+    }
+
+    /**
+     * Copies the vertices of an outline, skipping each vertex closer than a tolerance to the last one kept.
+     * Takes one pass over the vertices.
+     * @param points The vertices, as x, y pairs.
+     * @param tolerance The smallest distance between two consecutive vertices kept.
+     * @param xs Receives the x-coordinates of the vertices kept; at least as long as the number of vertices.
+     * @param ys Receives the y-coordinates of the vertices kept.
+     * @return The number of vertices kept.
+     */
+    public static int outline(double[] points, double tolerance, double[] xs, double[] ys) {
+        int vertices = points.length / 2;
+        if (vertices == 0) {
+            return 0;
+        }
+        double squared = tolerance * tolerance;
+        xs[0] = points[0];
+        ys[0] = points[1];
+        int count = 1;
+        for (int i = 1; i < vertices; i++) {
+            double dx = points[2 * i] - xs[count - 1];
+            double dy = points[2 * i + 1] - ys[count - 1];
+            if (dx * dx + dy * dy >= squared) {
+                xs[count] = points[2 * i];
+                ys[count] = points[2 * i + 1];
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Paints a shape node the way the scene graph would render it, without its effect.
+     * @param gc The graphics context, set up in pane coordinates.
+     * @param node The node to paint.
+     */
+    public static void paint(GraphicsContext gc, Node node) {
+        if (!node.isVisible() || !(node instanceof Shape)) {
+            return;
+        }
+        Shape shape = (Shape) node;
+        applyStyle(gc, shape);
+        Paint fill = shape.getFill();
+        Paint stroke = shape.getStroke();
+
+        if (shape instanceof Rectangle) {
+            Rectangle r = (Rectangle) shape;
+            if (fill != null) gc.fillRect(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+            if (stroke != null) gc.strokeRect(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+        } else if (shape instanceof Ellipse) {
+            Ellipse e = (Ellipse) shape;
+            double x = e.getCenterX() - e.getRadiusX();
+            double y = e.getCenterY() - e.getRadiusY();
+            if (fill != null) gc.fillOval(x, y, e.getRadiusX() * 2, e.getRadiusY() * 2);
+            if (stroke != null) gc.strokeOval(x, y, e.getRadiusX() * 2, e.getRadiusY() * 2);
+        } else if (shape instanceof Line) {
+            Line l = (Line) shape;
+            if (stroke != null) gc.strokeLine(l.getStartX(), l.getStartY(), l.getEndX(), l.getEndY());
+        } else if (shape instanceof Polygon) {
+            int count;
+            double[] xs;
+            double[] ys;
+            if (shape.getUserData() instanceof ConcretePolygon) {
+                // Read the primitive vertices of the model rather than unboxing the node's list.
+                double[] points = ((ConcretePolygon) shape.getUserData()).getPoints();
+                count = points.length / 2;
+                xs = new double[count];
+                ys = new double[count];
+                for (int i = 0; i < count; i++) {
+                    xs[i] = points[2 * i];
+                    ys[i] = points[2 * i + 1];
+                }
+            } else {
+                List<Double> points = ((Polygon) shape).getPoints();
+                count = points.size() / 2;
+                xs = new double[count];
+                ys = new double[count];
+                for (int i = 0; i < count; i++) {
+                    xs[i] = points.get(2 * i);
+                    ys[i] = points.get(2 * i + 1);
+                }
+            }
+            if (fill != null) gc.fillPolygon(xs, ys, count);
+            if (stroke != null) gc.strokePolygon(xs, ys, count);
+        } else if (shape instanceof Text) {
+            Text text = (Text) shape;
+            gc.setFont(text.getFont());
+            gc.setTextBaseline(text.getTextOrigin());
+            if (fill != null) gc.fillText(text.getText(), text.getX(), text.getY());
+            if (stroke != null) gc.strokeText(text.getText(), text.getX(), text.getY());
+        }
+        gc.restore();
+    }
+
+    /**
+     * Saves the graphics context and sets it up with the transforms, opacity and paints of a node.
+     * The caller restores the context once the node is painted.
+     * @param gc The graphics context, set up in pane coordinates.
+     * @param shape The node to paint.
+     */
+    private static void applyStyle(GraphicsContext gc, Shape shape) {
+        Transform t = shape.getLocalToParentTransform();
+        gc.save();
+        gc.transform(t.getMxx(), t.getMyx(), t.getMxy(), t.getMyy(), t.getTx(), t.getTy());
+        gc.setGlobalAlpha(gc.getGlobalAlpha() * shape.getOpacity());
+        gc.setLineWidth(shape.getStrokeWidth());
+        gc.setLineCap(shape.getStrokeLineCap());
+        gc.setLineJoin(shape.getStrokeLineJoin());
+        gc.setMiterLimit(shape.getStrokeMiterLimit());
+        gc.setFill(shape.getFill());
+        gc.setStroke(shape.getStroke());
+    }
+}
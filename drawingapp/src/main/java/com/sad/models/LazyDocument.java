@@ -0,0 +1,243 @@
+package com.sad.models;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sad.models.persistence.MappedDocument;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+
+/**
+ * A document whose shapes are materialized only while they are needed.
+ * The records stay in the memory-mapped file; a shape object and its node are created
+ * when the record enters the viewport, and dropped again when it leaves, unless the shape
+ * has been modified or is selected. Heap usage therefore follows what is on screen.
+ *
+ * <p>The records keep their z-order as one contiguous run of pane children, between the
+ * shapes sent to the back and the shapes added after loading. A record that is deleted or
+ * reordered is detached from the file and handled like any other shape from then on.</p>
+ */
+public class LazyDocument {
+    /** The memory-mapped document. */
+    private final MappedDocument document;
+    /** The drawing pane. */
+    private final Pane pane;
+    /** The materialized shape of each record, or null if the record is not resident. */
+    private final ShapeInterface[] resident;
+    /** The records whose shape is currently attached to the pane. */
+    private BitSet residentRecords = new BitSet();
+    /** The records whose shape was modified and must stay resident. */
+    private final BitSet pinnedRecords = new BitSet();
+    /** The records deleted or reordered, no longer part of the record run. */
+    private final BitSet detachedRecords = new BitSet();
+    /** The record index of each resident shape. */
+    private final Map<ShapeInterface, Integer> recordOf = new IdentityHashMap<>();
+    /** Shapes not backed by a record that were sent behind the records. */
+    private final Set<ShapeInterface> below = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** True while the pane is being updated by this document. */
+    private boolean updating = false;
+
+    /**
+     * Creates a lazy document. Nothing is attached to the pane until the first viewport update.
+     * @param document The memory-mapped document.
+     * @param pane The drawing pane.
+     */
+    public LazyDocument(MappedDocument document, Pane pane) {
+        this.document = document;
+        this.pane = pane;
+        this.resident = new ShapeInterface[document.size()];
+    }
+
+    /**
+     * Gets the memory-mapped document.
+     * @return The mapped document.
+     */
+    public MappedDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * Gets the number of records whose shape is currently materialized.
+     * @return The number of resident records.
+     */
+    public int getResidentCount() {
+        return residentRecords.cardinality();
+    }
+
+    /**
+     * Checks whether the pane is being updated by this document.
+     * Changes to the pane made during an update are not edits and must not be recorded.
+     * @return True during a viewport update.
+     */
+    public boolean isUpdating() {
+        return updating;
+    }
+
+    /**
+     * Materializes the records visible in a region and drops the ones that left it.
+     * Modified records and the record of the given node stay resident in any case.
+     * @param minX The left edge of the region, in pane coordinates.
+     * @param minY The top edge of the region.
+     * @param maxX The right edge of the region.
+     * @param maxY The bottom edge of the region.
+     * @param keep A node that must stay attached, such as the selected shape; may be null.
+     */
+    public void updateViewport(double minX, double minY, double maxX, double maxY, Node keep) {
+        BitSet next = new BitSet(resident.length);
+        document.query(minX, minY, maxX, maxY, next::set);
+        next.andNot(detachedRecords);
+        next.or(pinnedRecords);
+        Integer kept = keep != null ? recordOf.get(keep.getUserData()) : null;
+        if (kept != null) {
+            next.set(kept);
+        }
+        if (next.equals(residentRecords)) {
+            return;
+        }
+
+        List<Node> nodes = new ArrayList<>(next.cardinality());
+        try {
+            for (int i = next.nextSetBit(0); i >= 0; i = next.nextSetBit(i + 1)) {
+                if (resident[i] == null) {
+                    ShapeInterface shape = document.materialize(i);
+                    shape.draw();
+                    resident[i] = shape;
+                    recordOf.put(shape, i);
+                }
+                nodes.add(resident[i].getNode());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        BitSet dropped = (BitSet) residentRecords.clone();
+        dropped.andNot(next);
+        for (int i = dropped.nextSetBit(0); i >= 0; i = dropped.nextSetBit(i + 1)) {
+            recordOf.remove(resident[i]);
+            resident[i] = null;
+        }
+
+        updating = true;
+        try {
+            ObservableList<Node> children = pane.getChildren();
+            int start = recordRunStart();
+            children.remove(start, start + residentRecords.cardinality());
+            children.addAll(start, nodes);
+        } finally {
+            updating = false;
+        }
+        residentRecords = next;
+    }
+
+    /**
+     * Finds the index of the first pane child of the record run.
+     * @return The index where the records start, or where they would be inserted.
+     */
+    private int recordRunStart() {
+        ObservableList<Node> children = pane.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            Object data = children.get(i).getUserData();
+            if (data instanceof ShapeInterface && !below.contains(data)) {
+                return i;
+            }
+        }
+        return children.size();
+    }
+
+    /**
+     * Records that a shape was modified, added or removed.
+     * A modified record stays resident; a record removed from the pane is detached.
+     * @param shape The shape that changed.
+     */
+    public void shapeChanged(ShapeInterface shape) {
+        Integer index = recordOf.get(shape);
+        if (index == null) {
+            return;
+        }
+        if (shape.getNode() != null && shape.getNode().getParent() == pane) {
+            pinnedRecords.set(index);
+        } else {
+            detach(index);
+        }
+    }
+
+    /**
+     * Records that a shape was brought to the front or sent to the back.
+     * @param shape The shape that moved in the z-order.
+     * @param toBack True if it was sent behind every other shape, false if brought in front.
+     */
+    public void shapeReordered(ShapeInterface shape, boolean toBack) {
+        Integer index = recordOf.get(shape);
+        if (index != null) {
+            detach(index);
+        }
+        if (toBack) {
+            below.add(shape);
+        } else {
+            below.remove(shape);
+        }
+    }
+
+    /**
+     * Detaches a record: its shape, if any, lives on as an ordinary shape.
+     * @param index The record index.
+     */
+    private void detach(int index) {
+        detachedRecords.set(index);
+        pinnedRecords.clear(index);
+        residentRecords.clear(index);
+        if (resident[index] != null) {
+            recordOf.remove(resident[index]);
+            resident[index] = null;
+        }
+    }
+
+    /**
+     * Takes a snapshot of the whole document, in z-order.
+     * Records that are not resident are decoded from the file for the occasion;
+     * the returned shapes have no JavaFX node and can be encoded on another thread.
+     * @return Detached copies of every shape of the document.
+     * @throws IOException If a record cannot be decoded.
+     */
+    public List<ShapeInterface> snapshot() throws IOException {
+        List<ShapeInterface> shapes = new ArrayList<>(resident.length);
+        List<ShapeInterface> above = new ArrayList<>();
+        for (Node node : pane.getChildren()) {
+            Object data = node.getUserData();
+            if (data instanceof ShapeInterface && !recordOf.containsKey(data)) {
+                ShapeInterface shape = (ShapeInterface) data;
+                (below.contains(shape) ? shapes : above).add(copyOf(shape));
+            }
+        }
+        for (int i = 0; i < resident.length; i++) {
+            if (resident[i] != null) {
+                shapes.add(copyOf(resident[i]));
+            } else if (!detachedRecords.get(i)) {
+                shapes.add(document.materialize(i));
+            }
+        }
+        shapes.addAll(above);
+        return shapes;
+    }
+
+    /**
+     * Copies a shape for a snapshot, keeping its id.
+     * @param shape The shape to copy.
+     * @return The copy, without a node.
+     */
+    private static ShapeInterface copyOf(ShapeInterface shape) {
+        ShapeInterface copy = shape.clone();
+        copy.setId(shape.getId());
+        return copy;
+    }
+}
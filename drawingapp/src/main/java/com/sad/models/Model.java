@@ -1,21 +1,43 @@
 package com.sad.models;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
+import com.sad.models.index.LongMap;
+import com.sad.models.index.RTree;
+import com.sad.models.index.ZOrderIndex;
+import com.sad.models.persistence.AsyncDocumentSaver;
+import com.sad.models.persistence.DocumentJournal;
+import com.sad.models.persistence.DocumentReader;
+import com.sad.models.persistence.DocumentWriter;
+import com.sad.models.persistence.MappedDocument;
+import com.sad.models.persistence.StreamingDocumentLoader;
 import com.sad.models.shapes.ConcreteEllipse;
 import com.sad.models.shapes.ConcreteLine;
 import com.sad.models.shapes.ConcreteRectangle;
 import com.sad.models.shapes.ConcreteText;
 import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.PolygonSimplifier;
+import com.sad.models.shapes.ShapeIds;
 import com.sad.models.shapes.ShapeInterface;
 
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Bounds;
 import javafx.scene.Node;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
@@ -29,21 +51,129 @@ import javafx.stage.FileChooser;
 public class Model {
     /** The current shape factory used to create shapes. */
     private ShapeFactory currentFactory;
-    /** The drawing pane where shapes are displayed. */
+    /** The drawing pane where shapes are displayed, or null if the model has no view. */
     private Pane pane;
-    /** The currently selected shape node. */
+    /** Style applied to the nodes of selected shapes. */
+    public static final String SELECTION_STYLE = "-fx-effect: dropshadow(three-pass-box, #00bfff, 10, 0, 0, 0);";
+    /** The currently selected shape node, set when a single shape is selected. */
     private Node selectedShape = null;
+    /** The selected shapes: the shape of the selected node, or the shapes selected together. */
+    private final Set<ShapeInterface> selection = Collections.newSetFromMap(new IdentityHashMap<>());
     /** The clipboard shape for cut/copy/paste operations. */
     private ShapeInterface clipBoardShape = null;
+    /** Size in bytes above which documents are loaded in streaming mode. */
+    public static final long STREAMING_THRESHOLD = 1L << 20;
+    /** Size in bytes above which documents are memory-mapped and materialized lazily. */
+    public static final long MAPPED_THRESHOLD = 8L << 20;
+    /** The streaming load in progress, or null if there is none. */
+    private StreamingDocumentLoader activeLoader = null;
+    /** Writes document snapshots in the background. */
+    private final AsyncDocumentSaver saver = new AsyncDocumentSaver();
+    /** Listener notified with status messages about long-running operations. */
+    private Consumer<String> statusListener = message -> { };
+    /** Listener notified about the progress of long-running operations. */
+    private DoubleConsumer progressListener = progress -> { };
+    /** Journal size in bytes above which the journal is compacted into a new snapshot. */
+    public static final long JOURNAL_COMPACTION_THRESHOLD = 1L << 20;
+    /** The document file being edited, or null if the document has not been saved or loaded yet. */
+    private File documentFile = null;
+    /** Journal of the changes made since the last snapshot, or null if there is no document file. */
+    private DocumentJournal journal = null;
+    /** Shapes added, removed or modified since the last journal commit. */
+    private final Set<ShapeInterface> pendingChanges = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** Default largest distance, in pane units, between a vertex dropped by simplification and the outline. */
+    public static final double DEFAULT_SIMPLIFY_TOLERANCE = 1;
+    /** Largest distance between a vertex dropped by simplification and the simplified outline. */
+    private double simplifyTolerance = DEFAULT_SIMPLIFY_TOLERANCE;
+    /** True if the polygons of loaded documents are simplified. */
+    private boolean simplifyOnLoad = false;
+    /** Listeners notified with the changes of every transaction. */
+    private final List<Consumer<ModelChanges>> changeListeners = new ArrayList<>();
+    /** Changes made since the last publication, or null if nobody listens. */
+    private ModelChanges pendingEvents = null;
+    /** Incremented for every snapshot, so that only the latest save reopens the journal. */
+    private int snapshotGeneration = 0;
+    /** True while a snapshot is being written and changes are held back from the journal. */
+    private boolean snapshotInProgress = false;
+    /** The lazily materialized document, or null if every shape is on the pane. */
+    private LazyDocument lazyDocument = null;
+    /** The visible region of the pane as min x, min y, max x, max y, or null if unknown. */
+    private double[] viewport = null;
+    /** The shapes of the document in z-order, including the ones culled from the pane. */
+    private final ZOrderIndex<ShapeInterface> shapes = new ZOrderIndex<>();
+    /** The shapes of the document by id. */
+    private final LongMap<ShapeInterface> registry = new LongMap<>();
+    /** Spatial index over the bounds of the shapes of the document. */
+    private final RTree<ShapeInterface> spatialIndex = new RTree<>();
+    /** Attaches to the pane only the shapes near the viewport, or null if culling is disabled. */
+    private ViewportCuller culler = null;
+    /** Paints the shapes into canvas layers, or null if every attached shape is a node. */
+    private CanvasRenderer renderer = null;
+    /** The zoom factor of the drawing area. */
+    private double renderScale = 1;
+    /** Zoom factor below which the shapes are painted into canvases at reduced detail, or 0 to never switch. */
+    private double detailScale = 0;
+    /** True if the canvas renderer was requested, rather than switched on by the zoom factor. */
+    private boolean canvasRequested = false;
+    /** Sizes in pixels below which texts and polygons are painted at reduced detail. */
+    private double textThreshold = CanvasRenderer.DEFAULT_TEXT_THRESHOLD, polygonThreshold = CanvasRenderer.DEFAULT_POLYGON_THRESHOLD;
+    /** True while a shape node is moved to the front or the back of the pane, which the document already reflects. */
+    private boolean reordering = false;
+    /** Depth of nested batches; bounds changes are collected rather than indexed while positive. */
+    private int batchDepth = 0;
+    /** Shapes whose bounds changed during the current batch. */
+    private final Set<ShapeInterface> staleBounds = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** Moves a shape in the spatial index whenever the bounds of its node change. */
+    private final ChangeListener<Bounds> boundsListener = (obs, oldBounds, newBounds) -> {
+        ShapeInterface shape = getShapeFromNode((Node) ((ReadOnlyProperty<?>) obs).getBean());
+        if (shape != null && spatialIndex.contains(shape)) {
+            if (batchDepth > 0) {
+                staleBounds.add(shape);
+            } else {
+                spatialIndex.insert(shape, newBounds.getMinX(), newBounds.getMinY(), newBounds.getMaxX(), newBounds.getMaxY());
+            }
+        }
+    };
+
+    /**
+     * Constructs a model without a drawing pane, for processing documents outside the application.
+     * Shapes are kept in the document without creating their nodes, and are indexed by their
+     * own bounds, see {@link ShapeInterface#getBounds()}; the JavaFX toolkit does not need to run.
+     * Streaming and mapped loading, culling and canvas rendering need a pane.
+     */
+    public Model() {
+        this.currentFactory = null;
+    }
 
     /**
      * Constructs a new Model instance.
      * Initializes the shapes list and sets the current factory and command to null.
+     * The pane is the view of the document: attaching or detaching a shape node edits the document.
      * @param pane The drawing pane where shapes will be managed.
      */
     public Model(Pane pane) {
-        this.currentFactory = null;
+        this();
         this.pane = pane;
+        pane.getChildren().addListener((ListChangeListener<Node>) change -> {
+            // Culling attaches and detaches nodes without changing the document.
+            if ((culler != null && culler.isUpdating()) || (renderer != null && renderer.isUpdating()) || reordering) {
+                return;
+            }
+            // Shapes attached or released by a lazy document are not edits.
+            boolean edit = lazyDocument == null || !lazyDocument.isUpdating();
+            while (change.next()) {
+                // Bring to front / send to back reorder the document themselves.
+                if (change.wasPermutated()) {
+                    continue;
+                }
+                if (change.wasRemoved()) {
+                    removeFromDocument(change.getRemoved(), edit);
+                }
+                if (change.wasAdded()) {
+                    addToDocument(change.getTo(), change.getAddedSubList(), edit);
+                }
+            }
+        });
     }
 
     /**
@@ -64,7 +194,7 @@ public class Model {
 
     /**
      * Gets the drawing pane.
-     * @return The drawing pane.
+     * @return The drawing pane, or null if the model has no view.
      */
     public Pane getPane() { return pane; }
     
@@ -79,7 +209,21 @@ public class Model {
      * @param selectedShape The node to select.
      */
     public void setSelectedShape(Node selectedShape) {
+        for (ShapeInterface shape : selection) {
+            if (shape.getNode() != null && shape.getNode() != selectedShape) {
+                shape.getNode().setStyle("");
+            }
+        }
+        selection.clear();
         this.selectedShape = selectedShape;
+        ShapeInterface shape = getShapeFromNode(selectedShape);
+        if (shape != null) {
+            selection.add(shape);
+        }
+        if (selectedShape != null && (renderer != null || culler != null)) {
+            // The selected shape must be a live node before handlers are attached to it.
+            refreshViewport();
+        }
     }
 
     /**
@@ -103,6 +247,121 @@ public class Model {
             selectedShape.setOnMouseReleased(null);
             selectedShape = null;
         }
+        for (ShapeInterface shape : selection) {
+            setStyle(shape, "");
+        }
+        selection.clear();
+    }
+
+    /**
+     * Replaces the selection with several shapes, which bulk operations then act on together.
+     * No shape becomes the selected node, so single-shape editing and its drag handlers are off.
+     * @param shapes The shapes to select; shapes outside the document are ignored.
+     */
+    public void selectShapes(Collection<ShapeInterface> shapes) {
+        deselectShape();
+        for (ShapeInterface shape : shapes) {
+            if (isInDocument(shape) && selection.add(shape)) {
+                setStyle(shape, SELECTION_STYLE);
+            }
+        }
+        refreshSelectedNodes();
+    }
+
+    /**
+     * Adds a shape to the selection.
+     * If a single shape was selected, it stays selected but is no longer the selected node.
+     * @param shape The shape to add; ignored if it is not in the document.
+     */
+    public void addToSelection(ShapeInterface shape) {
+        if (!isInDocument(shape) || selection.contains(shape)) {
+            return;
+        }
+        if (selectedShape != null) {
+            selectedShape.setOnMousePressed(null);
+            selectedShape.setOnMouseDragged(null);
+            selectedShape.setOnMouseReleased(null);
+            selectedShape = null;
+        }
+        selection.add(shape);
+        setStyle(shape, SELECTION_STYLE);
+        refreshSelectedNodes();
+    }
+
+    /**
+     * Removes a shape from the selection.
+     * @param shape The shape to remove.
+     */
+    public void removeFromSelection(ShapeInterface shape) {
+        if (shape == null || !selection.contains(shape)) {
+            return;
+        }
+        if (shape.getNode() == selectedShape) {
+            deselectShape();
+            return;
+        }
+        selection.remove(shape);
+        setStyle(shape, "");
+    }
+
+    /**
+     * Sets the style of the node of a shape, if it has one.
+     * @param shape The shape.
+     * @param style The CSS style string.
+     */
+    private static void setStyle(ShapeInterface shape, String style) {
+        if (shape.getNode() != null) {
+            shape.getNode().setStyle(style);
+        }
+    }
+
+    /**
+     * Checks whether a shape is selected, alone or with others.
+     * @param shape The shape; may be null.
+     * @return True if the shape is in the selection.
+     */
+    public boolean isSelected(ShapeInterface shape) {
+        return shape != null && selection.contains(shape);
+    }
+
+    /**
+     * Gets the selected shapes.
+     * They are sorted by their rank in the document, so the cost depends on the size of the selection only.
+     * @return The selected shapes, bottom first.
+     */
+    public List<ShapeInterface> getSelection() {
+        List<ShapeInterface> result = new ArrayList<>(selection);
+        if (result.size() > 1) {
+            result.removeIf(shape -> !shapes.contains(shape));
+            result.sort(Comparator.comparingInt(shapes::rankOf));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the nodes that must stay attached as live nodes because they are selected.
+     * @return The selected node, or the nodes of the shapes selected together.
+     */
+    private List<Node> selectedNodes() {
+        if (selectedShape != null) {
+            return Collections.singletonList(selectedShape);
+        }
+        List<Node> nodes = new ArrayList<>(selection.size());
+        for (ShapeInterface shape : selection) {
+            if (shape.getNode() != null) {
+                nodes.add(shape.getNode());
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Attaches the nodes of newly selected shapes when culling or canvas rendering would hide them.
+     */
+    private void refreshSelectedNodes() {
+        if (renderer != null || culler != null) {
+            refreshViewport();
+        }
     }
 
     /**
@@ -120,7 +379,7 @@ public class Model {
     public ShapeFactory getCurrentFactory() { return currentFactory; }
 
     /**
-     * Creates a new shape using the current factory and adds it to the pane.
+     * Creates a new shape using the current factory and adds it to the document.
      *
      * @param x The x-coordinate for the shape.
      * @param y The y-coordinate for the shape.
@@ -133,30 +392,35 @@ public class Model {
     public ShapeInterface createShape(double x, double y, double width, double height, Color border, Color fill) {
         if (currentFactory != null) {
             ShapeInterface shape = currentFactory.createShape(x, y, width, height, border, fill);
-            Node node = shape.draw();
-            pane.getChildren().add(node);
+            if (pane != null) {
+                shape.draw();
+            }
+            addShape(shape);
             return shape;
         }
         return null;
     }
 
     /**
-     * Creates a polygon shape and adds it to the pane.
-     * @param points The list of points defining the polygon vertices.
+     * Creates a polygon shape and adds it to the document.
+     * @param points The coordinates of the vertices, as x0, y0, x1, y1, ...
      * @param bordeColor The border color of the polygon.
      * @param fillColor The fill color of the polygon.
      * @return The created polygon shape.
      */
-    public ShapeInterface createPolygon(List<Double> points, Color bordeColor, Color fillColor){
+    public ShapeInterface createPolygon(double[] points, Color bordeColor, Color fillColor){
         ShapeInterface polygon = new ConcretePolygon(points, bordeColor, fillColor);
-        Node node = polygon.draw();
-        pane.getChildren().add(node);
+        if (pane != null) {
+            polygon.draw();
+        }
+        addShape(polygon);
         return polygon;
     }
 
     /**
      * Saves the current shapes to a binary file.
      * Opens a file chooser dialog for the user to select the save location.
+     * The file is written in the background; the outcome is reported to the status listener.
      */
     public void save() {
         FileChooser fileChooser = new FileChooser();
@@ -165,24 +429,275 @@ public class Model {
         File file = fileChooser.showSaveDialog(pane.getScene().getWindow());
 
         if (file != null) {
-            List<ShapeInterface> shapesToSave = new ArrayList<>();
-            for (Node node : pane.getChildren()) {
-                if (node.getUserData() instanceof ShapeInterface) {
-                    shapesToSave.add((ShapeInterface) node.getUserData());
+            saveAsync(file);
+        }
+    }
+
+    /**
+     * Writes the shapes currently on the pane to a file using the binary document format.
+     * @param file The destination file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void saveToFile(File file) throws IOException {
+        DocumentWriter.writeFile(file, snapshotShapes());
+    }
+
+    /**
+     * Saves a snapshot of the current shapes without blocking the JavaFX thread.
+     * The snapshot is taken immediately, so later edits are not part of this save;
+     * they are kept aside and written to the new journal once the snapshot is on disk.
+     * The shapes are only read here, on the JavaFX thread; the writer thread is handed
+     * copies and the ids of the live shapes, which the registry keeps distinct.
+     * @param file The destination file.
+     * @return A future completed once the file has been written.
+     */
+    public CompletableFuture<File> saveAsync(File file) {
+        List<ShapeInterface> snapshot = snapshotShapes();
+        // Journal ids follow the snapshot order, which a lazy document does not keep on the pane.
+        boolean journaled = lazyDocument == null;
+        LongMap<ShapeInterface> live = new LongMap<>();
+        if (journaled) {
+            for (ShapeInterface shape : shapes) {
+                live.put(shape.getId(), shape);
+            }
+        }
+        closeJournal();
+        pendingChanges.clear();
+        snapshotInProgress = true;
+        int generation = ++snapshotGeneration;
+
+        statusListener.accept("Saving " + file.getName() + "...");
+        CompletableFuture<DocumentJournal> journalFuture = saver.save(file, snapshot).thenApply(saved -> {
+            if (!journaled) {
+                return null;
+            }
+            try {
+                return DocumentJournal.create(saved, live);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return journalFuture.handle((created, error) -> {
+            Platform.runLater(() -> onSnapshotWritten(file, generation, created, error));
+            if (error != null) {
+                throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+            }
+            return file;
+        });
+    }
+
+    /**
+     * Completes a save on the JavaFX thread: the document now starts from the new
+     * snapshot, and the changes made while it was being written go to the new journal.
+     * @param file The file that was written.
+     * @param generation The snapshot generation of the save.
+     * @param created The journal of the new snapshot, or null if the save failed.
+     * @param error The failure, or null if the save succeeded.
+     */
+    private void onSnapshotWritten(File file, int generation, DocumentJournal created, Throwable error) {
+        if (generation != snapshotGeneration) {
+            // A newer snapshot has been started and will provide the journal.
+            closeQuietly(created);
+        } else {
+            snapshotInProgress = false;
+            if (error == null) {
+                documentFile = file;
+                journal = created;
+                commitJournal();
+            } else {
+                documentFile = null;
+                pendingChanges.clear();
+            }
+        }
+        if (error == null) {
+            statusListener.accept("Saved " + file.getName());
+        } else {
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            cause.printStackTrace();
+            statusListener.accept("Save failed: " + cause.getMessage());
+        }
+    }
+
+    /**
+     * Records the changes made since the last call as one journal transaction,
+     * then publishes them to the change listeners as one batch.
+     * Called after every executed or undone command. When the journal has grown past
+     * {@link #JOURNAL_COMPACTION_THRESHOLD}, it is compacted into a new snapshot.
+     */
+    public void commitJournal() {
+        writeJournal();
+        publishChanges();
+    }
+
+    /**
+     * Writes the pending changes to the journal, if the document has one.
+     */
+    private void writeJournal() {
+        if (journal == null) {
+            if (!snapshotInProgress) {
+                pendingChanges.clear();
+            }
+            return;
+        }
+        try {
+            journal.commit(shapes, pendingChanges);
+        } catch (IOException e) {
+            e.printStackTrace();
+            statusListener.accept("Journal failed: " + e.getMessage());
+            closeJournal();
+            documentFile = null;
+        } finally {
+            pendingChanges.clear();
+        }
+        if (journal != null && journal.getSize() > JOURNAL_COMPACTION_THRESHOLD) {
+            saveAsync(documentFile);
+        }
+    }
+
+    /**
+     * Gets the journal of the current document.
+     * @return The journal, or null if the document has no file yet.
+     */
+    public DocumentJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Gets the file of the current document.
+     * @return The document file, or null if the document has not been saved or loaded yet.
+     */
+    public File getDocumentFile() {
+        return documentFile;
+    }
+
+    /**
+     * Registers a listener notified once per transaction with the changes made to the document.
+     * A transaction is a command, its undo or its redo, or the load of a document, which is
+     * published as a reset. Listeners are called on the JavaFX thread.
+     * @param listener The listener to add.
+     */
+    public void addChangeListener(Consumer<ModelChanges> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        changeListeners.add(listener);
+        if (pendingEvents == null) {
+            pendingEvents = new ModelChanges();
+        }
+    }
+
+    /**
+     * Unregisters a change listener.
+     * @param listener The listener to remove.
+     */
+    public void removeChangeListener(Consumer<ModelChanges> listener) {
+        changeListeners.remove(listener);
+        if (changeListeners.isEmpty()) {
+            pendingEvents = null;
+        }
+    }
+
+    /**
+     * Delivers the changes made since the last publication to the change listeners, as one batch.
+     * Nothing is delivered if nothing changed.
+     */
+    public void publishChanges() {
+        if (pendingEvents == null || pendingEvents.isEmpty()) {
+            return;
+        }
+        ModelChanges batch = pendingEvents;
+        pendingEvents = new ModelChanges();
+        for (Consumer<ModelChanges> listener : new ArrayList<>(changeListeners)) {
+            listener.accept(batch);
+        }
+    }
+
+    /**
+     * Records that a shape must be written to the journal with the next commit
+     * and published to the change listeners.
+     * @param shape The shape that was added, removed or modified; ignored if null.
+     * @param kind The kind of change.
+     */
+    private void markChanged(ShapeInterface shape, ModelChanges.Kind kind) {
+        if (shape != null) {
+            if (pendingEvents != null) {
+                pendingEvents.record(kind, shape);
+            }
+            if (pane == null && spatialIndex.contains(shape)) {
+                // Without nodes there are no bounds listeners, so every edit re-indexes the shape.
+                if (batchDepth > 0) {
+                    staleBounds.add(shape);
+                } else {
+                    indexShape(shape);
                 }
             }
+            pendingChanges.add(shape);
+            if (lazyDocument != null) {
+                lazyDocument.shapeChanged(shape);
+            }
+        }
+    }
 
-            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
-                out.writeObject(shapesToSave);
+    /**
+     * Closes the journal of the current document, if any.
+     */
+    private void closeJournal() {
+        closeQuietly(journal);
+        journal = null;
+    }
+
+    /**
+     * Closes a journal, reporting failures without propagating them.
+     * @param toClose The journal to close; ignored if null.
+     */
+    private static void closeQuietly(DocumentJournal toClose) {
+        if (toClose != null) {
+            try {
+                toClose.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
     }
 
+    /**
+     * Takes an immutable snapshot of the current shapes.
+     * Each shape is cloned without its JavaFX node, so the copies can be encoded on another thread.
+     * For a lazy document, the records that are not materialized are decoded from the file.
+     * @return Detached copies of the shapes of the document, in z-order.
+     */
+    public List<ShapeInterface> snapshotShapes() {
+        if (lazyDocument != null) {
+            try {
+                return Collections.unmodifiableList(lazyDocument.snapshot());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        List<ShapeInterface> snapshot = new ArrayList<>(shapes.size());
+        for (ShapeInterface shape : shapes) {
+            ShapeInterface copy = shape.clone();
+            copy.setId(shape.getId());
+            snapshot.add(copy);
+        }
+        return Collections.unmodifiableList(snapshot);
+    }
+
+    /**
+     * Gets the shapes of the document, in z-order.
+     * Shapes culled from the pane are included; the records of a lazy document that are
+     * not materialized are not.
+     * @return A new list containing the shapes of the document.
+     */
+    public List<ShapeInterface> getShapes() {
+        return new ArrayList<>(shapes);
+    }
+
     /**
      * Loads shapes from a binary file.
      * Opens a file chooser dialog for the user to select the file to load.
+     * Files larger than {@link #MAPPED_THRESHOLD} are memory-mapped, files larger than
+     * {@link #STREAMING_THRESHOLD} are loaded in streaming mode, unless they have a journal to replay.
      */
     public void load() {
         FileChooser fileChooser = new FileChooser();
@@ -191,27 +706,336 @@ public class Model {
         File file = fileChooser.showOpenDialog(pane.getScene().getWindow());
 
         if (file != null) {
-            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
-                List<ShapeInterface> loadedShapes = (List<ShapeInterface>) in.readObject();
+            try {
+                boolean hasJournal = DocumentJournal.journalFileFor(file).isFile();
+                boolean large = file.length() > STREAMING_THRESHOLD && !hasJournal && DocumentReader.isBinaryDocument(file);
+                if (large && file.length() > MAPPED_THRESHOLD) {
+                    loadMapped(file);
+                } else if (large) {
+                    loadStreaming(file);
+                } else {
+                    loadFromFile(file);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                statusListener.accept("Load failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Replaces the content of the pane with the shapes read from a file.
+     * Both the binary document format and legacy serialized files are accepted.
+     * If a binary document has a journal, the changes it records are replayed
+     * on top of the snapshot, recovering edits made after the last save.
+     * @param file The file to read.
+     * @throws IOException If an I/O error occurs or the file is not a valid document.
+     */
+    public void loadFromFile(File file) throws IOException {
+        List<ShapeInterface> loadedShapes = DocumentReader.readFile(file);
+        DocumentJournal recovered = null;
+        if (DocumentReader.isBinaryDocument(file)) {
+            recovered = DocumentJournal.recover(file, loadedShapes);
+        }
 
-                pane.getChildren().clear();
+        cancelLoading();
+        closeJournal();
+        lazyDocument = null;
+        clearDocument();
 
-                for (ShapeInterface shape : loadedShapes) {
-                    Node node = shape.draw();
-                    if (node != null) {
-                        pane.getChildren().add(node);
-                    }
+        List<ShapeInterface> simplified = simplifyOnLoad ? simplifyLoaded(loadedShapes) : Collections.emptyList();
+        if (pane == null) {
+            insertIntoDocument(0, loadedShapes, false);
+        } else {
+            List<Node> nodes = new ArrayList<>(loadedShapes.size());
+            for (ShapeInterface shape : loadedShapes) {
+                Node node = shape.draw();
+                if (node != null) {
+                    nodes.add(node);
                 }
+            }
+            pane.getChildren().addAll(nodes);
+        }
+        pendingChanges.clear();
+        for (ShapeInterface shape : simplified) {
+            // The file keeps the original vertices until the journal records the simplified ones.
+            markChanged(shape, ModelChanges.Kind.GEOMETRY);
+        }
+        refreshViewport();
+        snapshotGeneration++;
+        snapshotInProgress = false;
+        documentFile = recovered != null ? file : null;
+        journal = recovered;
+        if (recovered != null && recovered.getTransactionCount() > 0) {
+            statusListener.accept("Recovered " + recovered.getTransactionCount() + " changes from the journal");
+        }
 
-                this.selectedShape = null;
-                this.currentFactory = null;
+        this.selectedShape = null;
+        this.currentFactory = null;
+        publishChanges();
+    }
 
-            } catch (IOException | ClassNotFoundException e) {
+    /**
+     * Replaces the content of the pane with the shapes of a binary document, in streaming mode.
+     * The pane is cleared immediately and shapes are attached in batches while the
+     * file is decoded in the background, so the user interface stays responsive.
+     * @param file The binary document to read.
+     * @return The loader, which can be used to follow or cancel the load.
+     */
+    public StreamingDocumentLoader loadStreaming(File file) {
+        requirePane("Streaming loading");
+        cancelLoading();
+        closeJournal();
+        lazyDocument = null;
+        documentFile = null;
+        snapshotGeneration++;
+        snapshotInProgress = false;
+        clearDocument();
+        this.selectedShape = null;
+        this.currentFactory = null;
+
+        StreamingDocumentLoader loader = new StreamingDocumentLoader(file, pane);
+        loader.setOnProgress(progressListener);
+        loader.setOnSucceeded(() -> {
+            activeLoader = null;
+            progressListener.accept(-1);
+            pendingChanges.clear();
+            refreshViewport();
+            try {
+                journal = DocumentJournal.create(file, getShapes());
+                documentFile = file;
+            } catch (IOException e) {
                 e.printStackTrace();
             }
+            statusListener.accept("Loaded " + file.getName());
+            publishChanges();
+        });
+        loader.setOnFailed(error -> {
+            activeLoader = null;
+            progressListener.accept(-1);
+            publishChanges();
+            statusListener.accept("Load failed: " + error.getMessage());
+        });
+        activeLoader = loader;
+        statusListener.accept("Loading " + file.getName() + "...");
+        progressListener.accept(0);
+        loader.start();
+        return loader;
+    }
+
+    /**
+     * Opens a binary document without materializing its shapes.
+     * The file is memory-mapped and indexed; shapes are created only for the records that
+     * intersect the viewport, see {@link #setViewport(double, double, double, double)}.
+     * Edits to a mapped document are not journaled until it is saved and loaded again.
+     * @param file The binary document to open.
+     * @return The lazy document.
+     * @throws IOException If an I/O error occurs or the file is not a valid document.
+     */
+    public LazyDocument loadMapped(File file) throws IOException {
+        requirePane("Mapped loading");
+        MappedDocument mapped = MappedDocument.open(file);
+
+        cancelLoading();
+        closeJournal();
+        lazyDocument = null;
+        documentFile = null;
+        snapshotGeneration++;
+        snapshotInProgress = false;
+        clearDocument();
+        pendingChanges.clear();
+        this.selectedShape = null;
+        this.currentFactory = null;
+
+        lazyDocument = new LazyDocument(mapped, pane);
+        if (viewport != null) {
+            lazyDocument.updateViewport(viewport[0], viewport[1], viewport[2], viewport[3], null);
+        }
+        statusListener.accept("Opened " + file.getName() + " (" + mapped.size() + " shapes)");
+        publishChanges();
+        return lazyDocument;
+    }
+
+    /**
+     * Gets the lazily materialized document.
+     * @return The lazy document, or null if every shape of the document is on the pane.
+     */
+    public LazyDocument getLazyDocument() {
+        return lazyDocument;
+    }
+
+    /**
+     * Sets the region of the pane currently visible to the user.
+     * For a lazy document, the shapes entering the region are materialized
+     * and the unmodified shapes leaving it are released.
+     * @param minX The left edge of the region, in pane coordinates.
+     * @param minY The top edge of the region.
+     * @param maxX The right edge of the region.
+     * @param maxY The bottom edge of the region.
+     */
+    public void setViewport(double minX, double minY, double maxX, double maxY) {
+        viewport = new double[] { minX, minY, maxX, maxY };
+        refreshViewport();
+    }
+
+    /**
+     * Brings the pane up to date with the last viewport, attaching the shapes that
+     * came into view and detaching the others.
+     */
+    public void refreshViewport() {
+        if (viewport == null) {
+            return;
+        }
+        if (lazyDocument != null) {
+            lazyDocument.updateViewport(viewport[0], viewport[1], viewport[2], viewport[3], selectedShape);
+        } else if (renderer != null) {
+            renderer.update(viewport[0], viewport[1], viewport[2], viewport[3], selectedNodes());
+        } else if (culler != null) {
+            culler.update(viewport[0], viewport[1], viewport[2], viewport[3], selectedNodes());
+        }
+    }
+
+    /**
+     * Enables or disables viewport culling.
+     * When enabled, only the shapes intersecting the viewport are attached to the pane;
+     * the others stay in the document and are attached again when they come into view.
+     * @param enabled True to cull the shapes outside the viewport.
+     */
+    public void setCullingEnabled(boolean enabled) {
+        if (enabled && culler == null) {
+            requirePane("Culling");
+            culler = new ViewportCuller(pane, shapes, spatialIndex);
+            refreshViewport();
+        } else if (!enabled && culler != null) {
+            culler.attachAll();
+            culler = null;
+        }
+    }
+
+    /**
+     * Enables or disables the canvas renderer.
+     * When enabled, the visible shapes are painted into canvas layers and only the selected
+     * shapes stay live nodes on the pane; this takes precedence over culling.
+     * Lazy documents keep attaching their visible shapes as nodes.
+     * @param enabled True to paint the shapes into canvases.
+     */
+    public void setCanvasRenderingEnabled(boolean enabled) {
+        if (enabled) {
+            requirePane("Canvas rendering");
+        }
+        canvasRequested = enabled;
+        updateRenderer();
+    }
+
+    /**
+     * Creates or drops the canvas renderer, as requested or as the zoom factor calls for.
+     */
+    private void updateRenderer() {
+        boolean enabled = canvasRequested || (pane != null && renderScale < detailScale);
+        if (enabled && renderer == null) {
+            renderer = new CanvasRenderer(pane, shapes, spatialIndex);
+            renderer.setRenderScale(renderScale);
+            renderer.setDetailThresholds(textThreshold, polygonThreshold);
+            refreshViewport();
+        } else if (!enabled && renderer != null) {
+            renderer.attachAll();
+            renderer = null;
+            refreshViewport();
+        }
+    }
+
+    /**
+     * Checks whether the canvas renderer is enabled.
+     * @return True if shapes are painted into canvases rather than attached as nodes.
+     */
+    public boolean isCanvasRenderingEnabled() {
+        return renderer != null;
+    }
+
+    /**
+     * Sets the zoom factor of the drawing area, so that canvas layers are painted at screen resolution.
+     * Below the {@link #setDetailScale(double) detail scale}, the shapes switch to canvas layers.
+     * @param scale The number of screen pixels per pane unit.
+     */
+    public void setRenderScale(double scale) {
+        this.renderScale = scale;
+        if (renderer != null) {
+            renderer.setRenderScale(scale);
+        }
+        updateRenderer();
+    }
+
+    /**
+     * Sets the zoom factor below which the shapes are painted into canvases at reduced detail,
+     * even if canvas rendering is disabled. Zooming back in attaches the nodes again.
+     * @param scale The zoom factor, or 0 to paint into canvases only when requested.
+     */
+    public void setDetailScale(double scale) {
+        this.detailScale = Math.max(0, scale);
+        updateRenderer();
+    }
+
+    /**
+     * Sets the sizes on screen below which shapes are painted at reduced detail into canvases.
+     * @param text The height in pixels below which a text is painted as a placeholder bar.
+     * @param polygon The size in pixels below which a polygon is painted as its bounding box.
+     * @see CanvasRenderer#setDetailThresholds(double, double)
+     */
+    public void setDetailThresholds(double text, double polygon) {
+        this.textThreshold = text;
+        this.polygonThreshold = polygon;
+        if (renderer != null) {
+            renderer.setDetailThresholds(text, polygon);
+            refreshViewport();
+        }
+    }
+
+    /**
+     * Checks whether viewport culling is enabled.
+     * @return True if shapes outside the viewport are detached from the pane.
+     */
+    public boolean isCullingEnabled() {
+        return culler != null;
+    }
+
+    /**
+     * Cancels the streaming load in progress, if any.
+     * Shapes already attached to the pane are kept.
+     */
+    public void cancelLoading() {
+        if (activeLoader != null) {
+            activeLoader.cancel();
+            activeLoader = null;
+            progressListener.accept(-1);
+            statusListener.accept("Loading cancelled");
+            publishChanges();
         }
     }
 
+    /**
+     * Checks whether a streaming load is in progress.
+     * @return True if shapes are still being loaded, false otherwise.
+     */
+    public boolean isLoading() {
+        return activeLoader != null;
+    }
+
+    /**
+     * Sets the listener notified with status messages about long-running operations.
+     * @param statusListener Receives the messages on the JavaFX thread.
+     */
+    public void setStatusListener(Consumer<String> statusListener) {
+        this.statusListener = statusListener != null ? statusListener : message -> { };
+    }
+
+    /**
+     * Sets the listener notified about the progress of long-running operations.
+     * @param progressListener Receives a value between 0 and 1, or -1 when no operation is running.
+     */
+    public void setProgressListener(DoubleConsumer progressListener) {
+        this.progressListener = progressListener != null ? progressListener : progress -> { };
+    }
+
     /**
      * Deserializes a shape from a string line.
      * @param line The string representing the shape.
@@ -282,6 +1106,322 @@ public class Model {
         return null;
     }
 
+    /**
+     * Adds the shapes of nodes attached to the pane to the document.
+     * They are placed just below the next shape of the pane that is already in the document.
+     * @param end The pane index following the added nodes.
+     * @param nodes The added nodes.
+     * @param edit True if the addition is an edit to record in the journal.
+     */
+    private void addToDocument(int end, List<? extends Node> nodes, boolean edit) {
+        List<ShapeInterface> added = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            ShapeInterface shape = getShapeFromNode(node);
+            if (shape != null && !spatialIndex.contains(shape)) {
+                added.add(shape);
+            }
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        int insertAt = shapes.size();
+        List<Node> children = pane.getChildren();
+        for (int i = end; i < children.size(); i++) {
+            int position = indexOfShape(getShapeFromNode(children.get(i)));
+            if (position >= 0) {
+                insertAt = position;
+                break;
+            }
+        }
+        insertIntoDocument(insertAt, added, edit);
+    }
+
+    /**
+     * Inserts shapes into the document and the spatial index.
+     * @param insertAt The position in z-order of the first shape.
+     * @param added The shapes, bottom first; none of them may already be in the document.
+     * @param edit True if the addition is an edit to record in the journal.
+     */
+    private void insertIntoDocument(int insertAt, List<ShapeInterface> added, boolean edit) {
+        shapes.addAll(insertAt, added);
+        for (ShapeInterface shape : added) {
+            registerShape(shape);
+            indexShape(shape);
+            if (edit) {
+                markChanged(shape, ModelChanges.Kind.ADDED);
+            }
+        }
+    }
+
+    /**
+     * Removes the shapes of nodes detached from the pane from the document.
+     * @param nodes The removed nodes.
+     * @param edit True if the removal is an edit to record in the journal.
+     */
+    private void removeFromDocument(List<? extends Node> nodes, boolean edit) {
+        Set<ShapeInterface> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Node node : nodes) {
+            ShapeInterface shape = getShapeFromNode(node);
+            if (shape != null && spatialIndex.contains(shape)) {
+                removed.add(shape);
+            }
+        }
+        removeFromDocument(removed, edit);
+    }
+
+    /**
+     * Removes shapes from the document and the spatial index.
+     * @param removed The shapes to remove, all of them in the document.
+     * @param edit True if the removal is an edit to record in the journal.
+     */
+    private void removeFromDocument(Set<ShapeInterface> removed, boolean edit) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        if (removed.size() == 1) {
+            shapes.remove(removed.iterator().next());
+        } else {
+            shapes.removeIf(removed::contains);
+        }
+        for (ShapeInterface shape : removed) {
+            registry.remove(shape.getId());
+            unindexShape(shape);
+            if (edit) {
+                markChanged(shape, ModelChanges.Kind.REMOVED);
+                if ((shape.getNode() != selectedShape || selectedShape == null) && selection.remove(shape)) {
+                    setStyle(shape, "");
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every shape from the pane and from the document.
+     */
+    private void clearDocument() {
+        if (pane != null) {
+            pane.getChildren().clear();
+        }
+        for (ShapeInterface shape : shapes) {
+            unindexShape(shape);
+        }
+        shapes.clear();
+        registry.clear();
+        spatialIndex.clear();
+        if (pendingEvents != null) {
+            pendingEvents.markReset();
+        }
+    }
+
+    /**
+     * Records a shape entering the document under its id.
+     * A shape without an id, or whose id is taken by another shape of the document, gets a new one;
+     * ids read from a document are reserved, so that new shapes never reuse them.
+     * @param shape A shape added to the document.
+     */
+    private void registerShape(ShapeInterface shape) {
+        ShapeInterface owner = shape.getId() > 0 ? registry.get(shape.getId()) : null;
+        if (shape.getId() <= 0 || (owner != null && owner != shape)) {
+            shape.setId(ShapeIds.next());
+        } else {
+            ShapeIds.reserve(shape.getId());
+        }
+        registry.put(shape.getId(), shape);
+    }
+
+    /**
+     * Finds a shape of the document by its id, in constant time.
+     * Shapes culled from the pane are found as well; the records of a lazy document only once materialized.
+     * @param id The id of the shape, see {@link ShapeInterface#getId()}.
+     * @return The shape, or null if no shape of the document has this id.
+     */
+    public ShapeInterface getShapeById(long id) {
+        return registry.get(id);
+    }
+
+    /**
+     * Finds the position of a shape in the document, comparing by identity, in logarithmic time.
+     * @param shape The shape to look for; may be null.
+     * @return The position in z-order, or -1 if the shape is not in the document.
+     */
+    private int indexOfShape(ShapeInterface shape) {
+        return shape == null ? -1 : shapes.rankOf(shape);
+    }
+
+    /**
+     * Adds a shape to the spatial index and follows the bounds of its node.
+     * Without a pane, the shape is indexed by its own bounds and re-indexed on every edit instead.
+     * @param shape A shape added to the document, or an edited shape of a model without a pane.
+     */
+    private void indexShape(ShapeInterface shape) {
+        Bounds bounds = boundsOf(shape);
+        spatialIndex.insert(shape, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+        if (pane != null) {
+            shape.getNode().boundsInParentProperty().addListener(boundsListener);
+        }
+    }
+
+    /**
+     * Gets the bounds under which a shape is indexed.
+     * @param shape A shape of the document.
+     * @return The bounds of its node, or its own bounds if it has no node or the model has no pane.
+     */
+    private Bounds boundsOf(ShapeInterface shape) {
+        Node node = pane != null ? shape.getNode() : null;
+        return node != null ? node.getBoundsInParent() : shape.getBounds();
+    }
+
+    /**
+     * Fails if the model has no pane.
+     * @param feature The name of the feature that needs one, for the error message.
+     * @throws IllegalStateException if the model was created without a pane.
+     */
+    private void requirePane(String feature) {
+        if (pane == null) {
+            throw new IllegalStateException(feature + " needs a model with a drawing pane");
+        }
+    }
+
+    /**
+     * Removes a shape from the spatial index.
+     * @param shape A shape removed from the document.
+     */
+    private void unindexShape(ShapeInterface shape) {
+        if (shape.getNode() != null) {
+            shape.getNode().boundsInParentProperty().removeListener(boundsListener);
+        }
+        spatialIndex.remove(shape);
+    }
+
+    /**
+     * Removes a shape from the document, whether or not its node is attached to the pane.
+     * The shape keeps its properties, so that it can be added back with {@link #addShape(ShapeInterface)}.
+     * @param shape The shape to remove.
+     */
+    public void removeShape(ShapeInterface shape) {
+        if (pane == null) {
+            if (isInDocument(shape)) {
+                Set<ShapeInterface> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+                removed.add(shape);
+                removeFromDocument(removed, true);
+            }
+            return;
+        }
+        Node node = shape.getNode();
+        if (!pane.getChildren().remove(node) && node != null) {
+            removeFromDocument(Collections.singletonList(node), true);
+        }
+    }
+
+    /**
+     * Checks whether a shape belongs to the document, whether or not its node is attached.
+     * @param shape The shape to look for; may be null.
+     * @return True if the shape is in the document.
+     */
+    public boolean isInDocument(ShapeInterface shape) {
+        return shape != null && spatialIndex.contains(shape);
+    }
+
+    /**
+     * Starts a batch of edits, such as the children of a macro command.
+     * Until the matching {@link #endBatch()}, a shape whose bounds change several times is
+     * moved in the spatial index once, with its final bounds, when the batch ends.
+     * Batches may be nested; only the outermost one applies the collected changes.
+     */
+    public void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * Ends a batch of edits started by {@link #beginBatch()}.
+     * The view is refreshed by the caller, as after any other command.
+     */
+    public void endBatch() {
+        if (batchDepth == 0 || --batchDepth > 0) {
+            return;
+        }
+        for (ShapeInterface shape : staleBounds) {
+            if (spatialIndex.contains(shape)) {
+                Bounds bounds = boundsOf(shape);
+                spatialIndex.insert(shape, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+            }
+        }
+        staleBounds.clear();
+    }
+
+    /**
+     * Checks whether a batch of edits is in progress.
+     * @return True between {@link #beginBatch()} and the matching {@link #endBatch()}.
+     */
+    public boolean isBatching() {
+        return batchDepth > 0;
+    }
+
+    /**
+     * Finds the shapes whose bounding box intersects a region of the pane.
+     * The lookup goes through the spatial index and takes logarithmic time.
+     * @param minX The left edge of the region, in pane coordinates.
+     * @param minY The top edge of the region.
+     * @param maxX The right edge of the region.
+     * @param maxY The bottom edge of the region.
+     * @return The intersecting shapes, in no particular order.
+     */
+    public List<ShapeInterface> getShapesIn(double minX, double minY, double maxX, double maxY) {
+        return spatialIndex.search(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Finds the shapes whose bounding box lies entirely inside a region of the pane,
+     * such as the rectangle drawn by a marquee selection.
+     * Candidates come from the spatial index, so the cost depends on the shapes near the region.
+     * @param minX The left edge of the region, in pane coordinates.
+     * @param minY The top edge of the region.
+     * @param maxX The right edge of the region.
+     * @param maxY The bottom edge of the region.
+     * @return The enclosed shapes, in no particular order.
+     */
+    public List<ShapeInterface> getShapesWithin(double minX, double minY, double maxX, double maxY) {
+        List<ShapeInterface> enclosed = new ArrayList<>();
+        spatialIndex.search(minX, minY, maxX, maxY, shape -> {
+            Bounds bounds = boundsOf(shape);
+            if (bounds.getMinX() >= minX && bounds.getMinY() >= minY && bounds.getMaxX() <= maxX && bounds.getMaxY() <= maxY) {
+                enclosed.add(shape);
+            }
+        });
+        return enclosed;
+    }
+
+    /**
+     * Finds the topmost shape under a point of the pane.
+     * Candidates come from the spatial index; each is then tested against its exact geometry.
+     * @param x The x-coordinate, in pane coordinates.
+     * @param y The y-coordinate, in pane coordinates.
+     * @return The shape drawn on top at that point, or null if there is none.
+     */
+    public ShapeInterface getShapeAt(double x, double y) {
+        // Nodes may be detached by culling or canvas rendering, so hits are ranked by document order.
+        Set<ShapeInterface> hits = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ShapeInterface shape : spatialIndex.search(x, y, x, y)) {
+            Node node = shape.getNode();
+            if (pane == null) {
+                // Without nodes, the bounding box found by the index is the hit test.
+                hits.add(shape);
+            } else if (node != null && node.isVisible() && node.contains(node.parentToLocal(x, y))) {
+                hits.add(shape);
+            }
+        }
+        ShapeInterface top = null;
+        int topRank = -1;
+        for (ShapeInterface shape : hits) {
+            int rank = hits.size() == 1 ? 0 : shapes.rankOf(shape);
+            if (rank > topRank) {
+                top = shape;
+                topRank = rank;
+            }
+        }
+        return top;
+    }
+
     /**
      * Moves a shape to a new position.
      * @param shape The shape to move.
@@ -292,6 +1432,7 @@ public class Model {
 
         // Aggiorna i dati nel modello
         shape.moveTo(newPosition[0], newPosition[1]);
+        markChanged(shape, ModelChanges.Kind.GEOMETRY);
     }
 
     /**
@@ -304,6 +1445,7 @@ public class Model {
         if (shape != null) {
             shape.setBorderColor(newBorderColor);
             shape.setFillColor(newFillColor);
+            markChanged(shape, ModelChanges.Kind.STYLE);
         }   
     }
 
@@ -317,8 +1459,7 @@ public class Model {
             shape.setY(0);
             shape.setBorderColor(null);
             shape.setFillColor(null);
-            Node node = shape.getNode();
-            pane.getChildren().remove(node);
+            removeShape(shape);
         }
     }
 
@@ -333,8 +1474,7 @@ public class Model {
             shape.setY(0);
             shape.setBorderColor(null);
             shape.setFillColor(null);
-            Node node = shape.getNode();
-            pane.getChildren().remove(node);
+            removeShape(shape);
         }
     }
 
@@ -359,8 +1499,10 @@ public class Model {
         if (copiedShape != null){
             copiedShape.setX(x);
             copiedShape.setY(y);
-            Node node = copiedShape.draw();
-            pane.getChildren().add(node);
+            if (pane != null) {
+                copiedShape.draw();
+            }
+            addShape(copiedShape);
         }
         return copiedShape;
     }
@@ -377,6 +1519,7 @@ public class Model {
             if (!(shape.getShapeFactory() instanceof LineFactory)) {
                 shape.setHeight(newHeight);
             }
+            markChanged(shape, ModelChanges.Kind.GEOMETRY);
         }
     }
         
@@ -408,14 +1551,17 @@ public class Model {
      */
     public void rotateShape(ShapeInterface shape, double angle){
         shape.setAngle(angle);
+        markChanged(shape, ModelChanges.Kind.GEOMETRY);
     }
 
     public void mirrorXShape(ShapeInterface shape){
         shape.mirrorX();
+        markChanged(shape, ModelChanges.Kind.GEOMETRY);
     }
 
     public void mirrorYShape(ShapeInterface shape){
         shape.mirrorY();
+        markChanged(shape, ModelChanges.Kind.GEOMETRY);
     }
 
     /**
@@ -423,8 +1569,22 @@ public class Model {
      * @param shape The shape to bring to the front.
      */
     public void bringShapeToFront(ShapeInterface shape) {
-        if (shape != null && pane.getChildren().contains(shape.getNode())) {
-            shape.getNode().toFront();
+        int position = indexOfShape(shape);
+        if (position >= 0) {
+            if (pane != null && shape.getNode().getParent() == pane) {
+                // toFront() detaches and reattaches the node, which must not be seen as an edit.
+                reordering = true;
+                try {
+                    shape.getNode().toFront();
+                } finally {
+                    reordering = false;
+                }
+            }
+            shapes.move(shape, shapes.size() - 1);
+            if (lazyDocument != null) {
+                lazyDocument.shapeReordered(shape, false);
+            }
+            markChanged(shape, ModelChanges.Kind.Z_ORDER);
         }
     }
 
@@ -433,8 +1593,8 @@ public class Model {
      * @return True if the selected shape is at the front, false otherwise.
      */
     public boolean isOnTheFront() {
-        if (selectedShape != null && pane.getChildren().contains(selectedShape)) {
-            return selectedShape.equals(pane.getChildren().get(pane.getChildren().size() - 1));
+        if (selectedShape != null && !shapes.isEmpty()) {
+            return shapes.get(shapes.size() - 1).getNode() == selectedShape;
         }
         return false;
     }
@@ -444,8 +1604,8 @@ public class Model {
      * @return True if the selected shape is at the back, false otherwise.
      */
     public boolean isOnTheBack() {
-        if (selectedShape != null && pane.getChildren().contains(selectedShape)) {
-            return pane.getChildren().indexOf(selectedShape) == 1;
+        if (selectedShape != null && !shapes.isEmpty()) {
+            return shapes.get(0).getNode() == selectedShape;
         }
         return false;
     }
@@ -455,17 +1615,105 @@ public class Model {
      * @param shape The shape to send to the back.
      */
     public void sendShapeToBack(ShapeInterface shape) {
-        if (shape != null && pane.getChildren().contains(shape.getNode())) {
-            shape.getNode().toBack();
+        int position = indexOfShape(shape);
+        if (position >= 0) {
+            if (pane != null && shape.getNode().getParent() == pane) {
+                reordering = true;
+                try {
+                    shape.getNode().toBack();
+                } finally {
+                    reordering = false;
+                }
+            }
+            shapes.move(shape, 0);
+            if (lazyDocument != null) {
+                lazyDocument.shapeReordered(shape, true);
+            }
+            markChanged(shape, ModelChanges.Kind.Z_ORDER);
         }
     }
 
     /**
-     * Adds a shape to the pane.
+     * Moves a shape one step up in z-order, above the shape just over it.
+     * @param shape The shape to move.
+     * @return True if the shape moved, false if it is on top, not in the document or in a lazy document.
+     */
+    public boolean bringShapeForward(ShapeInterface shape) {
+        return stepShape(shape, 1);
+    }
+
+    /**
+     * Moves a shape one step down in z-order, below the shape just under it.
+     * @param shape The shape to move.
+     * @return True if the shape moved, false if it is at the bottom, not in the document or in a lazy document.
+     */
+    public boolean sendShapeBackward(ShapeInterface shape) {
+        return stepShape(shape, -1);
+    }
+
+    /**
+     * Checks whether a shape can move one step in z-order.
+     * The records of a lazy document keep the order of the file, so shapes cannot step among them.
+     * @param shape The shape to move.
+     * @param forward True to move it up, false to move it down.
+     * @return True if {@link #bringShapeForward} or {@link #sendShapeBackward} would move the shape.
+     */
+    public boolean canStepShape(ShapeInterface shape, boolean forward) {
+        int position = indexOfShape(shape);
+        return position >= 0 && lazyDocument == null && (forward ? position < shapes.size() - 1 : position > 0);
+    }
+
+    /**
+     * Swaps a shape with its neighbour in z-order.
+     * The document is reordered in logarithmic time. On the pane, the node only moves if the
+     * neighbour's node is attached as well, otherwise their relative order does not change;
+     * both nodes are found by rank rather than by scanning the children.
+     * @param shape The shape to move.
+     * @param step 1 to move the shape up, -1 to move it down.
+     * @return True if the shape moved.
+     */
+    private boolean stepShape(ShapeInterface shape, int step) {
+        if (!canStepShape(shape, step > 0)) {
+            return false;
+        }
+        int position = indexOfShape(shape);
+        ShapeInterface neighbour = shapes.get(position + step);
+        Node node = shape.getNode();
+        Node other = neighbour.getNode();
+        int from = -1;
+        int to = -1;
+        if (pane != null && node != null && other != null && node.getParent() == pane && other.getParent() == pane) {
+            // The children are searched by rank, so before the document is reordered.
+            from = ViewportCuller.positionOf(pane.getChildren(), shapes, shape);
+            to = ViewportCuller.positionOf(pane.getChildren(), shapes, neighbour);
+        }
+        shapes.move(shape, position + step);
+        if (from >= 0 && to >= 0) {
+            List<Node> children = pane.getChildren();
+            reordering = true;
+            try {
+                children.remove(from);
+                children.add(to, node);
+            } finally {
+                reordering = false;
+            }
+        }
+        markChanged(shape, ModelChanges.Kind.Z_ORDER);
+        return true;
+    }
+
+    /**
+     * Adds a shape to the pane, or directly to the document if the model has no pane.
      * @param shape The shape to add.
      */
     public void addShape(ShapeInterface shape) {
         if (shape != null) {
+            if (pane == null) {
+                if (!isInDocument(shape)) {
+                    insertIntoDocument(shapes.size(), Collections.singletonList(shape), true);
+                }
+                return;
+            }
             Node node = shape.getNode();
             pane.getChildren().add(node);
         }
@@ -479,6 +1727,7 @@ public class Model {
     public void editText(ConcreteText textShape, String newText){
         if(textShape != null){
             textShape.setContent(newText);
+            markChanged(textShape, ModelChanges.Kind.GEOMETRY);
         }
     }
 
@@ -490,6 +1739,69 @@ public class Model {
     public void editFontSize(ConcreteText textShape, double newSize){
         if(textShape != null){
             textShape.setFontSize(newSize);
+            markChanged(textShape, ModelChanges.Kind.GEOMETRY);
+        }
+    }
+
+    /**
+     * Replaces the vertices of a polygon.
+     * @param polygon The polygon to edit.
+     * @param points The new coordinates relative to the top-left corner of the polygon, as x0, y0, x1, y1, ...
+     */
+    public void setPolygonPoints(ConcretePolygon polygon, double[] points) {
+        if (polygon != null) {
+            polygon.setPoints(points);
+            markChanged(polygon, ModelChanges.Kind.GEOMETRY);
+        }
+    }
+
+    /**
+     * Sets the largest distance between a vertex dropped by simplification and the simplified outline.
+     * @param tolerance The tolerance in pane units; 0 disables simplification.
+     */
+    public void setSimplifyTolerance(double tolerance) {
+        this.simplifyTolerance = Math.max(0, tolerance);
+    }
+
+    /**
+     * Gets the tolerance used to simplify polygons.
+     * @return The tolerance in pane units.
+     */
+    public double getSimplifyTolerance() {
+        return simplifyTolerance;
+    }
+
+    /**
+     * Sets whether the polygons of documents loaded with {@link #loadFromFile(File)} are simplified.
+     * They go through the linear radial pass of {@link PolygonSimplifier} only, so that loading stays linear.
+     * @param simplifyOnLoad True to simplify loaded polygons.
+     */
+    public void setSimplifyOnLoad(boolean simplifyOnLoad) {
+        this.simplifyOnLoad = simplifyOnLoad;
+    }
+
+    /**
+     * Simplifies the polygons of a loaded document before they are drawn.
+     * @param loadedShapes The shapes read from the document.
+     * @return The polygons that lost vertices.
+     */
+    private List<ShapeInterface> simplifyLoaded(List<ShapeInterface> loadedShapes) {
+        List<ShapeInterface> simplified = new ArrayList<>();
+        int removed = 0;
+        for (ShapeInterface shape : loadedShapes) {
+            if (shape instanceof ConcretePolygon) {
+                ConcretePolygon polygon = (ConcretePolygon) shape;
+                double[] points = PolygonSimplifier.simplifyRadial(polygon.getPoints(), simplifyTolerance);
+                if (points.length / 2 < polygon.getVertexCount()) {
+                    removed += polygon.getVertexCount() - points.length / 2;
+                    polygon.setPoints(points);
+                    simplified.add(polygon);
+                }
+            }
+        }
+        if (removed > 0) {
+            statusListener.accept("Simplified " + simplified.size() + " polygons, " + removed + " vertices removed");
         }
+        return simplified;
     }
 }
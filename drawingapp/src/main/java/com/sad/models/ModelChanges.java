@@ -0,0 +1,139 @@
+package com.sad.models;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.sad.models.shapes.ShapeInterface;
+
+/**
+ * The changes made to a document during one transaction, published to the listeners
+ * registered with {@link Model#addChangeListener(java.util.function.Consumer)}.
+ * Changes are coalesced per shape: a shape edited several times is reported once per kind,
+ * a shape added and removed again is not reported at all, and an added or removed shape is
+ * not reported as modified. When the whole document was replaced, for example by loading a
+ * file, the batch is a reset and listeners rebuild their state from {@link Model#getShapes()}.
+ */
+public final class ModelChanges {
+
+    /**
+     * The kinds of change.
+     */
+    public enum Kind {
+        /** The shape entered the document. */
+        ADDED,
+        /** The shape left the document. */
+        REMOVED,
+        /** The position, size, rotation, mirroring or text of the shape changed. */
+        GEOMETRY,
+        /** The colors of the shape changed. */
+        STYLE,
+        /** The shape moved in z-order. */
+        Z_ORDER
+    }
+
+    /** The changed shapes of each kind. */
+    private final Map<Kind, Set<ShapeInterface>> shapes = new EnumMap<>(Kind.class);
+    /** True if the document was replaced; individual changes are then not recorded. */
+    private boolean reset = false;
+
+    /**
+     * Constructs an empty batch.
+     */
+    ModelChanges() {
+        for (Kind kind : Kind.values()) {
+            shapes.put(kind, Collections.newSetFromMap(new IdentityHashMap<>()));
+        }
+    }
+
+    /**
+     * Records a change, coalescing it with the previous changes of the shape.
+     * @param kind The kind of change.
+     * @param shape The changed shape.
+     */
+    void record(Kind kind, ShapeInterface shape) {
+        if (reset) {
+            return;
+        }
+        Set<ShapeInterface> added = shapes.get(Kind.ADDED);
+        switch (kind) {
+            case ADDED:
+                if (shapes.get(Kind.REMOVED).remove(shape)) {
+                    // Taken out and put back, for instance by undo: its state may differ in every way.
+                    shapes.get(Kind.GEOMETRY).add(shape);
+                    shapes.get(Kind.STYLE).add(shape);
+                    shapes.get(Kind.Z_ORDER).add(shape);
+                } else {
+                    added.add(shape);
+                }
+                break;
+            case REMOVED:
+                shapes.get(Kind.GEOMETRY).remove(shape);
+                shapes.get(Kind.STYLE).remove(shape);
+                shapes.get(Kind.Z_ORDER).remove(shape);
+                if (!added.remove(shape)) {
+                    shapes.get(Kind.REMOVED).add(shape);
+                }
+                break;
+            default:
+                if (!added.contains(shape)) {
+                    shapes.get(kind).add(shape);
+                }
+        }
+    }
+
+    /**
+     * Turns the batch into a reset, dropping the changes recorded so far.
+     */
+    void markReset() {
+        reset = true;
+        for (Set<ShapeInterface> changed : shapes.values()) {
+            changed.clear();
+        }
+    }
+
+    /**
+     * Checks whether the whole document was replaced.
+     * @return True if listeners must rebuild their state instead of applying the changes.
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    /**
+     * Gets the shapes with a given kind of change.
+     * @param kind The kind of change.
+     * @return The shapes, in no particular order; empty for a reset.
+     */
+    public Set<ShapeInterface> get(Kind kind) {
+        return Collections.unmodifiableSet(shapes.get(kind));
+    }
+
+    /**
+     * Checks whether a shape has a given kind of change.
+     * @param kind The kind of change.
+     * @param shape The shape.
+     * @return True if the change is part of the batch.
+     */
+    public boolean contains(Kind kind, ShapeInterface shape) {
+        return shapes.get(kind).contains(shape);
+    }
+
+    /**
+     * Checks whether the batch holds anything to publish.
+     * @return True if nothing changed.
+     */
+    public boolean isEmpty() {
+        if (reset) {
+            return false;
+        }
+        for (Set<ShapeInterface> changed : shapes.values()) {
+            if (!changed.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
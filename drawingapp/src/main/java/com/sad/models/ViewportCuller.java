@@ -0,0 +1,212 @@
+package com.sad.models;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.sad.models.index.RTree;
+import com.sad.models.index.ZOrderIndex;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+
+/**
+ * Keeps on the drawing pane only the shapes that intersect the viewport.
+ * The model holds every shape of the document and indexes them in an R-tree; on every
+ * viewport change the culler attaches the shapes that came into view and detaches the
+ * ones that left it, so layout, CSS and rendering only deal with what can be seen.
+ * Attached nodes always appear on the pane in the z-order of the document.
+ */
+public class ViewportCuller {
+    /** The drawing pane. */
+    private final Pane pane;
+    /** The shapes of the document in z-order, owned by the model, which also gives their ranks. */
+    private final ZOrderIndex<ShapeInterface> shapes;
+    /** The spatial index over the shapes of the document, owned by the model. */
+    private final RTree<ShapeInterface> index;
+    /** True while the pane is being updated by the culler. */
+    private boolean updating = false;
+
+    /**
+     * Creates a culler.
+     * @param pane The drawing pane.
+     * @param shapes The shapes of the document in z-order.
+     * @param index The spatial index over the shapes.
+     */
+    public ViewportCuller(Pane pane, ZOrderIndex<ShapeInterface> shapes, RTree<ShapeInterface> index) {
+        this.pane = pane;
+        this.shapes = shapes;
+        this.index = index;
+    }
+
+    /**
+     * Checks whether the pane is being updated by the culler.
+     * Attaching and detaching nodes does not change the document and must not be recorded.
+     * @return True during an update.
+     */
+    public boolean isUpdating() {
+        return updating;
+    }
+
+    /**
+     * Attaches the shapes intersecting a region and detaches the others.
+     * @param minX The left edge of the region, in pane coordinates.
+     * @param minY The top edge of the region.
+     * @param maxX The right edge of the region.
+     * @param maxY The bottom edge of the region.
+     * @param keep Nodes that must stay attached, such as the selected shapes.
+     */
+    public void update(double minX, double minY, double maxX, double maxY, Collection<? extends Node> keep) {
+        Set<ShapeInterface> visible = Collections.newSetFromMap(new IdentityHashMap<>());
+        index.search(minX, minY, maxX, maxY, visible::add);
+        for (Node node : keep) {
+            if (node.getUserData() instanceof ShapeInterface) {
+                visible.add((ShapeInterface) node.getUserData());
+            }
+        }
+        apply(visible);
+    }
+
+    /**
+     * Attaches every shape of the document, for instance when culling is turned off.
+     */
+    public void attachAll() {
+        Set<ShapeInterface> all = Collections.newSetFromMap(new IdentityHashMap<>());
+        all.addAll(shapes);
+        apply(all);
+    }
+
+    /**
+     * Makes the shapes attached to the pane match a set.
+     * @param visible The shapes that must be attached.
+     */
+    private void apply(Set<ShapeInterface> visible) {
+        ObservableList<Node> children = pane.getChildren();
+        List<Node> dropped = new ArrayList<>();
+        for (Node node : children) {
+            Object data = node.getUserData();
+            if (data instanceof ShapeInterface && !visible.remove(data)) {
+                dropped.add(node);
+            }
+        }
+        // Shapes left in the set are visible but not attached yet.
+        if (dropped.isEmpty() && visible.isEmpty()) {
+            return;
+        }
+        List<ShapeInterface> added = new ArrayList<>(visible);
+        added.removeIf(shape -> !shapes.contains(shape) || shape.getNode() == null);
+        added.sort(Comparator.comparingInt(shapes::rankOf));
+
+        updating = true;
+        try {
+            if (!dropped.isEmpty()) {
+                Set<Node> droppedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+                droppedSet.addAll(dropped);
+                children.removeAll(droppedSet);
+            }
+            insertInOrder(children, added);
+        } finally {
+            updating = false;
+        }
+    }
+
+    /**
+     * Finds the position of an attached shape among the children of a pane, in logarithmic time.
+     * Shapes of the document are attached in document order, so the children are searched by rank;
+     * other nodes, such as the grid or a selection marquee, are stepped over.
+     * @param children The children of the pane.
+     * @param shapes The shapes of the document, in z-order.
+     * @param shape The shape to look for.
+     * @return The position of the node of the shape, or -1 if it is not attached or not in the document.
+     */
+    static int positionOf(List<Node> children, ZOrderIndex<ShapeInterface> shapes, ShapeInterface shape) {
+        int target = shapes.rankOf(shape);
+        if (target < 0) {
+            return -1;
+        }
+        int low = 0;
+        int high = children.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int probe = mid;
+            int rank = -1;
+            while (probe <= high && (rank = rankAt(children, shapes, probe)) < 0) {
+                probe++;
+            }
+            if (probe > high || rank > target) {
+                high = mid - 1;
+            } else if (rank < target) {
+                low = probe + 1;
+            } else {
+                return probe;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the rank of the shape attached at a position of a pane.
+     * @param children The children of the pane.
+     * @param shapes The shapes of the document, in z-order.
+     * @param position A position among the children.
+     * @return The rank of the shape, or -1 if the node there is not a shape of the document.
+     */
+    private static int rankAt(List<Node> children, ZOrderIndex<ShapeInterface> shapes, int position) {
+        Object data = children.get(position).getUserData();
+        return data instanceof ShapeInterface ? shapes.indexOf(data) : -1;
+    }
+
+    /**
+     * Inserts nodes among the attached shapes, keeping the pane in document order.
+     * Shapes that fall between the same two attached nodes are inserted together, so that
+     * each gap of the pane is shifted once rather than once per shape.
+     * @param children The children of the pane.
+     * @param added The shapes to attach, sorted by rank.
+     */
+    private void insertInOrder(ObservableList<Node> children, List<ShapeInterface> added) {
+        int next = 0;
+        int afterLastShape = -1;
+        for (int position = 0; position < children.size() && next < added.size(); position++) {
+            Object data = children.get(position).getUserData();
+            if (!(data instanceof ShapeInterface)) {
+                continue;
+            }
+            int rank = shapes.indexOf(data);
+            if (rank >= 0) {
+                int end = next;
+                while (end < added.size() && shapes.rankOf(added.get(end)) < rank) {
+                    end++;
+                }
+                if (end > next) {
+                    children.addAll(position, nodesOf(added.subList(next, end)));
+                    position += end - next;
+                    next = end;
+                }
+            }
+            afterLastShape = position + 1;
+        }
+        if (next < added.size()) {
+            int position = afterLastShape >= 0 ? afterLastShape : children.size();
+            children.addAll(position, nodesOf(added.subList(next, added.size())));
+        }
+    }
+
+    /**
+     * Gets the nodes of shapes.
+     * @param run The shapes.
+     * @return Their nodes, in the same order.
+     */
+    private static List<Node> nodesOf(List<ShapeInterface> run) {
+        List<Node> nodes = new ArrayList<>(run.size());
+        for (ShapeInterface shape : run) {
+            nodes.add(shape.getNode());
+        }
+        return nodes;
+    }
+}
@@ -8,6 +8,8 @@ import com.sad.models.shapes.ShapeInterface;
  * Implements the Command design pattern, allowing execution and undo operations.
  */
 public class BringToFrontCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private Model receiver;
     /** The shape to be brought to the front. */
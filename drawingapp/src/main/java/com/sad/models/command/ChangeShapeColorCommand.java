@@ -10,6 +10,8 @@ import javafx.scene.paint.Color;
  * Implements the Command design pattern, allowing execution and undo operations.
  */
 public class ChangeShapeColorCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private final Model receiver;
     /** The previous border color of the shape, used for undo. */
@@ -17,9 +19,9 @@ public class ChangeShapeColorCommand implements CommandInterface {
     /** The previous fill color of the shape, used for undo. */
     private final Color oldFillColor;
     /** The new border color to set. */
-    private final Color newBorderColor;
+    private Color newBorderColor;
     /** The new fill color to set. */
-    private final Color newFillColor;
+    private Color newFillColor;
     /** The shape whose color will be changed. */
     private ShapeInterface shape;
 
@@ -55,4 +57,19 @@ public class ChangeShapeColorCommand implements CommandInterface {
         receiver.changeShapeColor(shape, oldBorderColor, oldFillColor);
     }
 
+    /**
+     * Merges a later color change of the same shape, keeping the colors to restore on undo.
+     * @param next The command executed after this one.
+     * @return True if the next command changes the color of the same shape.
+     */
+    @Override
+    public boolean mergeWith(CommandInterface next) {
+        if (!(next instanceof ChangeShapeColorCommand) || ((ChangeShapeColorCommand) next).shape != shape) {
+            return false;
+        }
+        newBorderColor = ((ChangeShapeColorCommand) next).newBorderColor;
+        newFillColor = ((ChangeShapeColorCommand) next).newFillColor;
+        return true;
+    }
+
 }
@@ -0,0 +1,586 @@
+package com.sad.models.command;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.sad.models.Model;
+import com.sad.models.persistence.DocumentReader;
+import com.sad.models.persistence.DocumentWriter;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+
+/**
+ * Undo history with a memory budget.
+ * Every entry is weighed when it is pushed: shapes that are no longer in the document,
+ * such as the one kept by a delete command, count with their node, while shapes of the
+ * document and the model itself are shared and do not count. When the history exceeds its
+ * budget, the oldest entries are serialized into a block of a temporary file and dropped
+ * from memory; detached shapes are written as compact document records and JavaFX nodes
+ * are not written at all. Undoing past the entries in memory reads the last block back.
+ * Undone entries move to a redo deque and move back when redone, so undo and redo both
+ * take constant time and keep the same command objects and nodes.
+ * A command pushed shortly after the previous one may merge into it, as decided by
+ * {@link CommandInterface#mergeWith}, so that scrubbing a value or dragging a shape
+ * leaves one entry instead of one per step.
+ */
+public class CommandHistory {
+    /** Default memory budget, in bytes. */
+    public static final long DEFAULT_BUDGET = 32L << 20;
+    /** Estimated size of a JavaFX shape node, in bytes. */
+    static final long NODE_SIZE = 2048;
+    /** Default time within which a command may merge into the previous one, in milliseconds. */
+    public static final long DEFAULT_COALESCE_WINDOW = 1000;
+
+    /**
+     * An entry held in memory.
+     */
+    private static final class Entry {
+        final CommandInterface command;
+        final long size;
+
+        Entry(CommandInterface command, long size) {
+            this.command = command;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Entries written to the spill file, oldest first.
+     */
+    private static final class Block {
+        final long offset;
+        final int length;
+        final long[] sizes;
+        /** Objects kept in memory because they are shared with the document or the model. */
+        final List<Object> retained;
+
+        Block(long offset, int length, long[] sizes, List<Object> retained) {
+            this.offset = offset;
+            this.length = length;
+            this.sizes = sizes;
+            this.retained = retained;
+        }
+    }
+
+    /** The model the commands act on. */
+    private final Model model;
+    /** The memory budget, in bytes. */
+    private final long budget;
+    /** Entries in memory, oldest first. */
+    private final Deque<Entry> memory = new ArrayDeque<>();
+    /** Undone entries, most recently undone last. */
+    private final Deque<Entry> redo = new ArrayDeque<>();
+    /** Spilled blocks, oldest first; each one is older than the entries in memory. */
+    private final Deque<Block> blocks = new ArrayDeque<>();
+    /** Estimated size of the entries in memory, including undone ones, in bytes. */
+    private long memoryUsage = 0;
+    /** Number of entries in the spill file. */
+    private int spilledCount = 0;
+    /** The spill file, created on first use. */
+    private RandomAccessFile spillFile;
+    /** Time within which a command may merge into the previous one, in milliseconds; zero disables merging. */
+    private long coalesceWindow = DEFAULT_COALESCE_WINDOW;
+    /** The entry of the last pushed command while it can still absorb the next one, or null. */
+    private Entry coalesceTarget;
+    /** When the coalescing target was last pushed or extended, from {@link System#nanoTime()}. */
+    private long coalesceTime;
+
+    /**
+     * Creates a history with the default budget.
+     * @param model The model the commands act on.
+     */
+    public CommandHistory(Model model) {
+        this(model, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Creates a history.
+     * @param model The model the commands act on.
+     * @param budget The memory budget, in bytes.
+     */
+    public CommandHistory(Model model, long budget) {
+        this.model = model;
+        this.budget = budget;
+    }
+
+    /**
+     * Adds an executed command to the history, spilling older entries if the budget is exceeded.
+     * If the previous command was pushed within the coalescing window and nothing was undone
+     * since, the command is offered to it first and is not added if it merges.
+     * Commands undone so far can no longer be redone.
+     * @param command The command.
+     */
+    public void push(CommandInterface command) {
+        long now = System.nanoTime();
+        if (coalesceWindow > 0 && coalesceTarget != null && redo.isEmpty() && memory.peekLast() == coalesceTarget
+                && now - coalesceTime <= coalesceWindow * 1_000_000L
+                && coalesceTarget.command.mergeWith(command)) {
+            coalesceTime = now;
+            return;
+        }
+        for (Entry undone : redo) {
+            memoryUsage -= undone.size;
+        }
+        redo.clear();
+        long size = estimateSize(command);
+        Entry entry = new Entry(command, size);
+        memory.addLast(entry);
+        memoryUsage += size;
+        coalesceTarget = entry;
+        coalesceTime = now;
+        if (memoryUsage > budget) {
+            spill();
+        }
+    }
+
+    /**
+     * Takes the most recent command to undo; it becomes the next command to redo.
+     * @return The command, or null if there is nothing to undo.
+     */
+    public CommandInterface pop() {
+        if (memory.isEmpty() && !blocks.isEmpty()) {
+            rehydrate();
+        }
+        Entry entry = memory.pollLast();
+        if (entry == null) {
+            return null;
+        }
+        coalesceTarget = null;
+        redo.addLast(entry);
+        return entry.command;
+    }
+
+    /**
+     * Takes the most recently undone command to execute it again; it becomes the next command to undo.
+     * @return The command, or null if there is nothing to redo.
+     */
+    public CommandInterface popRedo() {
+        Entry entry = redo.pollLast();
+        if (entry == null) {
+            return null;
+        }
+        coalesceTarget = null;
+        memory.addLast(entry);
+        return entry.command;
+    }
+
+    /**
+     * Checks whether there is a command to redo.
+     * @return True if a command was undone since the last push.
+     */
+    public boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    /**
+     * Checks whether the history is empty.
+     * @return True if there is nothing to undo.
+     */
+    public boolean isEmpty() {
+        return memory.isEmpty() && blocks.isEmpty();
+    }
+
+    /**
+     * Gets the number of commands that can be undone.
+     * @return The number of entries, in memory and spilled.
+     */
+    public int size() {
+        return memory.size() + spilledCount;
+    }
+
+    /**
+     * Removes every command from the history.
+     */
+    public void clear() {
+        memory.clear();
+        redo.clear();
+        blocks.clear();
+        coalesceTarget = null;
+        memoryUsage = 0;
+        spilledCount = 0;
+        truncateSpillFile(0);
+    }
+
+    /**
+     * Gets the estimated size of the entries held in memory.
+     * @return The size in bytes.
+     */
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Gets the number of commands currently spilled to disk.
+     * @return The number of spilled entries.
+     */
+    public int getSpilledCount() {
+        return spilledCount;
+    }
+
+    /**
+     * Sets the time within which a command may merge into the previous one.
+     * @param millis The window in milliseconds; zero disables merging.
+     */
+    public void setCoalesceWindow(long millis) {
+        coalesceWindow = Math.max(0, millis);
+    }
+
+    /**
+     * Gets the time within which a command may merge into the previous one.
+     * @return The window in milliseconds.
+     */
+    public long getCoalesceWindow() {
+        return coalesceWindow;
+    }
+
+    /**
+     * Gets the memory budget.
+     * @return The budget in bytes.
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Estimates the memory retained by a command.
+     * Detached shapes count with their record and their node; shared objects do not count.
+     * @param command The command.
+     * @return The estimated size in bytes.
+     */
+    private long estimateSize(CommandInterface command) {
+        CountingOutputStream counter = new CountingOutputStream();
+        try (SpillOutputStream out = new SpillOutputStream(counter, new ArrayList<>(), this::isShared)) {
+            out.writeObject(command);
+            out.flush();
+            return counter.count + out.nodes * NODE_SIZE;
+        } catch (IOException e) {
+            // Not serializable as a whole: it can only stay in memory.
+            return NODE_SIZE;
+        }
+    }
+
+    /**
+     * Checks whether a shape is shared with the model, so that spilling must keep the object itself.
+     * @param shape The shape.
+     * @return True for shapes of the document and the clipboard.
+     */
+    private boolean isShared(ShapeInterface shape) {
+        return model.isInDocument(shape) || shape == model.getClipBoardShape();
+    }
+
+    /**
+     * Writes the oldest entries to the spill file until the history uses half of its budget.
+     * The most recent entry always stays in memory.
+     */
+    private void spill() {
+        List<Entry> batch = new ArrayList<>();
+        while (memory.size() > 1 && memoryUsage > budget / 2) {
+            Entry entry = memory.pollFirst();
+            memoryUsage -= entry.size;
+            batch.add(entry);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            // Shapes referenced elsewhere in the history must keep their identity.
+            Set<ShapeInterface> referenced = referencedShapes();
+            List<Object> retained = new ArrayList<>();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            long[] sizes = new long[batch.size()];
+            try (SpillOutputStream out = new SpillOutputStream(bytes, retained,
+                    shape -> referenced.contains(shape) || isShared(shape))) {
+                out.writeInt(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    out.writeObject(batch.get(i).command);
+                    sizes[i] = batch.get(i).size;
+                }
+            }
+            RandomAccessFile file = spillFile();
+            long offset = file.length();
+            file.seek(offset);
+            file.write(bytes.toByteArray());
+            blocks.addLast(new Block(offset, bytes.size(), sizes, retained));
+            spilledCount += batch.size();
+        } catch (IOException e) {
+            e.printStackTrace();
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                memory.addFirst(batch.get(i));
+                memoryUsage += batch.get(i).size;
+            }
+        }
+    }
+
+    /**
+     * Collects the shapes referenced by the entries in memory, including undone ones, and kept by older blocks.
+     * @return The shapes, compared by identity.
+     * @throws IOException If an entry cannot be serialized.
+     */
+    private Set<ShapeInterface> referencedShapes() throws IOException {
+        Set<ShapeInterface> referenced = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Block block : blocks) {
+            for (Object obj : block.retained) {
+                if (obj instanceof ShapeInterface) {
+                    referenced.add((ShapeInterface) obj);
+                }
+            }
+        }
+        try (SpillOutputStream out = new SpillOutputStream(OutputStream.nullOutputStream(), new ArrayList<>(), shape -> {
+            referenced.add(shape);
+            return true;
+        })) {
+            for (Entry entry : memory) {
+                out.writeObject(entry.command);
+            }
+            for (Entry entry : redo) {
+                out.writeObject(entry.command);
+            }
+        }
+        return referenced;
+    }
+
+    /**
+     * Reads the most recent spilled block back into memory.
+     */
+    private void rehydrate() {
+        Block block = blocks.pollLast();
+        spilledCount -= block.sizes.length;
+        try {
+            byte[] bytes = new byte[block.length];
+            RandomAccessFile file = spillFile();
+            file.seek(block.offset);
+            file.readFully(bytes);
+            try (SpillInputStream in = new SpillInputStream(new ByteArrayInputStream(bytes), block.retained)) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    CommandInterface command = (CommandInterface) in.readObject();
+                    memory.addLast(new Entry(command, block.sizes[i]));
+                    memoryUsage += block.sizes[i];
+                }
+            }
+            truncateSpillFile(block.offset);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // Older entries may depend on the lost ones, so none of them can be undone safely.
+            e.printStackTrace();
+            blocks.clear();
+            spilledCount = 0;
+            truncateSpillFile(0);
+        }
+    }
+
+    /**
+     * Opens the spill file, creating it on first use.
+     * @return The spill file.
+     * @throws IOException If the file cannot be created.
+     */
+    private RandomAccessFile spillFile() throws IOException {
+        if (spillFile == null) {
+            File file = File.createTempFile("drawingapp-history", ".tmp");
+            file.deleteOnExit();
+            spillFile = new RandomAccessFile(file, "rw");
+        }
+        return spillFile;
+    }
+
+    /**
+     * Discards the end of the spill file.
+     * @param length The new length of the file.
+     */
+    private void truncateSpillFile(long length) {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            spillFile.setLength(length);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Output stream that only counts the bytes written to it.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /**
+     * Reference to an object kept in memory next to a spilled block.
+     */
+    private static final class Handle implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int index;
+
+        Handle(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * Serialized form of a color.
+     */
+    private static final class ColorValue implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final double red, green, blue, opacity;
+
+        ColorValue(Color color) {
+            red = color.getRed();
+            green = color.getGreen();
+            blue = color.getBlue();
+            opacity = color.getOpacity();
+        }
+    }
+
+    /**
+     * Serialized form of a detached shape, as a document record.
+     */
+    private static final class ShapeRecord implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final byte[] record;
+        final boolean drawn;
+
+        ShapeRecord(byte[] record, boolean drawn) {
+            this.record = record;
+            this.drawn = drawn;
+        }
+    }
+
+    /**
+     * Serialized form of the node of a shape, rebuilt from the shape.
+     */
+    private static final class NodeOf implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final Object shape;
+
+        NodeOf(Object shape) {
+            this.shape = shape;
+        }
+    }
+
+    /**
+     * Object stream writing detached shapes as records and shared objects as handles.
+     */
+    private static final class SpillOutputStream extends ObjectOutputStream {
+        /** Objects written as handles. */
+        private final List<Object> retained;
+        /** Tells which shapes must be written as handles. */
+        private final Predicate<ShapeInterface> shared;
+        /** Number of JavaFX nodes the written objects hold. */
+        long nodes;
+
+        SpillOutputStream(OutputStream out, List<Object> retained, Predicate<ShapeInterface> shared) throws IOException {
+            super(out);
+            this.retained = retained;
+            this.shared = shared;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof ShapeInterface) {
+                ShapeInterface shape = (ShapeInterface) obj;
+                if (shared.test(shape)) {
+                    return handle(shape);
+                }
+                ByteArrayOutputStream record = new ByteArrayOutputStream();
+                try (DataOutputStream out = new DataOutputStream(record)) {
+                    DocumentWriter.writeRecord(out, shape);
+                } catch (IOException e) {
+                    return handle(shape);
+                }
+                if (shape.getNode() != null) {
+                    nodes++;
+                }
+                return new ShapeRecord(record.toByteArray(), shape.getNode() != null);
+            }
+            if (obj instanceof Color) {
+                return new ColorValue((Color) obj);
+            }
+            if (obj instanceof Node && ((Node) obj).getUserData() instanceof ShapeInterface) {
+                return new NodeOf(((Node) obj).getUserData());
+            }
+            if (!(obj instanceof Serializable)) {
+                return handle(obj);
+            }
+            return obj;
+        }
+
+        /**
+         * Keeps an object in memory and writes a reference to it.
+         */
+        private Handle handle(Object obj) {
+            retained.add(obj);
+            return new Handle(retained.size() - 1);
+        }
+    }
+
+    /**
+     * Object stream restoring what {@link SpillOutputStream} replaced.
+     */
+    private static final class SpillInputStream extends ObjectInputStream {
+        /** Objects written as handles. */
+        private final List<Object> retained;
+
+        SpillInputStream(ByteArrayInputStream in, List<Object> retained) throws IOException {
+            super(in);
+            this.retained = retained;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof Handle) {
+                return retained.get(((Handle) obj).index);
+            }
+            if (obj instanceof ColorValue) {
+                ColorValue color = (ColorValue) obj;
+                return new Color(color.red, color.green, color.blue, color.opacity);
+            }
+            if (obj instanceof ShapeRecord) {
+                ShapeRecord record = (ShapeRecord) obj;
+                ShapeInterface shape = DocumentReader.readRecord(new DataInputStream(new ByteArrayInputStream(record.record)));
+                if (record.drawn) {
+                    shape.draw();
+                }
+                return shape;
+            }
+            if (obj instanceof NodeOf) {
+                return ((ShapeInterface) ((NodeOf) obj).shape).draw();
+            }
+            return obj;
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package com.sad.models.command;
 
+import java.io.Serializable;
+
 /**
  * Interface for command objects in the Command design pattern.
  * Provides methods to execute and undo a command.
+ * Commands are serializable so that {@link CommandHistory} can spill old entries to disk;
+ * implementations declare a serialVersionUID, as the spilled form is read back by the same classes.
  */
-public interface CommandInterface {
+public interface CommandInterface extends Serializable {
     /**
      * Executes the command.
      */
@@ -14,4 +18,16 @@ public interface CommandInterface {
      * Undoes the command.
      */
     void undo();
+
+    /**
+     * Absorbs a command executed right after this one, so that both form a single history entry.
+     * A command that accepts keeps its own before-state and takes the after-state of the next one,
+     * so undoing it restores the state preceding both and executing it again reaches the state
+     * following both. Only consecutive edits of the same kind on the same target should merge.
+     * @param next The command executed after this one.
+     * @return True if the next command was merged into this one.
+     */
+    default boolean mergeWith(CommandInterface next) {
+        return false;
+    }
 }
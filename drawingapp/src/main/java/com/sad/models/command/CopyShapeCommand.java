@@ -8,6 +8,8 @@ import com.sad.models.shapes.ShapeInterface;
  * Implements the Command design pattern, allowing execution and (optionally) undo operations.
  */
 public class CopyShapeCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private final Model receiver;
     /** The shape to be copied. */
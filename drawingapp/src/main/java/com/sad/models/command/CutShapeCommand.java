@@ -11,6 +11,8 @@ import javafx.scene.Node;
  * Stores the original state of the shape to allow restoration on undo.
  */
 public class CutShapeCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private final Model receiver;
     /** The shape to be cut. */
@@ -60,7 +62,9 @@ public class CutShapeCommand implements CommandInterface {
         shape.setY(originalY);
         shape.setBorderColor(originalBorder);
         shape.setFillColor(originalFill);
-        shape.setNode(node);
+        if (node != null) {
+            shape.setNode(node);
+        }
 
         receiver.addShape(shape);
     }
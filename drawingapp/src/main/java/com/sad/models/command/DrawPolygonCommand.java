@@ -1,34 +1,37 @@
 package com.sad.models.command;
 
-import java.util.List;
-
 import com.sad.models.Model;
+import com.sad.models.shapes.ShapeInterface;
 
-import javafx.scene.control.ColorPicker;
+import javafx.scene.paint.Color;
 
 /**
  * Command to draw a polygon in the model.
  * Implements the Command design pattern, allowing execution and undo operations.
  */
 public class DrawPolygonCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private final Model receiver;
-    /** The list of points (x,y coordinates) that define the polygon vertices. */
-    private List<Double> currentPoints;
-    /** The color pickers for border and fill colors of the polygon. */
-    private final ColorPicker borderColorPicker, fillColorPicker;
+    /** The coordinates of the polygon vertices, as x0, y0, x1, y1, ... */
+    private double[] currentPoints;
+    /** The border and fill colors of the polygon. */
+    private final Color border, fill;
+    /** The polygon created by the first execution, removed by undo and added back on redo. */
+    private ShapeInterface shape;
 
     /**
      * Constructs a DrawPolygonCommand.
      * @param receiver the model that will execute the command
-     * @param currentPoints the list of coordinates defining the polygon vertices
-     * @param borderColorPicker the color picker for the polygon border
-     * @param fillColorPicker the color picker for the polygon fill
+     * @param currentPoints the coordinates of the polygon vertices, as x0, y0, x1, y1, ...
+     * @param border the border color of the polygon
+     * @param fill the fill color of the polygon
      */
-    public DrawPolygonCommand(Model receiver, List<Double> currentPoints, ColorPicker borderColorPicker, ColorPicker fillColorPicker) {
+    public DrawPolygonCommand(Model receiver, double[] currentPoints, Color border, Color fill) {
         this.receiver = receiver;
-        this.borderColorPicker = borderColorPicker;
-        this.fillColorPicker = fillColorPicker;
+        this.border = border;
+        this.fill = fill;
         this.currentPoints = currentPoints;
     }
 
@@ -37,17 +40,20 @@ public class DrawPolygonCommand implements CommandInterface {
      */
     @Override
     public void execute() {
-        receiver.createPolygon(currentPoints, borderColorPicker.getValue(), fillColorPicker.getValue());
+        if (shape != null) {
+            receiver.addShape(shape);
+            return;
+        }
+        shape = receiver.createPolygon(currentPoints, border, fill);
     }
 
     /**
-     * Undoes the command, removing the last added polygon from the model.
+     * Undoes the command, removing the created polygon from the model.
      */
     @Override
     public void undo() {
-        int count = receiver.getPane().getChildren().size();
-        if (count > 0) {
-            receiver.getPane().getChildren().remove(count - 1);
+        if (shape != null) {
+            receiver.removeShape(shape);
         }
     }
 }
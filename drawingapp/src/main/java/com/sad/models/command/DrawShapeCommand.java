@@ -1,6 +1,8 @@
 package com.sad.models.command;
 
 import com.sad.models.Model;
+import com.sad.models.shapes.ShapeInterface;
+
 import javafx.scene.paint.Color;
 
 /**
@@ -8,6 +10,8 @@ import javafx.scene.paint.Color;
  * Implements the Command design pattern, allowing execution and undo operations.
  */
 public class DrawShapeCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private final Model receiver;
     /** The X coordinate where the shape will be drawn. */
@@ -18,6 +22,8 @@ public class DrawShapeCommand implements CommandInterface {
     private final Color border;
     /** The fill color of the new shape. */
     private final Color fill;
+    /** The shape created by the first execution, removed by undo and added back on redo. */
+    private ShapeInterface shape;
     
     /**
      * Constructs a DrawShapeCommand.
@@ -37,20 +43,24 @@ public class DrawShapeCommand implements CommandInterface {
 
     /**
      * Executes the command, creating a new shape in the model.
+     * After an undo, the same shape is added back instead.
      */
     @Override
     public void execute() {
-        receiver.createShape(this.x, this.y, 0, 0, this.border, this.fill);
+        if (shape != null) {
+            receiver.addShape(shape);
+            return;
+        }
+        shape = receiver.createShape(this.x, this.y, 0, 0, this.border, this.fill);
     }
 
     /**
-     * Undoes the command, removing the last added shape from the model.
+     * Undoes the command, removing the created shape from the model.
      */
     @Override
     public void undo() {
-        int count = receiver.getPane().getChildren().size();
-        if (count > 0) {
-            receiver.getPane().getChildren().remove(count - 1);
+        if (shape != null) {
+            receiver.removeShape(shape);
         }
     }
 
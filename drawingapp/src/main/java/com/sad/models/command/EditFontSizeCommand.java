@@ -9,12 +9,14 @@ import com.sad.models.shapes.ConcreteText;
  * Stores both the new and old font sizes to support undo functionality.
  */
 public class EditFontSizeCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private Model receiver;
     /** The text shape whose font size will be modified. */
     private final ConcreteText textShape;
     /** The new font size to apply. */
-    private final double newSize;
+    private double newSize;
     /** The original font size, stored for undo operations. */
     private final double oldSize;
 
@@ -46,4 +48,18 @@ public class EditFontSizeCommand implements CommandInterface {
     public void undo() {
         receiver.editFontSize(textShape, oldSize);
     }
+
+    /**
+     * Merges a later font size change of the same text shape, keeping the size to restore on undo.
+     * @param next The command executed after this one.
+     * @return True if the next command changes the font size of the same text shape.
+     */
+    @Override
+    public boolean mergeWith(CommandInterface next) {
+        if (!(next instanceof EditFontSizeCommand) || ((EditFontSizeCommand) next).textShape != textShape) {
+            return false;
+        }
+        newSize = ((EditFontSizeCommand) next).newSize;
+        return true;
+    }
 }
@@ -9,6 +9,8 @@ import com.sad.models.shapes.ConcreteText;
  * Stores both the new and old text content to support undo functionality.
  */
 public class EditTextCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private Model receiver;
     /** The text shape whose content will be modified. */
@@ -3,15 +3,24 @@ package com.sad.models.command;
 import com.sad.models.Model;
 import com.sad.models.shapes.ShapeInterface;
 
+import javafx.scene.paint.Color;
+
 /**
  * Command to insert a text shape into the model.
  * Implements the Command design pattern, allowing execution and undo operations.
  */
 public class InsertTextCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private Model receiver;
     /** The new text shape to be inserted. */
     private ShapeInterface newText;
+    /** The position and colors of the shape before undo, restored on redo. */
+    private double removedX, removedY;
+    private Color removedBorder, removedFill;
+    /** True once the command has been undone. */
+    private boolean undone = false;
 
     /**
      * Constructs an InsertTextCommand.
@@ -25,9 +34,17 @@ public class InsertTextCommand implements CommandInterface {
 
     /**
      * Executes the command, adding the text shape to the model.
+     * After an undo, the position and colors of the text are restored first.
      */
     @Override
     public void execute() {
+        if (undone && newText != null) {
+            newText.setX(removedX);
+            newText.setY(removedY);
+            newText.setBorderColor(removedBorder);
+            newText.setFillColor(removedFill);
+            undone = false;
+        }
         receiver.addShape(newText);
     }
 
@@ -37,6 +54,11 @@ public class InsertTextCommand implements CommandInterface {
     @Override
     public void undo() {
         if (newText != null) {
+            removedX = newText.getX();
+            removedY = newText.getY();
+            removedBorder = newText.getBorderColor();
+            removedFill = newText.getFillColor();
+            undone = true;
             receiver.deleteShape(newText);
         }
     }
@@ -0,0 +1,97 @@
+package com.sad.models.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.sad.models.Model;
+
+/**
+ * Command grouping several commands into one, so that a bulk edit on many shapes
+ * is executed, recorded and undone as a single step.
+ * Implements the Composite design pattern on top of the Command design pattern.
+ * The children run inside a batch of the model, so that each shape they touch is
+ * re-indexed once with its final bounds rather than after every intermediate change.
+ */
+public class MacroCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
+    /** The model that acts as the receiver of the command. */
+    private final Model receiver;
+    /** The child commands, in execution order. */
+    private final ArrayList<CommandInterface> commands = new ArrayList<>();
+
+    /**
+     * Constructs an empty MacroCommand.
+     * @param receiver the model the child commands act on
+     */
+    public MacroCommand(Model receiver) {
+        this.receiver = receiver;
+    }
+
+    /**
+     * Constructs a MacroCommand from a list of commands.
+     * @param receiver the model the child commands act on
+     * @param commands the child commands, in execution order
+     */
+    public MacroCommand(Model receiver, List<? extends CommandInterface> commands) {
+        this(receiver);
+        this.commands.addAll(commands);
+    }
+
+    /**
+     * Appends a child command; it runs after the ones already added.
+     * @param command the command to add
+     */
+    public void add(CommandInterface command) {
+        if (command != null) {
+            commands.add(command);
+        }
+    }
+
+    /**
+     * Gets the child commands.
+     * @return an unmodifiable view of the commands, in execution order
+     */
+    public List<CommandInterface> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    /**
+     * Checks whether the macro has any child command.
+     * @return true if executing it would do nothing
+     */
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Executes every child command in order, as a single batch of the model.
+     */
+    @Override
+    public void execute() {
+        receiver.beginBatch();
+        try {
+            for (CommandInterface command : commands) {
+                command.execute();
+            }
+        } finally {
+            receiver.endBatch();
+        }
+    }
+
+    /**
+     * Undoes every child command in reverse order, as a single batch of the model.
+     */
+    @Override
+    public void undo() {
+        receiver.beginBatch();
+        try {
+            for (int i = commands.size() - 1; i >= 0; i--) {
+                commands.get(i).undo();
+            }
+        } finally {
+            receiver.endBatch();
+        }
+    }
+}
@@ -8,6 +8,8 @@ import com.sad.models.shapes.ShapeInterface;
  * Implements the Command design pattern, allowing execution and undo operations.
  */
 public class MirrorYShapeCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private final Model receiver;
     /** The shape to be mirrored. */
@@ -9,6 +9,8 @@ import com.sad.models.shapes.ShapeInterface;
  * Stores the initial and final coordinates to support undo functionality.
  */
 public class MoveShapeCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private Model receiver;
     /** The shape to be moved. */
@@ -49,4 +51,18 @@ public class MoveShapeCommand implements CommandInterface {
         if(shape == null) { return; }
         receiver.moveShape(shape, initialCoords);
     }
+
+    /**
+     * Merges a later move of the same shape, keeping the coordinates to restore on undo.
+     * @param next The command executed after this one.
+     * @return True if the next command moves the same shape.
+     */
+    @Override
+    public boolean mergeWith(CommandInterface next) {
+        if (shape == null || !(next instanceof MoveShapeCommand) || ((MoveShapeCommand) next).shape != shape) {
+            return false;
+        }
+        finalCoords = ((MoveShapeCommand) next).finalCoords;
+        return true;
+    }
 }
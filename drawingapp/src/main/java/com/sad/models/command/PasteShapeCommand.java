@@ -3,17 +3,24 @@ package com.sad.models.command;
 import com.sad.models.Model;
 import com.sad.models.shapes.ShapeInterface;
 
+import javafx.scene.paint.Color;
+
 /**
  * Command to paste a shape at a specific position in the model.
  * Implements the Command design pattern, allowing execution and undo operations.
  */
 public class PasteShapeCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private Model receiver;
     /** The X coordinate where the shape will be pasted. */
     private double x, y;
     /** The newly pasted shape, used for undo. */
     private ShapeInterface newShape;
+    /** The position and colors of the shape before undo, restored on redo. */
+    private double removedX, removedY;
+    private Color removedBorder, removedFill;
 
     /**
      * Constructs a PasteShapeCommand.
@@ -29,10 +36,19 @@ public class PasteShapeCommand implements CommandInterface {
 
     /**
      * Executes the command, pasting the shape at the specified coordinates.
+     * After an undo, the same shape is added back instead of pasting a new copy.
      */
     @Override
     public void execute() {
-        newShape = receiver.pasteShape(x, y);       
+        if (newShape != null) {
+            newShape.setX(removedX);
+            newShape.setY(removedY);
+            newShape.setBorderColor(removedBorder);
+            newShape.setFillColor(removedFill);
+            receiver.addShape(newShape);
+            return;
+        }
+        newShape = receiver.pasteShape(x, y);
     }
 
     /**
@@ -41,6 +57,10 @@ public class PasteShapeCommand implements CommandInterface {
     @Override
     public void undo() {
         if (newShape != null) {
+            removedX = newShape.getX();
+            removedY = newShape.getY();
+            removedBorder = newShape.getBorderColor();
+            removedFill = newShape.getFillColor();
             receiver.deleteShape(newShape);
         }
     }
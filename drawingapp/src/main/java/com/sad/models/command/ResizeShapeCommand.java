@@ -9,6 +9,8 @@ import com.sad.models.shapes.ShapeInterface;
  * Stores the original dimensions to support undo functionality.
  */
 public class ResizeShapeCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private Model receiver;
     /** The shape to be resized. */
@@ -9,12 +9,14 @@ import com.sad.models.shapes.ShapeInterface;
  * Stores both the new and old rotation angles to support undo functionality.
  */
 public class RotateShapeCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private final Model receiver;
     /** The shape to be rotated. */
     private final ShapeInterface shape;
     /** The new rotation angle to apply. */
-    private final double newAngle;
+    private double newAngle;
     /** The original rotation angle, stored for undo operations. */
     private final double oldAngle;
 
@@ -46,4 +48,18 @@ public class RotateShapeCommand implements CommandInterface {
     public void undo() {
         receiver.rotateShape(shape, oldAngle);
     }
+
+    /**
+     * Merges a later rotation of the same shape, keeping the angle to restore on undo.
+     * @param next The command executed after this one.
+     * @return True if the next command rotates the same shape.
+     */
+    @Override
+    public boolean mergeWith(CommandInterface next) {
+        if (!(next instanceof RotateShapeCommand) || ((RotateShapeCommand) next).shape != shape) {
+            return false;
+        }
+        newAngle = ((RotateShapeCommand) next).newAngle;
+        return true;
+    }
 }
@@ -7,6 +7,8 @@ import com.sad.models.Model;
  * Implements the CommandInterface.
  */
 public class SaveCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
     /** The model that acts as the receiver of the command. */
     private final Model receiver;
 
@@ -0,0 +1,48 @@
+package com.sad.models.command;
+
+import com.sad.models.Model;
+import com.sad.models.shapes.ShapeInterface;
+
+/**
+ * Command to move a specific shape one step down in z-order in the model.
+ * Implements the Command design pattern, allowing execution and undo operations.
+ */
+public class SendBackwardCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
+    /** The model that acts as the receiver of the command. */
+    private Model receiver;
+    /** The shape to be moved backward. */
+    private ShapeInterface shape;
+    /** True if the execution moved the shape, so that undoing must move it back. */
+    private boolean moved = false;
+
+    /**
+     * Constructs a SendBackwardCommand.
+     * @param receiver the model that will execute the command
+     * @param shape the shape to move backward
+     */
+    public SendBackwardCommand(Model receiver, ShapeInterface shape) {
+        this.receiver = receiver;
+        this.shape = shape;
+    }
+
+    /**
+     * Executes the command, moving the shape below the shape just under it.
+     */
+    @Override
+    public void execute() {
+        moved = receiver.sendShapeBackward(shape);
+    }
+
+    /**
+     * Undoes the command, moving the shape back one step if it moved.
+     */
+    @Override
+    public void undo() {
+        if (moved) {
+            receiver.bringShapeForward(shape);
+            moved = false;
+        }
+    }
+}
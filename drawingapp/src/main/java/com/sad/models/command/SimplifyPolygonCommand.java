@@ -0,0 +1,91 @@
+package com.sad.models.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sad.models.Model;
+import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.PolygonSimplifier;
+
+/**
+ * Command to simplify the outlines of polygons in the model.
+ * Implements the Command design pattern, allowing execution and undo operations.
+ * The simplified vertices are computed on the first execution and reused on redo.
+ */
+public class SimplifyPolygonCommand implements CommandInterface {
+    /** Serialization version of the spilled form, see {@link CommandHistory}. */
+    private static final long serialVersionUID = 1L;
+    /** The model that acts as the receiver of the command. */
+    private final Model receiver;
+    /** The polygons to simplify. */
+    private final List<ConcretePolygon> polygons;
+    /** The largest distance between a dropped vertex and the simplified outline. */
+    private final double tolerance;
+    /** The vertices of each polygon before the command, or null before the first execution. */
+    private List<double[]> before = null;
+    /** The vertices of each polygon after the command. */
+    private List<double[]> after = null;
+    /** Number of vertices removed by the command. */
+    private int removed = 0;
+
+    /**
+     * Constructs a SimplifyPolygonCommand.
+     * @param receiver the model that will execute the command
+     * @param polygons the polygons to simplify
+     * @param tolerance the largest distance between a dropped vertex and the simplified outline
+     */
+    public SimplifyPolygonCommand(Model receiver, List<ConcretePolygon> polygons, double tolerance) {
+        this.receiver = receiver;
+        this.polygons = new ArrayList<>(polygons);
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Executes the command, replacing the vertices of every polygon with their simplification.
+     */
+    @Override
+    public void execute() {
+        if (before == null) {
+            before = new ArrayList<>(polygons.size());
+            after = new ArrayList<>(polygons.size());
+            for (ConcretePolygon polygon : polygons) {
+                double[] points = polygon.getPoints();
+                double[] simplified = PolygonSimplifier.simplify(points, tolerance);
+                before.add(points);
+                after.add(simplified);
+                removed += (points.length - simplified.length) / 2;
+            }
+        }
+        apply(after);
+    }
+
+    /**
+     * Undoes the command, restoring the original vertices of every polygon.
+     */
+    @Override
+    public void undo() {
+        if (before != null) {
+            apply(before);
+        }
+    }
+
+    /**
+     * Gets the number of vertices removed by the command.
+     * @return The number of vertices removed from all polygons, 0 before the first execution.
+     */
+    public int getRemovedVertexCount() {
+        return removed;
+    }
+
+    /**
+     * Sets the vertices of the polygons whose vertex count changes.
+     * @param points The vertices of each polygon.
+     */
+    private void apply(List<double[]> points) {
+        for (int i = 0; i < polygons.size(); i++) {
+            if (before.get(i).length != after.get(i).length) {
+                receiver.setPolygonPoints(polygons.get(i), points.get(i));
+            }
+        }
+    }
+}
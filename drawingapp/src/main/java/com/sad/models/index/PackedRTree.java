@@ -0,0 +1,149 @@
+package com.sad.models.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Read-only R-tree over a fixed set of boxes identified by their index.
+ * The tree is bulk-loaded with the Sort-Tile-Recursive algorithm and stored in flat
+ * arrays, so it costs a few bytes per box and no object per item. It suits data that
+ * never changes, such as the records of a memory-mapped document.
+ */
+public final class PackedRTree {
+    /** Number of children of each node. */
+    private static final int NODE_SIZE = 16;
+    /** Number of values per box: min x, min y, max x, max y. */
+    private static final int STRIDE = 4;
+
+    /** Item indices in leaf order. */
+    private final int[] items;
+    /** Boxes of each level, starting with the items in leaf order and ending with the root. */
+    private final float[][] levels;
+
+    /**
+     * Creates the tree from its arrays.
+     * @param items The item indices in leaf order.
+     * @param levels The boxes of each level.
+     */
+    private PackedRTree(int[] items, float[][] levels) {
+        this.items = items;
+        this.levels = levels;
+    }
+
+    /**
+     * Builds a tree over a set of boxes.
+     * @param bounds The boxes, four values per item: min x, min y, max x, max y.
+     * @return The tree; item {@code i} is the box starting at {@code bounds[4 * i]}.
+     */
+    public static PackedRTree build(float[] bounds) {
+        int count = bounds.length / STRIDE;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = sortKey(bounds[i * STRIDE] + bounds[i * STRIDE + 2], i);
+        }
+        Arrays.sort(keys);
+
+        // Tile the items into vertical slices, then sort every slice by y.
+        int leaves = (count + NODE_SIZE - 1) / NODE_SIZE;
+        int sliceSize = (int) Math.ceil(Math.sqrt(leaves)) * NODE_SIZE;
+        for (int start = 0; start < count; start += sliceSize) {
+            int end = Math.min(start + sliceSize, count);
+            for (int k = start; k < end; k++) {
+                int i = (int) keys[k];
+                keys[k] = sortKey(bounds[i * STRIDE + 1] + bounds[i * STRIDE + 3], i);
+            }
+            Arrays.sort(keys, start, end);
+        }
+
+        int[] items = new int[count];
+        float[] leafLevel = new float[count * STRIDE];
+        for (int k = 0; k < count; k++) {
+            items[k] = (int) keys[k];
+            System.arraycopy(bounds, items[k] * STRIDE, leafLevel, k * STRIDE, STRIDE);
+        }
+
+        float[][] levels = new float[1][];
+        levels[0] = leafLevel;
+        float[] level = leafLevel;
+        while (level.length > STRIDE) {
+            int children = level.length / STRIDE;
+            int nodes = (children + NODE_SIZE - 1) / NODE_SIZE;
+            float[] parent = new float[nodes * STRIDE];
+            for (int n = 0; n < nodes; n++) {
+                float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+                float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+                int end = Math.min((n + 1) * NODE_SIZE, children);
+                for (int c = n * NODE_SIZE; c < end; c++) {
+                    minX = Math.min(minX, level[c * STRIDE]);
+                    minY = Math.min(minY, level[c * STRIDE + 1]);
+                    maxX = Math.max(maxX, level[c * STRIDE + 2]);
+                    maxY = Math.max(maxY, level[c * STRIDE + 3]);
+                }
+                parent[n * STRIDE] = minX;
+                parent[n * STRIDE + 1] = minY;
+                parent[n * STRIDE + 2] = maxX;
+                parent[n * STRIDE + 3] = maxY;
+            }
+            levels = Arrays.copyOf(levels, levels.length + 1);
+            levels[levels.length - 1] = parent;
+            level = parent;
+        }
+        return new PackedRTree(items, levels);
+    }
+
+    /**
+     * Packs a float sort key and an index into a long that sorts by key.
+     * @param key The sort key.
+     * @param index The item index, kept in the low 32 bits.
+     * @return The packed key.
+     */
+    private static long sortKey(float key, int index) {
+        int bits = Float.floatToIntBits(key);
+        bits ^= (bits >> 31) & 0x7FFFFFFF;
+        return ((long) bits << 32) | (index & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the number of items in the tree.
+     * @return The number of items.
+     */
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Reports every item whose box intersects a region.
+     * @param minX The left edge of the region.
+     * @param minY The top edge of the region.
+     * @param maxX The right edge of the region.
+     * @param maxY The bottom edge of the region.
+     * @param action Receives the index of each intersecting item, in no particular order.
+     */
+    public void search(double minX, double minY, double maxX, double maxY, IntConsumer action) {
+        if (items.length > 0) {
+            search(levels.length - 1, 0, minX, minY, maxX, maxY, action);
+        }
+    }
+
+    /**
+     * Recursive part of the search.
+     * @param depth The level of the node.
+     * @param node The index of the node in its level.
+     */
+    private void search(int depth, int node, double minX, double minY, double maxX, double maxY, IntConsumer action) {
+        float[] level = levels[depth];
+        int at = node * STRIDE;
+        if (level[at] > maxX || level[at + 2] < minX || level[at + 1] > maxY || level[at + 3] < minY) {
+            return;
+        }
+        if (depth == 0) {
+            action.accept(items[node]);
+            return;
+        }
+        int childCount = levels[depth - 1].length / STRIDE;
+        int end = Math.min((node + 1) * NODE_SIZE, childCount);
+        for (int child = node * NODE_SIZE; child < end; child++) {
+            search(depth - 1, child, minX, minY, maxX, maxY, action);
+        }
+    }
+}
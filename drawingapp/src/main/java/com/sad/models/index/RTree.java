@@ -0,0 +1,432 @@
+package com.sad.models.index;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * R-tree over the axis-aligned bounding boxes of a set of items.
+ * Items are compared by identity. Insertion follows Guttman's algorithm with a quadratic
+ * split; every item keeps a reference to its leaf, so updates and removals do not need
+ * to search the tree. Queries visit only the nodes whose box intersects the query region,
+ * which takes logarithmic time for the small regions used by hit-testing and culling.
+ * @param <T> The type of the indexed items.
+ */
+public class RTree<T> {
+    /** Maximum number of children of a node. */
+    private static final int MAX_ENTRIES = 16;
+    /** Minimum number of children of a node other than the root. */
+    private static final int MIN_ENTRIES = 6;
+
+    /**
+     * Axis-aligned box shared by nodes and entries.
+     */
+    private abstract static class Box {
+        double minX, minY, maxX, maxY;
+        /** The node containing this box, or null for the root. */
+        Node parent;
+
+        /**
+         * Computes the area of the box.
+         * @return The area.
+         */
+        double area() {
+            return (maxX - minX) * (maxY - minY);
+        }
+
+        /**
+         * Computes the area of the smallest box containing this box and another one.
+         * @param other The other box.
+         * @return The area of the union.
+         */
+        double unionArea(Box other) {
+            return (Math.max(maxX, other.maxX) - Math.min(minX, other.minX))
+                    * (Math.max(maxY, other.maxY) - Math.min(minY, other.minY));
+        }
+
+        /**
+         * Checks whether this box intersects a region.
+         * @return True if the box and the region overlap or touch.
+         */
+        boolean intersects(double x1, double y1, double x2, double y2) {
+            return minX <= x2 && maxX >= x1 && minY <= y2 && maxY >= y1;
+        }
+
+        /**
+         * Checks whether this box contains a region.
+         * @return True if the region lies entirely inside the box.
+         */
+        boolean contains(double x1, double y1, double x2, double y2) {
+            return minX <= x1 && maxX >= x2 && minY <= y1 && maxY >= y2;
+        }
+    }
+
+    /**
+     * A node of the tree; the children of a leaf are entries.
+     */
+    private static final class Node extends Box {
+        final boolean leaf;
+        final List<Box> children = new ArrayList<>(MAX_ENTRIES + 1);
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        /**
+         * Recomputes the box of the node from its children.
+         */
+        void recomputeBounds() {
+            minX = minY = Double.POSITIVE_INFINITY;
+            maxX = maxY = Double.NEGATIVE_INFINITY;
+            for (Box child : children) {
+                include(child);
+            }
+        }
+
+        /**
+         * Enlarges the box of the node to contain another box.
+         * @param box The box to include.
+         */
+        void include(Box box) {
+            minX = Math.min(minX, box.minX);
+            minY = Math.min(minY, box.minY);
+            maxX = Math.max(maxX, box.maxX);
+            maxY = Math.max(maxY, box.maxY);
+        }
+
+        /**
+         * Adds a child and updates the box of the node.
+         * @param child The child to add.
+         */
+        void add(Box child) {
+            if (children.isEmpty()) {
+                minX = child.minX;
+                minY = child.minY;
+                maxX = child.maxX;
+                maxY = child.maxY;
+            } else {
+                include(child);
+            }
+            children.add(child);
+            child.parent = this;
+        }
+    }
+
+    /**
+     * A leaf entry holding one item.
+     * @param <T> The type of the item.
+     */
+    private static final class Entry<T> extends Box {
+        final T item;
+
+        Entry(T item) {
+            this.item = item;
+        }
+    }
+
+    /** The root of the tree. */
+    private Node root = new Node(true);
+    /** The entry of each indexed item. */
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+
+    /**
+     * Gets the number of indexed items.
+     * @return The number of items.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Checks whether an item is indexed.
+     * @param item The item to look for.
+     * @return True if the item is in the tree.
+     */
+    public boolean contains(T item) {
+        return entries.containsKey(item);
+    }
+
+    /**
+     * Removes every item from the tree.
+     */
+    public void clear() {
+        root = new Node(true);
+        entries.clear();
+    }
+
+    /**
+     * Inserts an item, or moves it if it is already indexed.
+     * @param item The item to index.
+     * @param minX The left edge of its box.
+     * @param minY The top edge of its box.
+     * @param maxX The right edge of its box.
+     * @param maxY The bottom edge of its box.
+     */
+    public void insert(T item, double minX, double minY, double maxX, double maxY) {
+        Entry<T> entry = entries.get(item);
+        if (entry != null) {
+            update(entry, minX, minY, maxX, maxY);
+            return;
+        }
+        entry = new Entry<>(item);
+        setBounds(entry, minX, minY, maxX, maxY);
+        entries.put(item, entry);
+        insertEntry(entry);
+    }
+
+    /**
+     * Removes an item from the tree.
+     * @param item The item to remove.
+     * @return True if the item was indexed.
+     */
+    public boolean remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null) {
+            return false;
+        }
+        Node leaf = entry.parent;
+        leaf.children.remove(entry);
+        entry.parent = null;
+        condense(leaf);
+        return true;
+    }
+
+    /**
+     * Reports every item whose box intersects a region.
+     * @param minX The left edge of the region.
+     * @param minY The top edge of the region.
+     * @param maxX The right edge of the region.
+     * @param maxY The bottom edge of the region.
+     * @param action Receives each intersecting item, in no particular order.
+     */
+    public void search(double minX, double minY, double maxX, double maxY, Consumer<? super T> action) {
+        if (!root.children.isEmpty()) {
+            search(root, minX, minY, maxX, maxY, action);
+        }
+    }
+
+    /**
+     * Collects the items whose box intersects a region.
+     * @param minX The left edge of the region.
+     * @param minY The top edge of the region.
+     * @param maxX The right edge of the region.
+     * @param maxY The bottom edge of the region.
+     * @return The intersecting items, in no particular order.
+     */
+    public List<T> search(double minX, double minY, double maxX, double maxY) {
+        List<T> result = new ArrayList<>();
+        search(minX, minY, maxX, maxY, result::add);
+        return result;
+    }
+
+    /**
+     * Recursive part of the search.
+     */
+    @SuppressWarnings("unchecked")
+    private void search(Node node, double minX, double minY, double maxX, double maxY, Consumer<? super T> action) {
+        for (Box child : node.children) {
+            if (child.intersects(minX, minY, maxX, maxY)) {
+                if (node.leaf) {
+                    action.accept(((Entry<T>) child).item);
+                } else {
+                    search((Node) child, minX, minY, maxX, maxY, action);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves an entry. If the new box still fits in the leaf, only the entry is updated.
+     */
+    private void update(Entry<T> entry, double minX, double minY, double maxX, double maxY) {
+        Node leaf = entry.parent;
+        if (leaf.contains(minX, minY, maxX, maxY)) {
+            setBounds(entry, minX, minY, maxX, maxY);
+            return;
+        }
+        leaf.children.remove(entry);
+        condense(leaf);
+        setBounds(entry, minX, minY, maxX, maxY);
+        insertEntry(entry);
+    }
+
+    /**
+     * Sets the box of an entry, normalising inverted coordinates.
+     */
+    private static void setBounds(Box box, double minX, double minY, double maxX, double maxY) {
+        box.minX = Math.min(minX, maxX);
+        box.minY = Math.min(minY, maxY);
+        box.maxX = Math.max(minX, maxX);
+        box.maxY = Math.max(minY, maxY);
+    }
+
+    /**
+     * Inserts an entry at the leaf level.
+     * @param entry The entry to insert.
+     */
+    private void insertEntry(Entry<T> entry) {
+        Node leaf = chooseLeaf(entry);
+        leaf.add(entry);
+        adjust(leaf);
+    }
+
+    /**
+     * Descends from the root along the child needing the least enlargement.
+     * @param box The box to insert.
+     * @return The leaf that should receive the box.
+     */
+    private Node chooseLeaf(Box box) {
+        Node node = root;
+        while (!node.leaf) {
+            Node best = null;
+            double bestEnlargement = Double.POSITIVE_INFINITY;
+            double bestArea = Double.POSITIVE_INFINITY;
+            for (Box child : node.children) {
+                double area = child.area();
+                double enlargement = child.unionArea(box) - area;
+                if (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+                    best = (Node) child;
+                    bestEnlargement = enlargement;
+                    bestArea = area;
+                }
+            }
+            node = best;
+        }
+        return node;
+    }
+
+    /**
+     * Splits overflowing nodes and enlarges boxes from a node up to the root.
+     * @param node The node that received a new child.
+     */
+    private void adjust(Node node) {
+        while (node != null) {
+            Node parent = node.parent;
+            if (node.children.size() > MAX_ENTRIES) {
+                Node sibling = split(node);
+                if (parent == null) {
+                    root = new Node(false);
+                    root.add(node);
+                    root.add(sibling);
+                    return;
+                }
+                parent.add(sibling);
+            }
+            if (parent != null) {
+                parent.include(node);
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * Splits a node in two with Guttman's quadratic algorithm.
+     * @param node The overflowing node; keeps one of the two groups.
+     * @return The new node holding the other group.
+     */
+    private Node split(Node node) {
+        List<Box> boxes = new ArrayList<>(node.children);
+        int seedA = 0;
+        int seedB = 1;
+        double worstWaste = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < boxes.size(); i++) {
+            for (int j = i + 1; j < boxes.size(); j++) {
+                Box a = boxes.get(i);
+                Box b = boxes.get(j);
+                double waste = a.unionArea(b) - a.area() - b.area();
+                if (waste > worstWaste) {
+                    worstWaste = waste;
+                    seedA = i;
+                    seedB = j;
+                }
+            }
+        }
+
+        Node sibling = new Node(node.leaf);
+        node.children.clear();
+        Box first = boxes.get(seedA);
+        Box second = boxes.get(seedB);
+        boxes.remove(seedB);
+        boxes.remove(seedA);
+        node.add(first);
+        sibling.add(second);
+
+        while (!boxes.isEmpty()) {
+            if (node.children.size() + boxes.size() == MIN_ENTRIES) {
+                boxes.forEach(node::add);
+                break;
+            }
+            if (sibling.children.size() + boxes.size() == MIN_ENTRIES) {
+                boxes.forEach(sibling::add);
+                break;
+            }
+            int next = 0;
+            double bestDifference = -1;
+            double growA = 0;
+            double growB = 0;
+            for (int i = 0; i < boxes.size(); i++) {
+                Box box = boxes.get(i);
+                double a = node.unionArea(box) - node.area();
+                double b = sibling.unionArea(box) - sibling.area();
+                if (Math.abs(a - b) > bestDifference) {
+                    bestDifference = Math.abs(a - b);
+                    next = i;
+                    growA = a;
+                    growB = b;
+                }
+            }
+            Box box = boxes.remove(next);
+            boolean toNode = growA < growB
+                    || (growA == growB && node.children.size() <= sibling.children.size());
+            (toNode ? node : sibling).add(box);
+        }
+        return sibling;
+    }
+
+    /**
+     * Removes underfull nodes from a leaf up to the root, reinserting their entries,
+     * and tightens the boxes along the way.
+     * @param leaf The leaf that lost an entry.
+     */
+    private void condense(Node leaf) {
+        List<Entry<T>> orphans = new ArrayList<>();
+        Node node = leaf;
+        while (node.parent != null) {
+            Node parent = node.parent;
+            if (node.children.size() < MIN_ENTRIES) {
+                parent.children.remove(node);
+                collectEntries(node, orphans);
+            } else {
+                node.recomputeBounds();
+            }
+            node = parent;
+        }
+        root.recomputeBounds();
+        while (!root.leaf && root.children.size() == 1) {
+            root = (Node) root.children.get(0);
+            root.parent = null;
+        }
+        if (!root.leaf && root.children.isEmpty()) {
+            root = new Node(true);
+        }
+        for (Entry<T> orphan : orphans) {
+            insertEntry(orphan);
+        }
+    }
+
+    /**
+     * Collects the entries below a node.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void collectEntries(Node node, List<Entry<T>> out) {
+        for (Box child : node.children) {
+            if (node.leaf) {
+                out.add((Entry<T>) child);
+            } else {
+                collectEntries((Node) child, out);
+            }
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package com.sad.models.index;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * List of distinct items in z-order, bottom first, with logarithmic rank queries and moves.
+ * Items are compared by identity. The list is an implicit treap: each tree node stores the size
+ * of its subtree, so that the item at a position is found by descending from the root, and keeps
+ * a reference to its parent, so that the position of an item is found by climbing from its node.
+ * Every item keeps a reference to its tree node, so removing or moving an item needs no search.
+ * Positional access, insertion, removal, {@link #rankOf(Object)} and {@link #move(Object, int)}
+ * take logarithmic time; iteration takes constant amortized time per item.
+ * @param <T> The type of the ordered items.
+ */
+public class ZOrderIndex<T> extends AbstractList<T> {
+
+    /**
+     * A node of the treap, holding one item.
+     * @param <T> The type of the item.
+     */
+    private static final class Node<T> {
+        T item;
+        final int priority;
+        int size = 1;
+        Node<T> left, right, parent;
+
+        Node(T item, int priority) {
+            this.item = item;
+            this.priority = priority;
+        }
+    }
+
+    /** The root of the treap, or null if the list is empty. */
+    private Node<T> root = null;
+    /** The tree node of every item. */
+    private final Map<T, Node<T>> nodes = new IdentityHashMap<>();
+    /** State of the generator of priorities; fixed, so that the tree shape is reproducible. */
+    private int seed = 0x2545F491;
+    /** Left part produced by the last {@link #split(Node, int)}. */
+    private Node<T> splitLeft;
+    /** Right part produced by the last {@link #split(Node, int)}. */
+    private Node<T> splitRight;
+
+    /**
+     * Gets the number of items.
+     * @return The size of the list.
+     */
+    @Override
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    /**
+     * Gets the item at a position.
+     * @param index The position, 0 being the bottom.
+     * @return The item.
+     * @throws IndexOutOfBoundsException if the position is outside the list.
+     */
+    @Override
+    public T get(int index) {
+        return nodeAt(index).item;
+    }
+
+    /**
+     * Replaces the item at a position.
+     * @param index The position.
+     * @param item The new item, which must not be in the list already.
+     * @return The replaced item.
+     * @throws IllegalArgumentException if the item is null or already in the list.
+     */
+    @Override
+    public T set(int index, T item) {
+        Node<T> node = nodeAt(index);
+        if (node.item == item) {
+            return item;
+        }
+        requireNew(item);
+        T previous = node.item;
+        nodes.remove(previous);
+        node.item = item;
+        nodes.put(item, node);
+        return previous;
+    }
+
+    /**
+     * Inserts an item at a position.
+     * @param index The position of the item once inserted.
+     * @param item The item, which must not be in the list already.
+     * @throws IllegalArgumentException if the item is null or already in the list.
+     */
+    @Override
+    public void add(int index, T item) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        requireNew(item);
+        Node<T> node = new Node<>(item, nextPriority());
+        nodes.put(item, node);
+        insertNode(index, node);
+        modCount++;
+    }
+
+    /**
+     * Removes the item at a position.
+     * @param index The position.
+     * @return The removed item.
+     */
+    @Override
+    public T remove(int index) {
+        Node<T> node = nodeAt(index);
+        removeNode(node);
+        nodes.remove(node.item);
+        modCount++;
+        return node.item;
+    }
+
+    /**
+     * Removes an item, in logarithmic time.
+     * @param item The item to remove.
+     * @return True if the item was in the list.
+     */
+    @Override
+    public boolean remove(Object item) {
+        Node<T> node = nodes.remove(item);
+        if (node == null) {
+            return false;
+        }
+        removeNode(node);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes the items matching a condition, in linear time, keeping the others in order.
+     * @param filter The condition of the items to remove.
+     * @return True if any item was removed.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        List<T> kept = new ArrayList<>(size());
+        for (T item : this) {
+            if (!filter.test(item)) {
+                kept.add(item);
+            }
+        }
+        if (kept.size() == size()) {
+            return false;
+        }
+        clear();
+        for (T item : kept) {
+            add(item);
+        }
+        return true;
+    }
+
+    /**
+     * Removes every item.
+     */
+    @Override
+    public void clear() {
+        root = null;
+        nodes.clear();
+        modCount++;
+    }
+
+    /**
+     * Checks whether an item is in the list, in constant time.
+     * @param item The item to look for.
+     * @return True if the item is in the list.
+     */
+    @Override
+    public boolean contains(Object item) {
+        return nodes.containsKey(item);
+    }
+
+    /**
+     * Finds the position of an item, in logarithmic time.
+     * @param item The item to look for.
+     * @return The position, or -1 if the item is not in the list.
+     */
+    @Override
+    public int indexOf(Object item) {
+        Node<T> node = nodes.get(item);
+        return node == null ? -1 : rankOf(node);
+    }
+
+    /**
+     * Finds the position of an item; items are distinct, so this is {@link #indexOf(Object)}.
+     * @param item The item to look for.
+     * @return The position, or -1 if the item is not in the list.
+     */
+    @Override
+    public int lastIndexOf(Object item) {
+        return indexOf(item);
+    }
+
+    /**
+     * Finds the position of an item in z-order, in logarithmic time.
+     * @param item The item to look for.
+     * @return The position, 0 being the bottom, or -1 if the item is not in the list.
+     */
+    public int rankOf(T item) {
+        return indexOf(item);
+    }
+
+    /**
+     * Moves an item to a new position, in logarithmic time.
+     * @param item An item of the list.
+     * @param index The position of the item once moved.
+     * @throws IllegalArgumentException if the item is not in the list.
+     */
+    public void move(T item, int index) {
+        Node<T> node = nodes.get(item);
+        if (node == null) {
+            throw new IllegalArgumentException("Item not in the index");
+        }
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        removeNode(node);
+        node.left = null;
+        node.right = null;
+        node.parent = null;
+        node.size = 1;
+        insertNode(index, node);
+        modCount++;
+    }
+
+    /**
+     * Iterates over the items bottom first, following the tree from node to node.
+     * @return The iterator, which supports removal.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private Node<T> next = root == null ? null : leftmost(root);
+            private Node<T> last = null;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = successor(next);
+                return last.item;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                ZOrderIndex.this.remove(last.item);
+                expectedModCount = modCount;
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Fails if an item cannot be added.
+     * @param item The item about to be added.
+     * @throws IllegalArgumentException if the item is null or already in the list.
+     */
+    private void requireNew(T item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Items must not be null");
+        }
+        if (nodes.containsKey(item)) {
+            throw new IllegalArgumentException("Item already in the index");
+        }
+    }
+
+    /**
+     * Draws the priority of a new node from a xorshift generator.
+     * @return The priority.
+     */
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    /**
+     * Finds the node at a position.
+     * @param index The position.
+     * @return The node.
+     * @throws IndexOutOfBoundsException if the position is outside the list.
+     */
+    private Node<T> nodeAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        Node<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Computes the position of a node by climbing to the root.
+     * @param node A node of the tree.
+     * @return The number of nodes before it.
+     */
+    private int rankOf(Node<T> node) {
+        int rank = size(node.left);
+        while (node.parent != null) {
+            if (node == node.parent.right) {
+                rank += size(node.parent.left) + 1;
+            }
+            node = node.parent;
+        }
+        return rank;
+    }
+
+    /**
+     * Inserts a detached node at a position.
+     * @param index The position of the node once inserted.
+     * @param node A node without children.
+     */
+    private void insertNode(int index, Node<T> node) {
+        split(root, index);
+        Node<T> right = splitRight;
+        root = merge(merge(splitLeft, node), right);
+        root.parent = null;
+    }
+
+    /**
+     * Unlinks a node from the tree, putting the merge of its children in its place.
+     * @param node A node of the tree.
+     */
+    private void removeNode(Node<T> node) {
+        Node<T> replacement = merge(node.left, node.right);
+        Node<T> parent = node.parent;
+        if (replacement != null) {
+            replacement.parent = parent;
+        }
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == node) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+        for (Node<T> ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.size--;
+        }
+    }
+
+    /**
+     * Splits a subtree into its first nodes and the others,
+     * leaving them in {@link #splitLeft} and {@link #splitRight}.
+     * @param node The root of the subtree, or null.
+     * @param count The number of nodes of the left part.
+     */
+    private void split(Node<T> node, int count) {
+        if (node == null) {
+            splitLeft = null;
+            splitRight = null;
+            return;
+        }
+        if (size(node.left) >= count) {
+            split(node.left, count);
+            node.left = splitRight;
+            update(node);
+            splitRight = node;
+        } else {
+            split(node.right, count - size(node.left) - 1);
+            node.right = splitLeft;
+            update(node);
+            splitLeft = node;
+        }
+        if (splitLeft != null) {
+            splitLeft.parent = null;
+        }
+        if (splitRight != null) {
+            splitRight.parent = null;
+        }
+    }
+
+    /**
+     * Concatenates two subtrees.
+     * @param left The subtree coming first, or null.
+     * @param right The subtree coming second, or null.
+     * @return The root of the concatenation.
+     */
+    private Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    /**
+     * Recomputes the size of a node and links its children back to it.
+     * @param node The node.
+     */
+    private static <T> void update(Node<T> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        if (node.left != null) {
+            node.left.parent = node;
+        }
+        if (node.right != null) {
+            node.right.parent = node;
+        }
+    }
+
+    /**
+     * Gets the size of a subtree.
+     * @param node The root of the subtree, or null.
+     * @return The number of nodes.
+     */
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Finds the first node of a subtree.
+     * @param node The root of the subtree.
+     * @return The leftmost node.
+     */
+    private static <T> Node<T> leftmost(Node<T> node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    /**
+     * Finds the node following another one.
+     * @param node A node of the tree.
+     * @return The next node, or null for the last one.
+     */
+    private static <T> Node<T> successor(Node<T> node) {
+        if (node.right != null) {
+            return leftmost(node.right);
+        }
+        while (node.parent != null && node == node.parent.right) {
+            node = node.parent;
+        }
+        return node.parent;
+    }
+}
@@ -0,0 +1,62 @@
+package com.sad.models.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sad.models.shapes.ShapeInterface;
+
+/**
+ * Writes document snapshots on a background thread.
+ * The caller hands over detached copies of the shapes, so editing can continue
+ * while the file is being written. Saves run one at a time, in submission order,
+ * and each one replaces the destination file only once it has been fully written.
+ */
+public class AsyncDocumentSaver {
+    /** The single worker thread that encodes and writes documents. */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "document-saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Schedules a snapshot to be written to a file.
+     * @param file The destination file.
+     * @param snapshot Detached shapes that will not be modified anymore.
+     * @return A future completed with the file once it has been written.
+     */
+    public CompletableFuture<File> save(File file, List<ShapeInterface> snapshot) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                write(file, snapshot);
+                return file;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Writes a snapshot to a temporary file and moves it over the destination.
+     * @param file The destination file.
+     * @param snapshot The shapes to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static void write(File file, List<ShapeInterface> snapshot) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            DocumentWriter.writeFile(temp, snapshot);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.sad.models.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Constants and helpers shared by the binary document format.
+ * A document starts with a header (magic number, format version, shape count)
+ * followed by one record per shape. Each record starts with a type tag and stores
+ * coordinates as primitives and colors packed as 32-bit ARGB integers.
+ * From version 2, the tag is followed by the stable id of the shape, as a 64-bit integer;
+ * version 1 documents are still read, their shapes getting new ids.
+ * From version 3, the content of a text is stored as an int byte length followed by its
+ * UTF-8 bytes; earlier versions used modified UTF-8 with a 16-bit length, which capped it.
+ */
+public final class DocumentFormat {
+    /** Magic number identifying a binary drawing document ("SADD"). */
+    public static final int MAGIC = 0x53414444;
+    /** The current version of the binary document format. */
+    public static final short VERSION = 3;
+    /** The first version of the format whose records store the id of their shape. */
+    public static final short VERSION_WITH_IDS = 2;
+    /** The first version of the format whose text records are not limited to 65,535 bytes of content. */
+    public static final short VERSION_WITH_LONG_TEXT = 3;
+
+    /** Record type tag for rectangles. */
+    public static final byte TAG_RECTANGLE = 1;
+    /** Record type tag for ellipses. */
+    public static final byte TAG_ELLIPSE = 2;
+    /** Record type tag for lines. */
+    public static final byte TAG_LINE = 3;
+    /** Record type tag for polygons. */
+    public static final byte TAG_POLYGON = 4;
+    /** Record type tag for texts. */
+    public static final byte TAG_TEXT = 5;
+
+    /** Flag set when a record stores a border color. */
+    private static final int HAS_BORDER = 1;
+    /** Flag set when a record stores a fill color. */
+    private static final int HAS_FILL = 2;
+
+    private DocumentFormat() {
+    }
+
+    /**
+     * Packs a color into a 32-bit ARGB integer.
+     * @param color The color to pack.
+     * @return The packed ARGB value.
+     */
+    public static int toArgb(Color color) {
+        int a = (int) Math.round(color.getOpacity() * 255);
+        int r = (int) Math.round(color.getRed() * 255);
+        int g = (int) Math.round(color.getGreen() * 255);
+        int b = (int) Math.round(color.getBlue() * 255);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Unpacks a 32-bit ARGB integer into a color.
+     * @param argb The packed ARGB value.
+     * @return The corresponding Color object.
+     */
+    public static Color fromArgb(int argb) {
+        return Color.rgb((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, ((argb >>> 24) & 0xFF) / 255.0);
+    }
+
+    /**
+     * Writes the border and fill colors of a record.
+     * A flag byte tells which colors are present, so null colors take no space.
+     * @param out The DataOutput to write to.
+     * @param border The border color, may be null.
+     * @param fill The fill color, may be null.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void writeColors(DataOutput out, Color border, Color fill) throws IOException {
+        int flags = (border != null ? HAS_BORDER : 0) | (fill != null ? HAS_FILL : 0);
+        out.writeByte(flags);
+        if (border != null) out.writeInt(toArgb(border));
+        if (fill != null) out.writeInt(toArgb(fill));
+    }
+
+    /**
+     * Reads the border and fill colors written by {@link #writeColors(DataOutput, Color, Color)}.
+     * @param in The DataInput to read from.
+     * @return An array holding the border color at index 0 and the fill color at index 1.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static Color[] readColors(DataInput in) throws IOException {
+        int flags = in.readUnsignedByte();
+        Color border = (flags & HAS_BORDER) != 0 ? fromArgb(in.readInt()) : null;
+        Color fill = (flags & HAS_FILL) != 0 ? fromArgb(in.readInt()) : null;
+        return new Color[] { border, fill };
+    }
+
+    /**
+     * Checks a size read from a record before anything is allocated for it, so that a corrupt
+     * document fails with an IOException rather than an unchecked exception or an OutOfMemoryError.
+     * Documents are read from files and in-memory buffers, whose streams report the bytes they have left.
+     * @param in The DataInput the record is read from.
+     * @param count The number of elements announced by the record.
+     * @param elementSize The size of one element in bytes.
+     * @throws IOException If the count is negative or the elements would not fit in the rest of the input.
+     */
+    public static void checkSize(DataInput in, int count, int elementSize) throws IOException {
+        if (count < 0) {
+            throw new IOException("Invalid record size: " + count);
+        }
+        if (in instanceof InputStream && (long) count * elementSize > ((InputStream) in).available()) {
+            throw new IOException("Record size exceeds the document: " + count);
+        }
+    }
+}
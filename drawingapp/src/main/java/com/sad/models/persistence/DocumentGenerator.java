@@ -0,0 +1,313 @@
+package com.sad.models.persistence;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.sad.models.EllipseFactory;
+import com.sad.models.LineFactory;
+import com.sad.models.RectangleFactory;
+import com.sad.models.ShapeFactory;
+import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.ConcreteText;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Generates synthetic documents for stress tests, benchmarks and profiling.
+ * Documents are deterministic: the same seed and settings always produce the same shapes.
+ * Rectangles, ellipses and lines are created by their factories and then resized, polygons and
+ * texts by their constructors. Texts get a size estimated from their font size and length, since
+ * measuring them needs JavaFX; their records thus have real bounds, close to the measured ones.
+ * The mix of shape types is given as relative weights.
+ * Documents can be generated in memory or streamed to a file in the binary document format,
+ * without keeping the shapes; the JavaFX toolkit is not needed.
+ * From the command line:
+ * {@code mvn compile exec:java -Dexec.mainClass=com.sad.models.persistence.DocumentGenerator -Dexec.args="out.bin 100000 --seed 7 --mix 4,4,2,1,1 --vertices 64"}
+ */
+public class DocumentGenerator {
+    /** Default width of the area the shapes are spread over. */
+    public static final double DEFAULT_WIDTH = 5000;
+    /** Default height of the area the shapes are spread over. */
+    public static final double DEFAULT_HEIGHT = 3000;
+    /** Default number of vertices of the generated polygons. */
+    public static final int DEFAULT_VERTICES = 8;
+    /** Estimated advance of a character of the default font, relative to the font size. */
+    static final double CHARACTER_WIDTH = 0.6;
+    /** Estimated line height of the default font, relative to the font size. */
+    static final double LINE_HEIGHT = 1.2;
+
+    /** The seed of the random source. */
+    private final long seed;
+    /** Relative weights of rectangles, ellipses, lines, polygons and texts, in this order. */
+    private int[] mix = { 1, 1, 1, 1, 1 };
+    /** Number of vertices of the generated polygons. */
+    private int polygonVertices = DEFAULT_VERTICES;
+    /** Width of the area the shapes are spread over. */
+    private double width = DEFAULT_WIDTH;
+    /** Height of the area the shapes are spread over. */
+    private double height = DEFAULT_HEIGHT;
+
+    /** The factory of the generated rectangles. */
+    private final ShapeFactory rectangleFactory = new RectangleFactory();
+    /** The factory of the generated ellipses. */
+    private final ShapeFactory ellipseFactory = new EllipseFactory();
+    /** The factory of the generated lines. */
+    private final ShapeFactory lineFactory = new LineFactory();
+
+    /**
+     * Constructs a generator with an even mix of the five shape types.
+     * @param seed The seed of the random source.
+     */
+    public DocumentGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the relative weights of the shape types; a type with weight 0 is not generated.
+     * @param rectangles The weight of rectangles.
+     * @param ellipses The weight of ellipses.
+     * @param lines The weight of lines.
+     * @param polygons The weight of polygons.
+     * @param texts The weight of texts.
+     * @throws IllegalArgumentException if a weight is negative or all weights are 0.
+     */
+    public void setMix(int rectangles, int ellipses, int lines, int polygons, int texts) {
+        int[] weights = { rectangles, ellipses, lines, polygons, texts };
+        int total = 0;
+        for (int weight : weights) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights must not be negative");
+            }
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+        this.mix = weights;
+    }
+
+    /**
+     * Sets the number of vertices of the generated polygons.
+     * @param vertices The number of vertices, at least 3.
+     * @throws IllegalArgumentException if there are fewer than 3 vertices.
+     */
+    public void setPolygonVertices(int vertices) {
+        if (vertices < 3) {
+            throw new IllegalArgumentException("A polygon needs at least 3 vertices");
+        }
+        this.polygonVertices = vertices;
+    }
+
+    /**
+     * Sets the area the shapes are spread over, starting at the origin.
+     * @param width The width of the area.
+     * @param height The height of the area.
+     */
+    public void setArea(double width, double height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Generates a document in memory.
+     * @param count The number of shapes.
+     * @return The shapes, in z-order, without nodes.
+     */
+    public List<ShapeInterface> generate(int count) {
+        Random random = new Random(seed);
+        List<ShapeInterface> shapes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shapes.add(next(random, i));
+        }
+        return shapes;
+    }
+
+    /**
+     * Generates a document straight into a file, one record at a time.
+     * The file has the same content as saving the shapes returned by {@link #generate(int)}.
+     * @param file The destination file.
+     * @param count The number of shapes.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeFile(File file, int count) throws IOException {
+        Random random = new Random(seed);
+        try (DocumentWriter writer = new DocumentWriter(new FileOutputStream(file), count)) {
+            for (int i = 0; i < count; i++) {
+                writer.write(next(random, i));
+            }
+        }
+    }
+
+    /**
+     * Generates the next shape of the document, numbered from 1 by its position so that its id is reproducible.
+     * @param random The random source of the document.
+     * @param index The position of the shape in the document.
+     * @return The shape.
+     */
+    private ShapeInterface next(Random random, int index) {
+        ShapeInterface shape = create(random, index);
+        shape.setId(index + 1L);
+        return shape;
+    }
+
+    /**
+     * Creates a random shape.
+     * @param random The random source of the document.
+     * @param index The position of the shape in the document, used to label texts.
+     * @return The shape.
+     */
+    private ShapeInterface create(Random random, int index) {
+        double x = random.nextDouble() * width;
+        double y = random.nextDouble() * height;
+        double scale = 0.25 + random.nextDouble() * 1.75;
+        Color border = Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+        Color fill = Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256), 0.5);
+        switch (pickType(random)) {
+            case 0:
+                return resized(rectangleFactory.createShape(x, y, 0, 0, border, fill), scale);
+            case 1:
+                return resized(ellipseFactory.createShape(x, y, 0, 0, border, fill), scale);
+            case 2:
+                ShapeInterface line = lineFactory.createShape(x, y, 0, 0, border, fill);
+                line.setWidth(line.getWidth() * scale);
+                line.setHeight((random.nextDouble() - 0.5) * 100 * scale);
+                return line;
+            case 3:
+                return polygon(random, x, y, 50 * scale, border, fill);
+            default:
+                return text("Text " + index, x, y, border, fill, 10 + random.nextInt(30));
+        }
+    }
+
+    /**
+     * Creates a text with an estimated size.
+     * @param content The content of the text.
+     * @param x The x-coordinate of the text's baseline.
+     * @param y The y-coordinate of the text's baseline.
+     * @param border The border color.
+     * @param fill The fill color.
+     * @param fontSize The font size.
+     * @return The text.
+     */
+    private static ConcreteText text(String content, double x, double y, Color border, Color fill, double fontSize) {
+        ConcreteText text = new ConcreteText(content, x, y, border, fill, fontSize);
+        text.setWidth(content.length() * fontSize * CHARACTER_WIDTH);
+        text.setHeight(fontSize * LINE_HEIGHT);
+        return text;
+    }
+
+    /**
+     * Picks a shape type according to the weights of the mix.
+     * @param random The random source of the document.
+     * @return The position of the type in the mix.
+     */
+    private int pickType(Random random) {
+        int total = 0;
+        for (int weight : mix) {
+            total += weight;
+        }
+        int pick = random.nextInt(total);
+        int type = 0;
+        while (pick >= mix[type]) {
+            pick -= mix[type];
+            type++;
+        }
+        return type;
+    }
+
+    /**
+     * Scales a shape created by a factory, whose size is fixed.
+     * @param shape The shape.
+     * @param scale The scale factor.
+     * @return The shape.
+     */
+    private static ShapeInterface resized(ShapeInterface shape, double scale) {
+        shape.setWidth(shape.getWidth() * scale);
+        shape.setHeight(shape.getHeight() * scale);
+        return shape;
+    }
+
+    /**
+     * Creates a star-shaped polygon, whose vertices are spread around a center at random radii.
+     * @param random The random source of the document.
+     * @param centerX The x-coordinate of the center.
+     * @param centerY The y-coordinate of the center.
+     * @param radius The largest distance of a vertex from the center.
+     * @param border The border color.
+     * @param fill The fill color.
+     * @return The polygon.
+     */
+    private ConcretePolygon polygon(Random random, double centerX, double centerY, double radius, Color border, Color fill) {
+        double[] points = new double[polygonVertices * 2];
+        for (int v = 0; v < polygonVertices; v++) {
+            double angle = 2 * Math.PI * v / polygonVertices;
+            double distance = radius * (0.3 + 0.7 * random.nextDouble());
+            points[2 * v] = centerX + Math.cos(angle) * distance;
+            points[2 * v + 1] = centerY + Math.sin(angle) * distance;
+        }
+        return new ConcretePolygon(points, border, fill);
+    }
+
+    /**
+     * Generates a document file from the command line.
+     * Usage: {@code <file> <count> [--seed n] [--mix rectangles,ellipses,lines,polygons,texts] [--vertices n] [--area widthxheight]}
+     * @param args The command line arguments.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: DocumentGenerator <file> <count> [--seed n] [--mix r,e,l,p,t] [--vertices n] [--area WxH]");
+            System.exit(1);
+        }
+        File file = new File(args[0]);
+        int count = Integer.parseInt(args[1]);
+        long seed = 42;
+        int[] mix = null;
+        int vertices = DEFAULT_VERTICES;
+        double areaWidth = DEFAULT_WIDTH, areaHeight = DEFAULT_HEIGHT;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--mix":
+                    String[] parts = value.split(",");
+                    if (parts.length != 5) {
+                        throw new IllegalArgumentException("--mix needs 5 weights: " + value);
+                    }
+                    mix = new int[5];
+                    for (int t = 0; t < 5; t++) {
+                        mix[t] = Integer.parseInt(parts[t].trim());
+                    }
+                    break;
+                case "--vertices":
+                    vertices = Integer.parseInt(value);
+                    break;
+                case "--area":
+                    String[] size = value.toLowerCase().split("x");
+                    areaWidth = Double.parseDouble(size[0]);
+                    areaHeight = Double.parseDouble(size[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        DocumentGenerator generator = new DocumentGenerator(seed);
+        generator.setPolygonVertices(vertices);
+        generator.setArea(areaWidth, areaHeight);
+        if (mix != null) {
+            generator.setMix(mix[0], mix[1], mix[2], mix[3], mix[4]);
+        }
+        long start = System.nanoTime();
+        generator.writeFile(file, count);
+        System.out.printf("Wrote %d shapes to %s (%d KB) in %.1f ms%n",
+                count, file, file.length() / 1024, (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -0,0 +1,408 @@
+package com.sad.models.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import com.sad.models.index.LongMap;
+import com.sad.models.shapes.ShapeIds;
+import com.sad.models.shapes.ShapeInterface;
+
+/**
+ * Append-only journal of the changes made to a document since its last snapshot.
+ * The journal lives next to the document, in a file with the {@code .journal} suffix.
+ * Every committed transaction stores the new state of the shapes it touched, so saving
+ * an edit costs an append proportional to the change instead of a full rewrite, and
+ * the document can be rebuilt after a crash by replaying the journal on the snapshot.
+ *
+ * <p>Journal layout: magic, version, snapshot length and snapshot CRC32, followed by
+ * transactions. A transaction is the payload length, the payload and its CRC32; the
+ * payload is a sequence of operations, either {@code PUT(id, index, record)} or
+ * {@code REMOVE(id)}. Shapes are named by their stable 64-bit id, the one stored in the
+ * records of the snapshot. Version 1 journals numbered shapes by their position in the
+ * snapshot instead, and version 2 journals hold records of document format version 2;
+ * both are still replayed, then rewritten in the current version.</p>
+ */
+public class DocumentJournal implements AutoCloseable {
+    /** Magic number identifying journal files ("SADJ"). */
+    public static final int MAGIC = 0x5341444A;
+    /** Current version of the journal format. */
+    public static final short VERSION = 3;
+    /** Suffix appended to the document file name to obtain the journal file name. */
+    public static final String SUFFIX = ".journal";
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    /** The journal file. */
+    private final File file;
+    /** Stream the transactions are appended to. */
+    private final FileOutputStream out;
+    /** The shapes known to the journal, in the snapshot or put since, by id. */
+    private final LongMap<ShapeInterface> known;
+    /** Number of transactions in the journal. */
+    private int transactionCount;
+    /** Size of the journal file in bytes. */
+    private long size;
+
+    /**
+     * Opens a journal for appending.
+     * @param file The journal file.
+     * @param append True to append to the existing content, false to truncate it.
+     * @param known The shapes known to the journal, by id.
+     * @throws IOException If the file cannot be opened.
+     */
+    private DocumentJournal(File file, boolean append, LongMap<ShapeInterface> known) throws IOException {
+        this.file = file;
+        this.known = known;
+        this.out = new FileOutputStream(file, append);
+        this.size = append ? file.length() : 0;
+    }
+
+    /**
+     * Gets the journal file of a document.
+     * @param document The document file.
+     * @return The journal file.
+     */
+    public static File journalFileFor(File document) {
+        return new File(document.getPath() + SUFFIX);
+    }
+
+    /**
+     * Computes the CRC32 of a file.
+     * @param file The file to read.
+     * @return The checksum of the file content.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Starts a new, empty journal for a snapshot that has just been written.
+     * Any previous journal of the document is replaced. Shapes without an id, read from an
+     * older document, or sharing an id with another shape receive a new one.
+     * @param document The snapshot file.
+     * @param shapes The shapes of the snapshot, in z-order.
+     * @return The new journal.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static DocumentJournal create(File document, List<ShapeInterface> shapes) throws IOException {
+        LongMap<ShapeInterface> known = new LongMap<>();
+        for (ShapeInterface shape : shapes) {
+            ShapeInterface owner = shape.getId() > 0 ? known.get(shape.getId()) : null;
+            if (shape.getId() <= 0 || (owner != null && owner != shape)) {
+                shape.setId(ShapeIds.next());
+            }
+            known.put(shape.getId(), shape);
+        }
+        return create(document, known);
+    }
+
+    /**
+     * Starts a new, empty journal for a snapshot whose shapes already have distinct ids.
+     * The shapes themselves are not read, so the journal can be created on another thread
+     * than the one editing them.
+     * @param document The snapshot file.
+     * @param shapes The shapes of the snapshot, by id; the journal keeps this map.
+     * @return The new journal.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static DocumentJournal create(File document, LongMap<ShapeInterface> shapes) throws IOException {
+        DocumentJournal journal = new DocumentJournal(journalFileFor(document), false, shapes);
+        try {
+            ByteArrayOutputStream header = new ByteArrayOutputStream(24);
+            DataOutputStream data = new DataOutputStream(header);
+            data.writeInt(MAGIC);
+            data.writeShort(VERSION);
+            data.writeLong(document.length());
+            data.writeLong(checksum(document));
+            journal.append(header.toByteArray());
+        } catch (IOException e) {
+            journal.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * Replays the journal of a document on the shapes read from its snapshot and
+     * reopens it for appending. A journal written for another version of the snapshot
+     * is discarded; a transaction cut short by a crash is dropped together with
+     * everything after it.
+     * @param document The snapshot file.
+     * @param shapes The shapes of the snapshot, in z-order; updated in place.
+     * @return The journal, ready to record further changes.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static DocumentJournal recover(File document, List<ShapeInterface> shapes) throws IOException {
+        File journalFile = journalFileFor(document);
+        if (!journalFile.isFile()) {
+            return create(document, shapes);
+        }
+
+        List<ShapeInterface> snapshot = new ArrayList<>(shapes);
+        List<Long> order = new ArrayList<>(shapes.size());
+        int version;
+        int transactions = 0;
+        long validLength;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                return create(document, shapes);
+            }
+            version = in.readShort();
+            if (version < 1 || version > VERSION
+                    || in.readLong() != document.length() || in.readLong() != checksum(document)) {
+                return create(document, shapes);
+            }
+            for (int i = 0; i < shapes.size(); i++) {
+                order.add(version == 1 ? i : shapes.get(i).getId());
+            }
+            validLength = 4 + 2 + 8 + 8;
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    if (length < 0 || length > journalFile.length()) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if (in.readInt() != (int) crc.getValue()) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                replay(payload, version, shapes, order);
+                validLength += 4 + payload.length + 4;
+                transactions++;
+            }
+        } catch (EOFException e) {
+            return create(document, shapes);
+        }
+
+        if (version < VERSION) {
+            // Rewrites the recovered changes as one transaction naming the shapes by id.
+            DocumentJournal journal = create(document, snapshot);
+            if (transactions > 0) {
+                Set<ShapeInterface> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+                changed.addAll(snapshot);
+                changed.addAll(shapes);
+                journal.commit(shapes, changed);
+            }
+            return journal;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+            raf.setLength(validLength);
+        }
+        LongMap<ShapeInterface> known = new LongMap<>();
+        for (ShapeInterface shape : shapes) {
+            known.put(shape.getId(), shape);
+        }
+        DocumentJournal journal = new DocumentJournal(journalFile, true, known);
+        journal.transactionCount = transactions;
+        return journal;
+    }
+
+    /**
+     * Applies one transaction. The operations are read first, then the shapes are rebuilt
+     * in a single merge pass: every shape named by the transaction is taken out and the new
+     * states are inserted at their final indices, which {@link #commit} writes in ascending
+     * order, so the z-order is rebuilt regardless of how the shapes were moved around.
+     * @param payload The transaction payload.
+     * @param version The version of the journal, which tells how ids and records are written.
+     * @param shapes The shapes, in z-order.
+     * @param order The ids of the shapes, parallel to {@code shapes}.
+     * @throws IOException If the payload is malformed.
+     */
+    private static void replay(byte[] payload, int version, List<ShapeInterface> shapes, List<Long> order) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        LongMap<Boolean> touched = new LongMap<>();
+        List<Long> ids = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        List<ShapeInterface> records = new ArrayList<>();
+        while (in.available() > 0) {
+            byte op = in.readByte();
+            long id = version == 1 ? in.readInt() : in.readLong();
+            touched.put(id, Boolean.TRUE);
+            if (op == OP_PUT) {
+                ids.add(id);
+                indices.add(in.readInt());
+                records.add(DocumentReader.readRecord(in, recordVersion(version)));
+            } else if (op != OP_REMOVE) {
+                throw new IOException("Unknown journal operation: " + op);
+            }
+        }
+
+        List<ShapeInterface> mergedShapes = new ArrayList<>(shapes.size() + records.size());
+        List<Long> mergedOrder = new ArrayList<>(shapes.size() + records.size());
+        int next = 0;
+        for (int i = 0; i < shapes.size(); i++) {
+            if (touched.containsKey(order.get(i))) {
+                continue;
+            }
+            while (next < ids.size() && indices.get(next) <= mergedShapes.size()) {
+                mergedOrder.add(ids.get(next));
+                mergedShapes.add(records.get(next++));
+            }
+            mergedOrder.add(order.get(i));
+            mergedShapes.add(shapes.get(i));
+        }
+        // The remaining states go after every kept shape, including indices past the end.
+        for (; next < ids.size(); next++) {
+            mergedOrder.add(ids.get(next));
+            mergedShapes.add(records.get(next));
+        }
+        shapes.clear();
+        shapes.addAll(mergedShapes);
+        order.clear();
+        order.addAll(mergedOrder);
+    }
+
+    /**
+     * Gets the document format version of the records in a journal.
+     * Each journal version before the current one wrote records in the document format of the same number.
+     * @param version The version of the journal.
+     * @return The version of the document format its records were written in.
+     */
+    private static int recordVersion(int version) {
+        return version < VERSION ? version : DocumentFormat.VERSION;
+    }
+
+    /**
+     * Appends a set of changes as one transaction.
+     * Changed shapes still in the document are stored with their current state and
+     * z-index; changed shapes no longer in the document are recorded as removed, and
+     * shapes that were added and removed again without being committed are skipped.
+     * Each changed shape is looked up with {@link List#indexOf(Object)}, so with a
+     * {@link com.sad.models.index.ZOrderIndex} the cost follows the size of the change.
+     * @param shapes The shapes of the document, in z-order.
+     * @param changed The shapes added, removed or modified since the last commit,
+     *                compared by identity; emptied by this call.
+     * @throws IOException If the transaction cannot be written.
+     */
+    public void commit(List<ShapeInterface> shapes, Set<ShapeInterface> changed) throws IOException {
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<ShapeInterface> removed = new ArrayList<>();
+        List<long[]> puts = new ArrayList<>(changed.size());
+        List<ShapeInterface> put = new ArrayList<>(changed.size());
+        for (ShapeInterface shape : changed) {
+            int index = shapes.indexOf(shape);
+            if (index < 0) {
+                removed.add(shape);
+            } else {
+                puts.add(new long[] { index, put.size() });
+                put.add(shape);
+            }
+        }
+        changed.clear();
+        // Replay inserts the new states in ascending z-index.
+        puts.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(buffer);
+        for (long[] entry : puts) {
+            ShapeInterface shape = put.get((int) entry[1]);
+            known.put(shape.getId(), shape);
+            data.writeByte(OP_PUT);
+            data.writeLong(shape.getId());
+            data.writeInt((int) entry[0]);
+            DocumentWriter.writeRecord(data, shape);
+        }
+        for (ShapeInterface shape : removed) {
+            if (known.get(shape.getId()) == shape) {
+                known.remove(shape.getId());
+                data.writeByte(OP_REMOVE);
+                data.writeLong(shape.getId());
+            }
+        }
+        if (data.size() == 0) {
+            return;
+        }
+
+        byte[] payload = buffer.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteArrayOutputStream transaction = new ByteArrayOutputStream(payload.length + 8);
+        DataOutputStream framed = new DataOutputStream(transaction);
+        framed.writeInt(payload.length);
+        framed.write(payload);
+        framed.writeInt((int) crc.getValue());
+        append(transaction.toByteArray());
+        transactionCount++;
+    }
+
+    /**
+     * Writes bytes at the end of the journal in a single call.
+     * @param bytes The bytes to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void append(byte[] bytes) throws IOException {
+        out.write(bytes);
+        out.flush();
+        size += bytes.length;
+    }
+
+    /**
+     * Gets the journal file.
+     * @return The journal file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the number of transactions in the journal.
+     * @return The number of committed transactions.
+     */
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Gets the size of the journal.
+     * @return The size of the journal file in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Closes the journal file.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
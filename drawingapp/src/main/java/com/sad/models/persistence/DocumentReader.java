@@ -0,0 +1,206 @@
+package com.sad.models.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sad.models.shapes.ConcreteEllipse;
+import com.sad.models.shapes.ConcreteLine;
+import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ConcreteText;
+import com.sad.models.shapes.ShapeInterface;
+
+/**
+ * Reads shapes from the binary document format described in {@link DocumentFormat}.
+ * Shapes are decoded one record at a time and no JavaFX node is created,
+ * so reading can happen off the JavaFX application thread.
+ */
+public class DocumentReader implements AutoCloseable {
+    /** Size of the input buffer in bytes. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The stream the document is read from. */
+    private final DataInputStream in;
+    /** The format version declared in the header. */
+    private final int version;
+    /** The number of shape records declared in the header. */
+    private final int shapeCount;
+    /** The number of shape records read so far. */
+    private int readCount = 0;
+
+    /**
+     * Constructs a DocumentReader and reads the document header.
+     * @param stream The stream to read from.
+     * @throws IOException If an I/O error occurs or the header is not valid.
+     */
+    public DocumentReader(InputStream stream) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE));
+        if (in.readInt() != DocumentFormat.MAGIC) {
+            throw new IOException("Not a binary drawing document");
+        }
+        this.version = in.readUnsignedShort();
+        if (version > DocumentFormat.VERSION) {
+            throw new IOException("Unsupported document version: " + version);
+        }
+        this.shapeCount = in.readInt();
+        // Every record takes at least one byte, its tag.
+        DocumentFormat.checkSize(in, shapeCount, 1);
+    }
+
+    /**
+     * Gets the format version declared in the header.
+     * @return The format version.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the number of shape records declared in the header.
+     * @return The number of shapes in the document.
+     */
+    public int getShapeCount() {
+        return shapeCount;
+    }
+
+    /**
+     * Checks whether there are records left to read.
+     * @return True if another shape can be read, false otherwise.
+     */
+    public boolean hasNext() {
+        return readCount < shapeCount;
+    }
+
+    /**
+     * Reads the next shape record.
+     * @return The decoded shape, without a JavaFX node.
+     * @throws IOException If an I/O error occurs or the record type is unknown.
+     */
+    public ShapeInterface next() throws IOException {
+        readCount++;
+        return readRecord(in, version);
+    }
+
+    /**
+     * Reads a tagged shape record written in the current version of the format.
+     * @param in The DataInput to read from.
+     * @return The decoded shape, without a JavaFX node.
+     * @throws IOException If an I/O error occurs or the record type is unknown.
+     */
+    public static ShapeInterface readRecord(DataInput in) throws IOException {
+        return readRecord(in, DocumentFormat.VERSION);
+    }
+
+    /**
+     * Reads a tagged shape record.
+     * The shape keeps the id stored in the record; records of version 1 have none, so it gets a new one.
+     * @param in The DataInput to read from.
+     * @param version The version of the format the record was written in.
+     * @return The decoded shape, without a JavaFX node.
+     * @throws IOException If an I/O error occurs or the record type is unknown.
+     */
+    public static ShapeInterface readRecord(DataInput in, int version) throws IOException {
+        byte tag = in.readByte();
+        long id = version >= DocumentFormat.VERSION_WITH_IDS ? in.readLong() : 0;
+        ShapeInterface shape;
+        switch (tag) {
+            case DocumentFormat.TAG_RECTANGLE:
+                shape = ConcreteRectangle.readFrom(in);
+                break;
+            case DocumentFormat.TAG_ELLIPSE:
+                shape = ConcreteEllipse.readFrom(in);
+                break;
+            case DocumentFormat.TAG_LINE:
+                shape = ConcreteLine.readFrom(in);
+                break;
+            case DocumentFormat.TAG_POLYGON:
+                shape = ConcretePolygon.readFrom(in);
+                break;
+            case DocumentFormat.TAG_TEXT:
+                shape = ConcreteText.readFrom(in, version);
+                break;
+            default:
+                throw new IOException("Unknown record type: " + tag);
+        }
+        if (id > 0) {
+            shape.setId(id);
+        }
+        return shape;
+    }
+
+    /**
+     * Closes the underlying stream.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads all the shapes of a binary document.
+     * @param stream The stream to read from.
+     * @return The decoded shapes, in z-order.
+     * @throws IOException If an I/O error occurs or the document is not valid.
+     */
+    public static List<ShapeInterface> readAll(InputStream stream) throws IOException {
+        try (DocumentReader reader = new DocumentReader(stream)) {
+            List<ShapeInterface> shapes = new ArrayList<>(reader.getShapeCount());
+            while (reader.hasNext()) {
+                shapes.add(reader.next());
+            }
+            return shapes;
+        }
+    }
+
+    /**
+     * Reads all the shapes of a document file.
+     * Files written with Java serialization by previous versions are still accepted.
+     * @param file The file to read.
+     * @return The decoded shapes, in z-order.
+     * @throws IOException If an I/O error occurs or the document is not valid.
+     */
+    public static List<ShapeInterface> readFile(File file) throws IOException {
+        if (isBinaryDocument(file)) {
+            try (InputStream stream = new FileInputStream(file)) {
+                return readAll(stream);
+            }
+        }
+        return readLegacyFile(file);
+    }
+
+    /**
+     * Checks whether a file starts with the binary document magic number.
+     * @param file The file to check.
+     * @return True if the file uses the binary document format, false otherwise.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static boolean isBinaryDocument(File file) throws IOException {
+        try (DataInputStream probe = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= 4 && probe.readInt() == DocumentFormat.MAGIC;
+        }
+    }
+
+    /**
+     * Reads a document written with Java serialization.
+     * @param file The file to read.
+     * @return The deserialized shapes.
+     * @throws IOException If an I/O error occurs or the document is not valid.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<ShapeInterface> readLegacyFile(File file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            return (List<ShapeInterface>) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid legacy document", e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.sad.models.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.sad.models.shapes.ConcreteEllipse;
+import com.sad.models.shapes.ConcreteLine;
+import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ConcreteText;
+import com.sad.models.shapes.ShapeInterface;
+
+/**
+ * Writes shapes using the binary document format described in {@link DocumentFormat}.
+ * Does not rely on Java serialization.
+ */
+public class DocumentWriter implements AutoCloseable {
+    /** Size of the output buffer in bytes. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The stream the document is written to. */
+    private final DataOutputStream out;
+
+    /**
+     * Constructs a DocumentWriter and writes the document header.
+     * @param stream The stream to write to.
+     * @param shapeCount The number of shape records that will follow.
+     * @throws IOException If an I/O error occurs.
+     */
+    public DocumentWriter(OutputStream stream, int shapeCount) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+        out.writeInt(DocumentFormat.MAGIC);
+        out.writeShort(DocumentFormat.VERSION);
+        out.writeInt(shapeCount);
+    }
+
+    /**
+     * Writes a single shape record.
+     * @param shape The shape to write.
+     * @throws IOException If an I/O error occurs or the shape type is not supported.
+     */
+    public void write(ShapeInterface shape) throws IOException {
+        writeRecord(out, shape);
+    }
+
+    /**
+     * Writes a shape as a tagged record, followed by its id, in the current version of the format.
+     * @param out The DataOutput to write to.
+     * @param shape The shape to write.
+     * @throws IOException If an I/O error occurs or the shape type is not supported.
+     */
+    public static void writeRecord(DataOutput out, ShapeInterface shape) throws IOException {
+        if (shape instanceof ConcreteRectangle) {
+            out.writeByte(DocumentFormat.TAG_RECTANGLE);
+            out.writeLong(shape.getId());
+            ((ConcreteRectangle) shape).writeTo(out);
+        } else if (shape instanceof ConcreteEllipse) {
+            out.writeByte(DocumentFormat.TAG_ELLIPSE);
+            out.writeLong(shape.getId());
+            ((ConcreteEllipse) shape).writeTo(out);
+        } else if (shape instanceof ConcreteLine) {
+            out.writeByte(DocumentFormat.TAG_LINE);
+            out.writeLong(shape.getId());
+            ((ConcreteLine) shape).writeTo(out);
+        } else if (shape instanceof ConcretePolygon) {
+            out.writeByte(DocumentFormat.TAG_POLYGON);
+            out.writeLong(shape.getId());
+            ((ConcretePolygon) shape).writeTo(out);
+        } else if (shape instanceof ConcreteText) {
+            out.writeByte(DocumentFormat.TAG_TEXT);
+            out.writeLong(shape.getId());
+            ((ConcreteText) shape).writeTo(out);
+        } else {
+            throw new IOException("Unsupported shape type: " + shape.getClass().getName());
+        }
+    }
+
+    /**
+     * Flushes and closes the underlying stream.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Writes a complete document to a stream.
+     * @param stream The stream to write to.
+     * @param shapes The shapes to write, in z-order.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void writeAll(OutputStream stream, List<? extends ShapeInterface> shapes) throws IOException {
+        try (DocumentWriter writer = new DocumentWriter(stream, shapes.size())) {
+            for (ShapeInterface shape : shapes) {
+                writer.write(shape);
+            }
+        }
+    }
+
+    /**
+     * Writes a complete document to a file.
+     * @param file The destination file.
+     * @param shapes The shapes to write, in z-order.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void writeFile(File file, List<? extends ShapeInterface> shapes) throws IOException {
+        writeAll(new FileOutputStream(file), shapes);
+    }
+}
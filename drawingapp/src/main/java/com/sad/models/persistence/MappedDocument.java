@@ -0,0 +1,306 @@
+package com.sad.models.persistence;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+
+import com.sad.models.index.PackedRTree;
+import com.sad.models.shapes.ShapeInterface;
+
+/**
+ * Read-only view of a binary document mapped into memory.
+ * Opening the document only scans the records to build an index of their offsets and
+ * bounding boxes, with an R-tree over the boxes; shapes are decoded on demand with {@link #materialize(int)}, so the
+ * heap holds a few bytes per record instead of a shape object and a node for each.
+ */
+public class MappedDocument {
+    /** Number of bounds values stored per record: min x, min y, max x, max y. */
+    private static final int BOUNDS_STRIDE = 4;
+
+    /** The mapped file. */
+    private final File file;
+    /** The mapped content of the file. */
+    private final MappedByteBuffer buffer;
+    /** The format version declared in the header. */
+    private final int version;
+    /** Offset of each record in the file, tag included. */
+    private final int[] offsets;
+    /** Bounding box of each record, {@link #BOUNDS_STRIDE} values per record. */
+    private final float[] bounds;
+    /** Spatial index over the record bounding boxes. */
+    private final PackedRTree index;
+
+    /**
+     * Creates the view from an already built index.
+     * @param file The mapped file.
+     * @param buffer The mapped content.
+     * @param version The format version.
+     * @param offsets The record offsets.
+     * @param bounds The record bounding boxes.
+     */
+    private MappedDocument(File file, MappedByteBuffer buffer, int version, int[] offsets, float[] bounds) {
+        this.file = file;
+        this.buffer = buffer;
+        this.version = version;
+        this.offsets = offsets;
+        this.bounds = bounds;
+        this.index = PackedRTree.build(bounds);
+    }
+
+    /**
+     * Maps a binary document and indexes its records.
+     * @param file The document to open; must be smaller than 2 GB.
+     * @return The mapped document.
+     * @throws IOException If an I/O error occurs or the file is not a valid document.
+     */
+    public static MappedDocument open(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Document too large to map: " + file.getName());
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            ByteBuffer scan = buffer.duplicate();
+            if (scan.getInt() != DocumentFormat.MAGIC) {
+                throw new IOException("Not a binary drawing document");
+            }
+            int version = scan.getShort() & 0xFFFF;
+            if (version > DocumentFormat.VERSION) {
+                throw new IOException("Unsupported document version: " + version);
+            }
+            int count = scan.getInt();
+            if (count < 0) {
+                throw new IOException("Invalid shape count: " + count);
+            }
+            int[] offsets = new int[count];
+            float[] bounds = new float[count * BOUNDS_STRIDE];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = scan.position();
+                scanRecord(scan, version, bounds, i * BOUNDS_STRIDE);
+            }
+            return new MappedDocument(file, buffer, version, offsets, bounds);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated document: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Reads the bounding box of a record and moves past it, without decoding a shape.
+     * Rotated shapes get the box of the circle they can sweep around their centre.
+     * @param scan The buffer, positioned on the record tag.
+     * @param version The format version.
+     * @param bounds Destination of the bounding box.
+     * @param at Index of the first bounds value to write.
+     * @throws IOException If the record type is unknown.
+     */
+    private static void scanRecord(ByteBuffer scan, int version, float[] bounds, int at) throws IOException {
+        byte tag = scan.get();
+        if (version >= DocumentFormat.VERSION_WITH_IDS) {
+            scan.position(scan.position() + Long.BYTES);
+        }
+        int flags = scan.get() & 0xFF;
+        scan.position(scan.position() + Integer.bitCount(flags) * Integer.BYTES);
+
+        double minX, minY, maxX, maxY, angle;
+        switch (tag) {
+            case DocumentFormat.TAG_RECTANGLE: {
+                minX = scan.getDouble();
+                minY = scan.getDouble();
+                maxX = minX + scan.getDouble();
+                maxY = minY + scan.getDouble();
+                angle = scan.getDouble();
+                break;
+            }
+            case DocumentFormat.TAG_ELLIPSE: {
+                double centerX = scan.getDouble();
+                double centerY = scan.getDouble();
+                double radiusX = scan.getDouble();
+                double radiusY = scan.getDouble();
+                minX = centerX - radiusX;
+                minY = centerY - radiusY;
+                maxX = centerX + radiusX;
+                maxY = centerY + radiusY;
+                angle = scan.getDouble();
+                break;
+            }
+            case DocumentFormat.TAG_LINE: {
+                double x1 = scan.getDouble();
+                double y1 = scan.getDouble();
+                double x2 = scan.getDouble();
+                double y2 = scan.getDouble();
+                minX = Math.min(x1, x2);
+                minY = Math.min(y1, y2);
+                maxX = Math.max(x1, x2);
+                maxY = Math.max(y1, y2);
+                angle = scan.getDouble();
+                break;
+            }
+            case DocumentFormat.TAG_POLYGON: {
+                double x = scan.getDouble();
+                double y = scan.getDouble();
+                angle = scan.getDouble();
+                scan.getDouble();
+                scan.getDouble();
+                int size = scan.getInt();
+                // Points are relative to (x, y) and mirroring flips them around it.
+                double extentX = 0;
+                double extentY = 0;
+                for (int i = 0; i + 1 < size; i += 2) {
+                    extentX = Math.max(extentX, Math.abs(scan.getDouble()));
+                    extentY = Math.max(extentY, Math.abs(scan.getDouble()));
+                }
+                if (size % 2 != 0) {
+                    scan.getDouble();
+                }
+                minX = x - extentX;
+                minY = y - extentY;
+                maxX = x + extentX;
+                maxY = y + extentY;
+                break;
+            }
+            case DocumentFormat.TAG_TEXT: {
+                double x = scan.getDouble();
+                double y = scan.getDouble();
+                scan.getDouble();
+                angle = scan.getDouble();
+                double width = scan.getDouble();
+                double height = scan.getDouble();
+                scan.getDouble();
+                scan.getDouble();
+                width *= Math.max(1, Math.abs(scan.getDouble()));
+                height *= Math.max(1, Math.abs(scan.getDouble()));
+                int length = version >= DocumentFormat.VERSION_WITH_LONG_TEXT ? scan.getInt() : scan.getShort() & 0xFFFF;
+                if (length < 0 || length > scan.remaining()) {
+                    throw new IOException("Invalid text length: " + length);
+                }
+                scan.position(scan.position() + length);
+                // The text is anchored on its baseline and may be mirrored around it.
+                minX = x - width;
+                minY = y - height * 2;
+                maxX = x + width;
+                maxY = y + height;
+                break;
+            }
+            default:
+                throw new IOException("Unknown record type: " + tag);
+        }
+
+        if (angle % 360 != 0) {
+            double centerX = (minX + maxX) / 2;
+            double centerY = (minY + maxY) / 2;
+            double radius = Math.hypot(maxX - minX, maxY - minY) / 2;
+            minX = centerX - radius;
+            minY = centerY - radius;
+            maxX = centerX + radius;
+            maxY = centerY + radius;
+        }
+        bounds[at] = (float) Math.floor(minX);
+        bounds[at + 1] = (float) Math.floor(minY);
+        bounds[at + 2] = (float) Math.ceil(maxX);
+        bounds[at + 3] = (float) Math.ceil(maxY);
+    }
+
+    /**
+     * Gets the mapped file.
+     * @return The document file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the number of records in the document.
+     * @return The number of shapes.
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Decodes a record into a new shape, without creating its JavaFX node.
+     * @param index The record index, in z-order.
+     * @return The decoded shape.
+     * @throws IOException If the record cannot be decoded.
+     */
+    public ShapeInterface materialize(int index) throws IOException {
+        ByteBuffer record = buffer.duplicate();
+        record.position(offsets[index]);
+        return DocumentReader.readRecord(new DataInputStream(new ByteBufferInputStream(record)), version);
+    }
+
+    /**
+     * Checks whether the bounding box of a record intersects a rectangle.
+     * @param index The record index.
+     * @param minX The left edge of the rectangle.
+     * @param minY The top edge of the rectangle.
+     * @param maxX The right edge of the rectangle.
+     * @param maxY The bottom edge of the rectangle.
+     * @return True if the record may be visible in the rectangle.
+     */
+    public boolean intersects(int index, double minX, double minY, double maxX, double maxY) {
+        int at = index * BOUNDS_STRIDE;
+        return bounds[at] <= maxX && bounds[at + 2] >= minX
+                && bounds[at + 1] <= maxY && bounds[at + 3] >= minY;
+    }
+
+    /**
+     * Reports the records whose bounding box intersects a rectangle, in no particular order.
+     * @param minX The left edge of the rectangle.
+     * @param minY The top edge of the rectangle.
+     * @param maxX The right edge of the rectangle.
+     * @param maxY The bottom edge of the rectangle.
+     * @param action Receives the index of each intersecting record.
+     */
+    public void query(double minX, double minY, double maxX, double maxY, IntConsumer action) {
+        index.search(minX, minY, maxX, maxY, action);
+    }
+
+    /**
+     * Sequential InputStream over a ByteBuffer.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        /** The buffer to read from. */
+        private final ByteBuffer source;
+
+        /**
+         * Creates a stream reading from the current position of a buffer.
+         * @param source The buffer to read from.
+         */
+        ByteBufferInputStream(ByteBuffer source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() {
+            return source.hasRemaining() ? source.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, source.remaining());
+            source.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return source.remaining();
+        }
+    }
+}
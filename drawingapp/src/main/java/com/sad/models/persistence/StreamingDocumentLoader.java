@@ -0,0 +1,233 @@
+package com.sad.models.persistence;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+
+/**
+ * Loads a binary document without blocking the JavaFX application thread.
+ * Records are decoded on a background thread and handed over in batches;
+ * on every pulse a bounded number of shapes is drawn and attached to the pane
+ * with a single addAll call. Progress is reported and the load can be cancelled.
+ */
+public class StreamingDocumentLoader {
+    /** Number of shapes decoded before a batch is handed to the JavaFX thread. */
+    public static final int BATCH_SIZE = 500;
+    /** Maximum number of shapes attached to the pane during a single pulse. */
+    public static final int MAX_SHAPES_PER_PULSE = 2000;
+    /** Maximum number of decoded batches waiting to be published. */
+    private static final int QUEUE_CAPACITY = 16;
+
+    /** The document file to load. */
+    private final File file;
+    /** The pane the shapes are attached to. */
+    private final Pane pane;
+    /** Decoded batches waiting to be published on the JavaFX thread. */
+    private final BlockingQueue<List<ShapeInterface>> pendingBatches = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    /** The background thread decoding records. */
+    private Thread decoderThread;
+    /** The timer publishing batches once per pulse. */
+    private AnimationTimer publisher;
+    /** The number of shapes declared in the document header. */
+    private volatile int totalCount = -1;
+    /** Whether the decoder has read every record. */
+    private volatile boolean decodingDone = false;
+    /** The error raised by the decoder, if any. */
+    private volatile Throwable failure;
+    /** Whether the load has been cancelled. */
+    private volatile boolean cancelled = false;
+    /** The number of shapes attached to the pane so far. */
+    private int publishedCount = 0;
+    /** Whether the load has completed, failed or been cancelled. */
+    private boolean finished = false;
+
+    /** Called on the JavaFX thread with the fraction of shapes attached so far. */
+    private DoubleConsumer onProgress = progress -> { };
+    /** Called on the JavaFX thread once every shape has been attached. */
+    private Runnable onSucceeded = () -> { };
+    /** Called on the JavaFX thread when the document cannot be read. */
+    private Consumer<Throwable> onFailed = error -> { };
+
+    /**
+     * Constructs a StreamingDocumentLoader.
+     * @param file The document file to load.
+     * @param pane The pane the shapes will be attached to.
+     */
+    public StreamingDocumentLoader(File file, Pane pane) {
+        this.file = file;
+        this.pane = pane;
+    }
+
+    /**
+     * Sets the progress callback.
+     * @param onProgress Receives the fraction (0 to 1) of shapes attached so far.
+     */
+    public void setOnProgress(DoubleConsumer onProgress) {
+        this.onProgress = onProgress;
+    }
+
+    /**
+     * Sets the completion callback.
+     * @param onSucceeded Called once every shape has been attached.
+     */
+    public void setOnSucceeded(Runnable onSucceeded) {
+        this.onSucceeded = onSucceeded;
+    }
+
+    /**
+     * Sets the failure callback.
+     * @param onFailed Receives the error that stopped the load.
+     */
+    public void setOnFailed(Consumer<Throwable> onFailed) {
+        this.onFailed = onFailed;
+    }
+
+    /**
+     * Starts decoding in the background and publishing on every pulse.
+     * Must be called on the JavaFX application thread.
+     */
+    public void start() {
+        startDecoding();
+        publisher = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                publishPending();
+            }
+        };
+        publisher.start();
+    }
+
+    /**
+     * Starts the background thread that decodes the document records.
+     */
+    public void startDecoding() {
+        decoderThread = new Thread(this::decode, "document-loader");
+        decoderThread.setDaemon(true);
+        decoderThread.start();
+    }
+
+    /**
+     * Decodes the document and queues the shapes in batches.
+     * Runs on the background thread. Any error, including the unchecked ones a corrupt record
+     * can raise, is reported as the failure of the load, so that a truncated document never
+     * passes for a complete one.
+     */
+    private void decode() {
+        try (DocumentReader reader = new DocumentReader(new FileInputStream(file))) {
+            totalCount = reader.getShapeCount();
+            List<ShapeInterface> batch = new ArrayList<>(BATCH_SIZE);
+            while (reader.hasNext() && !cancelled) {
+                batch.add(reader.next());
+                if (batch.size() == BATCH_SIZE) {
+                    pendingBatches.put(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty() && !cancelled) {
+                pendingBatches.put(batch);
+            }
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            decodingDone = true;
+        }
+    }
+
+    /**
+     * Draws and attaches the decoded shapes, up to {@link #MAX_SHAPES_PER_PULSE}.
+     * Must be called on the JavaFX application thread; the timer calls it once per pulse.
+     * @return The number of shapes attached by this call.
+     */
+    public int publishPending() {
+        if (finished) return 0;
+        boolean decoderFinished = decodingDone;
+
+        List<Node> nodes = new ArrayList<>();
+        List<ShapeInterface> batch;
+        while (nodes.size() < MAX_SHAPES_PER_PULSE && (batch = pendingBatches.poll()) != null) {
+            for (ShapeInterface shape : batch) {
+                Node node = shape.draw();
+                if (node != null) {
+                    nodes.add(node);
+                }
+            }
+        }
+        if (!nodes.isEmpty()) {
+            pane.getChildren().addAll(nodes);
+            publishedCount += nodes.size();
+            onProgress.accept(getProgress());
+        }
+
+        if (failure != null) {
+            finish();
+            onFailed.accept(failure);
+        } else if (decoderFinished && pendingBatches.isEmpty()) {
+            finish();
+            onSucceeded.run();
+        }
+        return nodes.size();
+    }
+
+    /**
+     * Cancels the load. Shapes already attached stay on the pane.
+     */
+    public void cancel() {
+        cancelled = true;
+        if (decoderThread != null) {
+            decoderThread.interrupt();
+        }
+        pendingBatches.clear();
+        finish();
+    }
+
+    /**
+     * Stops the publishing timer and marks the load as finished.
+     */
+    private void finish() {
+        finished = true;
+        if (publisher != null) {
+            publisher.stop();
+        }
+    }
+
+    /**
+     * Gets the fraction of shapes attached so far.
+     * @return A value between 0 and 1, or 0 if the header has not been read yet.
+     */
+    public double getProgress() {
+        int total = totalCount;
+        if (total <= 0) return decodingDone ? 1 : 0;
+        return (double) publishedCount / total;
+    }
+
+    /**
+     * Checks whether the load has completed, failed or been cancelled.
+     * @return True if the load is over, false otherwise.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Checks whether the load has been cancelled.
+     * @return True if the load was cancelled, false otherwise.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
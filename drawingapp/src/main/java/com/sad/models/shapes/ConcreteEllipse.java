@@ -1,5 +1,7 @@
 package com.sad.models.shapes;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -7,7 +9,9 @@ import java.io.Serializable;
 
 import com.sad.models.EllipseFactory;
 import com.sad.models.ShapeFactory;
+import com.sad.models.persistence.DocumentFormat;
 
+import javafx.geometry.Bounds;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Ellipse;
@@ -17,6 +21,11 @@ import javafx.scene.shape.Ellipse;
  * Stores ellipse properties and provides drawing logic.
  */
 public class ConcreteEllipse implements ShapeInterface, Serializable {
+
+    /** Serialization version of the original class, kept so that legacy files still load. */
+    private static final long serialVersionUID = 5723936030145531000L;
+    /** The stable id of the ellipse, see {@link ShapeIds}. */
+    private transient long id = ShapeIds.next();
     /** The border color of the ellipse. */
     private transient Color borderColor, fillColor;
     /** The x-coordinate of the ellipse center. */
@@ -52,6 +61,24 @@ public class ConcreteEllipse implements ShapeInterface, Serializable {
         this.y = y;
     }
 
+    /**
+     * Gets the stable id of the ellipse.
+     * @return The id, or 0 if it was read from a legacy document.
+     */
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Sets the stable id of the ellipse, when it is read from a document.
+     * @param id The id.
+     */
+    @Override
+    public void setId(long id) {
+        this.id = id;
+    }
+
     /**
      * Draws the ellipse as a JavaFX Node.
      * @return The JavaFX Ellipse node representing this shape.
@@ -207,6 +234,39 @@ public class ConcreteEllipse implements ShapeInterface, Serializable {
         out.writeObject(colorToString(fillColor));
     }
 
+    /**
+     * Writes this ellipse as a binary document record.
+     * Colors are packed as ARGB integers by {@link DocumentFormat}.
+     * @param out The DataOutput to write to.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        DocumentFormat.writeColors(out, borderColor, fillColor);
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(width);
+        out.writeDouble(height);
+        out.writeDouble(angle);
+    }
+
+    /**
+     * Reads an ellipse from a binary document record.
+     * The JavaFX node is not created until {@link #draw()} is called.
+     * @param in The DataInput to read from.
+     * @return The decoded ellipse.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static ConcreteEllipse readFrom(DataInput in) throws IOException {
+        Color[] colors = DocumentFormat.readColors(in);
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double width = in.readDouble();
+        double height = in.readDouble();
+        ConcreteEllipse ellipse = new ConcreteEllipse(x, y, width, height, colors[0], colors[1]);
+        ellipse.angle = in.readDouble();
+        return ellipse;
+    }
+
      /**
      * Moves the ellipse to a new position.
      * Updates both the internal coordinates and the visual representation.
@@ -306,6 +366,15 @@ public class ConcreteEllipse implements ShapeInterface, Serializable {
     @Override
     public double getHeight() { return height; }
 
+    /**
+     * Computes the bounding box of the ellipse, rotated around its center, including the stroke.
+     * @return The bounding box, in pane coordinates.
+     */
+    @Override
+    public Bounds getBounds() {
+        return ShapeBounds.rotatedEllipse(x, y, width + ShapeBounds.HALF_STROKE, height + ShapeBounds.HALF_STROKE, angle);
+    }
+
     /**
      * Sets the vertical radius (height) of the ellipse.
      * @param height The new height.
@@ -1,5 +1,7 @@
 package com.sad.models.shapes;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -7,7 +9,9 @@ import java.io.Serializable;
 
 import com.sad.models.LineFactory;
 import com.sad.models.ShapeFactory;
+import com.sad.models.persistence.DocumentFormat;
 
+import javafx.geometry.Bounds;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Line;
@@ -18,6 +22,11 @@ import javafx.scene.shape.Line;
  * Implements Serializable to support saving/loading functionality.
  */
 public class ConcreteLine implements ShapeInterface, Serializable {
+
+    /** Serialization version of the original class, kept so that legacy files still load. */
+    private static final long serialVersionUID = -324581844344238701L;
+    /** The stable id of the line, see {@link ShapeIds}. */
+    private transient long id = ShapeIds.next();
     /** The border color of the line. */
     private transient Color borderColor;
     /** The starting x-coordinate of the line. */
@@ -49,6 +58,24 @@ public class ConcreteLine implements ShapeInterface, Serializable {
         this.borderColor = borderColor;
     }
 
+    /**
+     * Gets the stable id of the line.
+     * @return The id, or 0 if it was read from a legacy document.
+     */
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Sets the stable id of the line, when it is read from a document.
+     * @param id The id.
+     */
+    @Override
+    public void setId(long id) {
+        this.id = id;
+    }
+
     /**
      * Draws the line as a JavaFX Node.
      * @return The JavaFX Line node representing this shape.
@@ -193,6 +220,39 @@ public class ConcreteLine implements ShapeInterface, Serializable {
         this.lineNode.setUserData(this);
     }
 
+    /**
+     * Writes this line as a binary document record.
+     * The color is packed as an ARGB integer by {@link DocumentFormat}.
+     * @param out The DataOutput to write to.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        DocumentFormat.writeColors(out, borderColor, null);
+        out.writeDouble(x1);
+        out.writeDouble(y1);
+        out.writeDouble(x2);
+        out.writeDouble(y2);
+        out.writeDouble(angle);
+    }
+
+    /**
+     * Reads a line from a binary document record.
+     * The JavaFX node is not created until {@link #draw()} is called.
+     * @param in The DataInput to read from.
+     * @return The decoded line.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static ConcreteLine readFrom(DataInput in) throws IOException {
+        Color[] colors = DocumentFormat.readColors(in);
+        double x1 = in.readDouble();
+        double y1 = in.readDouble();
+        double x2 = in.readDouble();
+        double y2 = in.readDouble();
+        ConcreteLine line = new ConcreteLine(x1, y1, x2, y2, colors[0]);
+        line.angle = in.readDouble();
+        return line;
+    }
+
     /**
      * Moves the line to a new position.
      * Updates both the internal coordinates and the visual representation.
@@ -362,6 +422,18 @@ public class ConcreteLine implements ShapeInterface, Serializable {
         return Math.abs(y2 - y1);
     }
 
+    /**
+     * Computes the bounding box of the line, rotated around its midpoint, including the stroke.
+     * @return The bounding box, in pane coordinates.
+     */
+    @Override
+    public Bounds getBounds() {
+        double halfLength = Math.hypot(x2 - x1, y2 - y1) / 2;
+        double direction = Math.toDegrees(Math.atan2(y2 - y1, x2 - x1));
+        return ShapeBounds.rotatedBox((x1 + x2) / 2, (y1 + y2) / 2,
+                halfLength + ShapeBounds.HALF_STROKE, ShapeBounds.HALF_STROKE, direction + angle);
+    }
+
     /**
      * Sets the height of the line by adjusting the ending y-coordinate.
      * @param height The new height.
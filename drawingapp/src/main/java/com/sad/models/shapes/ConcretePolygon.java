@@ -1,14 +1,21 @@
 package com.sad.models.shapes;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.sad.models.ShapeFactory;
+import com.sad.models.persistence.DocumentFormat;
 
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Polygon;
@@ -17,13 +24,30 @@ import javafx.scene.shape.Polygon;
  * Concrete implementation of ShapeInterface representing a polygon.
  * Stores polygon properties and provides drawing logic.
  * Implements Serializable to support saving/loading functionality.
+ * Vertices are kept in a primitive array; they are boxed only for the JavaFX node,
+ * which is not created for shapes that are culled, lazily loaded or painted into a canvas.
+ * The serialized form still stores the vertices as a list, as earlier versions did.
  */
 public class ConcretePolygon implements ShapeInterface, Serializable {
 
+    /** Serialization version of the original class, kept so that legacy files still load. */
+    private static final long serialVersionUID = -8070959302153661221L;
+    /** The stable id of the polygon, see {@link ShapeIds}. */
+    private transient long id = ShapeIds.next();
+    /** The serialized fields, matching earlier versions that stored the vertices as a list. */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("angle", double.class),
+        new ObjectStreamField("mirrorScaleX", double.class),
+        new ObjectStreamField("mirrorScaleY", double.class),
+        new ObjectStreamField("x", double.class),
+        new ObjectStreamField("y", double.class),
+        new ObjectStreamField("points", List.class)
+    };
+
     /** The JavaFX Polygon node representing this shape. */
     private transient Polygon polygonNode;
-    /** The list of relative points (x, y coordinates) defining the polygon vertices. */
-    private List<Double> points;
+    /** The relative coordinates of the vertices, as x0, y0, x1, y1, ... */
+    private double[] coords;
     /** The border and fill colors of the polygon. */
     private transient Color borderColor, fillColor;
     /** The x-coordinate of the polygon's top-left corner. */
@@ -37,36 +61,74 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
     private double mirrorScaleX = 1;
     private double mirrorScaleY = 1;
 
+    /** The bounding box of the vertices, once mirrored and rotated around the origin. */
+    private transient double boundsMinX, boundsMinY, boundsMaxX, boundsMaxY;
+    /** The center of the box of the vertices, around which the node rotates. */
+    private transient double pivotX, pivotY;
+    /** Whether the cached bounding box matches the current vertices, angle and mirroring. */
+    private transient boolean boundsValid;
 
     /**
      * Constructs a ConcretePolygon with the specified parameters.
      * Calculates the relative points based on the minimum x and y values.
-     * @param points The list of absolute coordinates defining the polygon vertices.
+     * @param points The absolute coordinates of the vertices, as x0, y0, x1, y1, ...; the array is not kept.
      * @param borderColor The color of the polygon border.
      * @param fillColor The fill color of the polygon.
      */
-    public ConcretePolygon(List<Double> points, Color borderColor, Color fillColor) {
+    public ConcretePolygon(double[] points, Color borderColor, Color fillColor) {
         double minX = Double.MAX_VALUE;
         double minY = Double.MAX_VALUE;
-        for (int i = 0; i < points.size(); i += 2) {
-            double px = points.get(i);
-            double py = points.get(i + 1);
-            if (px < minX) minX = px;
-            if (py < minY) minY = py;
+        for (int i = 0; i + 1 < points.length; i += 2) {
+            if (points[i] < minX) minX = points[i];
+            if (points[i + 1] < minY) minY = points[i + 1];
         }
-        this.x = minX;
-        this.y = minY;
+        this.x = points.length > 1 ? minX : 0;
+        this.y = points.length > 1 ? minY : 0;
 
-        this.points = new ArrayList<>();
-        for (int i = 0; i < points.size(); i += 2) {
-            this.points.add(points.get(i) - minX);
-            this.points.add(points.get(i + 1) - minY);
+        this.coords = new double[points.length & ~1];
+        for (int i = 0; i < coords.length; i += 2) {
+            coords[i] = points[i] - x;
+            coords[i + 1] = points[i + 1] - y;
         }
 
         this.borderColor = borderColor;
         this.fillColor = fillColor;
     }
 
+    /**
+     * Constructs a ConcretePolygon from a list of absolute coordinates.
+     * @param points The list of absolute coordinates defining the polygon vertices.
+     * @param borderColor The color of the polygon border.
+     * @param fillColor The fill color of the polygon.
+     */
+    public ConcretePolygon(List<Double> points, Color borderColor, Color fillColor) {
+        this(toArray(points), borderColor, fillColor);
+    }
+
+    /**
+     * Constructs a ConcretePolygon from relative coordinates, which are kept as they are.
+     */
+    private ConcretePolygon(double[] coords, double x, double y, Color borderColor, Color fillColor) {
+        this.coords = coords;
+        this.x = x;
+        this.y = y;
+        this.borderColor = borderColor;
+        this.fillColor = fillColor;
+    }
+
+    /**
+     * Copies a list of coordinates into a primitive array.
+     * @param values The coordinates.
+     * @return A new array.
+     */
+    private static double[] toArray(List<?> values) {
+        double[] result = new double[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((Number) values.get(i)).doubleValue();
+        }
+        return result;
+    }
+
     /**
      * Sets the rotation angle of the polygon.
      * Updates the visual representation if the node exists.
@@ -75,6 +137,7 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
     @Override
     public void setAngle(double angle) {
         this.angle = angle;
+        boundsValid = false;
         if (polygonNode != null) {
             polygonNode.setRotate(angle);
         }
@@ -100,17 +163,17 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
 
     private double getCenterY() {
         double sumY = 0;
-        int count = points.size() / 2;
-        for (int i = 1; i < points.size(); i += 2) {
-            sumY += points.get(i);
+        int count = coords.length / 2;
+        for (int i = 1; i < coords.length; i += 2) {
+            sumY += coords[i];
         }
         return sumY / count;
     }
     private double getCenterX() {
         double sumX = 0;
-        int count = points.size() / 2;
-        for (int i = 0; i < points.size(); i += 2) {
-            sumX += points.get(i);
+        int count = coords.length / 2;
+        for (int i = 0; i < coords.length; i += 2) {
+            sumX += coords[i];
         }
         return sumX / count;
     }
@@ -118,6 +181,7 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
     @Override
     public void mirrorX(){
         mirrorScaleY *= -1;
+        boundsValid = false;
         if (polygonNode != null) {
             mirrorScale.setY(mirrorScale.getY() * -1);
         }
@@ -126,11 +190,31 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
     @Override
     public void mirrorY(){
         mirrorScaleX *= -1;
+        boundsValid = false;
         if (polygonNode != null) {
             mirrorScale.setX(mirrorScale.getX() * -1);
         }
     }
-        /**
+
+    /**
+     * Gets the stable id of the polygon.
+     * @return The id, or 0 if it was read from a legacy document.
+     */
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Sets the stable id of the polygon, when it is read from a document.
+     * @param id The id.
+     */
+    @Override
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
      * Draws the polygon as a JavaFX Node.
      * Creates a new Polygon node if none exists, or returns the existing one.
      * @return The JavaFX Polygon node representing this shape.
@@ -139,7 +223,7 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
     public Node draw() {
         if (polygonNode == null) {
             polygonNode = new Polygon();
-            polygonNode.getPoints().addAll(points);
+            polygonNode.getPoints().setAll(boxedCoords());
             polygonNode.setStroke(borderColor);
             polygonNode.setFill(fillColor);
             polygonNode.setStrokeWidth(3);
@@ -226,9 +310,7 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
      */
     @Override
     public ShapeInterface clone() {
-        ConcretePolygon copy = new ConcretePolygon(getAbsolutePoints(), borderColor, fillColor);
-        copy.setX(x);
-        copy.setY(y);
+        ConcretePolygon copy = new ConcretePolygon(coords.clone(), x, y, borderColor, fillColor);
         copy.setAngle(angle);
         copy.mirrorScaleX = this.mirrorScaleX;
         copy.mirrorScaleY = this.mirrorScaleY;
@@ -265,12 +347,23 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
 
     /**
      * Custom serialization method.
-     * Converts colors to their string representations for storage.
+     * Writes the vertices as a list, like earlier versions, and converts colors to their string representations.
      * @param out The ObjectOutputStream to write to.
      * @throws IOException If an I/O error occurs.
      */
     private void writeObject(ObjectOutputStream out) throws IOException {
-        out.defaultWriteObject();
+        List<Double> points = new ArrayList<>(coords.length);
+        for (double value : coords) {
+            points.add(value);
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("angle", angle);
+        fields.put("mirrorScaleX", mirrorScaleX);
+        fields.put("mirrorScaleY", mirrorScaleY);
+        fields.put("x", x);
+        fields.put("y", y);
+        fields.put("points", points);
+        out.writeFields();
         out.writeObject(colorToString(borderColor));
         out.writeObject(colorToString(fillColor));
     }
@@ -283,12 +376,19 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
      * @throws ClassNotFoundException If the class of a serialized object cannot be found.
      */
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-        in.defaultReadObject();
+        ObjectInputStream.GetField fields = in.readFields();
+        angle = fields.get("angle", 0.0);
+        mirrorScaleX = fields.get("mirrorScaleX", 1.0);
+        mirrorScaleY = fields.get("mirrorScaleY", 1.0);
+        x = fields.get("x", 0.0);
+        y = fields.get("y", 0.0);
+        List<?> points = (List<?>) fields.get("points", null);
+        coords = points != null ? toArray(points) : new double[0];
         borderColor = stringToColor((String) in.readObject());
         fillColor = stringToColor((String) in.readObject());
 
         polygonNode = new Polygon();
-        polygonNode.getPoints().addAll(points);
+        polygonNode.getPoints().setAll(boxedCoords());
         polygonNode.setStroke(borderColor);
         polygonNode.setFill(fillColor);
         polygonNode.setStrokeWidth(3);
@@ -298,11 +398,60 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
         polygonNode.setLayoutY(y);
 
         double centerX = getCenterX();
-        double centerY = getCenterX();
+        double centerY = getCenterY();
         mirrorScale = new javafx.scene.transform.Scale(mirrorScaleX, mirrorScaleY, centerX, centerY);
         polygonNode.getTransforms().add(mirrorScale);
     }
 
+    /**
+     * Writes this polygon as a binary document record.
+     * Vertices are stored relative to the top-left corner, exactly as kept in memory.
+     * @param out The DataOutput to write to.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        DocumentFormat.writeColors(out, borderColor, fillColor);
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(angle);
+        out.writeDouble(mirrorScaleX);
+        out.writeDouble(mirrorScaleY);
+        out.writeInt(coords.length);
+        for (double value : coords) {
+            out.writeDouble(value);
+        }
+    }
+
+    /**
+     * Reads a polygon from a binary document record.
+     * The JavaFX node is not created until {@link #draw()} is called.
+     * @param in The DataInput to read from.
+     * @return The decoded polygon.
+     * @throws IOException If an I/O error occurs or the record does not hold at least three vertices.
+     */
+    public static ConcretePolygon readFrom(DataInput in) throws IOException {
+        Color[] colors = DocumentFormat.readColors(in);
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double angle = in.readDouble();
+        double mirrorScaleX = in.readDouble();
+        double mirrorScaleY = in.readDouble();
+        int count = in.readInt();
+        if (count < 6 || count % 2 != 0) {
+            throw new IOException("Invalid polygon coordinate count: " + count);
+        }
+        DocumentFormat.checkSize(in, count, Double.BYTES);
+        double[] coords = new double[count];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = in.readDouble();
+        }
+        ConcretePolygon polygon = new ConcretePolygon(coords, x, y, colors[0], colors[1]);
+        polygon.angle = angle;
+        polygon.mirrorScaleX = mirrorScaleX;
+        polygon.mirrorScaleY = mirrorScaleY;
+        return polygon;
+    }
+
     /**
      * Moves the polygon to a new position.
      * Updates both the internal coordinates and the visual representation.
@@ -321,16 +470,50 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
     }
 
     /**
-     * Gets the absolute points of the polygon (relative points + top-left corner).
-     * @return A list of absolute coordinates defining the polygon vertices.
+     * Gets the coordinates of the vertices relative to the top-left corner, as drawn by the node.
+     * @return A copy of the coordinates, as x0, y0, x1, y1, ...
+     */
+    public double[] getPoints() {
+        return coords.clone();
+    }
+
+    /**
+     * Gets the number of vertices of the polygon.
+     * @return The number of vertices.
+     */
+    public int getVertexCount() {
+        return coords.length / 2;
+    }
+
+    /**
+     * Replaces the vertices, keeping the position, angle and mirroring of the polygon.
+     * @param points The coordinates relative to the top-left corner, as x0, y0, x1, y1, ...; the array is not kept.
+     * @throws IllegalArgumentException if fewer than three vertices are given.
+     */
+    public void setPoints(double[] points) {
+        if (points.length < 6) {
+            throw new IllegalArgumentException("A polygon needs at least three vertices");
+        }
+        coords = Arrays.copyOf(points, points.length & ~1);
+        boundsValid = false;
+
+        if (polygonNode != null) {
+            polygonNode.getPoints().setAll(boxedCoords());
+            mirrorScale.setPivotX(getCenterX());
+            mirrorScale.setPivotY(getCenterY());
+        }
+    }
+
+    /**
+     * Boxes the coordinates for the JavaFX node, whose point list only holds Double objects.
+     * @return The coordinates as an array of Double.
      */
-    private List<Double> getAbsolutePoints() {
-        List<Double> absPoints = new ArrayList<>();
-        for (int i = 0; i < points.size(); i += 2) {
-            absPoints.add(points.get(i) + x);
-            absPoints.add(points.get(i + 1) + y);
+    private Double[] boxedCoords() {
+        Double[] boxed = new Double[coords.length];
+        for (int i = 0; i < coords.length; i++) {
+            boxed[i] = coords[i];
         }
-        return absPoints;
+        return boxed;
     }
 
     /**
@@ -376,11 +559,13 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
 
     /**
      * Gets the width of the polygon (bounding box width).
+     * The bounding box is computed from the vertices, so it does not need the node; the stroke is not included.
      * @return The width.
      */
     @Override
     public double getWidth() {
-        return polygonNode.getBoundsInParent().getWidth();
+        updateBounds();
+        return boundsMaxX - boundsMinX;
     }
 
     /**
@@ -398,7 +583,71 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
      */
     @Override
     public double getHeight() {
-        return polygonNode.getBoundsInParent().getHeight();
+        updateBounds();
+        return boundsMaxY - boundsMinY;
+    }
+
+    /**
+     * Computes the bounding box of the polygon, mirrored and rotated as the node draws it, including the stroke.
+     * The miters of sharp corners are not included, so the box may be slightly smaller than the node's.
+     * @return The bounding box, in pane coordinates.
+     */
+    @Override
+    public Bounds getBounds() {
+        updateBounds();
+        // The cached box is rotated around the origin; the node rotates around the pivot instead.
+        double radians = Math.toRadians(angle);
+        double offsetX = x + pivotX - (pivotX * Math.cos(radians) - pivotY * Math.sin(radians));
+        double offsetY = y + pivotY - (pivotX * Math.sin(radians) + pivotY * Math.cos(radians));
+        double pad = ShapeBounds.HALF_STROKE;
+        return new BoundingBox(boundsMinX + offsetX - pad, boundsMinY + offsetY - pad,
+                getWidth() + 2 * pad, getHeight() + 2 * pad);
+    }
+
+    /**
+     * Recomputes the bounding box if the geometry changed since it was last computed.
+     * The vertices are mirrored around their centroid and rotated as the node does, but around
+     * the origin of the polygon; the box is placed at the rotation pivot and the position only when queried,
+     * so that moving the polygon does not invalidate it.
+     */
+    private void updateBounds() {
+        if (boundsValid) return;
+        double minX = 0, minY = 0, maxX = 0, maxY = 0;
+        pivotX = pivotY = 0;
+        if (coords.length > 1) {
+            double left = coords[0], right = coords[0], top = coords[1], bottom = coords[1];
+            for (int i = 2; i + 1 < coords.length; i += 2) {
+                left = Math.min(left, coords[i]);
+                right = Math.max(right, coords[i]);
+                top = Math.min(top, coords[i + 1]);
+                bottom = Math.max(bottom, coords[i + 1]);
+            }
+            pivotX = (left + right) / 2;
+            pivotY = (top + bottom) / 2;
+
+            double centerX = getCenterX();
+            double centerY = getCenterY();
+            double radians = Math.toRadians(angle);
+            double cos = Math.cos(radians);
+            double sin = Math.sin(radians);
+            minX = minY = Double.POSITIVE_INFINITY;
+            maxX = maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i + 1 < coords.length; i += 2) {
+                double px = centerX + (coords[i] - centerX) * mirrorScaleX;
+                double py = centerY + (coords[i + 1] - centerY) * mirrorScaleY;
+                double rx = px * cos - py * sin;
+                double ry = px * sin + py * cos;
+                if (rx < minX) minX = rx;
+                if (rx > maxX) maxX = rx;
+                if (ry < minY) minY = ry;
+                if (ry > maxY) maxY = ry;
+            }
+        }
+        boundsMinX = minX;
+        boundsMinY = minY;
+        boundsMaxX = maxX;
+        boundsMaxY = maxY;
+        boundsValid = true;
     }
 
     /**
@@ -416,34 +665,18 @@ public class ConcretePolygon implements ShapeInterface, Serializable {
      * @param scaleY The scaling factor for the Y dimension.
      */
     private void scale(double scaleX, double scaleY) {
-        double sumX = 0;
-        double sumY = 0;
-        int count = points.size() / 2;
-
-        for (int i = 0; i < points.size(); i += 2) {
-            sumX += points.get(i);
-            sumY += points.get(i + 1);
-        }
-
-        double centerX = sumX / count;
-        double centerY = sumY / count;
-
-        List<Double> newPoints = new ArrayList<>();
-        for (int i = 0; i < points.size(); i += 2) {
-            double x = points.get(i);
-            double y = points.get(i + 1);
-
-            double newX = centerX + (x - centerX) * scaleX;
-            double newY = centerY + (y - centerY) * scaleY;
+        double centerX = getCenterX();
+        double centerY = getCenterY();
 
-            newPoints.add(newX);
-            newPoints.add(newY);
+        // The vertices are transformed in place, without allocating.
+        for (int i = 0; i < coords.length; i += 2) {
+            coords[i] = centerX + (coords[i] - centerX) * scaleX;
+            coords[i + 1] = centerY + (coords[i + 1] - centerY) * scaleY;
         }
+        boundsValid = false;
 
-        points.clear();
-        points.addAll(newPoints);
         if (polygonNode != null) {
-            polygonNode.getPoints().setAll(points);
+            polygonNode.getPoints().setAll(boxedCoords());
         }
     }
 
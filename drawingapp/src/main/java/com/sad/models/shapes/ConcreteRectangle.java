@@ -1,5 +1,7 @@
 package com.sad.models.shapes;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -7,7 +9,9 @@ import java.io.Serializable;
 
 import com.sad.models.RectangleFactory;
 import com.sad.models.ShapeFactory;
+import com.sad.models.persistence.DocumentFormat;
 
+import javafx.geometry.Bounds;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
@@ -18,6 +22,11 @@ import javafx.scene.shape.Rectangle;
  * Implements Serializable to support saving/loading functionality.
  */
 public class ConcreteRectangle implements ShapeInterface, Serializable {
+
+    /** Serialization version of the original class, kept so that legacy files still load. */
+    private static final long serialVersionUID = -1591087416620571795L;
+    /** The stable id of the rectangle, see {@link ShapeIds}. */
+    private transient long id = ShapeIds.next();
     /** The border color of the rectangle. */
     private transient Color borderColor, fillColor;
     /** The x-coordinate of the rectangle's upper-left corner. */
@@ -52,6 +61,24 @@ public class ConcreteRectangle implements ShapeInterface, Serializable {
         this.y = y;
     }
 
+    /**
+     * Gets the stable id of the rectangle.
+     * @return The id, or 0 if it was read from a legacy document.
+     */
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Sets the stable id of the rectangle, when it is read from a document.
+     * @param id The id.
+     */
+    @Override
+    public void setId(long id) {
+        this.id = id;
+    }
+
     /**
      * Draws the rectangle as a JavaFX Node.
      * Creates a new Rectangle node if none exists, or returns the existing one.
@@ -210,6 +237,39 @@ public class ConcreteRectangle implements ShapeInterface, Serializable {
         this.rectNode.setUserData(this);
     }
 
+    /**
+     * Writes this rectangle as a binary document record.
+     * Colors are packed as ARGB integers by {@link DocumentFormat}.
+     * @param out The DataOutput to write to.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        DocumentFormat.writeColors(out, borderColor, fillColor);
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(width);
+        out.writeDouble(height);
+        out.writeDouble(angle);
+    }
+
+    /**
+     * Reads a rectangle from a binary document record.
+     * The JavaFX node is not created until {@link #draw()} is called.
+     * @param in The DataInput to read from.
+     * @return The decoded rectangle.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static ConcreteRectangle readFrom(DataInput in) throws IOException {
+        Color[] colors = DocumentFormat.readColors(in);
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double width = in.readDouble();
+        double height = in.readDouble();
+        ConcreteRectangle rectangle = new ConcreteRectangle(x, y, width, height, colors[0], colors[1]);
+        rectangle.angle = in.readDouble();
+        return rectangle;
+    }
+
     /**
      * Moves the rectangle to a new position.
      * Updates both the internal coordinates and the visual representation.
@@ -311,6 +371,16 @@ public class ConcreteRectangle implements ShapeInterface, Serializable {
         return height;
     }
 
+    /**
+     * Computes the bounding box of the rectangle, rotated around its center, including the stroke.
+     * @return The bounding box, in pane coordinates.
+     */
+    @Override
+    public Bounds getBounds() {
+        return ShapeBounds.rotatedBox(x + width / 2, y + height / 2,
+                width / 2 + ShapeBounds.HALF_STROKE, height / 2 + ShapeBounds.HALF_STROKE, angle);
+    }
+
     /**
      * Sets the height of the rectangle.
      * Updates the visual representation if the node exists.
@@ -1,17 +1,22 @@
 package com.sad.models.shapes;
 
+import javafx.geometry.Bounds;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import javafx.scene.transform.Scale;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 
 import com.sad.models.ShapeFactory;
+import com.sad.models.persistence.DocumentFormat;
 
 /**
  * Concrete implementation of ShapeInterface representing a text shape.
@@ -20,6 +25,11 @@ import com.sad.models.ShapeFactory;
  */
 public class ConcreteText implements ShapeInterface, Serializable {
 
+    /** Serialization version of the original class, kept so that legacy files still load. */
+    private static final long serialVersionUID = -1248807012772229594L;
+    /** The stable id of the text, see {@link ShapeIds}. */
+    private transient long id = ShapeIds.next();
+
     /** The JavaFX Text node representing this shape. */
     private transient Text textNode;
     /** The content of the text. */
@@ -37,7 +47,10 @@ public class ConcreteText implements ShapeInterface, Serializable {
     /** The rotation angle of the text in degrees. */
     private double angle = 0;
 
+    /** The size of the text, once scaled; it does not depend on the rotation or the mirroring. */
     private double width, height;
+    /** Whether the content changed while there was no node to measure it with. */
+    private transient boolean sizeStale;
 
     private transient javafx.scene.transform.Scale mirrorScale = new javafx.scene.transform.Scale(1, 1, 0, 0);
     private double mirrorScaleX = 1;
@@ -63,6 +76,24 @@ public class ConcreteText implements ShapeInterface, Serializable {
         this.fontSize = fontSize;
     }
 
+    /**
+     * Gets the stable id of the text.
+     * @return The id, or 0 if it was read from a legacy document.
+     */
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Sets the stable id of the text, when it is read from a document.
+     * @param id The id.
+     */
+    @Override
+    public void setId(long id) {
+        this.id = id;
+    }
+
     /**
      * Draws the text as a JavaFX Node.
      * Creates a new Text node if none exists, or returns the existing one.
@@ -79,8 +110,9 @@ public class ConcreteText implements ShapeInterface, Serializable {
             textNode.setFont(Font.font(fontSize));
             setAngle(angle);
             textNode.setUserData(this);
-            this.width = textNode.getBoundsInParent().getWidth();
-            this.height = textNode.getBoundsInParent().getHeight();
+            if (sizeStale || width == 0 || height == 0) {
+                measure();
+            }
 
             textNode.applyCss();
             textNode.snapshot(null, null);
@@ -169,6 +201,11 @@ public class ConcreteText implements ShapeInterface, Serializable {
      * @param fontSize The new font size.
      */
     public void setFontSize(double fontSize) {
+        // The extent of a text is proportional to its font size, so the size is rescaled without measuring.
+        if (this.fontSize > 0) {
+            width *= fontSize / this.fontSize;
+            height *= fontSize / this.fontSize;
+        }
         this.fontSize = fontSize;
         if (textNode != null) {
             textNode.setFont(Font.font(fontSize));
@@ -279,6 +316,9 @@ public class ConcreteText implements ShapeInterface, Serializable {
         this.content = content;
         if (textNode != null) {
             textNode.setText(content);
+            measure();
+        } else {
+            sizeStale = true;
         }
     }
 
@@ -343,31 +383,52 @@ public class ConcreteText implements ShapeInterface, Serializable {
     }
 
     /**
-     * Sets the width of the text.
-     * This method is not implemented as resizing text is typically done by changing the font size.
-     * @param width The new width (ignored).
+     * Computes the bounding box of the text, rotated around its center.
+     * The text is assumed to sit on its baseline; measuring the descent would need the font toolkit.
+     * @return The bounding box, in pane coordinates.
+     */
+    @Override
+    public Bounds getBounds() {
+        return ShapeBounds.rotatedBox(x + width / 2, y - height / 2, width / 2, height / 2, angle);
+    }
+
+    /**
+     * Sets the width of the text by stretching it horizontally.
+     * The scale is derived from the current width, so the node is not queried.
+     * @param width The new width.
      */
     @Override
     public void setWidth(double width) {
-        this.width = width;
-        if (textNode != null && textNode.getLayoutBounds().getWidth() != 0) {
-            scaleX = width / textNode.getLayoutBounds().getWidth();
+        if (this.width != 0) {
+            scaleX *= width / this.width;
             updateTransform();
         }
+        this.width = width;
     }
 
     /**
-     * Sets the height of the text.
-     * This method is not implemented as resizing text is typically done by changing the font size.
-     * @param height The new height (ignored).
+     * Sets the height of the text by stretching it vertically.
+     * The scale is derived from the current height, so the node is not queried.
+     * @param height The new height.
      */
     @Override
     public void setHeight(double height) {
-        this.height = height;
-        if (textNode != null && textNode.getLayoutBounds().getHeight() != 0) {
-            scaleY = height / textNode.getLayoutBounds().getHeight();
+        if (this.height != 0) {
+            scaleY *= height / this.height;
             updateTransform();
         }
+        this.height = height;
+    }
+
+    /**
+     * Measures the unscaled extent of the content with the node, then applies the current scale.
+     * This is the only size query that needs the node; it is made when the node is created and when the content changes.
+     */
+    private void measure() {
+        javafx.geometry.Bounds bounds = textNode.getLayoutBounds();
+        width = bounds.getWidth() * scaleX;
+        height = bounds.getHeight() * scaleY;
+        sizeStale = false;
     }
 
     private void updateTransform() {
@@ -493,6 +554,74 @@ public class ConcreteText implements ShapeInterface, Serializable {
         mirrorScale.setY(scaleY);
     }
 
+    /**
+     * Writes this text as a binary document record.
+     * Colors are packed as ARGB integers by {@link DocumentFormat}; the content is
+     * stored as its UTF-8 byte length followed by the bytes.
+     * @param out The DataOutput to write to.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        DocumentFormat.writeColors(out, borderColor, fillColor);
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(fontSize);
+        out.writeDouble(angle);
+        out.writeDouble(width);
+        out.writeDouble(height);
+        out.writeDouble(mirrorScaleX);
+        out.writeDouble(mirrorScaleY);
+        out.writeDouble(scaleX);
+        out.writeDouble(scaleY);
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a text from a binary document record written in the current version of the format.
+     * The JavaFX node is not created until {@link #draw()} is called.
+     * @param in The DataInput to read from.
+     * @return The decoded text.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static ConcreteText readFrom(DataInput in) throws IOException {
+        return readFrom(in, DocumentFormat.VERSION);
+    }
+
+    /**
+     * Reads a text from a binary document record.
+     * Records older than {@link DocumentFormat#VERSION_WITH_LONG_TEXT} store the content in modified UTF-8.
+     * @param in The DataInput to read from.
+     * @param version The version of the format the record was written in.
+     * @return The decoded text.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static ConcreteText readFrom(DataInput in, int version) throws IOException {
+        Color[] colors = DocumentFormat.readColors(in);
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double fontSize = in.readDouble();
+        ConcreteText text = new ConcreteText("", x, y, colors[0], colors[1], fontSize);
+        text.angle = in.readDouble();
+        text.width = in.readDouble();
+        text.height = in.readDouble();
+        text.mirrorScaleX = in.readDouble();
+        text.mirrorScaleY = in.readDouble();
+        text.scaleX = in.readDouble();
+        text.scaleY = in.readDouble();
+        if (version >= DocumentFormat.VERSION_WITH_LONG_TEXT) {
+            int length = in.readInt();
+            DocumentFormat.checkSize(in, length, 1);
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            text.content = new String(bytes, StandardCharsets.UTF_8);
+        } else {
+            text.content = in.readUTF();
+        }
+        return text;
+    }
+
     /**
      * Returns the factory for creating text shapes.
      * @return The ShapeFactory instance (currently null).
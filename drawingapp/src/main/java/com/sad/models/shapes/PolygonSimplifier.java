@@ -0,0 +1,154 @@
+package com.sad.models.shapes;
+
+import java.util.Arrays;
+
+/**
+ * Reduces the number of vertices of polygon outlines while keeping their shape within a tolerance.
+ * {@link #simplify(double[], double)} runs the Douglas-Peucker algorithm, which keeps every vertex
+ * farther than the tolerance from the simplified outline, after a linear radial pass that already
+ * drops the vertices close to their predecessor. {@link #simplifyRadial(double[], double)} is that
+ * pass alone, for large inputs such as loaded documents where a single scan is preferred.
+ * Both keep at least three vertices and never add or move one.
+ */
+public final class PolygonSimplifier {
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private PolygonSimplifier() {
+    }
+
+    /**
+     * Drops the vertices closer than a tolerance to the last vertex kept, in one pass.
+     * @param points The vertices of the outline, as x0, y0, x1, y1, ...
+     * @param tolerance The smallest distance between consecutive vertices kept.
+     * @return The vertices kept, in a new array; a copy of the input if fewer than three would remain.
+     */
+    public static double[] simplifyRadial(double[] points, double tolerance) {
+        int vertices = points.length / 2;
+        if (vertices <= 3 || tolerance <= 0) {
+            return Arrays.copyOf(points, vertices * 2);
+        }
+        double squared = tolerance * tolerance;
+        double[] kept = new double[vertices * 2];
+        kept[0] = points[0];
+        kept[1] = points[1];
+        int count = 1;
+        for (int i = 1; i < vertices; i++) {
+            double dx = points[2 * i] - kept[2 * count - 2];
+            double dy = points[2 * i + 1] - kept[2 * count - 1];
+            if (dx * dx + dy * dy >= squared) {
+                kept[2 * count] = points[2 * i];
+                kept[2 * count + 1] = points[2 * i + 1];
+                count++;
+            }
+        }
+        if (count < 3) {
+            return Arrays.copyOf(points, vertices * 2);
+        }
+        return Arrays.copyOf(kept, count * 2);
+    }
+
+    /**
+     * Simplifies a closed outline with the Douglas-Peucker algorithm.
+     * The outline is closed by repeating its first vertex and split at the vertex farthest from it, then each
+     * part keeps the vertex farthest from its chord whenever that distance exceeds the tolerance,
+     * and is split there in turn. Parts are processed from an explicit stack, so long outlines
+     * do not exhaust the call stack.
+     * @param points The vertices of the outline, as x0, y0, x1, y1, ...
+     * @param tolerance The largest distance allowed between a dropped vertex and the simplified outline.
+     * @return The vertices kept, in their original order, in a new array.
+     */
+    public static double[] simplify(double[] points, double tolerance) {
+        double[] reduced = simplifyRadial(points, tolerance);
+        int vertices = reduced.length / 2;
+        if (vertices <= 3 || tolerance <= 0) {
+            return reduced;
+        }
+        // A closed outline has no endpoints: close it, then split it at the vertex farthest from the first one.
+        double[] ring = Arrays.copyOf(reduced, reduced.length + 2);
+        ring[reduced.length] = reduced[0];
+        ring[reduced.length + 1] = reduced[1];
+        int far = 1;
+        double farthest = -1;
+        for (int i = 1; i < vertices; i++) {
+            double dx = reduced[2 * i] - reduced[0];
+            double dy = reduced[2 * i + 1] - reduced[1];
+            if (dx * dx + dy * dy > farthest) {
+                farthest = dx * dx + dy * dy;
+                far = i;
+            }
+        }
+        boolean[] keep = new boolean[vertices];
+        keep[0] = true;
+        keep[far] = true;
+
+        double squared = tolerance * tolerance;
+        int[] stack = new int[2 * vertices + 2];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = far;
+        stack[top++] = far;
+        stack[top++] = vertices;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int split = -1;
+            double max = squared;
+            for (int i = first + 1; i < last; i++) {
+                double distance = segmentDistanceSquared(ring, i, first, last);
+                if (distance > max) {
+                    max = distance;
+                    split = i;
+                }
+            }
+            if (split >= 0) {
+                keep[split] = true;
+                stack[top++] = first;
+                stack[top++] = split;
+                stack[top++] = split;
+                stack[top++] = last;
+            }
+        }
+
+        double[] result = new double[reduced.length];
+        int count = 0;
+        for (int i = 0; i < vertices; i++) {
+            if (keep[i]) {
+                result[count++] = reduced[2 * i];
+                result[count++] = reduced[2 * i + 1];
+            }
+        }
+        // A flat outline reduces to a segment; keep it as it was rather than degenerate.
+        return count < 6 ? reduced : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Computes the squared distance between a vertex and a segment joining two others.
+     * @param points The vertices, as x0, y0, x1, y1, ...
+     * @param vertex The index of the vertex.
+     * @param first The index of the start of the segment.
+     * @param last The index of the end of the segment.
+     * @return The squared distance.
+     */
+    private static double segmentDistanceSquared(double[] points, int vertex, int first, int last) {
+        double x = points[2 * first];
+        double y = points[2 * first + 1];
+        double dx = points[2 * last] - x;
+        double dy = points[2 * last + 1] - y;
+        double px = points[2 * vertex];
+        double py = points[2 * vertex + 1];
+        double length = dx * dx + dy * dy;
+        if (length > 0) {
+            double t = ((px - x) * dx + (py - y) * dy) / length;
+            if (t > 1) {
+                x += dx;
+                y += dy;
+            } else if (t > 0) {
+                x += dx * t;
+                y += dy * t;
+            }
+        }
+        return (px - x) * (px - x) + (py - y) * (py - y);
+    }
+}
@@ -0,0 +1,55 @@
+package com.sad.models.shapes;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+
+/**
+ * Computes the bounding boxes of shapes from their geometry, as their nodes would report them.
+ * Used by {@link ShapeInterface#getBounds()}, so that shapes can be indexed without a JavaFX node.
+ */
+final class ShapeBounds {
+    /** Half the stroke width of the shapes, by which the stroke extends past their geometry. */
+    static final double HALF_STROKE = 1.5;
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private ShapeBounds() {
+    }
+
+    /**
+     * Computes the bounding box of a rectangle rotated around its center.
+     * @param centerX The x-coordinate of the center.
+     * @param centerY The y-coordinate of the center.
+     * @param halfWidth Half the width of the rectangle, before rotation.
+     * @param halfHeight Half the height of the rectangle, before rotation.
+     * @param angle The rotation angle in degrees.
+     * @return The bounding box.
+     */
+    static Bounds rotatedBox(double centerX, double centerY, double halfWidth, double halfHeight, double angle) {
+        double radians = Math.toRadians(angle);
+        double cos = Math.abs(Math.cos(radians));
+        double sin = Math.abs(Math.sin(radians));
+        double extentX = halfWidth * cos + halfHeight * sin;
+        double extentY = halfWidth * sin + halfHeight * cos;
+        return new BoundingBox(centerX - extentX, centerY - extentY, 2 * extentX, 2 * extentY);
+    }
+
+    /**
+     * Computes the bounding box of an ellipse rotated around its center.
+     * @param centerX The x-coordinate of the center.
+     * @param centerY The y-coordinate of the center.
+     * @param radiusX The horizontal radius, before rotation.
+     * @param radiusY The vertical radius, before rotation.
+     * @param angle The rotation angle in degrees.
+     * @return The bounding box.
+     */
+    static Bounds rotatedEllipse(double centerX, double centerY, double radiusX, double radiusY, double angle) {
+        double radians = Math.toRadians(angle);
+        double cos = Math.cos(radians);
+        double sin = Math.sin(radians);
+        double extentX = Math.sqrt(radiusX * radiusX * cos * cos + radiusY * radiusY * sin * sin);
+        double extentY = Math.sqrt(radiusX * radiusX * sin * sin + radiusY * radiusY * cos * cos);
+        return new BoundingBox(centerX - extentX, centerY - extentY, 2 * extentX, 2 * extentY);
+    }
+}
@@ -0,0 +1,34 @@
+package com.sad.models.shapes;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source of the stable ids of shapes.
+ * Every shape receives a new id when it is created, copies included, and keeps it for its
+ * whole life: through edits, undo and redo, saving and loading. Ids are positive. They are
+ * stored by the binary document format but not by Java serialization, so a shape read from
+ * a legacy document has id 0 until a model registers it.
+ */
+public final class ShapeIds {
+    /** The last id handed out or reserved. */
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private ShapeIds() {
+    }
+
+    /**
+     * Hands out a new id.
+     * @return An id greater than every id handed out or reserved so far.
+     */
+    public static long next() {
+        return LAST.incrementAndGet();
+    }
+
+    /**
+     * Makes sure that an id read from a document is never handed out to a new shape.
+     * @param id The id in use.
+     */
+    public static void reserve(long id) {
+        LAST.accumulateAndGet(id, Math::max);
+    }
+}
@@ -1,6 +1,7 @@
 package com.sad.models.shapes;
 
 import com.sad.models.ShapeFactory;
+import javafx.geometry.Bounds;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
 
@@ -11,6 +12,20 @@ import javafx.scene.paint.Color;
  */
 public interface ShapeInterface {
 
+    /**
+     * Gets the stable id of the shape, unique among the shapes of a document.
+     * The id is assigned when the shape is created and kept through edits, undo, saving and loading;
+     * a copy made by {@link #clone()} gets a new one.
+     * @return The id, or 0 if the shape was read from a legacy document.
+     */
+    long getId();
+
+    /**
+     * Sets the stable id of the shape, when it is read from a document or must be made unique.
+     * @param id The id.
+     */
+    void setId(long id);
+
     /**
      * Draws the shape as a JavaFX Node.
      * @return The JavaFX Node representing this shape.
@@ -89,6 +104,13 @@ public interface ShapeInterface {
      */
     double getHeight();
 
+    /**
+     * Computes the bounding box of the shape in pane coordinates from its own geometry,
+     * including its rotation, mirroring and stroke, without creating or querying its node.
+     * @return The bounding box.
+     */
+    Bounds getBounds();
+
     /**
      * Sets the width of the shape.
      * @param width The new width.
@@ -0,0 +1,183 @@
+package com.sad.models.state;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Coalesces the pointer positions of a drag, so that the dragged shapes move at most once per frame.
+ * Mouse events only record the latest position in primitive fields, without allocating;
+ * the move is applied on the next animation pulse, then the timer stops until the next event.
+ * The time between the first event a move covers and the pulse applying it is measured, and printed
+ * at the end of each drag when the {@value #LATENCY_PROPERTY} system property is true.
+ */
+public class DragCoalescer {
+    /** System property that prints the event-to-frame latency of every drag when set to true. */
+    public static final String LATENCY_PROPERTY = "drawingapp.drag.latency";
+
+    /**
+     * Receives the coalesced position of a drag.
+     */
+    public interface Target {
+        /**
+         * Moves the dragged shapes for the latest pointer position.
+         * @param x The latest x-coordinate recorded.
+         * @param y The latest y-coordinate recorded.
+         */
+        void moveTo(double x, double y);
+    }
+
+    /** The receiver of the coalesced positions. */
+    private final Target target;
+    /** The timer applying the pending position, created on the first event. */
+    private AnimationTimer timer = null;
+    /** The latest x-coordinate recorded. */
+    private double pendingX;
+    /** The latest y-coordinate recorded. */
+    private double pendingY;
+    /** True if a position was recorded and not applied yet. */
+    private boolean pending = false;
+    /** The time of the first event not applied yet, in nanoseconds. */
+    private long pendingSince;
+
+    /** Number of positions recorded since the statistics were reset. */
+    private long events = 0;
+    /** Number of moves applied since the statistics were reset. */
+    private long frames = 0;
+    /** Sum of the event-to-frame latencies, in nanoseconds. */
+    private long totalLatency = 0;
+    /** Largest event-to-frame latency, in nanoseconds. */
+    private long maxLatency = 0;
+
+    /**
+     * Constructs a coalescer.
+     * @param target The receiver of the coalesced positions.
+     */
+    public DragCoalescer(Target target) {
+        this.target = target;
+    }
+
+    /**
+     * Records the latest pointer position, to be applied on the next pulse.
+     * @param x The x-coordinate of the pointer.
+     * @param y The y-coordinate of the pointer.
+     */
+    public void update(double x, double y) {
+        pendingX = x;
+        pendingY = y;
+        events++;
+        if (!pending) {
+            pending = true;
+            pendingSince = System.nanoTime();
+            schedule();
+        }
+    }
+
+    /**
+     * Applies the pending position, if any.
+     * Called on each animation pulse while a position is pending.
+     */
+    public void pulse() {
+        unschedule();
+        if (!pending) {
+            return;
+        }
+        pending = false;
+        long latency = System.nanoTime() - pendingSince;
+        frames++;
+        totalLatency += latency;
+        maxLatency = Math.max(maxLatency, latency);
+        target.moveTo(pendingX, pendingY);
+    }
+
+    /**
+     * Drops the pending position, for example because the drag ended with its own final move.
+     */
+    public void cancel() {
+        unschedule();
+        pending = false;
+    }
+
+    /**
+     * Checks whether a position is waiting for the next pulse.
+     * @return True if a position was recorded and not applied yet.
+     */
+    public boolean isPending() {
+        return pending;
+    }
+
+    /**
+     * Requests a call to {@link #pulse()} on the next animation pulse.
+     */
+    protected void schedule() {
+        if (timer == null) {
+            timer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    pulse();
+                }
+            };
+        }
+        timer.start();
+    }
+
+    /**
+     * Withdraws a request made by {@link #schedule()}.
+     */
+    protected void unschedule() {
+        if (timer != null) {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Returns the number of positions recorded since the statistics were reset.
+     * @return The number of pointer events.
+     */
+    public long getEventCount() {
+        return events;
+    }
+
+    /**
+     * Returns the number of moves applied since the statistics were reset.
+     * @return The number of frames that moved the shapes.
+     */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Returns the average time between an event and the frame that applied it.
+     * @return The average latency in nanoseconds, or 0 if no move was applied.
+     */
+    public long getAverageLatency() {
+        return frames == 0 ? 0 : totalLatency / frames;
+    }
+
+    /**
+     * Returns the largest time between an event and the frame that applied it.
+     * @return The largest latency in nanoseconds.
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * Resets the event counts and the latencies.
+     */
+    public void resetStatistics() {
+        events = 0;
+        frames = 0;
+        totalLatency = 0;
+        maxLatency = 0;
+    }
+
+    /**
+     * Ends a drag: prints its statistics if {@value #LATENCY_PROPERTY} is set, then resets them.
+     */
+    public void finish() {
+        if (frames > 0 && Boolean.getBoolean(LATENCY_PROPERTY)) {
+            System.out.printf("Drag: %d events in %d frames, latency avg %.2f ms, max %.2f ms%n",
+                    events, frames, getAverageLatency() / 1e6, maxLatency / 1e6);
+        }
+        resetStatistics();
+    }
+}
@@ -1,12 +1,14 @@
 package com.sad.models.state;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.sad.Controller;
 import com.sad.models.Model;
 import com.sad.models.command.CommandInterface;
 import com.sad.models.command.DrawPolygonCommand;
+import com.sad.models.shapes.PolygonSimplifier;
 
 import javafx.scene.control.ColorPicker;
 import javafx.scene.input.ContextMenuEvent;
@@ -31,8 +33,10 @@ public class PolygonDrawingState implements StateInterface {
     private ColorPicker borderColorPicker;
     /** The color picker for selecting the fill color of polygons. */
     private ColorPicker fillColorPicker;
-    /** The list of current points defining the polygon vertices. */
-    private final List<Double> currentPoints = new ArrayList<>();
+    /** The coordinates of the vertices placed so far, as x0, y0, x1, y1, ...; grown as needed. */
+    private double[] currentPoints = new double[16];
+    /** The number of coordinates used in currentPoints. */
+    private int coordinateCount = 0;
     /** The list of preview points displayed on the screen. */
     private final List<Circle> previewPoints = new ArrayList<>();
 
@@ -60,17 +64,20 @@ public class PolygonDrawingState implements StateInterface {
         double x = event.getX();
         double y = event.getY();
 
-        if (!currentPoints.isEmpty()) {
-            double lastX = currentPoints.get(currentPoints.size() - 2);
-            double lastY = currentPoints.get(currentPoints.size() - 1);
+        if (coordinateCount > 0) {
+            double lastX = currentPoints[coordinateCount - 2];
+            double lastY = currentPoints[coordinateCount - 1];
 
             if (Math.abs(lastX - x) < 0.5 && Math.abs(lastY - y) < 0.5) {
                 return; 
             }
         }
 
-        currentPoints.add(x);
-        currentPoints.add(y);
+        if (coordinateCount + 2 > currentPoints.length) {
+            currentPoints = Arrays.copyOf(currentPoints, currentPoints.length * 2);
+        }
+        currentPoints[coordinateCount++] = x;
+        currentPoints[coordinateCount++] = y;
 
         Circle point = new Circle(x, y, 2, Color.RED);
         controller.getRoot().getChildren().add(point);
@@ -86,14 +93,16 @@ public class PolygonDrawingState implements StateInterface {
     @Override
     public void onKeyPressed(KeyEvent event) {
         if (event.getCode() == KeyCode.ENTER) {
-            int numPoints = currentPoints.size() / 2;
+            int numPoints = coordinateCount / 2;
 
             if (numPoints >= 3) {
-                CommandInterface command = new DrawPolygonCommand(model, currentPoints, borderColorPicker, fillColorPicker);
+                // Clicks along a nearly straight edge add vertices the outline does not need.
+                double[] points = PolygonSimplifier.simplify(Arrays.copyOf(currentPoints, coordinateCount), model.getSimplifyTolerance());
+                CommandInterface command = new DrawPolygonCommand(model, points, borderColorPicker.getValue(), fillColorPicker.getValue());
                 controller.executeCommand(command);
             }
 
-            currentPoints.clear();
+            coordinateCount = 0;
             for (Circle c : previewPoints) {
                 controller.getRoot().getChildren().remove(c);
             }
@@ -122,7 +131,7 @@ public class PolygonDrawingState implements StateInterface {
         }
 
         previewPoints.clear();
-        currentPoints.clear();
+        coordinateCount = 0;
     }
 }
 
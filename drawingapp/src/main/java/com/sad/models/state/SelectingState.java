@@ -1,23 +1,32 @@
 package com.sad.models.state;
 
+import java.util.List;
+
 import com.sad.Controller;
 import com.sad.models.Model;
 import com.sad.models.command.CommandInterface;
+import com.sad.models.command.MacroCommand;
 import com.sad.models.command.MoveShapeCommand;
+import com.sad.models.shapes.ConcretePolygon;
 import com.sad.models.shapes.ConcreteText;
 import com.sad.models.shapes.ShapeInterface;
 
+import javafx.scene.CacheHint;
 import javafx.scene.Node;
 import javafx.scene.control.MenuItem;
 import javafx.scene.input.ContextMenuEvent;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
-import javafx.scene.shape.Shape;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
 
 /**
  * Represents the state of the application when the user is selecting shapes.
  * Implements the State design pattern, allowing different behaviors based on the current state.
  * Handles mouse clicks, context menu requests, and enables shape movement.
+ * Several shapes can be selected with shift-clicks or by dragging a marquee over an empty
+ * area, and then dragged together as a single undoable move.
+ * Drags only record the latest pointer position; the shapes are moved once per animation pulse.
  */
 public class SelectingState implements StateInterface {
 
@@ -25,6 +34,18 @@ public class SelectingState implements StateInterface {
     private Controller controller;
     /** The model representing the application's data. */
     private Model model;
+    /** The rectangle drawn while the user drags a marquee, or null. */
+    private Rectangle marquee = null;
+    /** True if the marquee adds to the current selection instead of replacing it. */
+    private boolean additive = false;
+    /** The point where the current marquee or group drag started, in pane coordinates. */
+    private final double[] anchor = new double[2];
+    /** The shapes being dragged together, or null. */
+    private List<ShapeInterface> dragged = null;
+    /** The positions of the dragged shapes when the drag started. */
+    private double[][] dragOrigins = null;
+    /** Applies the offset of a group drag once per frame, however many events the mouse sends. */
+    private final DragCoalescer groupDrag = new DragCoalescer(this::moveDragged);
 
     /**
      * Constructs a SelectingState.
@@ -40,58 +61,247 @@ public class SelectingState implements StateInterface {
      * Handles mouse click events when the user is selecting shapes.
      * Selects the clicked shape, updates the UI, and enables movement for the selected shape.
      * If no shape is clicked, deselects the current shape.
+     * With shift held, the clicked shape is added to or removed from the selection instead.
+     * Clicks ending a drag, such as a marquee, are ignored.
+     * The shape is found through the model's spatial index rather than by picking every node.
      * @param event The MouseEvent triggered by the user's click.
      */
     @Override
     public void handleOnMouseClick(MouseEvent event) {
         controller.getContextMenu().hide();
-        Object target = event.getTarget();
-
-        if (target instanceof Shape) {
-            Node clickedNode = (Node) target;
-            ShapeInterface clickedShape = model.getShapeFromNode(clickedNode);
-
-            if (clickedShape.getNode() != model.getSelectedShape()) {
-                controller.getResizeTexField().setDisable(true);
-                controller.getResizeTexField().setText("");
-                controller.getStretchXField().setDisable(true);
-                controller.getStretchXField().setText("");
-                controller.getStretchYField().setDisable(true);
-                controller.getStretchYField().setText("");
-                model.deselectShape();
-                model.setSelectedShape(clickedShape.getNode());
-                model.setSelectedShapeStyle("-fx-effect: dropshadow(three-pass-box, #00bfff, 10, 0, 0, 0);");
-
-                controller.getBordColorPicker().setValue(clickedShape.getBorderColor());
-                controller.getFillColorPicker().setValue(clickedShape.getFillColor());
-            }
+        if (!event.isStillSincePress()) {
+            return;
+        }
+        ShapeInterface clickedShape = model.getShapeAt(event.getX(), event.getY());
+
+        if (clickedShape != null && event.isShiftDown() && !model.getSelection().isEmpty()) {
+            toggleSelection(clickedShape);
+        } else if (clickedShape != null) {
+            selectSingle(clickedShape);
+        } else {
+            controller.getTextInputField().setDisable(true);
+            controller.getFontSizeMenuButton().setDisable(true);
+            model.deselectShape();
+        }
+    }
+
+    /**
+     * Selects a single shape, updates the editing controls and enables its movement.
+     * @param clickedShape The shape to select.
+     */
+    private void selectSingle(ShapeInterface clickedShape) {
+        if (clickedShape.getNode() != model.getSelectedShape()) {
+            controller.getResizeTexField().setDisable(true);
+            controller.getResizeTexField().setText("");
+            controller.getStretchXField().setDisable(true);
+            controller.getStretchXField().setText("");
+            controller.getStretchYField().setDisable(true);
+            controller.getStretchYField().setText("");
+            model.deselectShape();
+            model.setSelectedShape(clickedShape.getNode());
+            model.setSelectedShapeStyle(Model.SELECTION_STYLE);
+
+            controller.getBordColorPicker().setValue(clickedShape.getBorderColor());
+            controller.getFillColorPicker().setValue(clickedShape.getFillColor());
+        }
 
-            controller.getResizeTexField().setDisable(false);
-            controller.getStretchXField().setDisable(false);
-            controller.getStretchYField().setDisable(false);
+        controller.getResizeTexField().setDisable(false);
+        controller.getStretchXField().setDisable(false);
+        controller.getStretchYField().setDisable(false);
+        
+        if (clickedShape instanceof ConcreteText) {
+            ConcreteText textShape = (ConcreteText) clickedShape;
             
-            if (clickedShape instanceof ConcreteText) {
-                ConcreteText textShape = (ConcreteText) clickedShape;
-                
-                controller.getResizeTexField().setDisable(true);
-                controller.getTextInputField().setText(textShape.getContent());
-                controller.getTextInputField().setDisable(false);
-
-                int currentFontSize = (int) textShape.getFontSize();
-                controller.getFontSizeMenuButton().setValue(currentFontSize);
-                controller.getFontSizeMenuButton().setDisable(false);
-
-            } else {
-                controller.getTextInputField().setDisable(true);
-                controller.getFontSizeMenuButton().setDisable(true);
-            }
+            controller.getResizeTexField().setDisable(true);
+            controller.getTextInputField().setText(textShape.getContent());
+            controller.getTextInputField().setDisable(false);
 
-            enableMoveShape(clickedShape);
+            int currentFontSize = (int) textShape.getFontSize();
+            controller.getFontSizeMenuButton().setValue(currentFontSize);
+            controller.getFontSizeMenuButton().setDisable(false);
 
         } else {
             controller.getTextInputField().setDisable(true);
             controller.getFontSizeMenuButton().setDisable(true);
-            model.deselectShape();
+        }
+
+        enableMoveShape(clickedShape);
+    }
+
+    /**
+     * Adds a shape to the selection, or removes it if it is already selected.
+     * A selection left with one shape goes back to single-shape editing.
+     * @param shape The shape to toggle.
+     */
+    private void toggleSelection(ShapeInterface shape) {
+        if (model.isSelected(shape)) {
+            model.removeFromSelection(shape);
+        } else {
+            model.addToSelection(shape);
+        }
+        List<ShapeInterface> selection = model.getSelection();
+        if (selection.size() == 1) {
+            selectSingle(selection.get(0));
+        } else {
+            disableShapeFields();
+        }
+    }
+
+    /**
+     * Disables the controls that edit a single shape, while several shapes or none are selected.
+     */
+    private void disableShapeFields() {
+        controller.getResizeTexField().setDisable(true);
+        controller.getResizeTexField().setText("");
+        controller.getStretchXField().setDisable(true);
+        controller.getStretchXField().setText("");
+        controller.getStretchYField().setDisable(true);
+        controller.getStretchYField().setText("");
+        controller.getTextInputField().setDisable(true);
+        controller.getFontSizeMenuButton().setDisable(true);
+    }
+
+    /**
+     * Handles mouse press events that no shape consumed.
+     * A press on a shape of a multiple selection starts dragging the whole selection;
+     * a press on an empty area starts a marquee.
+     * @param event The MouseEvent triggered by the user's press.
+     */
+    @Override
+    public void handleOnMousePressed(MouseEvent event) {
+        if (!event.isPrimaryButtonDown()) {
+            return;
+        }
+        anchor[0] = event.getX();
+        anchor[1] = event.getY();
+        ShapeInterface target = model.getShapeAt(event.getX(), event.getY());
+        if (target != null && model.getSelectedShape() == null && model.isSelected(target)) {
+            startGroupDrag();
+            event.consume();
+        } else if (target == null) {
+            additive = event.isShiftDown();
+            marquee = new Rectangle(anchor[0], anchor[1], 0, 0);
+            marquee.setFill(Color.rgb(0, 191, 255, 0.15));
+            marquee.setStroke(Color.rgb(0, 191, 255));
+            marquee.getStrokeDashArray().setAll(4.0, 4.0);
+            marquee.setMouseTransparent(true);
+            marquee.setManaged(false);
+            model.getPane().getChildren().add(marquee);
+            event.consume();
+        }
+    }
+
+    /**
+     * Handles mouse drag events that no shape consumed, moving the dragged shapes or resizing the marquee.
+     * The dragged shapes follow on the next pulse.
+     * @param event The MouseEvent triggered by the user's drag.
+     */
+    @Override
+    public void handleOnMouseDragged(MouseEvent event) {
+        if (dragged != null) {
+            groupDrag.update(event.getX() - anchor[0], event.getY() - anchor[1]);
+            event.consume();
+        } else if (marquee != null) {
+            marquee.setX(Math.min(anchor[0], event.getX()));
+            marquee.setY(Math.min(anchor[1], event.getY()));
+            marquee.setWidth(Math.abs(event.getX() - anchor[0]));
+            marquee.setHeight(Math.abs(event.getY() - anchor[1]));
+            event.consume();
+        }
+    }
+
+    /**
+     * Handles mouse release events that no shape consumed.
+     * Ends a group drag with a single move command, or selects the shapes enclosed by the marquee.
+     * @param event The MouseEvent triggered by the user's release.
+     */
+    @Override
+    public void handleOnMouseReleased(MouseEvent event) {
+        if (dragged != null) {
+            finishGroupDrag(event.getX() - anchor[0], event.getY() - anchor[1]);
+            event.consume();
+        } else if (marquee != null) {
+            Rectangle region = marquee;
+            model.getPane().getChildren().remove(marquee);
+            marquee = null;
+            if (region.getWidth() > 0 || region.getHeight() > 0) {
+                List<ShapeInterface> found = model.getShapesWithin(region.getX(), region.getY(),
+                        region.getX() + region.getWidth(), region.getY() + region.getHeight());
+                if (additive) {
+                    found.addAll(model.getSelection());
+                }
+                selectShapes(found);
+            }
+            event.consume();
+        }
+    }
+
+    /**
+     * Replaces the selection with a set of shapes.
+     * @param shapes The shapes to select.
+     */
+    private void selectShapes(List<ShapeInterface> shapes) {
+        if (shapes.size() == 1) {
+            selectSingle(shapes.get(0));
+        } else {
+            model.selectShapes(shapes);
+            disableShapeFields();
+        }
+    }
+
+    /**
+     * Starts dragging the selected shapes together.
+     * Their nodes are cached as bitmaps, so that moving them only translates the cached images,
+     * and the model collects their new bounds until the drag ends.
+     */
+    private void startGroupDrag() {
+        dragged = model.getSelection();
+        dragOrigins = new double[dragged.size()][];
+        for (int i = 0; i < dragged.size(); i++) {
+            ShapeInterface shape = dragged.get(i);
+            dragOrigins[i] = new double[] { shape.getX(), shape.getY() };
+            shape.getNode().setCache(true);
+            shape.getNode().setCacheHint(CacheHint.SPEED);
+        }
+        model.beginBatch();
+    }
+
+    /**
+     * Moves the dragged shapes by an offset from their positions when the drag started.
+     * @param offsetX The horizontal distance covered by the drag.
+     * @param offsetY The vertical distance covered by the drag.
+     */
+    private void moveDragged(double offsetX, double offsetY) {
+        for (int i = 0; i < dragged.size(); i++) {
+            dragged.get(i).moveTo(dragOrigins[i][0] + offsetX, dragOrigins[i][1] + offsetY);
+        }
+    }
+
+    /**
+     * Ends a group drag and records the move of every dragged shape as one command.
+     * The position still waiting for a pulse is dropped, since the command moves the shapes to the final one.
+     * @param offsetX The horizontal distance covered by the drag.
+     * @param offsetY The vertical distance covered by the drag.
+     */
+    private void finishGroupDrag(double offsetX, double offsetY) {
+        groupDrag.cancel();
+        groupDrag.finish();
+        MacroCommand macro = new MacroCommand(model);
+        for (int i = 0; i < dragged.size(); i++) {
+            ShapeInterface shape = dragged.get(i);
+            shape.getNode().setCache(false);
+            if (offsetX != 0 || offsetY != 0) {
+                double[] finalCoords = { dragOrigins[i][0] + offsetX, dragOrigins[i][1] + offsetY };
+                macro.add(new MoveShapeCommand(model, shape, dragOrigins[i], finalCoords));
+            } else if (shape.getX() != dragOrigins[i][0] || shape.getY() != dragOrigins[i][1]) {
+                shape.moveTo(dragOrigins[i][0], dragOrigins[i][1]);
+            }
+        }
+        model.endBatch();
+        dragged = null;
+        dragOrigins = null;
+        if (!macro.isEmpty()) {
+            controller.executeCommand(macro);
         }
     }
 
@@ -105,12 +315,15 @@ public class SelectingState implements StateInterface {
         controller.setMouseX(event.getX());
         controller.setMouseY(event.getY());
 
-        Object target = event.getTarget();
-        boolean isTargetSelectedShape = target instanceof Shape && target == model.getSelectedShape();
+        ShapeInterface target = model.getShapeAt(event.getX(), event.getY());
+        boolean isTargetSelected = model.isSelected(target);
+        boolean isTargetSelectedShape = isTargetSelected && target.getNode() == model.getSelectedShape();
 
         for (MenuItem item : controller.getContextMenu().getItems()) {
             switch (item.getText()) {
                 case "Delete":
+                    item.setDisable(!isTargetSelected);
+                    break;
                 case "Copy":
                 case "Cut":
                     item.setDisable(!isTargetSelectedShape);
@@ -119,10 +332,20 @@ public class SelectingState implements StateInterface {
                     item.setDisable(model.getClipBoardShape() == null);
                     break;
                 case "Bring to Front":
-                    item.setDisable(model.isOnTheFront() || !isTargetSelectedShape);
+                    item.setDisable(model.isOnTheFront() || !isTargetSelected);
                     break;
                 case "Send to Back":
-                    item.setDisable(model.isOnTheBack() || !isTargetSelectedShape);
+                    item.setDisable(model.isOnTheBack() || !isTargetSelected);
+                    break;
+                case "Bring Forward":
+                    item.setDisable(!isTargetSelected || !model.canStepShape(target, true));
+                    break;
+                case "Send Backward":
+                    item.setDisable(!isTargetSelected || !model.canStepShape(target, false));
+                    break;
+                case "Simplify":
+                    item.setDisable(!isTargetSelected
+                            || model.getSelection().stream().noneMatch(shape -> shape instanceof ConcretePolygon));
                     break;
             }
         }
@@ -143,16 +366,32 @@ public class SelectingState implements StateInterface {
 
     /**
      * Called when exiting the SelectingState.
-     * Currently does not perform any actions.
+     * Cancels a marquee or a group drag in progress, putting the dragged shapes back.
      */
     @Override
     public void onExit() {
-        // No actions required on exit.
+        if (marquee != null) {
+            model.getPane().getChildren().remove(marquee);
+            marquee = null;
+        }
+        if (dragged != null) {
+            groupDrag.cancel();
+            groupDrag.resetStatistics();
+            for (int i = 0; i < dragged.size(); i++) {
+                dragged.get(i).moveTo(dragOrigins[i][0], dragOrigins[i][1]);
+                dragged.get(i).getNode().setCache(false);
+            }
+            model.endBatch();
+            dragged = null;
+            dragOrigins = null;
+        }
     }
 
     /**
      * Enables movement for the selected shape.
      * Handles mouse press, drag, and release events to update the shape's position and execute a move command.
+     * Drag events only record the scene position of the pointer; it is converted to pane coordinates
+     * and applied once per pulse, so that events arriving faster than frames neither allocate nor move the shape.
      * @param shape The shape to enable movement for.
      */
     private void enableMoveShape(ShapeInterface shape) {
@@ -162,8 +401,14 @@ public class SelectingState implements StateInterface {
 
         Node node = shape.getNode();
         Node rotNode = controller.getRoot();
+        DragCoalescer drag = new DragCoalescer((sceneX, sceneY) -> {
+            javafx.geometry.Point2D localPoint = rotNode.sceneToLocal(sceneX, sceneY);
+            shape.moveTo(initialPosition[0] + localPoint.getX() - delta[0],
+                    initialPosition[1] + localPoint.getY() - delta[1]);
+        });
 
         node.setOnMousePressed(event -> {
+            drag.cancel();
             initialPosition[0] = shape.getX();
             initialPosition[1] = shape.getY();
 
@@ -178,19 +423,13 @@ public class SelectingState implements StateInterface {
         });
 
         node.setOnMouseDragged(event -> {
-            javafx.geometry.Point2D localPoint = rotNode.sceneToLocal(event.getSceneX(), event.getSceneY());
-            double offsetX = localPoint.getX() - delta[0];
-            double offsetY = localPoint.getY() - delta[1];
-
-            double newX = initialPosition[0] + offsetX;
-            double newY = initialPosition[1] + offsetY;
-
-            shape.moveTo(newX, newY);
-
+            drag.update(event.getSceneX(), event.getSceneY());
             event.consume();
         });
 
         node.setOnMouseReleased(event -> {
+            drag.cancel();
+            drag.finish();
             javafx.geometry.Point2D localPoint = rotNode.sceneToLocal(event.getSceneX(), event.getSceneY());
             double offsetX = localPoint.getX() - delta[0];
             double offsetY = localPoint.getY() - delta[1];
@@ -204,6 +443,8 @@ public class SelectingState implements StateInterface {
             if (initial[0] != finalCoords[0] || initial[1] != finalCoords[1]) {
                 CommandInterface command = new MoveShapeCommand(model, shape, initial, finalCoords);
                 controller.executeCommand(command);
+            } else if (shape.getX() != initial[0] || shape.getY() != initial[1]) {
+                shape.moveTo(initial[0], initial[1]);
             }
 
             event.consume();
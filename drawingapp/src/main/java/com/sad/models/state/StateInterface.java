@@ -25,6 +25,30 @@ public interface StateInterface {
      */
     void handleOnContextMenuRequest(ContextMenuEvent event);
 
+    /**
+     * Handles mouse press events on the drawing area that no shape consumed.
+     * Does nothing by default.
+     * @param event The MouseEvent triggered by the user's press.
+     */
+    default void handleOnMousePressed(MouseEvent event) {
+    }
+
+    /**
+     * Handles mouse drag events on the drawing area that no shape consumed.
+     * Does nothing by default.
+     * @param event The MouseEvent triggered by the user's drag.
+     */
+    default void handleOnMouseDragged(MouseEvent event) {
+    }
+
+    /**
+     * Handles mouse release events on the drawing area that no shape consumed.
+     * Does nothing by default.
+     * @param event The MouseEvent triggered by the user's release.
+     */
+    default void handleOnMouseReleased(MouseEvent event) {
+    }
+
     /**
      * Handles key press events.
      * Defines the behavior when the user presses a key.
@@ -0,0 +1,70 @@
+/**
+ * Unit tests for the asynchronous, snapshot-based save.
+ * Verifies that snapshots are detached from the live shapes and that the saver writes them in the background.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sad.models.Model;
+import com.sad.models.persistence.AsyncDocumentSaver;
+import com.sad.models.persistence.DocumentReader;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for AsyncDocumentSaver and Model.snapshotShapes.
+ */
+class AsyncDocumentSaverTest {
+
+    /** Temporary directory for the document files. */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that edits made after the snapshot do not change the saved document.
+     * @throws Exception if the document cannot be written or read
+     */
+    @Test
+    void testSnapshotIsDetachedFromLiveShapes() throws Exception {
+        Model model = new Model(new Pane());
+        ShapeInterface shape = new ConcreteRectangle(10, 20, 100, 50, Color.BLACK, Color.RED);
+        shape.draw();
+        model.addShape(shape);
+
+        List<ShapeInterface> snapshot = model.snapshotShapes();
+        File file = tempDir.resolve("snapshot.bin").toFile();
+        AsyncDocumentSaver saver = new AsyncDocumentSaver();
+        shape.moveTo(300, 400);
+
+        assertEquals(file, saver.save(file, snapshot).get(10, TimeUnit.SECONDS));
+        List<ShapeInterface> saved = DocumentReader.readFile(file);
+        assertEquals(1, saved.size());
+        assertEquals(10, saved.get(0).getX());
+        assertEquals(20, saved.get(0).getY());
+        assertNull(snapshot.get(0).getNode());
+    }
+
+    /**
+     * Tests that a failing save completes the future exceptionally and leaves no file behind.
+     */
+    @Test
+    void testFailedSaveCompletesExceptionally() {
+        File file = tempDir.resolve("missing").resolve("snapshot.bin").toFile();
+        AsyncDocumentSaver saver = new AsyncDocumentSaver();
+
+        assertThrows(Exception.class, () -> saver.save(file, List.of()).get(10, TimeUnit.SECONDS));
+        assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Unit tests for the BringForwardCommand and SendBackwardCommand classes.
+ * Verifies that a step in z-order is undone by the opposite step, only when the shape moved.
+ */
+package com.sad;
+
+import com.sad.models.Model;
+import com.sad.models.command.BringForwardCommand;
+import com.sad.models.command.SendBackwardCommand;
+import com.sad.models.shapes.ShapeInterface;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for BringForwardCommand and SendBackwardCommand.
+ */
+class BringForwardCommandTest {
+
+    /** Mocked instance of the Model class. */
+    private Model modelMock;
+    /** Mocked instance of the ShapeInterface. */
+    private ShapeInterface shapeMock;
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        modelMock = mock(Model.class);
+        shapeMock = mock(ShapeInterface.class);
+    }
+
+    /**
+     * Tests that bringing a shape forward is undone by sending it backward.
+     */
+    @Test
+    void testBringForwardAndUndo() {
+        when(modelMock.bringShapeForward(shapeMock)).thenReturn(true);
+        BringForwardCommand command = new BringForwardCommand(modelMock, shapeMock);
+        command.execute();
+        verify(modelMock).bringShapeForward(shapeMock);
+        command.undo();
+        verify(modelMock).sendShapeBackward(shapeMock);
+    }
+
+    /**
+     * Tests that sending a shape backward is undone by bringing it forward.
+     */
+    @Test
+    void testSendBackwardAndUndo() {
+        when(modelMock.sendShapeBackward(shapeMock)).thenReturn(true);
+        SendBackwardCommand command = new SendBackwardCommand(modelMock, shapeMock);
+        command.execute();
+        command.undo();
+        verify(modelMock).bringShapeForward(shapeMock);
+    }
+
+    /**
+     * Tests that a shape that could not move is not moved back on undo.
+     */
+    @Test
+    void testUndoWithoutMove() {
+        when(modelMock.bringShapeForward(shapeMock)).thenReturn(false);
+        BringForwardCommand command = new BringForwardCommand(modelMock, shapeMock);
+        command.execute();
+        command.undo();
+        verify(modelMock, never()).sendShapeBackward(shapeMock);
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Unit tests for the canvas renderer.
+ * Verifies that painted shapes leave the scene graph while the document, z-order and hit-testing stay intact.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sad.models.CanvasRenderer;
+import com.sad.models.Model;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for CanvasRenderer and the canvas rendering mode of the Model.
+ */
+class CanvasRendererTest {
+    private Pane pane;
+    private Model model;
+    private List<ShapeInterface> shapes;
+
+    /**
+     * Creates a model with ten overlapping shapes and the canvas renderer enabled.
+     */
+    @BeforeEach
+    void setUp() {
+        pane = new Pane();
+        model = new Model(pane);
+        shapes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ShapeInterface shape = new ConcreteRectangle(i * 10, 0, 50, 50, Color.BLACK, Color.RED);
+            shape.draw();
+            model.addShape(shape);
+            shapes.add(shape);
+        }
+        model.setCanvasRenderingEnabled(true);
+        model.setViewport(0, 0, 200, 100);
+    }
+
+    /**
+     * Tests that no shape is a live node when nothing is selected.
+     */
+    @Test
+    void testPaintedShapesLeaveThePane() {
+        List<Node> children = pane.getChildren();
+        assertEquals(1, children.size());
+        assertTrue(children.get(0) instanceof Canvas);
+        assertEquals(shapes, model.getShapes());
+    }
+
+    /**
+     * Tests that the selected shape becomes a live node between two canvas layers.
+     */
+    @Test
+    void testSelectedShapeIsLiveInZOrder() {
+        model.setSelectedShape(shapes.get(4).getNode());
+        List<Node> children = pane.getChildren();
+        assertEquals(3, children.size());
+        assertTrue(children.get(0) instanceof Canvas);
+        assertSame(shapes.get(4).getNode(), children.get(1));
+        assertTrue(children.get(2) instanceof Canvas);
+    }
+
+    /**
+     * Tests that hit-testing finds painted shapes by document order.
+     */
+    @Test
+    void testHitTestingFindsPaintedShapes() {
+        assertSame(shapes.get(0), model.getShapeAt(5, 25));
+        assertSame(shapes.get(4), model.getShapeAt(45, 25));
+        assertSame(shapes.get(9), model.getShapeAt(95, 25));
+
+        model.sendShapeToBack(shapes.get(9));
+        assertSame(shapes.get(8), model.getShapeAt(95, 25));
+    }
+
+    /**
+     * Tests that disabling the renderer attaches every shape again and removes the layers.
+     */
+    @Test
+    void testDisableAttachesAllShapes() {
+        model.setCanvasRenderingEnabled(false);
+        List<Node> children = pane.getChildren();
+        assertEquals(shapes.size(), children.size());
+        for (int i = 0; i < shapes.size(); i++) {
+            assertSame(shapes.get(i).getNode(), children.get(i));
+        }
+    }
+
+    /**
+     * Tests that zooming out past the detail scale paints the shapes into canvases
+     * and that zooming back in attaches the nodes again.
+     */
+    @Test
+    void testZoomingOutSwitchesToReducedDetail() {
+        model.setCanvasRenderingEnabled(false);
+        model.setDetailScale(0.75);
+        model.setRenderScale(1);
+        assertFalse(model.isCanvasRenderingEnabled());
+
+        model.setRenderScale(0.5);
+        assertTrue(model.isCanvasRenderingEnabled());
+        assertEquals(1, pane.getChildren().size());
+
+        model.setRenderScale(1);
+        assertFalse(model.isCanvasRenderingEnabled());
+        assertEquals(shapes.size(), pane.getChildren().size());
+    }
+
+    /**
+     * Tests that polygon outlines drop the vertices closer than the tolerance to the previous one.
+     */
+    @Test
+    void testOutlineSkipsCloseVertices() {
+        double[] points = { 0, 0, 0.1, 0.1, 0.2, 0, 10, 0, 10.3, 0.2, 10, 10, 0, 10 };
+        double[] xs = new double[points.length / 2];
+        double[] ys = new double[points.length / 2];
+        int count = CanvasRenderer.outline(points, 0.5, xs, ys);
+        assertEquals(4, count);
+        assertArrayEquals(new double[] { 0, 10, 10, 0 }, Arrays.copyOf(xs, count));
+        assertArrayEquals(new double[] { 0, 0, 10, 10 }, Arrays.copyOf(ys, count));
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * Unit tests for the undo history.
+ * Verifies that the memory budget is enforced by spilling old entries and that spilled entries undo correctly.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sad.models.Model;
+import com.sad.models.command.ChangeShapeColorCommand;
+import com.sad.models.command.CommandHistory;
+import com.sad.models.command.CommandInterface;
+import com.sad.models.command.DeleteShapeCommand;
+import com.sad.models.command.MoveShapeCommand;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for CommandHistory.
+ */
+class CommandHistoryTest {
+    private Model model;
+
+    /**
+     * Creates a model on a headless pane.
+     */
+    @BeforeEach
+    void setUp() {
+        model = new Model(new Pane());
+    }
+
+    /**
+     * Adds a rectangle to the model.
+     * @param x The x-coordinate of the rectangle.
+     * @return The rectangle.
+     */
+    private ShapeInterface addRectangle(double x) {
+        ShapeInterface shape = new ConcreteRectangle(x, 10, 30, 20, Color.BLACK, Color.RED);
+        shape.draw();
+        model.addShape(shape);
+        return shape;
+    }
+
+    /**
+     * Executes a command and records it in the history.
+     */
+    private static void execute(CommandHistory history, CommandInterface command) {
+        command.execute();
+        history.push(command);
+    }
+
+    /**
+     * Tests that deleted shapes are weighed and spilled, and that undoing restores them in order.
+     */
+    @Test
+    void testSpilledDeletesAreRestored() {
+        CommandHistory history = new CommandHistory(model, 3 * 2048);
+        for (int i = 0; i < 20; i++) {
+            execute(history, new DeleteShapeCommand(model, addRectangle(i * 50)));
+        }
+        assertTrue(model.getShapes().isEmpty());
+        assertEquals(20, history.size());
+        assertTrue(history.getSpilledCount() > 0);
+        assertTrue(history.getMemoryUsage() <= history.getBudget());
+
+        List<Double> restored = new ArrayList<>();
+        while (!history.isEmpty()) {
+            history.pop().undo();
+            List<ShapeInterface> shapes = model.getShapes();
+            restored.add(shapes.get(shapes.size() - 1).getX());
+        }
+        assertEquals(20, restored.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals((19 - i) * 50.0, restored.get(i));
+        }
+        ShapeInterface first = model.getShapes().get(model.getShapes().size() - 1);
+        assertEquals(Color.RED, first.getFillColor());
+        assertEquals(30, first.getWidth());
+        assertEquals(0, history.getSpilledCount());
+    }
+
+    /**
+     * Tests that a shape shared by a spilled entry and an entry in memory keeps its identity.
+     */
+    @Test
+    void testSharedShapeKeepsIdentity() {
+        CommandHistory history = new CommandHistory(model, 2048);
+        ShapeInterface shape = addRectangle(0);
+        execute(history, new MoveShapeCommand(model, shape, new double[] { 0, 10 }, new double[] { 200, 10 }));
+        execute(history, new DeleteShapeCommand(model, shape));
+        assertEquals(1, history.getSpilledCount());
+
+        history.pop().undo();
+        assertSame(shape, model.getShapes().get(0));
+        history.pop().undo();
+        assertEquals(0, shape.getX());
+    }
+
+    /**
+     * Tests that entries spilled together restore a single copy of a deleted shape.
+     */
+    @Test
+    void testSpilledBlockKeepsReferencesConsistent() {
+        CommandHistory history = new CommandHistory(model, 2048);
+        ShapeInterface shape = addRectangle(0);
+        execute(history, new MoveShapeCommand(model, shape, new double[] { 0, 10 }, new double[] { 200, 10 }));
+        execute(history, new DeleteShapeCommand(model, shape));
+        ShapeInterface other = addRectangle(500);
+        execute(history, new MoveShapeCommand(model, other, new double[] { 500, 10 }, new double[] { 600, 10 }));
+        execute(history, new DeleteShapeCommand(model, other));
+        assertTrue(history.getSpilledCount() >= 2);
+
+        while (!history.isEmpty()) {
+            history.pop().undo();
+        }
+        List<ShapeInterface> shapes = model.getShapes();
+        assertEquals(2, shapes.size());
+        // Each undone delete puts its shape back on top.
+        assertEquals(500, shapes.get(0).getX());
+        assertEquals(0, shapes.get(1).getX());
+        assertNotNull(shapes.get(1).getNode());
+    }
+
+    /**
+     * Tests that undone commands can be redone until a new command is pushed.
+     */
+    @Test
+    void testRedoUntilNextPush() {
+        CommandHistory history = new CommandHistory(model);
+        ShapeInterface shape = addRectangle(0);
+        execute(history, new MoveShapeCommand(model, shape, new double[] { 0, 10 }, new double[] { 200, 10 }));
+        execute(history, new DeleteShapeCommand(model, shape));
+        assertFalse(history.canRedo());
+
+        history.pop().undo();
+        history.pop().undo();
+        assertTrue(history.isEmpty());
+        assertEquals(0, shape.getX());
+
+        history.popRedo().execute();
+        assertEquals(200, shape.getX());
+        history.popRedo().execute();
+        assertFalse(model.isInDocument(shape));
+        assertFalse(history.canRedo());
+        assertEquals(2, history.size());
+
+        history.pop().undo();
+        assertTrue(history.canRedo());
+        execute(history, new MoveShapeCommand(model, shape, new double[] { 200, 10 }, new double[] { 300, 10 }));
+        assertFalse(history.canRedo());
+        assertNull(history.popRedo());
+    }
+
+    /**
+     * Tests that consecutive edits of the same shape merge into one entry keeping the first before-state.
+     */
+    @Test
+    void testConsecutiveEditsOfSameShapeMerge() {
+        CommandHistory history = new CommandHistory(model);
+        history.setCoalesceWindow(60_000);
+        ShapeInterface shape = addRectangle(0);
+        ShapeInterface other = addRectangle(500);
+        execute(history, new ChangeShapeColorCommand(model, shape, Color.BLUE, Color.GREEN));
+        execute(history, new ChangeShapeColorCommand(model, shape, Color.WHITE, Color.YELLOW));
+        execute(history, new ChangeShapeColorCommand(model, shape, Color.GRAY, Color.PINK));
+        assertEquals(1, history.size());
+
+        execute(history, new ChangeShapeColorCommand(model, other, Color.BLUE, Color.GREEN));
+        execute(history, new MoveShapeCommand(model, other, new double[] { 500, 10 }, new double[] { 600, 10 }));
+        execute(history, new MoveShapeCommand(model, other, new double[] { 600, 10 }, new double[] { 700, 10 }));
+        assertEquals(3, history.size());
+
+        history.pop().undo();
+        assertEquals(500, other.getX());
+        history.popRedo().execute();
+        assertEquals(700, other.getX());
+        // A command redone is no longer open to merging.
+        execute(history, new MoveShapeCommand(model, other, new double[] { 700, 10 }, new double[] { 800, 10 }));
+        assertEquals(4, history.size());
+
+        history.clear();
+        execute(history, new ChangeShapeColorCommand(model, shape, Color.RED, Color.RED));
+        history.setCoalesceWindow(0);
+        execute(history, new ChangeShapeColorCommand(model, shape, Color.BLACK, Color.BLACK));
+        assertEquals(2, history.size());
+    }
+
+    /**
+     * Tests that undoing merged color changes restores the colors preceding all of them.
+     */
+    @Test
+    void testMergedEditUndoesToFirstBeforeState() {
+        CommandHistory history = new CommandHistory(model);
+        history.setCoalesceWindow(60_000);
+        ShapeInterface shape = addRectangle(0);
+        execute(history, new ChangeShapeColorCommand(model, shape, Color.BLUE, Color.GREEN));
+        execute(history, new ChangeShapeColorCommand(model, shape, Color.GRAY, Color.PINK));
+
+        history.pop().undo();
+        assertTrue(history.isEmpty());
+        assertEquals(Color.BLACK, shape.getBorderColor());
+        assertEquals(Color.RED, shape.getFillColor());
+        history.popRedo().execute();
+        assertEquals(Color.GRAY, shape.getBorderColor());
+        assertEquals(Color.PINK, shape.getFillColor());
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * Unit tests for the binary document format.
+ * Verifies that every shape type survives a write/read round trip and that invalid input is rejected.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sad.models.persistence.DocumentFormat;
+import com.sad.models.persistence.DocumentReader;
+import com.sad.models.persistence.DocumentWriter;
+import com.sad.models.shapes.ConcreteEllipse;
+import com.sad.models.shapes.ConcreteLine;
+import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ConcreteText;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Polygon;
+
+/**
+ * Test class for DocumentWriter and DocumentReader.
+ */
+public class DocumentFormatTest {
+
+    /**
+     * A legacy document written with Java serialization by the original shape classes:
+     * a polygon with vertices (10, 20), (110, 20), (60, 95.5) and a 70x40 rectangle at (5, 6).
+     */
+    private static final String LEGACY_DOCUMENT = "rO0ABXNyABNqYXZhLnV0aWwuQXJyYXlMaXN0eIHSHZnHYZ0DAAFJAARzaXpleHAAAAACdwQAAAACc3IAJWNvbS5zYWQubW9k"
+        + "ZWxzLnNoYXBlcy5Db25jcmV0ZVBvbHlnb26P/jFGxn8U2wMABkQABWFuZ2xlRAAMbWlycm9yU2NhbGVYRAAMbWlycm9yU2Nh"
+        + "bGVZRAABeEQAAXlMAAZwb2ludHN0ABBMamF2YS91dGlsL0xpc3Q7eHAAAAAAAAAAAD/wAAAAAAAAP/AAAAAAAABAJAAAAAAA"
+        + "AEA0AAAAAAAAc3EAfgAAAAAABncEAAAABnNyABBqYXZhLmxhbmcuRG91YmxlgLPCSilr+wQCAAFEAAV2YWx1ZXhyABBqYXZh"
+        + "LmxhbmcuTnVtYmVyhqyVHQuU4IsCAAB4cAAAAAAAAAAAc3EAfgAGAAAAAAAAAABzcQB+AAZAWQAAAAAAAHNxAH4ABgAAAAAA"
+        + "AAAAc3EAfgAGQEkAAAAAAABzcQB+AAZAUuAAAAAAAHh0AA8xLjAsMC4wLDAuMCwxLjB0AB0wLjAsMC41MDE5NjA4MTM5OTkx"
+        + "NzYsMC4wLDEuMHhzcgAnY29tLnNhZC5tb2RlbHMuc2hhcGVzLkNvbmNyZXRlUmVjdGFuZ2xl6etSbK28o20DAAVEAAVhbmds"
+        + "ZUQABmhlaWdodEQABXdpZHRoRAABeEQAAXl4cAAAAAAAAAAAQEQAAAAAAABAUYAAAAAAAEAUAAAAAAAAQBgAAAAAAAB0AA8w"
+        + "LjAsMC4wLDAuMCwxLjB0AA8wLjAsMC4wLDEuMCwxLjB4eA==";
+
+    /**
+     * Writes the given shapes and reads them back.
+     * @param shapes The shapes to write.
+     * @return The shapes read back from the encoded bytes.
+     * @throws IOException if encoding or decoding fails
+     */
+    private List<ShapeInterface> roundTrip(List<ShapeInterface> shapes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DocumentWriter.writeAll(bytes, shapes);
+        return DocumentReader.readAll(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    /**
+     * Tests that rectangles, ellipses and lines keep their geometry, angle and colors.
+     * @throws IOException if encoding or decoding fails
+     */
+    @Test
+    void testBasicShapesRoundTrip() throws IOException {
+        ConcreteRectangle rectangle = new ConcreteRectangle(10, 20, 100, 50, Color.BLACK, Color.RED);
+        rectangle.setAngle(30);
+        ConcreteEllipse ellipse = new ConcreteEllipse(5, 6, 70, 35, Color.BLUE, Color.TRANSPARENT);
+        ConcreteLine line = new ConcreteLine(1, 2, 101, 2, Color.GREEN);
+
+        List<ShapeInterface> loaded = roundTrip(Arrays.asList(rectangle, ellipse, line));
+
+        assertEquals(3, loaded.size());
+        ConcreteRectangle r = (ConcreteRectangle) loaded.get(0);
+        assertEquals(10, r.getX());
+        assertEquals(20, r.getY());
+        assertEquals(100, r.getWidth());
+        assertEquals(50, r.getHeight());
+        assertEquals(30, r.getAngle());
+        assertEquals(Color.BLACK, r.getBorderColor());
+        assertEquals(Color.RED, r.getFillColor());
+        assertNull(r.getNode());
+
+        ConcreteEllipse e = (ConcreteEllipse) loaded.get(1);
+        assertEquals(70, e.getWidth());
+        assertEquals(Color.TRANSPARENT, e.getFillColor());
+
+        ConcreteLine l = (ConcreteLine) loaded.get(2);
+        assertEquals(101, l.getX2());
+        assertEquals(Color.GREEN, l.getBorderColor());
+        assertNull(l.getFillColor());
+    }
+
+    /**
+     * Tests that polygons and texts keep their specific properties.
+     * @throws IOException if encoding or decoding fails
+     */
+    @Test
+    void testPolygonAndTextRoundTrip() throws IOException {
+        ConcretePolygon polygon = new ConcretePolygon(Arrays.asList(10.0, 10.0, 100.0, 10.0, 50.0, 80.0), Color.RED, Color.GREEN);
+        polygon.mirrorX();
+        ConcreteText text = new ConcreteText("hello", 40, 60, Color.BLACK, Color.YELLOW, 24);
+
+        List<ShapeInterface> loaded = roundTrip(Arrays.asList(polygon, text));
+
+        ConcretePolygon p = (ConcretePolygon) loaded.get(0);
+        assertEquals(10, p.getX());
+        assertEquals(10, p.getY());
+        assertEquals(Color.GREEN, p.getFillColor());
+
+        ConcreteText t = (ConcreteText) loaded.get(1);
+        assertEquals("hello", t.getContent());
+        assertEquals(24, t.getFontSize());
+        assertEquals(40, t.getX());
+        assertEquals(Color.YELLOW, t.getFillColor());
+    }
+
+    /**
+     * Tests that a text longer than 65,535 encoded bytes survives a round trip,
+     * and that text records of version 2, stored in modified UTF-8, are still read.
+     * @throws IOException if encoding or decoding fails
+     */
+    @Test
+    void testLongTextAndVersion2Text() throws IOException {
+        String content = "\u00e9t\u00e9 ".repeat(20000);
+        ConcreteText text = new ConcreteText(content, 40, 60, Color.BLACK, Color.YELLOW, 24);
+        List<ShapeInterface> loaded = roundTrip(Arrays.asList(text, new ConcreteRectangle(1, 2, 3, 4, Color.BLACK, Color.RED)));
+        assertEquals(content, ((ConcreteText) loaded.get(0)).getContent());
+        assertEquals(3, loaded.get(1).getWidth());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(DocumentFormat.TAG_TEXT);
+            out.writeLong(42);
+            DocumentFormat.writeColors(out, Color.BLACK, Color.YELLOW);
+            for (double value : new double[] { 40, 60, 24, 0, 0, 0, 1, 1, 1, 1 }) {
+                out.writeDouble(value);
+            }
+            out.writeUTF("legacy");
+        }
+        ShapeInterface legacy = DocumentReader.readRecord(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 2);
+        assertEquals("legacy", ((ConcreteText) legacy).getContent());
+        assertEquals(42, legacy.getId());
+    }
+
+    /**
+     * Encodes a document and overwrites an int at a distance from its end.
+     * @param shapes The shapes to write.
+     * @param fromEnd The distance of the int from the end of the encoded bytes.
+     * @param value The value to write.
+     * @return The corrupted bytes.
+     * @throws IOException if encoding fails
+     */
+    private byte[] corrupt(List<ShapeInterface> shapes, int fromEnd, int value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DocumentWriter.writeAll(bytes, shapes);
+        byte[] data = bytes.toByteArray();
+        int at = data.length - fromEnd;
+        for (int i = 0; i < 4; i++) {
+            data[at + i] = (byte) (value >>> (24 - 8 * i));
+        }
+        return data;
+    }
+
+    /**
+     * Tests that record sizes that are invalid or larger than the document are rejected with an IOException.
+     * @throws IOException if encoding fails
+     */
+    @Test
+    void testInvalidRecordSizesAreRejected() throws IOException {
+        List<ShapeInterface> polygon = List.of(new ConcretePolygon(new double[] { 0, 0, 10, 0, 5, 8 }, Color.BLACK, Color.RED));
+        // The coordinate count precedes the six coordinates of the polygon.
+        for (int count : new int[] { -1, 4, 7, Integer.MAX_VALUE }) {
+            byte[] data = corrupt(polygon, 6 * 8 + 4, count);
+            assertThrows(IOException.class, () -> DocumentReader.readAll(new ByteArrayInputStream(data)), "count " + count);
+        }
+        List<ShapeInterface> text = List.of(new ConcreteText("abc", 0, 0, Color.BLACK, Color.RED, 12));
+        for (int length : new int[] { -1, Integer.MAX_VALUE }) {
+            byte[] data = corrupt(text, 3 + 4, length);
+            assertThrows(IOException.class, () -> DocumentReader.readAll(new ByteArrayInputStream(data)), "length " + length);
+        }
+    }
+
+    /**
+     * Tests that a document of a newer version is rejected.
+     * @param dir A temporary directory
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    void testUnsupportedVersionIsRejected(@TempDir Path dir) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(DocumentFormat.MAGIC);
+            out.writeShort(DocumentFormat.VERSION + 1);
+            out.writeInt(0);
+        }
+        File file = dir.resolve("newer.bin").toFile();
+        Files.write(file.toPath(), bytes.toByteArray());
+        assertThrows(IOException.class, () -> DocumentReader.readFile(file));
+    }
+
+    /**
+     * Tests that colors are packed and unpacked as 32-bit ARGB values.
+     */
+    @Test
+    void testArgbPacking() {
+        assertEquals(0xFFFF0000, DocumentFormat.toArgb(Color.RED));
+        assertEquals(0, DocumentFormat.toArgb(Color.TRANSPARENT));
+        assertEquals(Color.web("#336699", 0.4), DocumentFormat.fromArgb(DocumentFormat.toArgb(Color.web("#336699", 0.4))));
+    }
+
+    /**
+     * Tests that data without the document header is rejected.
+     */
+    @Test
+    void testInvalidHeaderIsRejected() {
+        byte[] garbage = {(byte) 0xAC, (byte) 0xED, 0, 5, 1, 2, 3, 4, 5, 6};
+        assertThrows(IOException.class, () -> DocumentReader.readAll(new ByteArrayInputStream(garbage)));
+    }
+
+    /**
+     * Tests that a document serialized by the original shape classes still loads.
+     * @param dir A temporary directory
+     * @throws IOException if the file cannot be written or read
+     */
+    @Test
+    void testLegacyDocumentLoads(@TempDir Path dir) throws IOException {
+        File file = dir.resolve("legacy.bin").toFile();
+        Files.write(file.toPath(), Base64.getDecoder().decode(LEGACY_DOCUMENT));
+
+        List<ShapeInterface> loaded = DocumentReader.readFile(file);
+
+        ConcretePolygon polygon = (ConcretePolygon) loaded.get(0);
+        assertEquals(10, polygon.getX());
+        assertEquals(20, polygon.getY());
+        assertArrayEquals(new double[] { 0, 0, 100, 0, 50, 75.5 }, polygon.getPoints());
+        assertEquals(Color.RED, polygon.getBorderColor());
+        assertEquals(3, ((Polygon) polygon.getNode()).getPoints().size() / 2);
+
+        ConcreteRectangle rectangle = (ConcreteRectangle) loaded.get(1);
+        assertEquals(5, rectangle.getX());
+        assertEquals(70, rectangle.getWidth());
+        assertEquals(Color.BLUE, rectangle.getFillColor());
+    }
+
+    /**
+     * Tests that a polygon keeps its vertices through Java serialization, which still stores them as a list.
+     * @throws Exception if serialization fails
+     */
+    @Test
+    void testPolygonSerializationRoundTrip() throws Exception {
+        ConcretePolygon polygon = new ConcretePolygon(new double[] { 10, 10, 100, 10, 50, 80 }, Color.RED, Color.GREEN);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(polygon);
+        }
+        ConcretePolygon copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (ConcretePolygon) in.readObject();
+        }
+        assertArrayEquals(polygon.getPoints(), copy.getPoints());
+        assertEquals(10, copy.getX());
+        assertEquals(Color.GREEN, copy.getFillColor());
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Unit tests for the DocumentGenerator class.
+ * Verifies that generated documents are deterministic, follow the requested mix and can be loaded.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sad.models.persistence.DocumentGenerator;
+import com.sad.models.persistence.DocumentReader;
+import com.sad.models.persistence.DocumentWriter;
+import com.sad.models.shapes.ConcreteLine;
+import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.ConcreteText;
+import com.sad.models.shapes.ShapeInterface;
+
+/**
+ * Test class for DocumentGenerator.
+ */
+class DocumentGeneratorTest {
+
+    /**
+     * Tests that the same seed gives the same document, in memory and streamed to a file.
+     * @param dir A temporary directory.
+     * @throws IOException If the document cannot be written.
+     */
+    @Test
+    void testDocumentsAreDeterministic(@TempDir Path dir) throws IOException {
+        File file = dir.resolve("generated.bin").toFile();
+        new DocumentGenerator(7).writeFile(file, 500);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DocumentWriter.writeAll(bytes, new DocumentGenerator(7).generate(500));
+        assertArrayEquals(bytes.toByteArray(), Files.readAllBytes(file.toPath()));
+
+        ByteArrayOutputStream other = new ByteArrayOutputStream();
+        DocumentWriter.writeAll(other, new DocumentGenerator(8).generate(500));
+        assertFalse(Arrays.equals(bytes.toByteArray(), other.toByteArray()));
+
+        assertEquals(500, DocumentReader.readFile(file).size());
+    }
+
+    /**
+     * Tests that only the shape types with a positive weight are generated, with the requested vertices.
+     */
+    @Test
+    void testMixAndVertices() {
+        DocumentGenerator generator = new DocumentGenerator(1);
+        generator.setMix(0, 0, 1, 3, 0);
+        generator.setPolygonVertices(64);
+        generator.setArea(1000, 500);
+        List<ShapeInterface> shapes = generator.generate(400);
+
+        int polygons = 0;
+        for (ShapeInterface shape : shapes) {
+            if (shape instanceof ConcretePolygon) {
+                polygons++;
+                assertEquals(64, ((ConcretePolygon) shape).getVertexCount());
+            } else {
+                assertTrue(shape instanceof ConcreteLine);
+                assertTrue(shape.getX() >= 0 && shape.getX() <= 1000);
+            }
+        }
+        assertTrue(polygons > 250 && polygons < 350, "about three polygons for each line: " + polygons);
+
+        generator.setMix(0, 0, 0, 0, 1);
+        List<ShapeInterface> texts = generator.generate(10);
+        assertTrue(texts.stream().allMatch(shape -> shape instanceof ConcreteText));
+        assertTrue(texts.stream().allMatch(shape -> shape.getWidth() > 0 && shape.getHeight() > 0));
+    }
+
+    /**
+     * Tests that invalid settings are rejected.
+     */
+    @Test
+    void testInvalidSettings() {
+        DocumentGenerator generator = new DocumentGenerator(1);
+        assertThrows(IllegalArgumentException.class, () -> generator.setMix(0, 0, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> generator.setMix(1, -1, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> generator.setPolygonVertices(2));
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * Unit tests for the DocumentJournal class.
+ * Verifies that committed changes are replayed on the snapshot and that damaged or stale journals are handled.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sad.models.Model;
+import com.sad.models.persistence.DocumentFormat;
+import com.sad.models.persistence.DocumentJournal;
+import com.sad.models.persistence.DocumentWriter;
+import com.sad.models.shapes.ConcreteEllipse;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for DocumentJournal.
+ */
+class DocumentJournalTest {
+
+    /** Temporary directory for the document files. */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Writes a snapshot containing three rectangles and loads it into a new model.
+     * @param file The snapshot file.
+     * @return The model editing the snapshot.
+     * @throws IOException if the file cannot be written or read
+     */
+    private Model openDocument(File file) throws IOException {
+        List<ShapeInterface> shapes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            shapes.add(new ConcreteRectangle(i * 10, i * 10, 50, 20, Color.BLACK, Color.RED));
+        }
+        DocumentWriter.writeFile(file, shapes);
+        Model model = new Model(new Pane());
+        model.loadFromFile(file);
+        return model;
+    }
+
+    /**
+     * Tests that moves, deletions, insertions and reordering are recovered from the journal.
+     * @throws IOException if the document cannot be written or read
+     */
+    @Test
+    void testChangesAreReplayedOnSnapshot() throws IOException {
+        File file = tempDir.resolve("document.bin").toFile();
+        Model model = openDocument(file);
+        List<ShapeInterface> shapes = model.getShapes();
+
+        model.moveShape(shapes.get(0), new double[] { 200, 300 });
+        model.commitJournal();
+        model.deleteShape(shapes.get(1));
+        model.commitJournal();
+        ShapeInterface ellipse = new ConcreteEllipse(5, 6, 70, 80, Color.BLUE, Color.GREEN);
+        ellipse.draw();
+        model.addShape(ellipse);
+        model.commitJournal();
+        model.sendShapeToBack(ellipse);
+        model.commitJournal();
+        assertEquals(4, model.getJournal().getTransactionCount());
+
+        Model recovered = new Model(new Pane());
+        recovered.loadFromFile(file);
+        List<ShapeInterface> result = recovered.getShapes();
+
+        assertEquals(3, result.size());
+        assertTrue(result.get(0) instanceof ConcreteEllipse);
+        assertEquals(70, result.get(0).getWidth());
+        assertEquals(200, result.get(1).getX());
+        assertEquals(300, result.get(1).getY());
+        assertEquals(20, result.get(2).getX());
+        assertEquals(4, recovered.getJournal().getTransactionCount());
+    }
+
+    /**
+     * Tests that a transaction removing, reordering and inserting several shapes is replayed in one pass.
+     * @throws IOException if the document cannot be written or read
+     */
+    @Test
+    void testTransactionWithSeveralOperations() throws IOException {
+        File file = tempDir.resolve("several.bin").toFile();
+        Model model = openDocument(file);
+        List<ShapeInterface> shapes = model.getShapes();
+        ShapeInterface last = shapes.get(2);
+
+        model.deleteShape(shapes.get(1));
+        model.sendShapeToBack(last);
+        ShapeInterface ellipse = new ConcreteEllipse(5, 6, 70, 80, Color.BLUE, Color.GREEN);
+        ellipse.draw();
+        model.addShape(ellipse);
+        model.commitJournal();
+        assertEquals(1, model.getJournal().getTransactionCount());
+
+        Model recovered = new Model(new Pane());
+        recovered.loadFromFile(file);
+        List<ShapeInterface> result = recovered.getShapes();
+
+        assertEquals(3, result.size());
+        assertEquals(20, result.get(0).getX());
+        assertEquals(0, result.get(1).getX());
+        assertTrue(result.get(2) instanceof ConcreteEllipse);
+        assertEquals(last.getId(), result.get(0).getId());
+    }
+
+    /**
+     * Tests that a transaction cut short by a crash is dropped and later changes still apply.
+     * @throws IOException if the document cannot be written or read
+     */
+    @Test
+    void testTruncatedTransactionIsIgnored() throws IOException {
+        File file = tempDir.resolve("document.bin").toFile();
+        Model model = openDocument(file);
+        List<ShapeInterface> shapes = model.getShapes();
+
+        model.moveShape(shapes.get(0), new double[] { 100, 100 });
+        model.commitJournal();
+        long intact = model.getJournal().getSize();
+        model.moveShape(shapes.get(1), new double[] { 500, 500 });
+        model.commitJournal();
+
+        File journalFile = DocumentJournal.journalFileFor(file);
+        try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        Model recovered = new Model(new Pane());
+        recovered.loadFromFile(file);
+        List<ShapeInterface> result = recovered.getShapes();
+        assertEquals(100, result.get(0).getX());
+        assertEquals(10, result.get(1).getX());
+        assertEquals(intact, journalFile.length());
+
+        recovered.moveShape(result.get(2), new double[] { 42, 43 });
+        recovered.commitJournal();
+        Model again = new Model(new Pane());
+        again.loadFromFile(file);
+        assertEquals(42, again.getShapes().get(2).getX());
+        assertEquals(100, again.getShapes().get(0).getX());
+    }
+
+    /**
+     * Tests that a journal written for another snapshot is not replayed.
+     * @throws IOException if the document cannot be written or read
+     */
+    @Test
+    void testStaleJournalIsDiscarded() throws IOException {
+        File file = tempDir.resolve("document.bin").toFile();
+        Model model = openDocument(file);
+        model.moveShape(model.getShapes().get(0), new double[] { 100, 100 });
+        model.commitJournal();
+
+        List<ShapeInterface> replacement = new ArrayList<>();
+        replacement.add(new ConcreteRectangle(1, 2, 3, 4, Color.BLACK, Color.WHITE));
+        DocumentWriter.writeFile(file, replacement);
+
+        Model reopened = new Model(new Pane());
+        reopened.loadFromFile(file);
+        assertEquals(1, reopened.getShapes().size());
+        assertEquals(1, reopened.getShapes().get(0).getX());
+        assertEquals(0, reopened.getJournal().getTransactionCount());
+    }
+
+    /**
+     * Tests that a shape added and removed between two commits leaves no trace in the journal.
+     * @throws IOException if the document cannot be written or read
+     */
+    @Test
+    void testTransientShapeIsNotJournaled() throws IOException {
+        File file = tempDir.resolve("document.bin").toFile();
+        Model model = openDocument(file);
+        long size = model.getJournal().getSize();
+
+        ShapeInterface preview = new ConcreteRectangle(1, 1, 1, 1, Color.BLACK, Color.WHITE);
+        preview.draw();
+        model.getPane().getChildren().add(preview.getNode());
+        model.getPane().getChildren().remove(preview.getNode());
+        model.commitJournal();
+
+        assertEquals(size, model.getJournal().getSize());
+        assertEquals(0, model.getJournal().getTransactionCount());
+    }
+
+    /**
+     * Tests that a version 1 journal, naming shapes by their snapshot position, is replayed
+     * and rewritten in the current version.
+     * @throws IOException if the document cannot be written or read
+     */
+    @Test
+    void testVersion1JournalIsMigrated() throws IOException {
+        File file = tempDir.resolve("document.bin").toFile();
+        openDocument(file).getJournal().close();
+
+        // PUT(id 1, index 1, rectangle moved to 77) as version 1 wrote it: int id, record without id.
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(payload);
+        data.writeByte(1);
+        data.writeInt(1);
+        data.writeInt(1);
+        data.writeByte(DocumentFormat.TAG_RECTANGLE);
+        new ConcreteRectangle(77, 10, 50, 20, Color.BLACK, Color.RED).writeTo(data);
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+        File journalFile = DocumentJournal.journalFileFor(file);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(journalFile))) {
+            out.writeInt(DocumentJournal.MAGIC);
+            out.writeShort(1);
+            out.writeLong(file.length());
+            out.writeLong(DocumentJournal.checksum(file));
+            out.writeInt(payload.size());
+            out.write(payload.toByteArray());
+            out.writeInt((int) crc.getValue());
+        }
+
+        Model recovered = new Model(new Pane());
+        recovered.loadFromFile(file);
+        assertEquals(77, recovered.getShapes().get(1).getX());
+        try (DataInputStream in = new DataInputStream(new FileInputStream(journalFile))) {
+            in.readInt();
+            assertEquals(DocumentJournal.VERSION, in.readShort());
+        }
+        recovered.getJournal().close();
+
+        Model again = new Model(new Pane());
+        again.loadFromFile(file);
+        assertEquals(77, again.getShapes().get(1).getX());
+        assertEquals(20, again.getShapes().get(2).getX());
+    }
+}
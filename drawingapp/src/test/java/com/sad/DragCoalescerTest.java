@@ -0,0 +1,85 @@
+/**
+ * Unit tests for the DragCoalescer class.
+ * Verifies that the pointer events of a frame result in a single move to the latest position.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sad.models.state.DragCoalescer;
+
+/**
+ * Test class for DragCoalescer, with pulses triggered by the test instead of an animation timer.
+ */
+class DragCoalescerTest {
+    private List<double[]> moves;
+    private int scheduled;
+    private DragCoalescer coalescer;
+
+    /**
+     * Creates a coalescer recording its moves and counting its pulse requests.
+     */
+    @BeforeEach
+    void setUp() {
+        moves = new ArrayList<>();
+        scheduled = 0;
+        coalescer = new DragCoalescer((x, y) -> moves.add(new double[] { x, y })) {
+            @Override
+            protected void schedule() {
+                scheduled++;
+            }
+
+            @Override
+            protected void unschedule() {
+            }
+        };
+    }
+
+    /**
+     * Tests that only the latest position of a frame is applied, once.
+     */
+    @Test
+    void testEventsOfAFrameAreCoalesced() {
+        coalescer.update(1, 1);
+        coalescer.update(2, 3);
+        coalescer.update(5, 8);
+        assertTrue(moves.isEmpty());
+        assertEquals(1, scheduled);
+
+        coalescer.pulse();
+        coalescer.pulse();
+        assertEquals(1, moves.size());
+        assertArrayEquals(new double[] { 5, 8 }, moves.get(0));
+        assertFalse(coalescer.isPending());
+
+        coalescer.update(13, 21);
+        coalescer.pulse();
+        assertEquals(2, scheduled);
+        assertArrayEquals(new double[] { 13, 21 }, moves.get(1));
+        assertEquals(4, coalescer.getEventCount());
+        assertEquals(2, coalescer.getFrameCount());
+        assertTrue(coalescer.getMaxLatency() >= coalescer.getAverageLatency());
+    }
+
+    /**
+     * Tests that a cancelled position is never applied and that finishing resets the statistics.
+     */
+    @Test
+    void testCancelDropsThePendingPosition() {
+        coalescer.update(4, 4);
+        coalescer.cancel();
+        coalescer.pulse();
+        assertTrue(moves.isEmpty());
+
+        coalescer.finish();
+        assertEquals(0, coalescer.getEventCount());
+        assertEquals(0, coalescer.getFrameCount());
+        assertEquals(0, coalescer.getAverageLatency());
+    }
+}
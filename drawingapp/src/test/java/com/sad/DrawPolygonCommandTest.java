@@ -2,7 +2,8 @@ package com.sad;
 
 import com.sad.models.Model;
 import com.sad.models.command.DrawPolygonCommand;
-import javafx.scene.control.ColorPicker;
+import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.ShapeInterface;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Polygon;
@@ -10,19 +11,15 @@ import javafx.scene.shape.Polygon;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.Arrays;
-import java.util.List;
-
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Mockito.*;
 
 class DrawPolygonCommandTest {
 
     private Model modelMock;
     private Pane pane;
-    private ColorPicker borderColorPicker;
-    private ColorPicker fillColorPicker;
-    private List<Double> points;
+    private double[] points;
     private DrawPolygonCommand command;
 
     @BeforeEach
@@ -33,40 +30,40 @@ class DrawPolygonCommandTest {
         // Stub del metodo getPane() per restituire il pane reale
         when(modelMock.getPane()).thenReturn(pane);
 
-        borderColorPicker = new ColorPicker(Color.RED);
-        fillColorPicker = new ColorPicker(Color.GREEN);
-
-        points = Arrays.asList(10.0, 10.0, 100.0, 10.0, 50.0, 80.0);
+        points = new double[] {10.0, 10.0, 100.0, 10.0, 50.0, 80.0};
 
-        command = new DrawPolygonCommand(modelMock, points, borderColorPicker, fillColorPicker);
+        command = new DrawPolygonCommand(modelMock, points, Color.RED, Color.GREEN);
     }
 
     @Test
     void testExecuteCallsCreatePolygon() {
         command.execute();
 
-        verify(modelMock).createPolygon(points, Color.RED, Color.GREEN);
+        verify(modelMock).createPolygon(aryEq(points), eq(Color.RED), eq(Color.GREEN));
     }
 
     @Test
-    void testUndoRemovesLastShapeIfPresent() {
-        Polygon dummyPolygon = new Polygon();
-        pane.getChildren().add(dummyPolygon);
-
-        assertEquals(1, pane.getChildren().size());
+    void testUndoRemovesCreatedPolygon() {
+        ShapeInterface polygon = new ConcretePolygon(points, Color.RED, Color.GREEN);
+        when(modelMock.createPolygon(aryEq(points), eq(Color.RED), eq(Color.GREEN))).thenReturn(polygon);
+        Polygon otherNode = new Polygon();
+        pane.getChildren().add(otherNode);
 
+        command.execute();
         command.undo();
 
-        assertEquals(0, pane.getChildren().size());
+        verify(modelMock).removeShape(polygon);
+        assertEquals(1, pane.getChildren().size());
+
+        command.execute();
+        verify(modelMock).addShape(polygon);
     }
 
     @Test
-    void testUndoDoesNothingIfPaneIsEmpty() {
-        assertEquals(0, pane.getChildren().size());
-
+    void testUndoDoesNothingIfNothingWasCreated() {
         // Non deve lanciare eccezioni né rimuovere nulla
         command.undo();
 
-        assertEquals(0, pane.getChildren().size());
+        verify(modelMock, never()).removeShape(any());
     }
 }
@@ -6,6 +6,8 @@ package com.sad;
 
 import com.sad.models.Model;
 import com.sad.models.command.DrawShapeCommand;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ShapeInterface;
 
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
@@ -65,32 +67,46 @@ class DrawShapeCommandTest {
 
     /**
      * Tests the undo method of DrawShapeCommand.
-     * Verifies that the last shape added to the pane is removed.
+     * Verifies that the created shape is removed from the model, whichever node is last on the pane.
      */
     @Test
-    void testUndoRemovesLastShapeIfPresent() {
-        // Add a dummy shape to the Pane
-        Rectangle dummyShape = new Rectangle();
-        pane.getChildren().add(dummyShape);
+    void testUndoRemovesCreatedShape() {
+        ShapeInterface shape = new ConcreteRectangle(x, y, 20, 10, borderColor, fillColor);
+        when(modelMock.createShape(x, y, 0, 0, borderColor, fillColor)).thenReturn(shape);
+        Rectangle otherNode = new Rectangle();
+        pane.getChildren().add(otherNode);
 
+        command.execute();
+        command.undo();
+
+        verify(modelMock).removeShape(shape);
         assertEquals(1, pane.getChildren().size());
+    }
 
+    /**
+     * Tests the undo method of DrawShapeCommand when nothing was created.
+     * Verifies that no exceptions are thrown and nothing is removed.
+     */
+    @Test
+    void testUndoDoesNothingIfNothingWasCreated() {
         command.undo();
 
-        assertEquals(0, pane.getChildren().size());
+        verify(modelMock, never()).removeShape(any());
     }
 
     /**
-     * Tests the undo method of DrawShapeCommand when the pane is empty.
-     * Verifies that no exceptions are thrown and no changes occur.
+     * Tests that redoing after an undo adds back the same shape instead of creating a new one.
      */
     @Test
-    void testUndoDoesNothingIfPaneIsEmpty() {
-        assertEquals(0, pane.getChildren().size());
+    void testRedoAddsBackRemovedShape() {
+        ShapeInterface shape = new ConcreteRectangle(x, y, 20, 10, borderColor, fillColor);
+        when(modelMock.createShape(x, y, 0, 0, borderColor, fillColor)).thenReturn(shape);
 
-        // Should not throw exceptions or remove anything
+        command.execute();
         command.undo();
+        command.execute();
 
-        assertEquals(0, pane.getChildren().size());
+        verify(modelMock).addShape(shape);
+        verify(modelMock, times(1)).createShape(anyDouble(), anyDouble(), anyDouble(), anyDouble(), any(), any());
     }
 }
@@ -0,0 +1,146 @@
+/**
+ * Unit tests for a Model without a drawing pane.
+ * Verifies that documents can be edited, queried, saved and loaded without creating any JavaFX node.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sad.models.Model;
+import com.sad.models.RectangleFactory;
+import com.sad.models.command.DeleteShapeCommand;
+import com.sad.models.command.DrawPolygonCommand;
+import com.sad.models.command.DrawShapeCommand;
+import com.sad.models.command.MoveShapeCommand;
+import com.sad.models.shapes.ConcreteEllipse;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for the Model created without a pane.
+ */
+class HeadlessModelTest {
+    private Model model;
+
+    /**
+     * Creates a model without a pane holding three rectangles of 100 x 50, 200 pixels apart.
+     */
+    @BeforeEach
+    void setUp() {
+        model = new Model();
+        model.setCurrentFactory(new RectangleFactory());
+        for (int i = 0; i < 3; i++) {
+            model.createShape(i * 200, 0, 0, 0, Color.BLACK, Color.RED);
+        }
+    }
+
+    /**
+     * Tests that shapes are added to the document and indexed without nodes.
+     */
+    @Test
+    void testShapesAreIndexedWithoutNodes() {
+        assertNull(model.getPane());
+        List<ShapeInterface> shapes = model.getShapes();
+        assertEquals(3, shapes.size());
+        for (ShapeInterface shape : shapes) {
+            assertNull(shape.getNode());
+        }
+        assertSame(shapes.get(1), model.getShapeAt(250, 25));
+        assertNull(model.getShapeAt(150, 25));
+        assertEquals(2, model.getShapesWithin(-10, -10, 310, 60).size());
+
+        ShapeInterface ellipse = new ConcreteEllipse(260, 30, 20, 10, Color.BLACK, Color.BLUE);
+        model.addShape(ellipse);
+        assertSame(ellipse, model.getShapeAt(260, 30));
+    }
+
+    /**
+     * Tests that edits re-index the shapes and that commands can be undone.
+     */
+    @Test
+    void testCommandsUpdateTheIndex() {
+        ShapeInterface shape = model.getShapes().get(0);
+        MoveShapeCommand move = new MoveShapeCommand(model, shape, new double[] { 0, 0 }, new double[] { 0, 500 });
+        move.execute();
+        assertNull(model.getShapeAt(25, 25));
+        assertSame(shape, model.getShapeAt(25, 525));
+
+        DeleteShapeCommand delete = new DeleteShapeCommand(model, shape);
+        delete.execute();
+        assertFalse(model.isInDocument(shape));
+        assertEquals(2, model.getShapes().size());
+        delete.undo();
+        assertTrue(model.isInDocument(shape));
+        assertSame(shape, model.getShapeAt(25, 525));
+
+        move.undo();
+        assertSame(shape, model.getShapeAt(25, 25));
+    }
+
+    /**
+     * Tests that a document saved by a model without a pane loads into another one, still without nodes.
+     * @param dir A temporary directory.
+     * @throws IOException If the document cannot be written or read.
+     */
+    @Test
+    void testSaveAndLoadWithoutPane(@TempDir Path dir) throws IOException {
+        File file = dir.resolve("headless.bin").toFile();
+        model.saveToFile(file);
+
+        Model loaded = new Model();
+        loaded.loadFromFile(file);
+        assertEquals(3, loaded.getShapes().size());
+        assertNull(loaded.getShapes().get(2).getNode());
+        assertSame(loaded.getShapes().get(2), loaded.getShapeAt(425, 25));
+    }
+
+    /**
+     * Tests that the features that attach nodes are rejected without a pane.
+     */
+    @Test
+    void testPaneFeaturesAreRejected() {
+        assertThrows(IllegalStateException.class, () -> model.setCullingEnabled(true));
+        assertThrows(IllegalStateException.class, () -> model.setCanvasRenderingEnabled(true));
+        assertFalse(model.isCullingEnabled());
+    }
+
+    /**
+     * Tests that drawing commands are undone and redone through the model, without a pane.
+     */
+    @Test
+    void testDrawCommandsUndoAndRedo() {
+        DrawShapeCommand drawShape = new DrawShapeCommand(model, 600, 0, Color.BLACK, Color.RED);
+        drawShape.execute();
+        ShapeInterface rectangle = model.getShapes().get(3);
+        DrawPolygonCommand drawPolygon = new DrawPolygonCommand(model, new double[] { 0, 100, 50, 100, 25, 150 },
+                Color.BLACK, Color.BLUE);
+        drawPolygon.execute();
+        ShapeInterface polygon = model.getShapes().get(4);
+        assertEquals(5, model.getShapes().size());
+
+        drawShape.undo();
+        assertEquals(4, model.getShapes().size());
+        assertFalse(model.isInDocument(rectangle));
+        assertSame(polygon, model.getShapes().get(3));
+
+        drawPolygon.undo();
+        assertEquals(3, model.getShapes().size());
+        assertNull(model.getShapeAt(25, 120));
+
+        drawPolygon.execute();
+        drawShape.execute();
+        assertSame(polygon, model.getShapeAt(25, 120));
+        assertSame(rectangle, model.getShapeAt(650, 25));
+        assertEquals(Color.RED, rectangle.getFillColor());
+    }
+}
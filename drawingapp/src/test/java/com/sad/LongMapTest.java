@@ -0,0 +1,55 @@
+/**
+ * Unit tests for the LongMap class.
+ * Verifies that lookups, replacements and removals match a HashMap.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.sad.models.index.LongMap;
+
+/**
+ * Test class for LongMap.
+ */
+class LongMapTest {
+
+    /**
+     * Tests random puts and removals over a small key range, so that probe runs collide and shift.
+     */
+    @Test
+    void testMatchesHashMap() {
+        Random random = new Random(5);
+        LongMap<String> map = new LongMap<>();
+        Map<Long, String> expected = new HashMap<>();
+        for (int step = 0; step < 20000; step++) {
+            long key = random.nextInt(500) * 1024L;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = "v" + step;
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 500 * 1024L; key += 1024) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+    }
+
+    /**
+     * Tests that null values are rejected.
+     */
+    @Test
+    void testNullValuesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new LongMap<String>().put(1, null));
+    }
+}
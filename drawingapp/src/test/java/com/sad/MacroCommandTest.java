@@ -0,0 +1,81 @@
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import com.sad.models.Model;
+import com.sad.models.command.CommandInterface;
+import com.sad.models.command.MacroCommand;
+import com.sad.models.command.MoveShapeCommand;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Unit tests for the MacroCommand class.
+ * Verifies that child commands run in order inside a batch and are undone in reverse order.
+ */
+public class MacroCommandTest {
+
+    /**
+     * Tests that the children are executed in order and undone in reverse order, each time inside a batch.
+     */
+    @Test
+    void testChildrenRunInsideBatch() {
+        Model mockModel = mock(Model.class);
+        CommandInterface first = mock(CommandInterface.class);
+        CommandInterface second = mock(CommandInterface.class);
+        MacroCommand macro = new MacroCommand(mockModel, List.of(first, second));
+
+        macro.execute();
+        macro.undo();
+
+        InOrder inOrder = inOrder(mockModel, first, second);
+        inOrder.verify(mockModel).beginBatch();
+        inOrder.verify(first).execute();
+        inOrder.verify(second).execute();
+        inOrder.verify(mockModel).endBatch();
+        inOrder.verify(mockModel).beginBatch();
+        inOrder.verify(second).undo();
+        inOrder.verify(first).undo();
+        inOrder.verify(mockModel).endBatch();
+    }
+
+    /**
+     * Tests that moving many shapes at once updates the spatial index when the batch ends, and undoes in one step.
+     */
+    @Test
+    void testBulkMoveUpdatesIndexOnce() {
+        Model model = new Model(new Pane());
+        List<ShapeInterface> shapes = new ArrayList<>();
+        MacroCommand macro = new MacroCommand(model);
+        for (int i = 0; i < 5; i++) {
+            ShapeInterface shape = new ConcreteRectangle(i * 100, 0, 50, 50, Color.BLACK, Color.RED);
+            shape.draw();
+            model.addShape(shape);
+            shapes.add(shape);
+            macro.add(new MoveShapeCommand(model, shape, new double[] { i * 100, 0 }, new double[] { i * 100, 1000 }));
+        }
+        assertEquals(5, macro.getCommands().size());
+
+        macro.execute();
+        assertFalse(model.isBatching());
+        assertTrue(model.getShapesIn(0, 0, 500, 100).isEmpty());
+        assertEquals(5, model.getShapesIn(0, 1000, 500, 1100).size());
+        assertSame(shapes.get(2), model.getShapeAt(225, 1025));
+
+        macro.undo();
+        assertEquals(5, model.getShapesIn(0, 0, 500, 100).size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, shapes.get(i).getY());
+        }
+    }
+}
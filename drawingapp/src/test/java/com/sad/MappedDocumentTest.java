@@ -0,0 +1,158 @@
+/**
+ * Unit tests for the MappedDocument and LazyDocument classes.
+ * Verifies that records are indexed without being decoded and that only visible shapes are materialized.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sad.models.LazyDocument;
+import com.sad.models.Model;
+import com.sad.models.persistence.DocumentReader;
+import com.sad.models.persistence.DocumentWriter;
+import com.sad.models.persistence.MappedDocument;
+import com.sad.models.shapes.ConcreteEllipse;
+import com.sad.models.shapes.ConcreteLine;
+import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ConcreteText;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for MappedDocument and LazyDocument.
+ */
+class MappedDocumentTest {
+
+    /** Temporary directory for the document files. */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Writes a document with one rectangle every 100 pixels along the x axis.
+     * @param count The number of rectangles.
+     * @return The written file.
+     * @throws IOException if the file cannot be written
+     */
+    private File writeRow(int count) throws IOException {
+        List<ShapeInterface> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shapes.add(new ConcreteRectangle(i * 100, 0, 50, 50, Color.BLACK, Color.RED));
+        }
+        File file = tempDir.resolve("row.bin").toFile();
+        DocumentWriter.writeFile(file, shapes);
+        return file;
+    }
+
+    /**
+     * Tests that every record type is indexed with its bounds and decoded on demand.
+     * @throws IOException if the document cannot be written or read
+     */
+    @Test
+    void testRecordsAreIndexedAndMaterialized() throws IOException {
+        List<ShapeInterface> shapes = new ArrayList<>();
+        shapes.add(new ConcreteRectangle(10, 10, 20, 20, Color.BLACK, null));
+        shapes.add(new ConcreteEllipse(500, 500, 30, 10, Color.BLUE, Color.GREEN));
+        shapes.add(new ConcreteLine(1000, 50, 900, 80, Color.RED));
+        List<Double> points = List.of(2000.0, 2000.0, 2100.0, 2000.0, 2050.0, 2080.0);
+        shapes.add(new ConcretePolygon(new ArrayList<>(points), Color.BLACK, Color.WHITE));
+        File file = tempDir.resolve("mixed.bin").toFile();
+        DocumentWriter.writeFile(file, shapes);
+
+        MappedDocument document = MappedDocument.open(file);
+        assertEquals(4, document.size());
+        assertTrue(document.intersects(0, 0, 0, 15, 15));
+        assertFalse(document.intersects(0, 31, 31, 100, 100));
+        assertTrue(document.intersects(1, 475, 495, 480, 505));
+        assertTrue(document.intersects(2, 950, 60, 960, 70));
+        assertTrue(document.intersects(3, 2090, 2070, 2095, 2075));
+        assertFalse(document.intersects(3, 0, 0, 1800, 1800));
+
+        ShapeInterface line = document.materialize(2);
+        assertTrue(line instanceof ConcreteLine);
+        assertEquals(1000, line.getX());
+        assertEquals(900, ((ConcreteLine) line).getX2());
+        assertNull(line.getNode());
+    }
+
+    /**
+     * Tests that the records following a text longer than 65,535 bytes are indexed at the right offset.
+     * @throws IOException if the document cannot be written or read
+     */
+    @Test
+    void testLongTextIsSkipped() throws IOException {
+        String content = "x".repeat(70000);
+        List<ShapeInterface> shapes = List.of(
+            new ConcreteText(content, 10, 10, Color.BLACK, Color.BLACK, 12),
+            new ConcreteRectangle(500, 500, 20, 20, Color.BLACK, Color.RED));
+        File file = tempDir.resolve("text.bin").toFile();
+        DocumentWriter.writeFile(file, shapes);
+
+        MappedDocument document = MappedDocument.open(file);
+        assertEquals(2, document.size());
+        assertTrue(document.intersects(1, 505, 505, 510, 510));
+        assertEquals(content, ((ConcreteText) document.materialize(0)).getContent());
+        assertEquals(500, document.materialize(1).getX());
+    }
+
+    /**
+     * Tests that only the shapes in the viewport are attached, and that they are released when it moves.
+     * @throws IOException if the document cannot be written or read
+     */
+    @Test
+    void testOnlyVisibleShapesAreResident() throws IOException {
+        File file = writeRow(1000);
+        Model model = new Model(new Pane());
+        model.setViewport(0, 0, 1000, 500);
+        LazyDocument lazy = model.loadMapped(file);
+
+        assertEquals(11, lazy.getResidentCount());
+        assertEquals(11, model.getPane().getChildren().size());
+        assertEquals(0, model.getShapes().get(0).getX());
+
+        model.setViewport(50000, 0, 50950, 500);
+        assertEquals(10, lazy.getResidentCount());
+        assertEquals(50000, model.getShapes().get(0).getX());
+        assertEquals(50900, model.getShapes().get(9).getX());
+    }
+
+    /**
+     * Tests that modified shapes stay resident and that a save contains the whole document.
+     * @throws IOException if the document cannot be written or read
+     */
+    @Test
+    void testEditsSurviveEvictionAndSave() throws IOException {
+        File file = writeRow(1000);
+        Model model = new Model(new Pane());
+        model.setViewport(0, 0, 250, 100);
+        model.loadMapped(file);
+
+        List<ShapeInterface> visible = model.getShapes();
+        model.moveShape(visible.get(1), new double[] { 120, 300 });
+        model.deleteShape(visible.get(2));
+        model.setViewport(10000, 0, 10250, 100);
+
+        List<ShapeInterface> attached = model.getShapes();
+        assertEquals(4, attached.size());
+        assertEquals(120, attached.get(0).getX());
+
+        File saved = tempDir.resolve("saved.bin").toFile();
+        model.saveToFile(saved);
+        List<ShapeInterface> reloaded = DocumentReader.readFile(saved);
+        assertEquals(999, reloaded.size());
+        assertEquals(0, reloaded.get(0).getX());
+        assertEquals(300, reloaded.get(1).getY());
+        assertEquals(300, reloaded.get(2).getX());
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Unit tests for the change feed of the Model.
+ * Verifies that the changes of a transaction are coalesced and published once.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sad.models.Model;
+import com.sad.models.ModelChanges;
+import com.sad.models.ModelChanges.Kind;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for ModelChanges, on a headless model.
+ */
+class ModelChangesTest {
+    private Model model;
+    private List<ModelChanges> batches;
+    private Consumer<ModelChanges> listener;
+    private ShapeInterface first;
+    private ShapeInterface second;
+
+    /**
+     * Creates a model with two shapes and a listener recording the published batches.
+     */
+    @BeforeEach
+    void setUp() {
+        model = new Model();
+        first = new ConcreteRectangle(0, 0, 10, 10, Color.BLACK, Color.RED);
+        second = new ConcreteRectangle(20, 0, 10, 10, Color.BLACK, Color.BLUE);
+        model.addShape(first);
+        model.addShape(second);
+        batches = new ArrayList<>();
+        listener = batches::add;
+        model.addChangeListener(listener);
+    }
+
+    /**
+     * Tests that the edits of a transaction are published as one batch, once per kind and shape.
+     */
+    @Test
+    void testChangesAreCoalescedPerTransaction() {
+        model.moveShape(first, new double[] { 5, 5 });
+        model.moveShape(first, new double[] { 6, 6 });
+        model.changeShapeColor(first, Color.GREEN, Color.GREEN);
+        model.bringShapeToFront(first);
+        assertTrue(batches.isEmpty());
+
+        model.commitJournal();
+        model.commitJournal();
+        assertEquals(1, batches.size());
+        ModelChanges changes = batches.get(0);
+        assertFalse(changes.isReset());
+        assertEquals(1, changes.get(Kind.GEOMETRY).size());
+        assertTrue(changes.contains(Kind.GEOMETRY, first));
+        assertTrue(changes.contains(Kind.STYLE, first));
+        assertTrue(changes.contains(Kind.Z_ORDER, first));
+        assertTrue(changes.get(Kind.ADDED).isEmpty());
+        assertFalse(changes.contains(Kind.GEOMETRY, second));
+    }
+
+    /**
+     * Tests that added and removed shapes are not also reported as modified,
+     * and that a shape added and removed in the same transaction is not reported.
+     */
+    @Test
+    void testAddedAndRemovedShapes() {
+        ShapeInterface third = new ConcreteRectangle(40, 0, 10, 10, Color.BLACK, Color.RED);
+        ShapeInterface temporary = new ConcreteRectangle(60, 0, 10, 10, Color.BLACK, Color.RED);
+        model.addShape(third);
+        model.moveShape(third, new double[] { 45, 0 });
+        model.addShape(temporary);
+        model.deleteShape(temporary);
+        model.moveShape(second, new double[] { 25, 0 });
+        model.deleteShape(second);
+        model.commitJournal();
+
+        ModelChanges changes = batches.get(0);
+        assertEquals(1, changes.get(Kind.ADDED).size());
+        assertTrue(changes.contains(Kind.ADDED, third));
+        assertFalse(changes.contains(Kind.GEOMETRY, third));
+        assertEquals(1, changes.get(Kind.REMOVED).size());
+        assertTrue(changes.contains(Kind.REMOVED, second));
+        assertTrue(changes.get(Kind.GEOMETRY).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> changes.get(Kind.ADDED).clear());
+    }
+
+    /**
+     * Tests that loading a document publishes a reset and that removed listeners are not notified.
+     * @param dir A temporary directory.
+     * @throws IOException If the document cannot be written or read.
+     */
+    @Test
+    void testLoadPublishesReset(@TempDir Path dir) throws IOException {
+        File file = dir.resolve("changes.bin").toFile();
+        model.saveToFile(file);
+        model.loadFromFile(file);
+        assertEquals(1, batches.size());
+        assertTrue(batches.get(0).isReset());
+        assertTrue(batches.get(0).get(Kind.ADDED).isEmpty());
+
+        model.removeChangeListener(listener);
+        model.moveShape(model.getShapes().get(0), new double[] { 1, 1 });
+        model.commitJournal();
+        assertEquals(1, batches.size());
+    }
+}
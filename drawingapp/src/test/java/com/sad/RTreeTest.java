@@ -0,0 +1,165 @@
+/**
+ * Unit tests for the spatial indexes.
+ * Verifies RTree and PackedRTree against a linear scan, and the hit-testing queries of the Model.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.sad.models.Model;
+import com.sad.models.index.PackedRTree;
+import com.sad.models.index.RTree;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for RTree, PackedRTree and the Model spatial queries.
+ */
+class RTreeTest {
+
+    /**
+     * Finds by linear scan the boxes intersecting a region.
+     * @param boxes The boxes, four values per item.
+     * @param region The region as min x, min y, max x, max y.
+     * @return The indices of the intersecting boxes.
+     */
+    private static Set<Integer> scan(double[][] boxes, double[] region) {
+        Set<Integer> result = new HashSet<>();
+        for (int i = 0; i < boxes.length; i++) {
+            double[] b = boxes[i];
+            if (b != null && b[0] <= region[2] && b[2] >= region[0] && b[1] <= region[3] && b[3] >= region[1]) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a random box inside a 10000 x 10000 area.
+     * @param random The random generator.
+     * @return The box as min x, min y, max x, max y.
+     */
+    private static double[] randomBox(Random random) {
+        double x = random.nextDouble() * 10000;
+        double y = random.nextDouble() * 10000;
+        return new double[] { x, y, x + random.nextDouble() * 200, y + random.nextDouble() * 200 };
+    }
+
+    /**
+     * Tests that queries match a linear scan after random insertions, moves and removals.
+     */
+    @Test
+    void testQueriesMatchLinearScan() {
+        Random random = new Random(42);
+        RTree<Integer> tree = new RTree<>();
+        double[][] boxes = new double[3000][];
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = randomBox(random);
+            Integer item = i;
+            items.add(item);
+            tree.insert(item, boxes[i][0], boxes[i][1], boxes[i][2], boxes[i][3]);
+        }
+        for (int i = 0; i < 1000; i++) {
+            int moved = random.nextInt(boxes.length);
+            boxes[moved] = randomBox(random);
+            tree.insert(items.get(moved), boxes[moved][0], boxes[moved][1], boxes[moved][2], boxes[moved][3]);
+        }
+        for (int i = 0; i < boxes.length; i += 3) {
+            assertTrue(tree.remove(items.get(i)));
+            boxes[i] = null;
+        }
+        assertEquals(2000, tree.size());
+
+        for (int q = 0; q < 200; q++) {
+            double[] region = randomBox(random);
+            assertEquals(scan(boxes, region), new HashSet<>(tree.search(region[0], region[1], region[2], region[3])));
+        }
+    }
+
+    /**
+     * Tests that removing every item leaves an empty, usable tree.
+     */
+    @Test
+    void testRemoveAll() {
+        RTree<Integer> tree = new RTree<>();
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(i);
+            tree.insert(items.get(i), i, i, i + 1, i + 1);
+        }
+        for (Integer item : items) {
+            assertTrue(tree.remove(item));
+        }
+        assertFalse(tree.remove(items.get(0)));
+        assertEquals(0, tree.size());
+        assertTrue(tree.search(0, 0, 1000, 1000).isEmpty());
+
+        tree.insert(items.get(5), 5, 5, 6, 6);
+        assertEquals(List.of(5), tree.search(0, 0, 10, 10));
+    }
+
+    /**
+     * Tests that the packed tree matches a linear scan.
+     */
+    @Test
+    void testPackedTreeMatchesLinearScan() {
+        Random random = new Random(7);
+        double[][] boxes = new double[5000][];
+        float[] bounds = new float[boxes.length * 4];
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = randomBox(random);
+            for (int k = 0; k < 4; k++) {
+                boxes[i][k] = (float) boxes[i][k];
+                bounds[i * 4 + k] = (float) boxes[i][k];
+            }
+        }
+        PackedRTree tree = PackedRTree.build(bounds);
+        assertEquals(boxes.length, tree.size());
+
+        for (int q = 0; q < 200; q++) {
+            double[] region = randomBox(random);
+            Set<Integer> found = new HashSet<>();
+            tree.search(region[0], region[1], region[2], region[3], found::add);
+            assertEquals(scan(boxes, region), found);
+        }
+    }
+
+    /**
+     * Tests that hit-testing returns the topmost shape and follows shapes as they move.
+     */
+    @Test
+    void testModelHitTestingFollowsShapes() {
+        Model model = new Model(new Pane());
+        ShapeInterface below = new ConcreteRectangle(0, 0, 100, 100, Color.BLACK, Color.RED);
+        ShapeInterface above = new ConcreteRectangle(50, 50, 100, 100, Color.BLACK, Color.BLUE);
+        below.draw();
+        above.draw();
+        model.addShape(below);
+        model.addShape(above);
+
+        assertSame(above, model.getShapeAt(75, 75));
+        assertSame(below, model.getShapeAt(25, 25));
+        assertNull(model.getShapeAt(500, 500));
+
+        above.moveTo(400, 400);
+        assertSame(below, model.getShapeAt(75, 75));
+        assertSame(above, model.getShapeAt(450, 450));
+        assertEquals(1, model.getShapesIn(390, 390, 410, 410).size());
+
+        model.deleteShape(above);
+        assertNull(model.getShapeAt(450, 450));
+        assertTrue(model.getShapesIn(300, 300, 600, 600).isEmpty());
+    }
+}
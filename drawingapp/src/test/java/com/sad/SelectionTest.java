@@ -0,0 +1,127 @@
+/**
+ * Unit tests for multiple selection.
+ * Verifies the selection set of the Model, the marquee region query and bulk commands over the selection.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sad.models.Model;
+import com.sad.models.command.BringToFrontCommand;
+import com.sad.models.command.DeleteShapeCommand;
+import com.sad.models.command.MacroCommand;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for the selection set of the Model.
+ */
+class SelectionTest {
+    private Model model;
+    private List<ShapeInterface> shapes;
+
+    /**
+     * Creates a model with six shapes laid out on a row, 100 pixels apart.
+     */
+    @BeforeEach
+    void setUp() {
+        model = new Model(new Pane());
+        shapes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            ShapeInterface shape = new ConcreteRectangle(i * 100, 0, 50, 50, Color.BLACK, Color.RED);
+            shape.draw();
+            model.addShape(shape);
+            shapes.add(shape);
+        }
+    }
+
+    /**
+     * Tests that the marquee query returns only the shapes entirely inside the region.
+     */
+    @Test
+    void testShapesWithinRegion() {
+        List<ShapeInterface> found = model.getShapesWithin(-10, -10, 260, 60);
+        assertEquals(3, found.size());
+        assertTrue(found.containsAll(shapes.subList(0, 3)));
+        assertTrue(model.getShapesWithin(25, -10, 260, 60).containsAll(shapes.subList(1, 3)));
+        assertEquals(2, model.getShapesWithin(25, -10, 260, 60).size());
+    }
+
+    /**
+     * Tests selecting several shapes, adding and removing one, and selecting a single node.
+     */
+    @Test
+    void testSelectionSet() {
+        model.selectShapes(List.of(shapes.get(3), shapes.get(1)));
+        assertNull(model.getSelectedShape());
+        assertEquals(List.of(shapes.get(1), shapes.get(3)), model.getSelection());
+        assertEquals(Model.SELECTION_STYLE, shapes.get(1).getNode().getStyle());
+
+        model.addToSelection(shapes.get(5));
+        model.removeFromSelection(shapes.get(1));
+        assertEquals(List.of(shapes.get(3), shapes.get(5)), model.getSelection());
+        assertEquals("", shapes.get(1).getNode().getStyle());
+
+        model.setSelectedShape(shapes.get(0).getNode());
+        assertEquals(List.of(shapes.get(0)), model.getSelection());
+        assertEquals("", shapes.get(3).getNode().getStyle());
+
+        model.addToSelection(shapes.get(2));
+        assertNull(model.getSelectedShape());
+        assertEquals(List.of(shapes.get(0), shapes.get(2)), model.getSelection());
+
+        model.deselectShape();
+        assertTrue(model.getSelection().isEmpty());
+        assertEquals("", shapes.get(2).getNode().getStyle());
+    }
+
+    /**
+     * Tests that deleting the selection is a single undoable step and drops the shapes from the selection.
+     */
+    @Test
+    void testBulkDeleteUndoesInOneStep() {
+        model.selectShapes(shapes.subList(1, 4));
+        MacroCommand macro = new MacroCommand(model);
+        for (ShapeInterface shape : model.getSelection()) {
+            macro.add(new DeleteShapeCommand(model, shape));
+        }
+        macro.execute();
+        assertEquals(3, model.getShapes().size());
+        assertTrue(model.getSelection().isEmpty());
+
+        macro.undo();
+        assertEquals(6, model.getShapes().size());
+        for (ShapeInterface shape : shapes) {
+            assertTrue(model.isInDocument(shape));
+        }
+    }
+
+    /**
+     * Tests that bringing the selection to the front keeps the relative order of the selected shapes.
+     */
+    @Test
+    void testBulkBringToFrontKeepsOrder() {
+        model.selectShapes(List.of(shapes.get(2), shapes.get(0)));
+        MacroCommand macro = new MacroCommand(model);
+        for (ShapeInterface shape : model.getSelection()) {
+            macro.add(new BringToFrontCommand(model, shape));
+        }
+        macro.execute();
+        List<ShapeInterface> document = model.getShapes();
+        assertSame(shapes.get(0), document.get(4));
+        assertSame(shapes.get(2), document.get(5));
+
+        macro.undo();
+        assertSame(shapes.get(0), model.getShapes().get(0));
+        assertSame(shapes.get(2), model.getShapes().get(1));
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Unit tests for the size of polygons and texts.
+ * Verifies that the size is computed from the shape's own geometry, without a JavaFX node.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.sad.models.shapes.ConcreteLine;
+import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ConcreteText;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.geometry.Bounds;
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for the cached bounds of ConcretePolygon and the size of ConcreteText.
+ */
+class ShapeBoundsTest {
+    /** Tolerance for the trigonometric computations. */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Creates a right triangle with legs of 40 along x and 20 along y.
+     * @return The polygon, without a node.
+     */
+    private ConcretePolygon triangle() {
+        return new ConcretePolygon(new double[] { 10, 10, 50, 10, 10, 30 }, Color.BLACK, Color.RED);
+    }
+
+    /**
+     * Tests that the bounding box of a polygon follows its rotation and mirroring without a node.
+     */
+    @Test
+    void testPolygonBoundsFollowRotationAndMirroring() {
+        ConcretePolygon polygon = triangle();
+        assertNull(polygon.getNode());
+        assertEquals(40, polygon.getWidth(), EPSILON);
+        assertEquals(20, polygon.getHeight(), EPSILON);
+
+        polygon.setAngle(90);
+        assertEquals(20, polygon.getWidth(), EPSILON);
+        assertEquals(40, polygon.getHeight(), EPSILON);
+
+        polygon.setAngle(45);
+        double diagonal = Math.sqrt(2);
+        assertEquals(60 / diagonal, polygon.getWidth(), EPSILON);
+        assertEquals(40 / diagonal, polygon.getHeight(), EPSILON);
+
+        // Mirrored vertically, the triangle points the other way, which changes its rotated box.
+        polygon.mirrorX();
+        assertEquals(40 / diagonal, polygon.getWidth(), EPSILON);
+        assertEquals(60 / diagonal, polygon.getHeight(), EPSILON);
+    }
+
+    /**
+     * Tests that resizing a polygon without a node scales its vertices and its bounding box.
+     */
+    @Test
+    void testPolygonResizeWithoutNode() {
+        ConcretePolygon polygon = triangle();
+        polygon.setWidth(80);
+        polygon.setHeight(10);
+        assertEquals(80, polygon.getWidth(), EPSILON);
+        assertEquals(10, polygon.getHeight(), EPSILON);
+
+        ConcretePolygon copy = (ConcretePolygon) polygon.clone();
+        assertEquals(80, copy.getWidth(), EPSILON);
+        assertEquals(10, copy.getHeight(), EPSILON);
+    }
+
+    /**
+     * Tests that the size of a text follows its stretching and its font size without a node.
+     */
+    @Test
+    void testTextSizeWithoutNode() {
+        ConcreteText text = new ConcreteText("hello", 0, 0, Color.BLACK, Color.BLACK, 20);
+        text.setWidth(100);
+        text.setHeight(30);
+        text.setWidth(150);
+        assertEquals(150, text.getWidth(), EPSILON);
+        assertEquals(30, text.getHeight(), EPSILON);
+
+        text.setFontSize(40);
+        assertEquals(300, text.getWidth(), EPSILON);
+        assertEquals(60, text.getHeight(), EPSILON);
+
+        text.setAngle(30);
+        assertEquals(300, text.getWidth(), EPSILON);
+        assertEquals(300, text.clone().getWidth(), EPSILON);
+    }
+
+    /**
+     * Asserts that the bounds computed by a shape match the bounds of its node.
+     * @param shape The shape, which is drawn to compare.
+     * @param tolerance The largest difference allowed on each edge.
+     */
+    private void assertBoundsMatchNode(ShapeInterface shape, double tolerance) {
+        Bounds computed = shape.getBounds();
+        Bounds node = shape.draw().getBoundsInParent();
+        assertEquals(node.getMinX(), computed.getMinX(), tolerance);
+        assertEquals(node.getMinY(), computed.getMinY(), tolerance);
+        assertEquals(node.getMaxX(), computed.getMaxX(), tolerance);
+        assertEquals(node.getMaxY(), computed.getMaxY(), tolerance);
+    }
+
+    /**
+     * Tests that the bounds of rotated shapes are computed as their nodes report them.
+     */
+    @Test
+    void testBoundsMatchNodes() {
+        ConcreteRectangle rectangle = new ConcreteRectangle(10, 20, 60, 30, Color.BLACK, Color.RED);
+        rectangle.setAngle(30);
+        assertBoundsMatchNode(rectangle, 1e-3);
+
+        // The node pads the joins of a polygon slightly more than half the stroke.
+        ConcretePolygon square = new ConcretePolygon(new double[] { 100, 100, 140, 100, 140, 140, 100, 140 }, Color.BLACK, Color.RED);
+        square.setAngle(90);
+        square.mirrorY();
+        assertBoundsMatchNode(square, 1);
+        square.moveTo(300, 200);
+        assertBoundsMatchNode(square, 1);
+
+        Bounds line = new ConcreteLine(10, 10, 90, 10, Color.BLACK).getBounds();
+        assertEquals(8.5, line.getMinX(), EPSILON);
+        assertEquals(91.5, line.getMaxX(), EPSILON);
+        assertEquals(3, line.getHeight(), EPSILON);
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Unit tests for the stable ids of shapes.
+ * Verifies that ids are unique in a document, found in constant time and kept by saving and loading.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sad.models.Model;
+import com.sad.models.persistence.DocumentFormat;
+import com.sad.models.persistence.DocumentReader;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for shape ids and the registry of the Model.
+ */
+class ShapeIdTest {
+
+    /**
+     * Tests that copies get new ids and that the model finds shapes by id.
+     */
+    @Test
+    void testRegistry() {
+        Model model = new Model();
+        ShapeInterface shape = new ConcreteRectangle(0, 0, 10, 10, Color.BLACK, Color.RED);
+        ShapeInterface copy = shape.clone();
+        assertTrue(shape.getId() > 0);
+        assertNotEquals(shape.getId(), copy.getId());
+
+        model.addShape(shape);
+        assertSame(shape, model.getShapeById(shape.getId()));
+
+        // A shape whose id is already taken in the document gets another one.
+        copy.setId(shape.getId());
+        model.addShape(copy);
+        assertNotEquals(shape.getId(), copy.getId());
+        assertSame(copy, model.getShapeById(copy.getId()));
+
+        model.deleteShape(shape);
+        assertNull(model.getShapeById(shape.getId()));
+    }
+
+    /**
+     * Tests that ids are written to the document and read back.
+     * @param dir A temporary directory.
+     * @throws IOException If the document cannot be written or read.
+     */
+    @Test
+    void testIdsSurviveSaveAndLoad(@TempDir Path dir) throws IOException {
+        Model model = new Model();
+        ShapeInterface first = new ConcreteRectangle(0, 0, 10, 10, Color.BLACK, Color.RED);
+        ShapeInterface second = new ConcreteRectangle(20, 0, 10, 10, Color.BLACK, Color.BLUE);
+        model.addShape(first);
+        model.addShape(second);
+        File file = dir.resolve("ids.bin").toFile();
+        model.saveToFile(file);
+
+        Model loaded = new Model();
+        loaded.loadFromFile(file);
+        assertEquals(second.getId(), loaded.getShapes().get(1).getId());
+        assertEquals(Color.BLUE, loaded.getShapeById(second.getId()).getFillColor());
+        assertTrue(new ConcreteRectangle(0, 0, 1, 1, Color.BLACK, Color.RED).getId() > second.getId());
+    }
+
+    /**
+     * Tests that version 1 documents, without ids, still load and that their shapes get ids.
+     * @param dir A temporary directory.
+     * @throws IOException If the document cannot be written or read.
+     */
+    @Test
+    void testVersion1Documents(@TempDir Path dir) throws IOException {
+        File file = dir.resolve("v1.bin").toFile();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(DocumentFormat.MAGIC);
+            out.writeShort(1);
+            out.writeInt(1);
+            out.writeByte(DocumentFormat.TAG_RECTANGLE);
+            new ConcreteRectangle(5, 5, 10, 20, Color.BLACK, Color.RED).writeTo(out);
+        }
+        List<ShapeInterface> read = DocumentReader.readFile(file);
+        assertEquals(20, read.get(0).getHeight());
+
+        Model model = new Model();
+        model.loadFromFile(file);
+        ShapeInterface shape = model.getShapes().get(0);
+        assertTrue(shape.getId() > 0);
+        assertSame(shape, model.getShapeById(shape.getId()));
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Unit tests for the PolygonSimplifier and SimplifyPolygonCommand classes.
+ * Verifies that outlines lose only the vertices within the tolerance and that the command is undoable.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.sad.models.Model;
+import com.sad.models.command.SimplifyPolygonCommand;
+import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.PolygonSimplifier;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for PolygonSimplifier and SimplifyPolygonCommand, on a headless model.
+ */
+class SimplifyPolygonCommandTest {
+    /** A square traced with extra vertices along its edges, slightly off the lines. */
+    private static final double[] TRACED_SQUARE = {
+        0, 0, 25, 0.2, 50, -0.1, 100, 0,
+        100, 40, 99.8, 70, 100, 100,
+        60, 100.3, 0, 100, 0.2, 50
+    };
+
+    /**
+     * Tests that the Douglas-Peucker pass keeps the corners and drops the vertices close to the edges.
+     */
+    @Test
+    void testSimplifyKeepsCorners() {
+        double[] simplified = PolygonSimplifier.simplify(TRACED_SQUARE, 1);
+        assertArrayEquals(new double[] { 0, 0, 100, 0, 100, 100, 0, 100 }, simplified);
+        assertArrayEquals(TRACED_SQUARE, PolygonSimplifier.simplify(TRACED_SQUARE, 0));
+        assertEquals(TRACED_SQUARE.length, PolygonSimplifier.simplify(TRACED_SQUARE, 0.05).length);
+    }
+
+    /**
+     * Tests that the radial pass drops close vertices in order and never leaves fewer than three.
+     */
+    @Test
+    void testRadialPass() {
+        double[] points = { 0, 0, 0.5, 0, 10, 0, 10, 0.5, 10, 10 };
+        assertArrayEquals(new double[] { 0, 0, 10, 0, 10, 10 }, PolygonSimplifier.simplifyRadial(points, 1));
+        double[] tiny = { 0, 0, 0.1, 0, 0.1, 0.1, 0, 0.1 };
+        assertArrayEquals(tiny, PolygonSimplifier.simplifyRadial(tiny, 1));
+        assertArrayEquals(tiny, PolygonSimplifier.simplify(tiny, 1));
+    }
+
+    /**
+     * Tests that the command reports the removed vertices and that undo and redo swap the outlines.
+     */
+    @Test
+    void testCommandIsUndoable() {
+        Model model = new Model();
+        ConcretePolygon polygon = new ConcretePolygon(TRACED_SQUARE, Color.BLACK, Color.RED);
+        model.addShape(polygon);
+        double[] original = polygon.getPoints();
+
+        SimplifyPolygonCommand command = new SimplifyPolygonCommand(model, List.of(polygon), 1);
+        command.execute();
+        assertEquals(6, command.getRemovedVertexCount());
+        assertEquals(4, polygon.getVertexCount());
+        assertEquals(100, polygon.getWidth(), 1e-9);
+
+        command.undo();
+        assertArrayEquals(original, polygon.getPoints());
+        command.execute();
+        assertEquals(4, polygon.getVertexCount());
+        assertEquals(6, command.getRemovedVertexCount());
+    }
+}
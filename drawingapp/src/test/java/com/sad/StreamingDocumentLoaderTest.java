@@ -0,0 +1,132 @@
+/**
+ * Unit tests for the StreamingDocumentLoader class.
+ * Verifies that shapes are published in bounded batches, that progress is reported and that loads can be cancelled.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sad.models.persistence.DocumentWriter;
+import com.sad.models.persistence.StreamingDocumentLoader;
+import com.sad.models.shapes.ConcretePolygon;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Test class for StreamingDocumentLoader.
+ */
+class StreamingDocumentLoaderTest {
+
+    /** Temporary directory for the document files. */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Writes a document containing the given number of rectangles.
+     * @param count The number of rectangles.
+     * @return The written file.
+     * @throws IOException if the file cannot be written
+     */
+    private File writeDocument(int count) throws IOException {
+        List<ShapeInterface> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shapes.add(new ConcreteRectangle(i, i, 10, 10, Color.BLACK, Color.RED));
+        }
+        File file = tempDir.resolve("document.bin").toFile();
+        DocumentWriter.writeFile(file, shapes);
+        return file;
+    }
+
+    /**
+     * Tests that every shape is attached, never more than the per-pulse limit at a time.
+     * @throws Exception if the document cannot be written or the wait is interrupted
+     */
+    @Test
+    void testPublishesAllShapesInBoundedBatches() throws Exception {
+        int count = StreamingDocumentLoader.MAX_SHAPES_PER_PULSE * 2 + 123;
+        Pane pane = new Pane();
+        StreamingDocumentLoader loader = new StreamingDocumentLoader(writeDocument(count), pane);
+        boolean[] succeeded = {false};
+        loader.setOnSucceeded(() -> succeeded[0] = true);
+
+        loader.startDecoding();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!loader.isFinished() && System.currentTimeMillis() < deadline) {
+            int published = loader.publishPending();
+            assertTrue(published <= StreamingDocumentLoader.MAX_SHAPES_PER_PULSE);
+            Thread.sleep(1);
+        }
+
+        assertTrue(succeeded[0]);
+        assertEquals(count, pane.getChildren().size());
+        assertEquals(1.0, loader.getProgress());
+    }
+
+    /**
+     * Tests that a corrupt record fails the load instead of completing it with the shapes read so far.
+     * @throws Exception if the document cannot be written or the wait is interrupted
+     */
+    @Test
+    void testCorruptRecordFailsTheLoad() throws Exception {
+        List<ShapeInterface> shapes = new ArrayList<>();
+        for (int i = 0; i < StreamingDocumentLoader.BATCH_SIZE + 10; i++) {
+            shapes.add(new ConcreteRectangle(i, i, 10, 10, Color.BLACK, Color.RED));
+        }
+        shapes.add(new ConcretePolygon(new double[] { 0, 0, 10, 0, 5, 8 }, Color.BLACK, Color.RED));
+        File file = tempDir.resolve("corrupt.bin").toFile();
+        DocumentWriter.writeFile(file, shapes);
+        // The polygon is the last record: its coordinate count precedes its six coordinates.
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length() - 6 * 8 - 4);
+            raf.writeInt(-1);
+        }
+
+        StreamingDocumentLoader loader = new StreamingDocumentLoader(file, new Pane());
+        boolean[] succeeded = {false};
+        Throwable[] failed = {null};
+        loader.setOnSucceeded(() -> succeeded[0] = true);
+        loader.setOnFailed(error -> failed[0] = error);
+
+        loader.startDecoding();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!loader.isFinished() && System.currentTimeMillis() < deadline) {
+            loader.publishPending();
+            Thread.sleep(1);
+        }
+
+        assertTrue(loader.isFinished());
+        assertFalse(succeeded[0]);
+        assertNotNull(failed[0]);
+    }
+
+    /**
+     * Tests that a cancelled load stops publishing shapes.
+     * @throws Exception if the document cannot be written
+     */
+    @Test
+    void testCancelStopsPublishing() throws Exception {
+        Pane pane = new Pane();
+        StreamingDocumentLoader loader = new StreamingDocumentLoader(writeDocument(5000), pane);
+
+        loader.startDecoding();
+        loader.cancel();
+
+        assertTrue(loader.isCancelled());
+        assertTrue(loader.isFinished());
+        assertEquals(0, loader.publishPending());
+        assertEquals(0, pane.getChildren().size());
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Unit tests for viewport culling.
+ * Verifies that only visible shapes are attached to the pane while the document keeps every shape.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sad.models.Model;
+import com.sad.models.RectangleFactory;
+import com.sad.models.command.DrawShapeCommand;
+import com.sad.models.shapes.ConcreteRectangle;
+import com.sad.models.shapes.ShapeInterface;
+
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * Test class for ViewportCuller and the culling behaviour of the Model.
+ */
+class ViewportCullerTest {
+    private Pane pane;
+    private Model model;
+    private List<ShapeInterface> shapes;
+
+    /**
+     * Creates a model with ten shapes laid out on a row, 100 pixels apart.
+     */
+    @BeforeEach
+    void setUp() {
+        pane = new Pane();
+        model = new Model(pane);
+        shapes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ShapeInterface shape = new ConcreteRectangle(i * 100, 0, 50, 50, Color.BLACK, Color.RED);
+            shape.draw();
+            model.addShape(shape);
+            shapes.add(shape);
+        }
+        model.setCullingEnabled(true);
+    }
+
+    /**
+     * Collects the shapes attached to the pane, in pane order.
+     * @return The attached shapes.
+     */
+    private List<ShapeInterface> attached() {
+        List<ShapeInterface> result = new ArrayList<>();
+        for (Node node : pane.getChildren()) {
+            if (node.getUserData() instanceof ShapeInterface) {
+                result.add((ShapeInterface) node.getUserData());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tests that only the shapes in the viewport are attached, in document order.
+     */
+    @Test
+    void testOnlyVisibleShapesAreAttached() {
+        model.setViewport(0, 0, 260, 100);
+        assertEquals(List.of(shapes.get(0), shapes.get(1), shapes.get(2)), attached());
+
+        model.setViewport(420, 0, 760, 100);
+        assertEquals(List.of(shapes.get(4), shapes.get(5), shapes.get(6), shapes.get(7)), attached());
+
+        model.setViewport(0, 0, 1000, 100);
+        assertEquals(shapes, attached());
+        assertEquals(shapes, model.getShapes());
+    }
+
+    /**
+     * Tests that culled shapes stay in the document and keep their z-order.
+     */
+    @Test
+    void testCulledShapesStayInDocument() {
+        model.setViewport(0, 0, 60, 60);
+        assertEquals(List.of(shapes.get(0)), attached());
+        assertEquals(shapes, model.getShapes());
+
+        model.sendShapeToBack(shapes.get(5));
+        model.setViewport(0, 0, 1000, 100);
+        assertSame(shapes.get(5), attached().get(0));
+        assertSame(shapes.get(5), model.getShapes().get(0));
+        assertEquals(10, model.getShapes().size());
+        assertTrue(model.getShapes().containsAll(shapes));
+    }
+
+    /**
+     * Tests that stepping shapes in z-order swaps the attached nodes and skips culled neighbours.
+     */
+    @Test
+    void testStepShapes() {
+        model.setViewport(0, 0, 1000, 100);
+        assertTrue(model.bringShapeForward(shapes.get(3)));
+        assertSame(shapes.get(3), model.getShapes().get(4));
+        assertSame(shapes.get(3), attached().get(4));
+        assertFalse(model.bringShapeForward(shapes.get(9)));
+
+        // Shape 1 is culled: shape 0 steps over it without moving on the pane.
+        model.setViewport(0, 0, 60, 60);
+        assertTrue(model.bringShapeForward(shapes.get(0)));
+        assertSame(shapes.get(0), model.getShapes().get(1));
+        assertEquals(List.of(shapes.get(0)), attached());
+
+        assertTrue(model.sendShapeBackward(shapes.get(0)));
+        assertFalse(model.canStepShape(shapes.get(0), false));
+        model.setViewport(0, 0, 1000, 100);
+        assertEquals(model.getShapes(), attached());
+    }
+
+    /**
+     * Tests that stepping shapes finds their nodes among other children of the pane, such as a grid or a marquee.
+     */
+    @Test
+    void testStepShapesAmongOtherNodes() {
+        model.setViewport(0, 0, 1000, 100);
+        Rectangle grid = new Rectangle(0, 0, 1000, 100);
+        Rectangle marquee = new Rectangle(10, 10, 20, 20);
+        pane.getChildren().add(0, grid);
+        pane.getChildren().add(6, marquee);
+
+        assertTrue(model.bringShapeForward(shapes.get(4)));
+        assertTrue(model.bringShapeForward(shapes.get(4)));
+        assertFalse(model.sendShapeBackward(shapes.get(0)));
+        assertTrue(model.sendShapeBackward(shapes.get(9)));
+        assertEquals(model.getShapes(), attached());
+        assertSame(shapes.get(4), model.getShapes().get(6));
+        assertSame(shapes.get(9), model.getShapes().get(8));
+        assertSame(grid, pane.getChildren().get(0));
+        assertTrue(pane.getChildren().contains(marquee));
+    }
+
+    /**
+     * Tests that a culled shape can be deleted and that disabling culling attaches every shape.
+     */
+    @Test
+    void testDeleteCulledShapeAndDisableCulling() {
+        model.setViewport(0, 0, 60, 60);
+        model.deleteShape(shapes.get(9));
+        assertEquals(9, model.getShapes().size());
+        assertFalse(model.getShapes().contains(shapes.get(9)));
+        assertNull(model.getShapeAt(925, 25));
+
+        model.setCullingEnabled(false);
+        assertEquals(shapes.subList(0, 9), attached());
+    }
+
+    /**
+     * Tests that undoing a drawing removes the drawn shape even when another node is last on the pane.
+     */
+    @Test
+    void testUndoDrawingWithOtherNodeOnTop() {
+        model.setViewport(0, 0, 1000, 100);
+        model.setCurrentFactory(new RectangleFactory());
+        DrawShapeCommand command = new DrawShapeCommand(model, 20, 20, Color.BLACK, Color.RED);
+        command.execute();
+        ShapeInterface drawn = model.getShapes().get(10);
+        Rectangle marquee = new Rectangle(0, 0, 10, 10);
+        pane.getChildren().add(marquee);
+
+        command.undo();
+        model.refreshViewport();
+        assertFalse(model.isInDocument(drawn));
+        assertSame(marquee, pane.getChildren().get(pane.getChildren().size() - 1));
+        assertEquals(shapes, attached());
+    }
+}
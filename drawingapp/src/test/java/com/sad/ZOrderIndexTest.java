@@ -0,0 +1,92 @@
+/**
+ * Unit tests for the ZOrderIndex class.
+ * Verifies that positions and ranks match a plain list through random edits.
+ */
+package com.sad;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.sad.models.index.ZOrderIndex;
+
+/**
+ * Test class for ZOrderIndex.
+ */
+class ZOrderIndexTest {
+
+    /**
+     * Tests random insertions, removals and moves against an ArrayList.
+     */
+    @Test
+    void testMatchesListThroughRandomEdits() {
+        Random random = new Random(3);
+        ZOrderIndex<String> index = new ZOrderIndex<>();
+        List<String> expected = new ArrayList<>();
+        for (int step = 0; step < 3000; step++) {
+            int operation = random.nextInt(4);
+            if (operation < 2 || expected.isEmpty()) {
+                String item = "item" + step;
+                int position = random.nextInt(expected.size() + 1);
+                index.add(position, item);
+                expected.add(position, item);
+            } else if (operation == 2) {
+                int position = random.nextInt(expected.size());
+                assertEquals(expected.remove(position), index.remove(position));
+            } else {
+                String item = expected.remove(random.nextInt(expected.size()));
+                int position = random.nextInt(expected.size() + 1);
+                expected.add(position, item);
+                index.move(item, position);
+            }
+        }
+        assertEquals(expected, index);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i, index.rankOf(expected.get(i)));
+            assertSame(expected.get(i), index.get(i));
+        }
+        assertEquals(-1, index.rankOf("missing"));
+    }
+
+    /**
+     * Tests removal by item, by condition and through the iterator.
+     */
+    @Test
+    void testRemovals() {
+        ZOrderIndex<Integer> index = new ZOrderIndex<>();
+        for (int i = 0; i < 10; i++) {
+            index.add(i);
+        }
+        assertTrue(index.remove(Integer.valueOf(4)));
+        assertFalse(index.contains(4));
+        assertTrue(index.removeIf(i -> i % 3 == 0));
+        assertEquals(List.of(1, 2, 5, 7, 8), index);
+
+        Iterator<Integer> iterator = index.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() > 6) {
+                iterator.remove();
+            }
+        }
+        assertEquals(List.of(1, 2, 5), index);
+        assertEquals(2, index.rankOf(5));
+    }
+
+    /**
+     * Tests that an item cannot be added twice.
+     */
+    @Test
+    void testDuplicatesAreRejected() {
+        ZOrderIndex<String> index = new ZOrderIndex<>();
+        String item = "a";
+        index.add(item);
+        assertThrows(IllegalArgumentException.class, () -> index.add(item));
+        assertThrows(IllegalArgumentException.class, () -> index.add(null));
+        assertThrows(IllegalArgumentException.class, () -> index.move("b", 0));
+    }
+}